@@ -1,11 +1,25 @@
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import controller.BatchProcessor;
 import controller.ImageProcessorController;
 import controller.ImageProcessorControllerImpl;
 import controller.ImageProcessorGUIControllerFeatures;
+import model.ConcurrentImageProcessorModel;
+import model.ImageDirectory;
+import model.ImageProcessorModel;
 import model.ImageProcessorModelImpl;
+import model.RowScheduler;
+import utils.SaveService;
 import view.ImageProcessorGraphicsView;
 import view.ImageProcessorTextView;
 
@@ -20,13 +34,54 @@ public class ImageProcessor {
    *             "-text" : run text-based program.
    *             "-file file-path" : open a script of commands from the file found at file-path, and
    *                                 run them in sequence.
+   *             "-threads n" : may be given along with any of the above, to run image operations
+   *                            on n threads. By default, all available processors are used.
+   *             "-memory m" : may be given along with "-text" or "-file", to keep at most m
+   *                           megabytes of images in memory, spilling the least recently used
+   *                           to disk. By default, half of the largest heap allowed is used.
+   *             "-batch template-path input-dir output-dir" : run the script template found
+   *                         at template-path on every image under input-dir, with $in standing
+   *                         for the path of the image, and $out for the path of its output under
+   *                         output-dir, less an extension. Reports how long each image took, and
+   *                         which failed.
+   *             "-jobs n" : may be given along with "-file", to read the whole script first, and
+   *                         run up to n of its commands at once whenever they work on unrelated
+   *                         images. Each command and its arguments must then be on one line.
+   *                         Along with "-batch", works on up to n images at once. By default,
+   *                         that is as many as there are available processors.
    * @throws FileNotFoundException if the file path can not be found.
+   * @throws IOException if the batch template or input directory can not be read.
    * @throws IllegalArgumentException if the first argument was not "-file" or "-text"
    */
-  public static void main(String[] args) throws FileNotFoundException, IllegalArgumentException {
+  public static void main(String[] args) throws IOException, IllegalArgumentException {
+
+    List<String> rest = new ArrayList<>(Arrays.asList(args));
+    String threads = takeOption(rest, "-threads");
+    if (threads != null) {
+      RowScheduler.setDefault(RowScheduler.parallel(Integer.parseInt(threads)));
+    }
+    String memory = takeOption(rest, "-memory");
+    long budget = memory == null ? ImageDirectory.DEFAULT_BUDGET
+            : Long.parseLong(memory) * 1024 * 1024;
+    String jobs = takeOption(rest, "-jobs");
+    args = rest.toArray(new String[0]);
 
     Readable in = null;
 
+    if (args.length > 0 && args[0].equals("-batch")) {
+      if (args.length < 4) {
+        throw new IllegalArgumentException("-batch needs a template and two directories.");
+      }
+      int inFlight = jobs == null ? Runtime.getRuntime().availableProcessors()
+              : Integer.parseInt(jobs);
+      //each image in flight has a model of its own, so they share the budget
+      long share = inFlight > 0 ? budget / inFlight : budget;
+      new BatchProcessor(Files.readString(Paths.get(args[1])), inFlight,
+              () -> new ImageProcessorModelImpl(share))
+              .run(Paths.get(args[2]), Paths.get(args[3]), new ImageProcessorTextView(System.out));
+      return;
+    }
+
     if (args.length > 0) {
       if (args[0].equals("-file")) {
         in = new FileReader(args[1]);
@@ -35,15 +90,49 @@ public class ImageProcessor {
         in = new InputStreamReader(System.in);
       }
 
-      ImageProcessorController cont = new ImageProcessorControllerImpl(
-              new ImageProcessorModelImpl(),
-              in,
-              new ImageProcessorTextView(System.out)
-      );
+      if (jobs != null && args[0].equals("-file")) {
+        ExecutorService workers = Executors.newFixedThreadPool(Integer.parseInt(jobs));
+        try (ImageProcessorModel model = new ConcurrentImageProcessorModel(budget)) {
+          new ImageProcessorControllerImpl(
+                  model,
+                  in,
+                  new ImageProcessorTextView(System.out),
+                  SaveService.synchronous(),
+                  workers
+          ).activateProcessor();
+        } finally {
+          workers.shutdown();
+        }
+        return;
+      }
+
+      try (ImageProcessorModel model = new ImageProcessorModelImpl(budget)) {
+        ImageProcessorController cont = new ImageProcessorControllerImpl(
+                model,
+                in,
+                new ImageProcessorTextView(System.out)
+        );
 
-      cont.activateProcessor();
+        cont.activateProcessor();
+      }
     } else {
       new ImageProcessorGUIControllerFeatures(new ImageProcessorGraphicsView());
     }
   }
+
+  //removes an option and the value after it from the arguments, and returns the value, or null
+  //if the option was not given
+  private static String takeOption(List<String> rest, String option)
+          throws IllegalArgumentException {
+    int index = rest.indexOf(option);
+    if (index < 0) {
+      return null;
+    }
+    if (index + 1 >= rest.size()) {
+      throw new IllegalArgumentException(option + " needs a number.");
+    }
+    String value = rest.remove(index + 1);
+    rest.remove(index);
+    return value;
+  }
 }
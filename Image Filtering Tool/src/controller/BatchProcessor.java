@@ -0,0 +1,200 @@
+package controller;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import model.ImageProcessorModel;
+import utils.SaveService;
+import view.ImageProcessorView;
+
+/**
+ * Runs a script template on every image in a directory tree, within one program, so that each
+ *   image costs only the work of its script. In the template, $in stands for the path of the
+ *   image, and $out for the path of its output without an extension, under an output directory
+ *   laid out like the input directory, so that a template usually ends with a command such as
+ *   "save result $out.png". Each image gets a model of its own, and a fixed number of images are
+ *   worked on at once, so that memory stays flat however many images there are. Once every image
+ *   is done, how long each took and which failed is reported.
+ */
+public final class BatchProcessor {
+
+  /**
+   * The extensions of the files which are run through the template.
+   */
+  public static final Set<String> IMAGE_EXTENSIONS =
+          Set.of("ppm", "pam", "png", "jpg", "jpeg", "bmp", "gif");
+
+  //how one image went
+  private static final class Result {
+
+    private final String file;
+    private final long millis;
+    private final List<String> failures;
+
+    private Result(String file, long millis, List<String> failures) {
+      this.file = file;
+      this.millis = millis;
+      this.failures = failures;
+    }
+  }
+
+  private final String template;
+  private final int inFlight;
+  private final Supplier<ImageProcessorModel> models;
+
+  /**
+   * Constructs a batch processor.
+   * @param template the script to run on each image, in which $in and $out are replaced by the
+   *                 paths of the image and its output.
+   * @param inFlight the most images to work on at once.
+   * @param models makes the model each image is worked on in.
+   * @throws IllegalArgumentException if the template or models are null, or fewer than one image
+   *                                  may be worked on at once.
+   */
+  public BatchProcessor(String template, int inFlight, Supplier<ImageProcessorModel> models)
+          throws IllegalArgumentException {
+    if (template == null) {
+      throw new IllegalArgumentException("Given template was null.");
+    }
+    if (models == null) {
+      throw new IllegalArgumentException("Given models were null.");
+    }
+    if (inFlight < 1) {
+      throw new IllegalArgumentException("Images in flight must be at least 1.");
+    }
+    this.template = template;
+    this.inFlight = inFlight;
+    this.models = models;
+  }
+
+  /**
+   * Runs the template on every image under a directory, then renders a report of how long each
+   *   image took, and what went wrong with those which failed, in order of their paths.
+   * @param input the directory of images.
+   * @param output the directory to write the outputs under, which is made if need be.
+   * @param report the view to render the report to.
+   * @return the number of images which failed.
+   * @throws IllegalArgumentException if any argument is null.
+   * @throws IOException if the input is not a directory or can not be read, or the report can
+   *                     not be rendered.
+   */
+  public int run(Path input, Path output, ImageProcessorView report)
+          throws IllegalArgumentException, IOException {
+    if (input == null || output == null || report == null) {
+      throw new IllegalArgumentException("Given arguments were null.");
+    }
+    if (!Files.isDirectory(input)) {
+      throw new NotDirectoryException(input.toString());
+    }
+
+    List<Path> images;
+    try (Stream<Path> files = Files.walk(input)) {
+      images = files.filter(Files::isRegularFile).filter(BatchProcessor::isImage).sorted()
+              .collect(Collectors.toList());
+    }
+
+    long start = System.nanoTime();
+    ExecutorService workers = Executors.newFixedThreadPool(this.inFlight);
+    List<Future<Result>> results = new ArrayList<>();
+    try {
+      for (Path image : images) {
+        results.add(workers.submit(() -> this.process(image, input, output)));
+      }
+    } finally {
+      workers.shutdown();
+    }
+
+    int failed = 0;
+    for (Future<Result> future : results) {
+      Result result = this.await(future);
+      if (result.failures.isEmpty()) {
+        report.renderMessage(result.file + ": " + result.millis + " ms\n");
+      } else {
+        failed++;
+        report.renderMessage(result.file + ": failed in " + result.millis + " ms: "
+                + String.join(" ", result.failures) + "\n");
+      }
+    }
+    report.renderMessage("Processed " + images.size() + " images in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, " + failed
+            + " failed.\n");
+    return failed;
+  }
+
+  //whether a file has the extension of an image
+  private static boolean isImage(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot >= 0
+            && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  //runs the template on one image, in a model of its own
+  private Result process(Path image, Path input, Path output) {
+    long start = System.nanoTime();
+    Path relative = input.relativize(image);
+    String name = relative.getFileName().toString();
+    Path out = output.resolve(relative).resolveSibling(name.substring(0, name.lastIndexOf('.')));
+    List<String> failures = new ArrayList<>();
+
+    if (image.toString().matches(".*\\s.*") || out.toString().matches(".*\\s.*")) {
+      //a script can not name such a file
+      failures.add("Paths with spaces can not be used in a script.");
+    } else {
+      try {
+        if (out.getParent() != null) {
+          Files.createDirectories(out.getParent());
+        }
+        String script = this.template.replace("$in", image.toString())
+                .replace("$out", out.toString());
+        try (ImageProcessorModel model = this.models.get()) {
+          ImageProcessorControllerImpl controller = new ImageProcessorControllerImpl(
+                  model, new StringReader(script + "\nq\n"), message -> { },
+                  SaveService.synchronous());
+          controller.activateProcessor();
+          failures.addAll(controller.getFailures());
+        }
+      } catch (IOException | RuntimeException e) {
+        failures.add(e.getMessage() == null ? e.toString() : e.getMessage());
+      }
+    }
+
+    return new Result(relative.toString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+            - start), failures);
+  }
+
+  //waits for the result of an image, which is never a failure, as process catches them
+  private Result await(Future<Result> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Processing an image failed.", e.getCause());
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
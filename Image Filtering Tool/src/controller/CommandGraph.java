@@ -0,0 +1,102 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the commands of a script as soon as the commands before them that they depend on are
+ *   done, so that commands working on unrelated images run at the same time. A command depends
+ *   on the last command before it to write a name it reads or writes, and on every command since
+ *   then to read a name it writes, so each name is read and written in the order of the script.
+ *   A barrier depends on every command before it, and every command after it depends on it.
+ */
+final class CommandGraph {
+
+  /**
+   * Invariant: lastWrite holds, for each name, the last command added which writes it, since the
+   *            last barrier.
+   * Invariant: readers holds, for each name, the commands added which read it since it was
+   *            last written, or since the last barrier.
+   */
+  private final Executor executor;
+  private final Map<String, CompletableFuture<Void>> lastWrite;
+  private final Map<String, List<CompletableFuture<Void>>> readers;
+  private final List<CompletableFuture<Void>> sinceBarrier;
+  private CompletableFuture<Void> barrier;
+
+  /**
+   * Constructs an empty graph, which runs its commands on the given executor.
+   * @param executor runs the commands.
+   * @throws IllegalArgumentException if the executor is null.
+   */
+  CommandGraph(Executor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("Given executor was null.");
+    }
+    this.executor = executor;
+    this.lastWrite = new HashMap<>();
+    this.readers = new HashMap<>();
+    this.sinceBarrier = new ArrayList<>();
+    this.barrier = CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Adds a command, which runs once the commands it depends on are done, whether or not they
+   *   succeeded.
+   * @param reads the names the command reads.
+   * @param writes the names the command writes.
+   * @param command the command.
+   * @return a future which completes when the command is done, exceptionally if it failed.
+   */
+  CompletableFuture<Void> add(List<String> reads, List<String> writes, Runnable command) {
+    List<CompletableFuture<Void>> before = new ArrayList<>();
+    before.add(this.barrier);
+    for (String name : reads) {
+      before.add(this.lastWrite.get(name));
+    }
+    for (String name : writes) {
+      before.add(this.lastWrite.get(name));
+      before.addAll(this.readers.getOrDefault(name, List.of()));
+    }
+
+    CompletableFuture<Void> done = this.after(before, command);
+    for (String name : reads) {
+      this.readers.computeIfAbsent(name, n -> new ArrayList<>()).add(done);
+    }
+    for (String name : writes) {
+      this.lastWrite.put(name, done);
+      this.readers.remove(name);
+    }
+    this.sinceBarrier.add(done);
+    return done;
+  }
+
+  /**
+   * Adds a command which runs once every command before it is done, and before any command
+   *   after it.
+   * @param command the command.
+   * @return a future which completes when the command is done, exceptionally if it failed.
+   */
+  CompletableFuture<Void> addBarrier(Runnable command) {
+    List<CompletableFuture<Void>> before = new ArrayList<>(this.sinceBarrier);
+    before.add(this.barrier);
+    this.barrier = this.after(before, command);
+    this.lastWrite.clear();
+    this.readers.clear();
+    this.sinceBarrier.clear();
+    return this.barrier;
+  }
+
+  //runs a command on the executor once the given futures are done, ignoring any which are null
+  private CompletableFuture<Void> after(List<CompletableFuture<Void>> before, Runnable command) {
+    CompletableFuture<?>[] waiting = before.stream().filter(f -> f != null)
+            .toArray(CompletableFuture<?>[]::new);
+    //a failed command still counts as done, as it would had the script run in order
+    return CompletableFuture.allOf(waiting).handle((v, e) -> null)
+            .thenRunAsync(command, this.executor);
+  }
+}
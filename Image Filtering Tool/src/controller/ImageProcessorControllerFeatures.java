@@ -11,6 +11,21 @@ public interface ImageProcessorControllerFeatures {
    */
   void runCommand(String command);
 
+  /**
+   * Cancels the command which is running, if there is one.
+   */
+  void cancelCommand();
+
+  /**
+   * Undoes the last command which changed the image, if there is one.
+   */
+  void undo();
+
+  /**
+   * Redoes the last command to have been undone, if there is one.
+   */
+  void redo();
+
   /**
    * Loads an image from a specified filepath.
    * @param filepath of the image.
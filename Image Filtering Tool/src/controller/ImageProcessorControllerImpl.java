@@ -2,16 +2,31 @@ package controller;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
+import controller.commands.AutoLevelsCommand;
 import controller.commands.BlurCommand;
+import controller.commands.CropCommand;
 import controller.commands.GrayscaleMatrixCommand;
 import controller.commands.LoadImageCommand;
+import controller.commands.MosaicCommand;
+import controller.commands.PointOpCommand;
+import controller.commands.RotateCommand;
 import controller.commands.AdjustBrightnessCommand;
 import controller.commands.FlipHorizontalCommand;
 import controller.commands.FlipVerticalCommand;
@@ -21,7 +36,15 @@ import controller.commands.SaveImageCommand;
 import controller.commands.SepiaCommand;
 import controller.commands.SharpenCommand;
 import model.ColorComponent;
+import model.EdgeMode;
+import model.Histogram;
+import model.Image;
 import model.ImageProcessorModel;
+import model.MemoryReport;
+import model.PointOp;
+import utils.ImageStorage;
+import utils.PpmFormat;
+import utils.SaveService;
 import view.ImageProcessorView;
 
 /**
@@ -34,6 +57,14 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
   private final ImageProcessorModel model;
   private final Readable in;
   private final ImageProcessorView view;
+  private final SaveService saves;
+
+  /**
+   * Invariant: scriptWorkers is null exactly when commands are run one at a time, as they are
+   *            read.
+   */
+  private final Executor scriptWorkers;
+  private final Queue<String> failures;
 
   private boolean programQuit;
 
@@ -52,6 +83,56 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
   public ImageProcessorControllerImpl(
           ImageProcessorModel model, Readable in, ImageProcessorView view)
           throws IllegalArgumentException {
+    this(model, in, view, SaveService.background());
+  }
+
+  /**
+   * Constructs the controller, allowing specification of a model, input source, view, and the
+   * service which saves images. With a background service, the controller moves on to the next
+   * command while images are still being written, reports any save which failed before the
+   * following prompt, and waits for every save to finish before it returns.
+   *
+   * @param model the system of storing and modifying images that the controller works with.
+   * @param in    the source of input, as a sequence of characters.
+   * @param view  the view which messages will be rendered to.
+   * @param saves the service which saves images.
+   * @throws IllegalArgumentException if any parameters are null.
+   */
+  public ImageProcessorControllerImpl(
+          ImageProcessorModel model, Readable in, ImageProcessorView view, SaveService saves)
+          throws IllegalArgumentException {
+    this(model, in, view, saves, null, false);
+  }
+
+  /**
+   * Constructs the controller, which reads the whole of its input as a script before running
+   * it, with one command and its arguments to each line. Each command is run on the given
+   * workers as soon as the commands before it which read or write the same images or files are
+   * done, so that commands on unrelated images run at the same time, while the memory command
+   * waits for every command before it, and holds back every command after it. The messages of
+   * the commands are rendered in the order of the script, as if it had been run in order. Saves
+   * are best made by a synchronous service, so that a command loading a file saved earlier in
+   * the script waits until it has been written.
+   *
+   * @param model   the system of storing and modifying images that the controller works with,
+   *                which must be safe to use from several threads at once, such as a
+   *                ConcurrentImageProcessorModel.
+   * @param in      the script.
+   * @param view    the view which messages will be rendered to.
+   * @param saves   the service which saves images.
+   * @param workers runs the commands of the script.
+   * @throws IllegalArgumentException if any parameters are null.
+   */
+  public ImageProcessorControllerImpl(ImageProcessorModel model, Readable in,
+                                      ImageProcessorView view, SaveService saves,
+                                      Executor workers) throws IllegalArgumentException {
+    this(model, in, view, saves, workers, true);
+  }
+
+  private ImageProcessorControllerImpl(ImageProcessorModel model, Readable in,
+                                       ImageProcessorView view, SaveService saves,
+                                       Executor workers, boolean script)
+          throws IllegalArgumentException {
     if (model == null) {
       throw new IllegalArgumentException("Model was null.");
     }
@@ -61,10 +142,19 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
     if (view == null) {
       throw new IllegalArgumentException("View was null.");
     }
+    if (saves == null) {
+      throw new IllegalArgumentException("Save service was null.");
+    }
+    if (script && workers == null) {
+      throw new IllegalArgumentException("Script workers were null.");
+    }
 
     this.model = model;
     this.in = in;
     this.view = view;
+    this.saves = saves;
+    this.scriptWorkers = workers;
+    this.failures = new ConcurrentLinkedQueue<>();
 
     this.programQuit = false;
 
@@ -89,12 +179,27 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
         s -> new FlipHorizontalCommand(s.next(), s.next()));
     this.modelCommands.put("vertical-flip",
         s -> new FlipVerticalCommand(s.next(), s.next()));
+    this.modelCommands.put("rotate-clockwise",
+        s -> new RotateCommand(true, s.next(), s.next()));
+    this.modelCommands.put("rotate-counterclockwise",
+        s -> new RotateCommand(false, s.next(), s.next()));
+    this.modelCommands.put("crop",
+        s -> new CropCommand(s.nextInt(), s.nextInt(), s.nextInt(), s.nextInt(), s.next(),
+            s.next()));
     this.modelCommands.put("brighten",
         s -> new AdjustBrightnessCommand(s.nextInt(), s.next(), s.next()));
     this.modelCommands.put("load",
-        s -> new LoadImageCommand(s.next(), s.next()));
+        s -> new LoadImageCommand(s.next(), s.next(), ImageStorage.Memory, this.saves));
+    this.modelCommands.put("load-mapped",
+        s -> new LoadImageCommand(s.next(), s.next(), ImageStorage.Mapped, this.saves));
+    this.modelCommands.put("load-tiled",
+        s -> new LoadImageCommand(s.next(), s.next(), ImageStorage.Tiled, this.saves));
     this.modelCommands.put("save",
-        s -> new SaveImageCommand(s.next(), s.next()));
+        s -> new SaveImageCommand(s.next(), s.next(), PpmFormat.Plain, this.saves));
+    this.modelCommands.put("save-format", s -> {
+      PpmFormat format = PpmFormat.fromName(s.next());
+      return new SaveImageCommand(s.next(), s.next(), format, this.saves);
+    });
     this.modelCommands.put("sepia",
         s -> new SepiaCommand(s.next(), s.next()));
     this.modelCommands.put("grayscale",
@@ -104,6 +209,34 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
         s -> new BlurCommand(s.next(), s.next()));
     this.modelCommands.put("sharpen",
         s -> new SharpenCommand(s.next(), s.next()));
+    this.modelCommands.put("gamma",
+        s -> new PointOpCommand(PointOp.gamma(s.nextDouble()), s.next(), s.next()));
+    this.modelCommands.put("levels",
+        s -> new PointOpCommand(PointOp.levels(s.nextInt(), s.nextInt(), s.nextDouble(),
+                s.nextInt(), s.nextInt()), s.next(), s.next()));
+    this.modelCommands.put("curve", s -> {
+      int[] inputs = new int[s.nextInt()];
+      int[] outputs = new int[inputs.length];
+      for (int i = 0; i < inputs.length; i++) {
+        inputs[i] = s.nextInt();
+        outputs[i] = s.nextInt();
+      }
+      return new PointOpCommand(PointOp.curve(inputs, outputs), s.next(), s.next());
+    });
+    this.modelCommands.put("auto-levels",
+        s -> new AutoLevelsCommand(s.next(), s.next()));
+    this.modelCommands.put("blur-edges", s -> {
+      EdgeMode edges = EdgeMode.fromName(s.next());
+      return new BlurCommand(s.next(), s.next(), edges);
+    });
+    this.modelCommands.put("sharpen-edges", s -> {
+      EdgeMode edges = EdgeMode.fromName(s.next());
+      return new SharpenCommand(s.next(), s.next(), edges);
+    });
+    this.modelCommands.put("mosaic",
+        s -> new MosaicCommand(s.nextInt(), nextSeed(s), false, s.next(), s.next()));
+    this.modelCommands.put("mosaic-average",
+        s -> new MosaicCommand(s.nextInt(), nextSeed(s), true, s.next(), s.next()));
   }
 
   /**
@@ -123,7 +256,11 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
 
     try {
       view.renderMessage("Welcome to Image Processor. \"menu\" for command list.\n");
+      if (this.scriptWorkers != null) {
+        this.runScript(sc);
+      }
       while (!programQuit) {
+        this.reportFailedSaves();
         view.renderMessage("Command:\n");
         String token = sc.next().toLowerCase();
 
@@ -132,42 +269,223 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
           case "quit":
             programQuit = true;
             break;
-          case "menu":
-            displayTextMenu();
-            break;
           default:
-            if (modelCommands.getOrDefault(token, null) == null) {
-              view.renderMessage("Command \"" + token + "\" not found.\n");
-            } else {
-              view.renderMessage("Arguments:\n");
-              try {
-                ImageProcessorCommand currentCommand =
-                        modelCommands.get(token).apply(sc);
-                currentCommand.runCommand(model);
-              } catch (FileNotFoundException fnfE) {
-                view.renderMessage("File not found!\n");
-              } catch (IllegalArgumentException iaE) {
-                view.renderMessage("No such name in the system.\n");
-              } catch (InputMismatchException imE) {
-                view.renderMessage("Incorrect form of parameters.\n");
-                sc.next(); // InputMismatch doesn't remove latest
-              }
-            }
+            this.prepare(token, sc, view).run();
         }
       }
+      this.saves.awaitAll();
+      this.reportFailedSaves();
       view.renderMessage("Thank you for using Image Processor!\n");
     } catch (IOException ioE) {
       throw new IllegalStateException("Input or output failed!");
     } catch (NoSuchElementException nseE) {
       throw new IllegalStateException("Ran out of input");
+    } finally {
+      this.saves.awaitAll();
     }
   }
 
-  private void displayTextMenu() throws IOException {
-    view.renderMessage("  Command: q, quit\n" +
+  //what is left to do of a command once its arguments have been read
+  private interface Work {
+    void run() throws IOException;
+  }
+
+  //reads the arguments of a command, prompting for them on out, and gives back the work of
+  //running it, which renders its messages to out
+  private Work prepare(String token, Scanner sc, ImageProcessorView out) throws IOException {
+    switch (token) {
+      case "menu":
+        return () -> this.displayTextMenu(out);
+      case "statistics": {
+        out.renderMessage("Arguments:\n");
+        String name = sc.next();
+        return () -> {
+          try {
+            this.displayStatistics(model.returnImage(name), out);
+          } catch (IllegalArgumentException iaE) {
+            this.renderFailure(out, "No such name in the system.\n");
+          }
+        };
+      }
+      case "memory":
+        return () -> this.displayMemory(model.getMemoryReport(), out);
+      default:
+        if (modelCommands.getOrDefault(token, null) == null) {
+          this.renderFailure(out, "Command \"" + token + "\" not found.\n");
+          return () -> { };
+        }
+        out.renderMessage("Arguments:\n");
+        ImageProcessorCommand currentCommand;
+        try {
+          currentCommand = modelCommands.get(token).apply(sc);
+        } catch (IllegalArgumentException iaE) {
+          this.renderFailure(out, "No such name in the system.\n");
+          return () -> { };
+        } catch (InputMismatchException imE) {
+          this.renderFailure(out, "Incorrect form of parameters.\n");
+          sc.next(); // InputMismatch doesn't remove latest
+          return () -> { };
+        }
+        return () -> {
+          try {
+            currentCommand.runCommand(model);
+          } catch (FileNotFoundException fnfE) {
+            this.renderFailure(out, "File not found!\n");
+          } catch (IllegalArgumentException iaE) {
+            this.renderFailure(out, "No such name in the system.\n");
+          }
+        };
+    }
+  }
+
+  //reads every line of the script up to a quit, then runs its commands on the script workers,
+  //rendering the messages of each command in turn once it is done
+  private void runScript(Scanner sc) throws IOException {
+    CommandGraph graph = new CommandGraph(this.scriptWorkers);
+    List<StringBuilder> messages = new ArrayList<>();
+    List<CompletableFuture<Void>> steps = new ArrayList<>();
+
+    while (!programQuit && sc.hasNextLine()) {
+      String line = sc.nextLine().trim();
+      List<String> tokens = line.isEmpty() ? List.of() : Arrays.asList(line.split("\\s+"));
+      int start = 0;
+      while (!programQuit && start < tokens.size()) {
+        StringBuilder out = new StringBuilder("Command:\n");
+        messages.add(out);
+        String token = tokens.get(start).toLowerCase();
+        if (token.equals("q") || token.equals("quit")) {
+          programQuit = true;
+          steps.add(CompletableFuture.completedFuture(null));
+          break;
+        }
+
+        Scanner arguments = new Scanner(String.join(" ", tokens.subList(start + 1,
+                tokens.size())));
+        Work work;
+        try {
+          work = this.prepare(token, arguments, out::append);
+        } catch (NoSuchElementException nseE) {
+          //the arguments of a command must be on its own line
+          this.renderFailure(out::append, "Incorrect form of parameters.\n");
+          work = () -> { };
+        }
+        int end = tokens.size() - countTokens(arguments);
+        List<String> used = tokens.subList(start + 1, end);
+        start = end;
+
+        Work toRun = work;
+        Runnable command = () -> {
+          try {
+            toRun.run();
+          } catch (IOException ioE) {
+            throw new UncheckedIOException(ioE);
+          }
+        };
+        if (token.equals("memory")) {
+          steps.add(graph.addBarrier(command));
+        } else if (token.equals("statistics") && used.size() == 1) {
+          steps.add(graph.add(used, List.of(), command));
+        } else if (modelCommands.containsKey(token) && used.size() >= 2) {
+          //every command reads its second to last argument, and writes its last, whether
+          //they name images or files
+          steps.add(graph.add(List.of(used.get(used.size() - 2)),
+                  List.of(used.get(used.size() - 1)), command));
+        } else {
+          steps.add(graph.add(List.of(), List.of(), command));
+        }
+      }
+    }
+
+    for (int i = 0; i < steps.size(); i++) {
+      try {
+        steps.get(i).join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) e.getCause()).getCause();
+        }
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+      this.reportFailedSaves();
+      view.renderMessage(messages.get(i).toString());
+    }
+  }
+
+  //reads the random seed of a mosaic if one is given, which it is whenever the next token is a
+  //whole number, or else picks one at random
+  private static long nextSeed(Scanner sc) {
+    return sc.hasNextLong() ? sc.nextLong() : new Random().nextLong();
+  }
+
+  //counts, and uses up, the tokens left in a scanner
+  private static int countTokens(Scanner sc) {
+    int count = 0;
+    while (sc.hasNext()) {
+      sc.next();
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the messages this controller has rendered about commands which failed, such as those
+   * naming images which did not exist, or files which could not be read or saved.
+   *
+   * @return the messages, without their line breaks, in the order they were rendered.
+   */
+  public List<String> getFailures() {
+    return new ArrayList<>(this.failures);
+  }
+
+  //renders a message about a command which failed, and remembers it
+  private void renderFailure(ImageProcessorView out, String message) throws IOException {
+    this.failures.add(message.trim());
+    out.renderMessage(message);
+  }
+
+  //tells the user about each save which has failed in the background since the last report
+  private void reportFailedSaves() throws IOException {
+    for (String fileName : this.saves.takeFailures()) {
+      this.renderFailure(view, "File " + fileName + " could not be saved!\n");
+    }
+  }
+
+  //renders the pixel count, and the mean, median and range of each counted component
+  private void displayStatistics(Image image, ImageProcessorView out) throws IOException {
+    Histogram histogram = Histogram.of(image);
+    out.renderMessage("Pixels: " + histogram.getPixelCount() + "\n");
+    for (ColorComponent comp : new ColorComponent[]{ColorComponent.Red, ColorComponent.Green,
+        ColorComponent.Blue, ColorComponent.Intensity}) {
+      out.renderMessage(String.format("%s: mean %.2f, median %d, min %d, max %d\n", comp,
+              histogram.mean(comp), histogram.percentile(comp, 0.5),
+              histogram.percentile(comp, 0), histogram.percentile(comp, 1)));
+    }
+  }
+
+  //renders how much memory the images take, and which are held in memory or spilled to disk
+  private void displayMemory(MemoryReport report, ImageProcessorView out) throws IOException {
+    out.renderMessage("Memory: " + report.getUsed() + " of " + report.getBudget()
+            + " bytes used\n");
+    out.renderMessage("Resident: " + names(report.getResident()) + "\n");
+    out.renderMessage("Spilled: " + names(report.getSpilled()) + "\n");
+  }
+
+  //lists names, or says there are none
+  private static String names(List<String> names) {
+    return names.isEmpty() ? "none" : String.join(", ", names);
+  }
+
+  private void displayTextMenu(ImageProcessorView out) throws IOException {
+    out.renderMessage("  Command: q, quit\n" +
             "  Command: menu\n" +
             "  Command: load  |  Arguments: file-name image-name\n" +
+            "  Command: load-mapped  |  Arguments: file-name image-name\n" +
+            "  Command: load-tiled  |  Arguments: file-name image-name\n" +
             "  Command: save  |  Arguments: image-name file-name\n" +
+            "  Command: save-format  |  Arguments: ppm-format image-name file-name\n" +
+            "    (ppm-format is one of plain, raw)\n" +
             "  Command: red-component  |  Arguments: image-name new-image-name\n" +
             "  Command: green-component  |  Arguments: image-name new-image-name\n" +
             "  Command: blue-component  |  Arguments: image-name new-image-name\n" +
@@ -176,10 +494,29 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
             "  Command: intensity-component  |  Arguments: image-name new-image-name\n" +
             "  Command: horizontal-flip  |  Arguments: image-name new-image-name\n" +
             "  Command: vertical-flip  |  Arguments: image-name new-image-name\n" +
+            "  Command: rotate-clockwise  |  Arguments: image-name new-image-name\n" +
+            "  Command: rotate-counterclockwise  |  Arguments: image-name new-image-name\n" +
+            "  Command: crop  |  Arguments: row column height width image-name " +
+            "new-image-name\n" +
             "  Command: brighten  |  Arguments: brightness-change image-name new-image-name\n" +
             "  Command: grayscale  |  Arguments: image-name new-image-name\n" +
             "  Command: sepia  |  Arguments: image-name new-image-name\n" +
             "  Command: blur  |  Arguments: image-name new-image-name\n" +
-            "  Command: sharpen  |  Arguments: image-name new-image-name\n");
+            "  Command: sharpen  |  Arguments: image-name new-image-name\n" +
+            "  Command: blur-edges  |  Arguments: edge-mode image-name new-image-name\n" +
+            "  Command: sharpen-edges  |  Arguments: edge-mode image-name new-image-name\n" +
+            "    (edge-mode is one of zero, clamp, mirror, wrap)\n" +
+            "  Command: gamma  |  Arguments: gamma image-name new-image-name\n" +
+            "  Command: levels  |  Arguments: in-black in-white gamma out-black out-white " +
+            "image-name new-image-name\n" +
+            "  Command: curve  |  Arguments: point-count in out [in out ...] " +
+            "image-name new-image-name\n" +
+            "  Command: auto-levels  |  Arguments: image-name new-image-name\n" +
+            "  Command: mosaic  |  Arguments: seed-count [random-seed] image-name " +
+            "new-image-name\n" +
+            "  Command: mosaic-average  |  Arguments: seed-count [random-seed] image-name " +
+            "new-image-name\n" +
+            "  Command: statistics  |  Arguments: image-name\n" +
+            "  Command: memory\n");
   }
 }
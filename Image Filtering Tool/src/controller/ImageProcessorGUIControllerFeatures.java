@@ -3,82 +3,481 @@ package controller;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import javax.swing.SwingUtilities;
 
 import model.ColorComponent;
+import model.EditHistory;
+import model.EdgeMode;
+import model.Histogram;
 import model.Image;
+import model.PointOp;
+import model.Scaling;
+import model.TaskMonitor;
 import utils.ImageUtils;
+import utils.PpmFormat;
+import utils.SaveService;
 import view.ImageProcessorGUIView;
 
 /**
  * An implementation of the ImageProcessorController Features that takes in an ImageProcessorGUIView
  * and based on the users interactions with the GUI can load, save, and perform a
- * variety of operations on images.
+ * variety of operations on images. Loading, saving and commands run one at a time, in the order
+ * they were asked for, on a worker rather than on the thread which asked for them, and their
+ * results are handed to the GUI on its own thread once they are done. Images too large to show
+ * at full size are also kept shrunk to the size of a preview, which each command changes first
+ * so that the GUI can show roughly what it does while the full image is still being worked on.
+ * Every command which changes the image can be undone and redone, and past images are kept
+ * within the memory budget of an EditHistory.
  */
 public class ImageProcessorGUIControllerFeatures implements ImageProcessorControllerFeatures {
 
-  private final Map<String, Function<Scanner, Image>> commands;
+  /**
+   * The widest or tallest an image may be before commands on it are previewed, by default.
+   */
+  public static final int DEFAULT_PREVIEW_SIZE = 1024;
+
+  /**
+   * Invariant: image and history are only read or changed by work running on the worker, and
+   *            image is the current image of history once one is loaded.
+   * Invariant: running holds the monitors of the commands given to the worker which have not
+   *            finished.
+   * Invariant: proxy completes with the shrunk image the latest command will be previewed on,
+   *            or null if it will not be previewed, and proxy and latest are only read or
+   *            changed while holding this controller's lock.
+   * Invariant: shown and previewShown are only read or changed by updates run by ui.
+   */
+  private final Map<String, Function<Scanner, UnaryOperator<Image>>> commands;
+  private final Map<String, Function<Scanner, UnaryOperator<Image>>> inverses;
   private Image image;
+  private final EditHistory history;
   private final ImageProcessorGUIView view;
+  private final SaveService saves;
+  private final Executor previewer;
+  private final Executor worker;
+  private final Executor ui;
+  private final int previewSize;
+  private final Set<TaskMonitor> running;
+  private CompletableFuture<Image> proxy;
+  private long latest;
+  private long shown;
+  private boolean previewShown;
 
   /**
    * Constructs an ImageProcessorGUIControllerFeatures with a specified GUI for interaction with
-   * the user.
+   * the user, which saves images in the background.
    * @param view The GUI that the controller uses.
    */
   public ImageProcessorGUIControllerFeatures(ImageProcessorGUIView view) {
+    this(view, SaveService.background());
+  }
+
+  /**
+   * Constructs an ImageProcessorGUIControllerFeatures with a specified GUI for interaction with
+   * the user, and the service which saves its images. Previews and work each run on a single
+   * background thread of their own, and results are handed to the GUI on the Swing event
+   * dispatch thread. Commands on images larger than the default preview size are previewed.
+   * @param view The GUI that the controller uses.
+   * @param saves The service which saves images.
+   * @throws IllegalArgumentException if the service is null.
+   */
+  public ImageProcessorGUIControllerFeatures(ImageProcessorGUIView view, SaveService saves)
+          throws IllegalArgumentException {
+    this(view, saves, Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "image-previews");
+      thread.setDaemon(true);
+      return thread;
+    }), Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "image-commands");
+      thread.setDaemon(true);
+      return thread;
+    }), SwingUtilities::invokeLater, DEFAULT_PREVIEW_SIZE);
+  }
+
+  /**
+   * Constructs an ImageProcessorGUIControllerFeatures with a specified GUI for interaction with
+   * the user, the service which saves its images, and where its work and the GUI's updates run.
+   * Commands are not previewed.
+   * @param view The GUI that the controller uses.
+   * @param saves The service which saves images.
+   * @param worker Runs loading, saving and commands, which it must run one at a time in order.
+   * @param ui Runs the updates to the GUI, which it must run in order.
+   * @throws IllegalArgumentException if the service or either executor is null.
+   */
+  public ImageProcessorGUIControllerFeatures(ImageProcessorGUIView view, SaveService saves,
+                                             Executor worker, Executor ui)
+          throws IllegalArgumentException {
+    this(view, saves, Runnable::run, worker, ui, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructs an ImageProcessorGUIControllerFeatures with a specified GUI for interaction with
+   * the user, the service which saves its images, where its previews, work and the GUI's
+   * updates run, and how large an image may be before commands on it are previewed.
+   * @param view The GUI that the controller uses.
+   * @param saves The service which saves images.
+   * @param previewer Runs the previews of commands, which it must run one at a time in order.
+   * @param worker Runs loading, saving and commands, which it must run one at a time in order.
+   * @param ui Runs the updates to the GUI, which it must run in order.
+   * @param previewSize The widest or tallest an image may be before commands on it are
+   *                    previewed, and the largest a preview is.
+   * @throws IllegalArgumentException if the service or any executor is null, or the preview
+   *                                  size is less than 1.
+   */
+  public ImageProcessorGUIControllerFeatures(ImageProcessorGUIView view, SaveService saves,
+                                             Executor previewer, Executor worker, Executor ui,
+                                             int previewSize)
+          throws IllegalArgumentException {
+    this(view, saves, previewer, worker, ui, previewSize, new EditHistory());
+  }
+
+  /**
+   * Constructs an ImageProcessorGUIControllerFeatures with a specified GUI for interaction with
+   * the user, the service which saves its images, where its previews, work and the GUI's
+   * updates run, how large an image may be before commands on it are previewed, and the history
+   * which remembers its edits.
+   * @param view The GUI that the controller uses.
+   * @param saves The service which saves images.
+   * @param previewer Runs the previews of commands, which it must run one at a time in order.
+   * @param worker Runs loading, saving and commands, which it must run one at a time in order.
+   * @param ui Runs the updates to the GUI, which it must run in order.
+   * @param previewSize The widest or tallest an image may be before commands on it are
+   *                    previewed, and the largest a preview is.
+   * @param history Remembers the edits of the image, within its memory budget, and is only used
+   *                by this controller.
+   * @throws IllegalArgumentException if the service, history or any executor is null, or the
+   *                                  preview size is less than 1.
+   */
+  public ImageProcessorGUIControllerFeatures(ImageProcessorGUIView view, SaveService saves,
+                                             Executor previewer, Executor worker, Executor ui,
+                                             int previewSize, EditHistory history)
+          throws IllegalArgumentException {
+    if (history == null) {
+      throw new IllegalArgumentException("History was null.");
+    }
+    if (saves == null) {
+      throw new IllegalArgumentException("Save service was null.");
+    }
+    if (previewer == null || worker == null || ui == null) {
+      throw new IllegalArgumentException("Executor was null.");
+    }
+    if (previewSize < 1) {
+      throw new IllegalArgumentException("Preview size must be at least 1.");
+    }
     this.view = view;
+    this.saves = saves;
+    this.previewer = previewer;
+    this.worker = worker;
+    this.ui = ui;
+    this.previewSize = previewSize;
+    this.history = history;
+    this.running = ConcurrentHashMap.newKeySet();
+    this.proxy = CompletableFuture.completedFuture(null);
+    this.latest = 0;
+    this.shown = 0;
+    this.previewShown = false;
     this.view.passFeatures(this);
-    commands = new HashMap<String, Function<Scanner, Image>>();
+    commands = new HashMap<String, Function<Scanner, UnaryOperator<Image>>>();
+    inverses = new HashMap<String, Function<Scanner, UnaryOperator<Image>>>();
     this.setCommands();
   }
 
   private void setCommands() {
-    commands.put("horizontal-flip", s -> this.image.flipHorizontal());
-    commands.put("vertical-flip", s -> this.image.flipVertical());
-    commands.put("grayscale", s -> this.image.transformColor((
+    commands.put("horizontal-flip", s -> im -> im.flipHorizontal());
+    commands.put("vertical-flip", s -> im -> im.flipVertical());
+    commands.put("rotate-clockwise", s -> im -> im.rotateClockwise());
+    commands.put("rotate-counterclockwise", s -> im -> im.rotateCounterclockwise());
+    commands.put("grayscale", s -> im -> im.transformColor((
             new double[][]{{0.2126, 0.7152, 0.0722},
                 {0.2126, 0.7152, 0.0722},
                 {0.2126, 0.7152, 0.0722}})));
-    commands.put("sepia", s -> this.image.transformColor((
+    commands.put("sepia", s -> im -> im.transformColor((
             new double[][]{{0.393, 0.769, 0.189},
                 {0.349, 0.686, 0.168},
                 {0.272, 0.534, 0.131}})));
-    commands.put("red-component", s -> this.image.grayscale(ColorComponent.Red));
-    commands.put("green-component", s -> this.image.grayscale(ColorComponent.Green));
-    commands.put("blue-component", s -> this.image.grayscale(ColorComponent.Blue));
-    commands.put("value-component", s -> this.image.grayscale(ColorComponent.Value));
-    commands.put("intensity-component", s -> this.image.grayscale(ColorComponent.Intensity));
-    commands.put("luma-component", s -> this.image.grayscale(ColorComponent.Luma));
-    commands.put("sharpen", s -> this.image.filter(
+    commands.put("red-component", s -> im -> im.grayscale(ColorComponent.Red));
+    commands.put("green-component", s -> im -> im.grayscale(ColorComponent.Green));
+    commands.put("blue-component", s -> im -> im.grayscale(ColorComponent.Blue));
+    commands.put("value-component", s -> im -> im.grayscale(ColorComponent.Value));
+    commands.put("intensity-component", s -> im -> im.grayscale(ColorComponent.Intensity));
+    commands.put("luma-component", s -> im -> im.grayscale(ColorComponent.Luma));
+    commands.put("sharpen", s -> {
+      EdgeMode edges = edgeMode(s);
+      return im -> im.filter(
             new double[][]{
                     {-0.125, -0.125, -0.125, -0.125, -0.125},
                     {-0.125, 0.25, 0.25, 0.25, -0.125},
                     {-0.125, 0.25, 1.0, 0.25, -0.125},
                     {-0.125, 0.25, 0.25, 0.25, -0.125},
-                    {-0.125, -0.125, -0.125, -0.125, -0.125}}));
-    commands.put("blur", s -> this.image.filter(
+                    {-0.125, -0.125, -0.125, -0.125, -0.125}}, edges);
+    });
+    commands.put("blur", s -> {
+      EdgeMode edges = edgeMode(s);
+      return im -> im.filter(
             new double[][]{
                     {0.0625, 0.125, 0.0625},
                     {0.125, 0.25, 0.125},
-                    {0.0625, 0.125, 0.0625}}));
-    commands.put("brighten", s -> this.image.adjustBrightness(s.nextInt()));
-    commands.put("mosaic", s -> this.image.mosaic(s.nextInt()));
+                    {0.0625, 0.125, 0.0625}}, edges);
+    });
+    commands.put("brighten", s -> {
+      int amount = s.nextInt();
+      return im -> im.adjustBrightness(amount);
+    });
+    commands.put("auto-levels",
+        s -> im -> im.applyPointOp(PointOp.autoLevels(Histogram.of(im))));
+    commands.put("mosaic", s -> {
+      int seedCount = s.nextInt();
+      //chosen once, so that the preview and the full image get the same seeds
+      long seed = s.hasNextLong() ? s.nextLong() : new Random().nextLong();
+      boolean average = s.hasNext() && s.next().equalsIgnoreCase("average");
+      return im -> im.mosaic(seedCount, seed, average);
+    });
+
+    //commands which can be undone cheaply, without keeping the image from before them
+    inverses.put("horizontal-flip", s -> im -> im.flipHorizontal());
+    inverses.put("vertical-flip", s -> im -> im.flipVertical());
+    inverses.put("rotate-clockwise", s -> im -> im.rotateCounterclockwise());
+    inverses.put("rotate-counterclockwise", s -> im -> im.rotateClockwise());
+  }
+
+  //whether a command names one this controller knows
+  private boolean isCommand(String command) {
+    Scanner sc = new Scanner(command);
+    return sc.hasNext() && commands.containsKey(sc.next());
+  }
+
+  //reads a known command into the change it makes to an image, which instead fails when it is
+  //made if the arguments of the command could not be read
+  private UnaryOperator<Image> parse(String command) {
+    try {
+      Scanner sc = new Scanner(command);
+      String token = sc.next();
+      return commands.get(token).apply(sc);
+    } catch (RuntimeException e) {
+      return im -> {
+        throw e;
+      };
+    }
+  }
+
+  //reads a command into the change which takes it back, or null if there is no cheap one
+  private UnaryOperator<Image> parseInverse(String command) {
+    try {
+      Scanner sc = new Scanner(command);
+      String token = sc.next();
+      return inverses.containsKey(token) ? inverses.get(token).apply(sc) : null;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  //reads an optional edge mode following a filter command, which defaults to black edges
+  private static EdgeMode edgeMode(Scanner s) {
+    if (s.hasNext()) {
+      return EdgeMode.fromName(s.next());
+    }
+    return EdgeMode.Zero;
   }
 
   /**
    * Scans given command string. If it is a valid command and if there is an image loaded into
-   * the controller already it runs the given command on the image.
+   * the controller already it runs the given command on the image, telling the GUI how far along
+   * the command is as it goes, and giving it the result once it is done. If the image is too
+   * large to show at full size, the GUI is first given a preview of the command on a shrunk copy
+   * of the image. A command which is not known is reported to the GUI, and changes nothing.
    * @param command string.
    */
   @Override
   public void runCommand(String command) {
-    Scanner sc = new Scanner(command);
-    String token = sc.next();
-    if (this.image != null) {
-      this.image = commands.getOrDefault(token, s -> this.image).apply(sc);
-      view.setImage(this.image);
+    if (command == null || !this.isCommand(command)) {
+      //reported in turn, after the work before it
+      this.worker.execute(() -> ui.execute(() -> view.showMessage("Command not found.")));
+      return;
+    }
+    UnaryOperator<Image> operation = this.parse(command);
+    UnaryOperator<Image> inverse = this.parseInverse(command);
+    TaskMonitor monitor = this.startMonitor();
+    long number = this.preview(operation);
+    this.worker.execute(() -> {
+      try {
+        if (this.image != null) {
+          //the command, however many passes it makes, then its histogram
+          Image result = monitor.run(() -> TaskMonitor.passes(2, () -> {
+            Image changed = TaskMonitor.passes(1, () -> operation.apply(this.image));
+            //counted here, so that the GUI does not count it while drawing the histogram
+            Histogram.of(changed);
+            return changed;
+          }));
+          this.image = result;
+          this.history.record(result, operation, inverse);
+          this.startPreviews(number, result);
+          ui.execute(() -> this.show(number, result, false));
+        }
+      } catch (CancellationException e) {
+        ui.execute(() -> view.showMessage("Command cancelled."));
+        this.restore(number);
+      } catch (RuntimeException e) {
+        ui.execute(() -> view.showMessage("Command failed."));
+        this.restore(number);
+      } finally {
+        this.running.remove(monitor);
+        ui.execute(() -> view.showProgress(-1));
+      }
+    });
+  }
+
+  //makes a monitor which shows its progress on the GUI, and which the user can cancel
+  private TaskMonitor startMonitor() {
+    TaskMonitor monitor =
+            new TaskMonitor(fraction -> ui.execute(() -> view.showProgress(fraction)));
+    this.running.add(monitor);
+    return monitor;
+  }
+
+  //numbers a new command, and previews it on the shrunk image left by the command before it
+  private synchronized long preview(UnaryOperator<Image> operation) {
+    long number = ++this.latest;
+    //once there is nothing to preview there is nothing to wait for
+    if (!this.proxy.isDone() || this.proxy.join() != null) {
+      this.proxy = this.proxy.thenApplyAsync(shrunk -> {
+        if (shrunk == null) {
+          return null;
+        }
+        try {
+          Image previewed = operation.apply(shrunk);
+          ui.execute(() -> this.show(number, previewed, true));
+          return previewed;
+        } catch (RuntimeException e) {
+          //the full image fails too, and says so
+          return shrunk;
+        }
+      }, this.previewer);
+    }
+    return number;
+  }
+
+  //numbers a new image replacing the current one, which nothing is previewed on until it is made
+  private synchronized long startReplacing() {
+    this.proxy = CompletableFuture.completedFuture(null);
+    return ++this.latest;
+  }
+
+  //previews the commands after the given one on a shrunk copy of the given image, if there are
+  //none yet, so that the previews stay in step with the full image
+  private void startPreviews(long number, Image current) {
+    synchronized (this) {
+      if (number != this.latest) {
+        return;
+      }
+    }
+    Image shrunk = Scaling.toFit(current, this.previewSize, this.previewSize);
+    Image preview = shrunk == current ? null : shrunk;
+    synchronized (this) {
+      if (number == this.latest) {
+        this.proxy = CompletableFuture.completedFuture(preview);
+      }
+    }
+  }
+
+  //takes back the preview of a command which did not change the full image
+  private void restore(long number) {
+    Image current = this.image;
+    if (current != null) {
+      this.startPreviews(number, current);
+      ui.execute(() -> {
+        if (this.previewShown && number >= this.shown) {
+          this.show(number, current, false);
+        }
+      });
+    }
+  }
+
+  //gives an image to the GUI, unless it already shows the work of a later command, or a full
+  //image it would replace with a preview; run by ui
+  private void show(long number, Image result, boolean preview) {
+    if (number > this.shown || (number == this.shown && !preview)) {
+      this.shown = number;
+      this.previewShown = preview;
+      view.setImage(result);
+    }
+  }
+
+  /**
+   * Undoes the last command which changed the image, or tells the user there is none. The image
+   * from before it is kept in memory or compressed, or made again, so this may take a while.
+   */
+  @Override
+  public void undo() {
+    this.step(true);
+  }
+
+  /**
+   * Redoes the last command to have been undone, or tells the user there is none.
+   */
+  @Override
+  public void redo() {
+    this.step(false);
+  }
+
+  //moves back or forward through the history on the worker, and shows the image it gives
+  private void step(boolean back) {
+    TaskMonitor monitor = this.startMonitor();
+    long number = this.startReplacing();
+    this.worker.execute(() -> {
+      try {
+        if (this.image != null && (back ? this.history.canUndo() : this.history.canRedo())) {
+          Image result = this.stepHistory(monitor, back);
+          this.image = result;
+          this.startPreviews(number, result);
+          ui.execute(() -> this.show(number, result, false));
+        } else {
+          ui.execute(() -> view.showMessage(back ? "Nothing to undo." : "Nothing to redo."));
+          this.restore(number);
+        }
+      } catch (CancellationException e) {
+        ui.execute(() -> view.showMessage("Command cancelled."));
+        this.restore(number);
+      } catch (RuntimeException e) {
+        ui.execute(() -> view.showMessage("Command failed."));
+        this.restore(number);
+      } finally {
+        this.running.remove(monitor);
+        ui.execute(() -> view.showProgress(-1));
+      }
+    });
+  }
+
+  //undoes or redoes an edit under the given monitor; run by the worker
+  private Image stepHistory(TaskMonitor monitor, boolean back) throws CancellationException {
+    try {
+      return monitor.run(() -> back ? this.history.undo() : this.history.redo());
+    } catch (CancellationException e) {
+      //cancelled just after the step was made, which then stands
+      if (this.history.current() == this.image) {
+        throw e;
+      }
+      return this.history.current();
+    }
+  }
+
+  /**
+   * Cancels the command running now, and any commands waiting to run after it. The image stays
+   * as it was before the cancelled commands.
+   */
+  @Override
+  public void cancelCommand() {
+    for (TaskMonitor monitor : this.running) {
+      monitor.cancel();
     }
   }
 
@@ -89,34 +488,52 @@ public class ImageProcessorGUIControllerFeatures implements ImageProcessorContro
    */
   @Override
   public void loadImage(String filepath) {
-    try {
-      if (filepath.endsWith(".ppm")) {
-        this.image = ImageUtils.readPPM(filepath);
-      } else {
-        this.image = ImageUtils.readOther(filepath);
+    long number = this.startReplacing();
+    this.worker.execute(() -> {
+      try {
+        //a file saved earlier may still be being written
+        this.saves.awaitFile(filepath);
+        Image loaded;
+        if (filepath.endsWith(".ppm")) {
+          loaded = ImageUtils.readPPM(filepath);
+        } else {
+          loaded = ImageUtils.readOther(filepath);
+        }
+        this.image = loaded;
+        this.history.reset(loaded);
+        this.startPreviews(number, loaded);
+        ui.execute(() -> this.show(number, loaded, false));
+      } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+        ui.execute(() -> view.showMessage("File reading failed."));
+        this.restore(number);
       }
-      view.setImage(image);
-    } catch (IOException e) {
-      view.showMessage("File reading failed.");
-    }
+    });
   }
 
   /**
-   * Supports saving images of type .ppm, .bmp, .jpg, .png. If file saving fails, calls GUI to
-   * display message to user indicating such.
+   * Supports saving images of type .ppm, .bmp, .jpg, .png. The full image is saved, never a
+   * preview, once the commands before the save are done. The file is written in the background,
+   * and the GUI is told whether saving succeeded once it has finished.
    * @param filepath to save to.
    */
   @Override
   public void saveImage(String filepath) {
-    try {
-      if (filepath.endsWith(".ppm")) {
-        ImageUtils.savePPM(this.image, filepath);
-      } else {
-        ImageUtils.saveOther(this.image, filepath);
+    this.worker.execute(() -> {
+      try {
+        CompletableFuture<Void> saved = this.saves.save(this.image, filepath, PpmFormat.Plain);
+        saved.whenComplete((result, failure) -> ui.execute(() -> this.reportSave(saved)));
+      } catch (IOException | IllegalArgumentException e) {
+        ui.execute(() -> view.showMessage("File saving failed."));
       }
-      view.showMessage("Save successful.");
-    } catch (IOException e) {
+    });
+  }
+
+  //tells the user whether a finished save succeeded
+  private void reportSave(CompletableFuture<Void> saved) {
+    if (saved.isCompletedExceptionally()) {
       view.showMessage("File saving failed.");
+    } else {
+      view.showMessage("Save successful.");
     }
   }
 }
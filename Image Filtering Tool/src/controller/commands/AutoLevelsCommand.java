@@ -0,0 +1,32 @@
+package controller.commands;
+
+import model.Histogram;
+import model.ImageProcessorModel;
+import model.PointOp;
+
+/**
+ * Represents a command to stretch the colors of an image in an image processor model to fill
+ *   the whole range of values, with levels found from the image's histogram.
+ */
+public class AutoLevelsCommand implements ImageProcessorCommand {
+
+  private final String name;
+  private final String newName;
+
+  /**
+   * Constructs this command instance with the specified arguments.
+   *
+   * @param name    the name of the image in the processor.
+   * @param newName the name to save the image as in the processor
+   */
+  public AutoLevelsCommand(String name, String newName) {
+    this.name = name;
+    this.newName = newName;
+  }
+
+  @Override
+  public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
+    PointOp levels = PointOp.autoLevels(Histogram.of(m.returnImage(name)));
+    m.applyPointOp(name, newName, levels);
+  }
+}
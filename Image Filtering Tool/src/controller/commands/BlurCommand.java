@@ -1,5 +1,7 @@
 package controller.commands;
 
+import model.EdgeMode;
+
 /**
  * Represents a single command to blur an image in an image processor model.
  */
@@ -11,9 +13,19 @@ public class BlurCommand extends FilterCommand {
    * @param newName the name to store the blurred version under.
    */
   public BlurCommand(String name, String newName) {
+    this(name, newName, EdgeMode.Zero);
+  }
+
+  /**
+   * Constructs the command, reading the pixels past the edges of the image with an edge mode.
+   * @param name the name of the image to blur.
+   * @param newName the name to store the blurred version under.
+   * @param edges how pixels past the edges of the image are read.
+   */
+  public BlurCommand(String name, String newName, EdgeMode edges) {
     super(name, newName, new double[][]{
             {0.0625, 0.125, 0.0625},
             {0.125, 0.25, 0.125},
-            {0.0625, 0.125, 0.0625}});
+            {0.0625, 0.125, 0.0625}}, edges);
   }
 }
@@ -0,0 +1,40 @@
+package controller.commands;
+
+import model.ImageProcessorModel;
+
+/**
+ * Represents a command to crop an image in an image processor model to a rectangle of it.
+ */
+public class CropCommand implements ImageProcessorCommand {
+
+  private final int row;
+  private final int col;
+  private final int height;
+  private final int width;
+  private final String name;
+  private final String newName;
+
+  /**
+   * Constructs this instance of the command with specified arguments.
+   *
+   * @param row     the top row of the rectangle.
+   * @param col     the left column of the rectangle.
+   * @param height  the height of the rectangle.
+   * @param width   the width of the rectangle.
+   * @param name    the name of the image in the model.
+   * @param newName the name to save the image as in the model.
+   */
+  public CropCommand(int row, int col, int height, int width, String name, String newName) {
+    this.row = row;
+    this.col = col;
+    this.height = height;
+    this.width = width;
+    this.name = name;
+    this.newName = newName;
+  }
+
+  @Override
+  public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
+    m.cropImage(name, newName, row, col, height, width);
+  }
+}
@@ -1,5 +1,6 @@
 package controller.commands;
 
+import model.EdgeMode;
 import model.ImageProcessorModel;
 
 /**
@@ -10,22 +11,39 @@ public abstract class FilterCommand implements ImageProcessorCommand {
   protected String name;
   protected String newName;
   protected double[][] kernel;
+  protected EdgeMode edges;
 
   /**
-   * Constructs the command.
+   * Constructs the command, treating pixels past the edges of the image as black.
    * @param name the name of the image to filter.
    * @param newName the name to store the filtered image as.
    * @param kernel the kernel by which to filter the image.
    */
   FilterCommand(String name, String newName, double[][] kernel) {
+    this(name, newName, kernel, EdgeMode.Zero);
+  }
+
+  /**
+   * Constructs the command.
+   * @param name the name of the image to filter.
+   * @param newName the name to store the filtered image as.
+   * @param kernel the kernel by which to filter the image.
+   * @param edges how pixels past the edges of the image are read.
+   */
+  FilterCommand(String name, String newName, double[][] kernel, EdgeMode edges) {
     this.name = name;
     this.newName = newName;
     this.kernel = kernel;
+    this.edges = edges;
   }
 
   @Override
   public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
-    m.filterImage(name, newName, kernel);
+    if (edges == EdgeMode.Zero) {
+      m.filterImage(name, newName, kernel);
+    } else {
+      m.filterImage(name, newName, kernel, edges);
+    }
   }
 
 }
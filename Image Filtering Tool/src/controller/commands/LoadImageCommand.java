@@ -2,16 +2,23 @@ package controller.commands;
 
 import java.io.IOException;
 
+import model.Image;
 import model.ImageProcessorModel;
+import model.TiledImage;
+import utils.ImageStorage;
 import utils.ImageUtils;
+import utils.SaveService;
 
 /**
- * Represents a command to load an image from a ppm, jpg, bmp, or png file, and add it to a model.
+ * Represents a command to load an image from a ppm, pam, jpg, bmp, or png file, and add it to a
+ *   model.
  */
 public class LoadImageCommand implements ImageProcessorCommand {
 
   private final String file;
   private final String name;
+  private final ImageStorage storage;
+  private final SaveService saves;
 
   /**
    * Constructs an instance of a command to load an image from a file into a model.
@@ -19,18 +26,59 @@ public class LoadImageCommand implements ImageProcessorCommand {
    * @param name the name by which the image will be referred in the model.
    */
   public LoadImageCommand(String file, String name) {
+    this(file, name, ImageStorage.Memory);
+  }
+
+  /**
+   * Constructs an instance of a command to load an image from a file into a model, keeping its
+   *   pixels in the given storage, so that images too large to fit in memory can be loaded.
+   * @param file the file path of the image.
+   * @param name the name by which the image will be referred in the model.
+   * @param storage where the pixels of the image are kept. Only ppm and pam images can be kept
+   *                in a mapped file; other images are read into memory, and tiled from there.
+   * @throws IllegalArgumentException if the storage is null.
+   */
+  public LoadImageCommand(String file, String name, ImageStorage storage)
+          throws IllegalArgumentException {
+    this(file, name, storage, SaveService.synchronous());
+  }
+
+  /**
+   * Constructs an instance of a command to load an image from a file into a model, keeping its
+   *   pixels in the given storage, which first waits for any save to the file still being made
+   *   by the given service, so that a file saved in the background is read once it is written.
+   * @param file the file path of the image.
+   * @param name the name by which the image will be referred in the model.
+   * @param storage where the pixels of the image are kept. Only ppm and pam images can be kept
+   *                in a mapped file; other images are read into memory, and tiled from there.
+   * @param saves the service which may still be saving to the file.
+   * @throws IllegalArgumentException if the storage or service is null.
+   */
+  public LoadImageCommand(String file, String name, ImageStorage storage, SaveService saves)
+          throws IllegalArgumentException {
+    if (storage == null) {
+      throw new IllegalArgumentException("Given storage was null.");
+    }
+    if (saves == null) {
+      throw new IllegalArgumentException("Given save service was null.");
+    }
     this.file = file;
     this.name = name;
+    this.storage = storage;
+    this.saves = saves;
   }
 
   @Override
   public void runCommand(ImageProcessorModel m)
           throws IllegalArgumentException, IOException {
 
-    if (file.endsWith(".ppm")) {
-      m.addImage(name, ImageUtils.readPPM(file));
+    this.saves.awaitFile(file);
+    Image image;
+    if (file.endsWith(".ppm") || file.endsWith(".pam")) {
+      image = storage == ImageStorage.Memory ? ImageUtils.readPPM(file) : ImageUtils.mapPPM(file);
     } else {
-      m.addImage(name, ImageUtils.readOther(file));
+      image = ImageUtils.readOther(file);
     }
+    m.addImage(name, storage == ImageStorage.Tiled ? TiledImage.of(image) : image);
   }
 }
@@ -0,0 +1,38 @@
+package controller.commands;
+
+import model.ImageProcessorModel;
+
+/**
+ * Represents a command to split an image in an image processor model into mosaic tiles, placed
+ *   from a given random seed so that the command always produces the same mosaic.
+ */
+public class MosaicCommand implements ImageProcessorCommand {
+
+  private final int seedCount;
+  private final long seed;
+  private final boolean average;
+  private final String name;
+  private final String newName;
+
+  /**
+   * Constructs this command instance with the specified arguments.
+   *
+   * @param seedCount the number of tiles.
+   * @param seed      the seed of the random placement of the tiles.
+   * @param average   whether each tile is the average color of the pixels it covers.
+   * @param name      the name of the image in the processor.
+   * @param newName   the name to save the image as in the processor
+   */
+  public MosaicCommand(int seedCount, long seed, boolean average, String name, String newName) {
+    this.seedCount = seedCount;
+    this.seed = seed;
+    this.average = average;
+    this.name = name;
+    this.newName = newName;
+  }
+
+  @Override
+  public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
+    m.mosaicImage(name, newName, seedCount, seed, average);
+  }
+}
@@ -0,0 +1,33 @@
+package controller.commands;
+
+import model.ImageProcessorModel;
+import model.PointOp;
+
+/**
+ * Represents a command to change the color of every pixel of an image in an image processor
+ *   model by a point operation, such as gamma correction, levels or a tone curve.
+ */
+public class PointOpCommand implements ImageProcessorCommand {
+
+  private final PointOp op;
+  private final String name;
+  private final String newName;
+
+  /**
+   * Constructs this command instance with the specified arguments.
+   *
+   * @param op      the operation to apply to every pixel.
+   * @param name    the name of the image in the processor.
+   * @param newName the name to save the image as in the processor
+   */
+  public PointOpCommand(PointOp op, String name, String newName) {
+    this.op = op;
+    this.name = name;
+    this.newName = newName;
+  }
+
+  @Override
+  public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
+    m.applyPointOp(name, newName, op);
+  }
+}
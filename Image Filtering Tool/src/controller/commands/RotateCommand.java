@@ -0,0 +1,31 @@
+package controller.commands;
+
+import model.ImageProcessorModel;
+
+/**
+ * Represents a command to rotate an image in an image processor model a quarter turn.
+ */
+public class RotateCommand implements ImageProcessorCommand {
+
+  private final boolean clockwise;
+  private final String name;
+  private final String newName;
+
+  /**
+   * Constructs this instance of the command with specified arguments.
+   *
+   * @param clockwise whether to turn the image clockwise, rather than counterclockwise.
+   * @param name      the name of the image in the model.
+   * @param newName   the name to save the image as in the model.
+   */
+  public RotateCommand(boolean clockwise, String name, String newName) {
+    this.clockwise = clockwise;
+    this.name = name;
+    this.newName = newName;
+  }
+
+  @Override
+  public void runCommand(ImageProcessorModel m) throws IllegalArgumentException {
+    m.rotateImage(name, newName, clockwise);
+  }
+}
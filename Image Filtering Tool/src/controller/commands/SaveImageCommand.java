@@ -3,7 +3,8 @@ package controller.commands;
 import java.io.IOException;
 
 import model.ImageProcessorModel;
-import utils.ImageUtils;
+import utils.PpmFormat;
+import utils.SaveService;
 
 /**
  * Represents a command to save an image from an
@@ -13,6 +14,8 @@ public class SaveImageCommand implements ImageProcessorCommand {
 
   private final String name;
   private final String fileName;
+  private final PpmFormat format;
+  private final SaveService saves;
 
   /**
    * Constructs the command, which can save an image of some specific name from an
@@ -21,17 +24,44 @@ public class SaveImageCommand implements ImageProcessorCommand {
    * @param fileName the location to which to save the image.
    */
   public SaveImageCommand(String name, String fileName) {
+    this(name, fileName, PpmFormat.Plain);
+  }
+
+  /**
+   * Constructs the command, which can save an image of some specific name from an
+   *   ImageProcessorModel into some file location, using the given format if it is a ppm.
+   * @param name the name of the image in the model.
+   * @param fileName the location to which to save the image.
+   * @param format whether a ppm file is written as plain (P3) or raw (P6).
+   */
+  public SaveImageCommand(String name, String fileName, PpmFormat format) {
+    this(name, fileName, format, SaveService.synchronous());
+  }
+
+  /**
+   * Constructs the command, which can save an image of some specific name from an
+   *   ImageProcessorModel into some file location through the given service, using the given
+   *   format if it is a ppm. With a background service, running the command only queues the save.
+   * @param name the name of the image in the model.
+   * @param fileName the location to which to save the image.
+   * @param format whether a ppm file is written as plain (P3) or raw (P6).
+   * @param saves the service which writes the file.
+   * @throws IllegalArgumentException if the service is null.
+   */
+  public SaveImageCommand(String name, String fileName, PpmFormat format, SaveService saves)
+          throws IllegalArgumentException {
+    if (saves == null) {
+      throw new IllegalArgumentException("Given save service was null.");
+    }
     this.name = name;
     this.fileName = this.cleanFileName(fileName);
+    this.format = format;
+    this.saves = saves;
   }
 
   @Override
   public void runCommand(ImageProcessorModel m) throws IllegalArgumentException, IOException {
-    if (this.fileName.endsWith(".ppm")) {
-      ImageUtils.savePPM(m.returnImage(this.name), this.fileName);
-    } else {
-      ImageUtils.saveOther(m.returnImage(this.name), this.fileName);
-    }
+    this.saves.save(m.returnImage(this.name), this.fileName, this.format);
   }
 
   private String cleanFileName(String fileName) {
@@ -1,5 +1,7 @@
 package controller.commands;
 
+import model.EdgeMode;
+
 /**
  * Represents a command to sharpen an image in an image processor model.
  */
@@ -11,11 +13,21 @@ public class SharpenCommand extends FilterCommand {
    * @param newName the name under which to store the sharpened version of the image.
    */
   public SharpenCommand(String name, String newName) {
+    this(name, newName, EdgeMode.Zero);
+  }
+
+  /**
+   * Constructs the command, reading the pixels past the edges of the image with an edge mode.
+   * @param name the name of the image to sharpen.
+   * @param newName the name to store the sharpened version under.
+   * @param edges how pixels past the edges of the image are read.
+   */
+  public SharpenCommand(String name, String newName, EdgeMode edges) {
     super(name, newName, new double[][]{
             {-0.125, -0.125, -0.125, -0.125, -0.125},
             {-0.125, 0.25, 0.25, 0.25, -0.125},
             {-0.125, 0.25, 1.0, 0.25, -0.125},
             {-0.125, 0.25, 0.25, 0.25, -0.125},
-            {-0.125, -0.125, -0.125, -0.125, -0.125}});
+            {-0.125, -0.125, -0.125, -0.125, -0.125}}, edges);
   }
 }
@@ -0,0 +1,118 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Converts between Images and java.awt BufferedImages, sharing the array of colors behind a
+ *   BufferedImage's raster rather than copying it a pixel at a time wherever the layouts allow.
+ *   TYPE_INT_RGB and TYPE_INT_ARGB images hold colors exactly as a PackedImage does, and
+ *   TYPE_3BYTE_BGR images are read in place; any other image is converted in a single bulk copy.
+ *   Since the arrays are shared, neither side may be modified after a conversion.
+ */
+public final class AwtImages {
+
+  private static final int[] RGB_MASKS = new int[]{0xFF0000, 0xFF00, 0xFF};
+
+  private AwtImages() {
+  }
+
+  /**
+   * Produces an Image with the colors of a BufferedImage, sharing its raster where possible. Any
+   *   alpha channel is dropped. The BufferedImage must not be modified afterwards.
+   * @param image the image to convert.
+   * @return the Image.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static Image fromBufferedImage(BufferedImage image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (hasPlainLayout(image)) {
+      switch (image.getType()) {
+        case BufferedImage.TYPE_INT_RGB:
+        case BufferedImage.TYPE_INT_ARGB:
+          //the alpha channel is in the bits above the colors, which PackedImage ignores
+          return new PackedImage(width, height,
+                  ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+        case BufferedImage.TYPE_3BYTE_BGR:
+          return new BgrImage(image);
+        default:
+          break;
+      }
+    }
+
+    return new PackedImage(width, height, image.getRGB(0, 0, width, height, null, 0, width));
+  }
+
+  /**
+   * Produces a BufferedImage with the colors of an Image, sharing its colors where possible: a
+   *   PackedImage becomes a TYPE_INT_RGB image backed by its own array, and an image read in place
+   *   from a BufferedImage gives back that BufferedImage. The result must not be modified, only
+   *   read, drawn or written out.
+   * @param image the image to convert.
+   * @return the BufferedImage.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static BufferedImage toBufferedImage(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    if (image instanceof PipelineImage) {
+      image = ((PipelineImage) image).materialize();
+    }
+    if (image instanceof BgrImage) {
+      return ((BgrImage) image).bufferedImage();
+    }
+
+    PackedImage packed = PackedImage.of(image);
+    int[] data = packed.sharedData();
+    WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(data, data.length),
+            packed.getWidth(), packed.getHeight(), packed.getWidth(), RGB_MASKS, null);
+    return new BufferedImage(new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]),
+            raster, false, null);
+  }
+
+  //whether the raster of the image is a single array holding exactly its pixels, in row-major
+  //  order with no padding, in the standard order of samples for its type
+  private static boolean hasPlainLayout(BufferedImage image) {
+    Raster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    SampleModel model = raster.getSampleModel();
+    long pixels = (long) image.getWidth() * image.getHeight();
+    if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+            || buffer.getNumBanks() != 1 || buffer.getOffset() != 0) {
+      return false;
+    }
+
+    if (model instanceof SinglePixelPackedSampleModel) {
+      return ((SinglePixelPackedSampleModel) model).getScanlineStride() == image.getWidth()
+              && buffer.getSize() == pixels
+              && buffer instanceof DataBufferInt
+              && ((DataBufferInt) buffer).getData().length == pixels;
+    }
+    if (model instanceof ComponentSampleModel) {
+      ComponentSampleModel components = (ComponentSampleModel) model;
+      return components.getPixelStride() == 3
+              && components.getScanlineStride() == 3 * image.getWidth()
+              && Arrays.equals(components.getBandOffsets(), new int[]{2, 1, 0})
+              && buffer.getSize() == 3 * pixels
+              && buffer instanceof DataBufferByte
+              && ((DataBufferByte) buffer).getData().length == 3 * pixels;
+    }
+    return false;
+  }
+}
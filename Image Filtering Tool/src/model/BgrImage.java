@@ -0,0 +1,159 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Represents an image whose colors are read in place from the bytes of a TYPE_3BYTE_BGR
+ *   BufferedImage (three per pixel, blue, green then red, in row-major order), which is how
+ *   ImageIO decodes most JPEG, PNG and BMP files. Reading pixels and regions never copies the
+ *   whole image. Other operations copy it into a PackedImage, once, the first time one of them is
+ *   run, and run on that copy.
+ */
+final class BgrImage implements Image {
+
+  /**
+   * Invariant: data is the only bank of image's raster, holding exactly width * height pixels
+   *   with no padding, and is never modified.
+   */
+  private final BufferedImage image;
+  private final byte[] data;
+  private final int width;
+  private final int height;
+  private volatile PackedImage packed;
+
+  /**
+   * Wraps a BufferedImage, which must be of TYPE_3BYTE_BGR with the plain layout described
+   *   above, and must not be modified afterwards.
+   * @param image the image to wrap.
+   */
+  BgrImage(BufferedImage image) {
+    this.image = image;
+    this.data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+  }
+
+  /**
+   * Gets the BufferedImage this image reads its colors from, which must not be modified.
+   * @return the wrapped image.
+   */
+  BufferedImage bufferedImage() {
+    return this.image;
+  }
+
+  //copies the colors into a PackedImage, if that has not been done already
+  private PackedImage packed() {
+    PackedImage done = this.packed;
+    if (done == null) {
+      synchronized (this) {
+        done = this.packed;
+        if (done == null) {
+          done = PackedImage.of(this);
+          this.packed = done;
+        }
+      }
+    }
+    return done;
+  }
+
+  /**
+   * Estimates the bytes of heap this image takes, counting the PackedImage copy most operations
+   *   make whether or not it has been made yet.
+   * @return the size of its bytes and of the copy.
+   */
+  long heapBytes() {
+    return this.data.length + 4L * this.width * this.height;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IllegalArgumentException("row or column out of range.");
+    }
+    int index = 3 * (row * this.width + col);
+    return new RGBPixel(this.data[index + 2] & 0xFF, this.data[index + 1] & 0xFF,
+            this.data[index] & 0xFF);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    for (int r = 0; r < height; r++) {
+      int from = 3 * ((row + r) * this.width + col);
+      int to = offset + r * scanSize;
+      for (int c = 0, k = from; c < width; c++, k += 3) {
+        dest[to + c] = PackedRGB.pack(this.data[k + 2] & 0xFF, this.data[k + 1] & 0xFF,
+                this.data[k] & 0xFF);
+      }
+    }
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    return this.packed().withRegion(row, col, height, width, src, offset, scanSize);
+  }
+
+  @Override
+  public Image flipVertical() {
+    return ViewImage.of(this).flipVertical();
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return ViewImage.of(this).flipHorizontal();
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.packed().adjustBrightness(delta);
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) {
+    return this.packed().grayscale(comp);
+  }
+
+  @Override
+  public Image applyPointOp(PointOp op) throws IllegalArgumentException {
+    return this.packed().applyPointOp(op);
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.packed().transformColor(matrix);
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.packed().filter(kernel);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    return this.packed().filter(kernel, edges);
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.packed().mosaic(seedCount);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    return this.packed().mosaic(seedCount, seed, average);
+  }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Represents an ImageProcessorModel which may be used from many threads at once. Each name is
+ *   guarded by one of a fixed set of read/write locks, chosen by its hash. An operation holds the
+ *   read lock of the image it reads for as long as it runs, and takes the write lock of the name
+ *   it stores its result under only once it is done, to store it. Any number of threads may read
+ *   or transform the same image at once, even into names guarded by the same lock, while an
+ *   image is never replaced as it is being read, and two results are never stored under one
+ *   name at the same time. When two operations store under one name, the last to finish wins.
+ */
+public class ConcurrentImageProcessorModel extends ImageProcessorModelImpl {
+
+  //the number of locks names are spread over, a power of two
+  private static final int STRIPES = 64;
+
+  private final ReadWriteLock[] locks;
+
+  /**
+   * Constructs the model, with no stored images and the default memory budget.
+   */
+  public ConcurrentImageProcessorModel() {
+    this(ImageDirectory.DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructs the model, with no stored images, which keeps at most the given bytes of images
+   * in memory and spills the rest to disk.
+   *
+   * @param budget the bytes of images which may be kept in memory.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ConcurrentImageProcessorModel(long budget) throws IllegalArgumentException {
+    super(budget);
+    this.locks = new ReadWriteLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      this.locks[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  @Override
+  public void addImage(String name, Image im) {
+    Lock lock = this.locks[stripe(name)].writeLock();
+    lock.lock();
+    try {
+      super.addImage(name, im);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Image returnImage(String name) throws IllegalArgumentException {
+    Lock lock = this.locks[stripe(name)].readLock();
+    lock.lock();
+    try {
+      return super.returnImage(name);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  protected void transform(String name, String newName, UnaryOperator<Image> operation)
+          throws IllegalArgumentException {
+    Image result;
+    Lock read = this.locks[stripe(name)].readLock();
+    read.lock();
+    try {
+      result = operation.apply(super.returnImage(name));
+    } finally {
+      read.unlock();
+    }
+    this.addImage(newName, result);
+  }
+
+  //the index of the lock guarding a name
+  private static int stripe(String name) {
+    int hash = name == null ? 0 : name.hashCode();
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+}
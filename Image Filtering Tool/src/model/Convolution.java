@@ -0,0 +1,344 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Filters rasters of packed colors with a kernel. The tap kernel[r][c] for the output pixel at
+ *   (row, col) reads the pixel at (row - kernel[0].length / 2 + r, col - kernel.length / 2 + c),
+ *   and taps outside of the raster read according to an EdgeMode. Under EdgeMode.Zero they read
+ *   as black, matching the original SimpleImage behavior.
+ * Each band of rows copies the source rows it reads, one at a time, into rows of doubles, one
+ *   per channel, padded on both sides by the pixels its taps reach past the edges, as read by
+ *   the EdgeMode; rows past the top and bottom are padded the same way. The padding is the only
+ *   place edges are handled, so every inner loop is a plain multiply and add along a row of
+ *   primitive doubles, with no bounds checks or unpacking, which the JIT compiles to SIMD
+ *   instructions on machines that have them. Each output pixel still adds its taps in the
+ *   same order as a pixel-at-a-time convolution would, so the results are identical.
+ * Kernels which are separable are run as a horizontal pass followed by a vertical pass, and
+ *   large kernels are run in the frequency domain by FourierConvolution, whichever is estimated
+ *   to be cheapest for the kernel and raster size.
+ */
+final class Convolution {
+
+  //the smallest per-pixel cost, in taps, at which filtering in the frequency domain is considered
+  private static final double MIN_FOURIER_COST = 64;
+
+  private Convolution() {
+  }
+
+  /**
+   * Filters a raster with the given kernel, choosing the cheapest way to do so.
+   * @param src the raster, packed and in row-major order.
+   * @param width the width of the raster.
+   * @param height the height of the raster.
+   * @param kernel the kernel, which must already have been checked by Kernels.checkKernel.
+   * @param edges how taps outside of the raster are read.
+   * @return a new raster of the same size with the filter applied.
+   */
+  static int[] filter(int[] src, int width, int height, double[][] kernel, EdgeMode edges) {
+    int[] out = new int[src.length];
+    int kernelRows = kernel.length;
+    int kernelCols = kernel[0].length;
+
+    //where each tap lands: rows[row + r] is the source row for kernel row r of output row row,
+    //  and cols[col + c] is the source column for kernel column c of output column col
+    int[] rows = sourceIndices(edges, kernelCols / 2, height + kernelRows - 1, height);
+    int[] cols = sourceIndices(edges, kernelRows / 2, width + kernelCols - 1, width);
+
+    double[][] factors = separableFactors(kernel);
+    double cheapest = factors == null ? kernelRows * kernelCols : 2 * (kernelRows + kernelCols);
+
+    //the frequency domain costs about the same for every kernel size, so it only pays for
+    //  large kernels, and is not considered for small ones at all since its rounding differs
+    //  very slightly from the spatial filters
+    if (cheapest >= MIN_FOURIER_COST) {
+      FourierConvolution.Plan plan = FourierConvolution.plan(width, height, kernelRows,
+              kernelCols);
+      if (plan.costPerPixel() < cheapest) {
+        FourierConvolution.filter(src, width, height, kernel, rows, cols, out, plan);
+        return out;
+      }
+    }
+
+    if (factors == null) {
+      RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) ->
+              direct(src, width, width, kernel, rows, cols, out, startRow, endRow));
+    } else {
+      double[] columnFactors = factors[0];
+      double[] rowFactors = factors[1];
+      RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) ->
+              separable(src, width, width, columnFactors, rowFactors, rows, cols, out,
+                      startRow, endRow));
+    }
+
+    return out;
+  }
+
+  /**
+   * Filters only a rectangle of an image, reading only the pixels of the image which the
+   *   rectangle needs, so that images too large to hold in memory at once can be filtered a band
+   *   or a tile at a time. Large kernels are never run in the frequency domain here.
+   * @param source the image.
+   * @param kernel the kernel, which must already have been checked by Kernels.checkKernel.
+   * @param edges how taps outside of the image are read.
+   * @param startRow the first row to filter.
+   * @param endRow one past the last row to filter.
+   * @param startCol the first column to filter.
+   * @param endCol one past the last column to filter.
+   * @return the filtered rectangle, packed and in row-major order.
+   */
+  static int[] filterRegion(Image source, double[][] kernel, EdgeMode edges, int startRow,
+                            int endRow, int startCol, int endCol) {
+    int kernelRows = kernel.length;
+    int kernelCols = kernel[0].length;
+    int bandRows = endRow - startRow;
+    int bandCols = endCol - startCol;
+
+    //padded rows startRow through endRow + kernelRows - 1 are needed, and likewise for columns;
+    //  each distinct source row and column among them is read once, and rows and cols are
+    //  changed to where they were read to
+    int[] rows = new int[bandRows + kernelRows - 1];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = edges.sourceIndex(startRow + i - kernelCols / 2, source.getHeight());
+    }
+    int[] cols = new int[bandCols + kernelCols - 1];
+    for (int j = 0; j < cols.length; j++) {
+      cols[j] = edges.sourceIndex(startCol + j - kernelRows / 2, source.getWidth());
+    }
+    int[] readRows = compact(rows);
+    int[] readCols = compact(cols);
+
+    //consecutive source rows and columns are read together, a rectangle at a time
+    int srcWidth = readCols.length;
+    int[] src = new int[readRows.length * srcWidth];
+    for (int i = 0, rowsEnd; i < readRows.length; i = rowsEnd) {
+      rowsEnd = nextRun(readRows, i);
+      for (int j = 0, colsEnd; j < readCols.length; j = colsEnd) {
+        colsEnd = nextRun(readCols, j);
+        source.getRegion(readRows[i], readCols[j], rowsEnd - i, colsEnd - j, src,
+                i * srcWidth + j, srcWidth);
+      }
+    }
+
+    int[] out = new int[bandRows * bandCols];
+    double[][] factors = separableFactors(kernel);
+    if (factors == null) {
+      direct(src, srcWidth, bandCols, kernel, rows, cols, out, 0, bandRows);
+    } else {
+      separable(src, srcWidth, bandCols, factors[0], factors[1], rows, cols, out, 0, bandRows);
+    }
+    return out;
+  }
+
+  //replaces each source index, other than -1 for black, by its position among the distinct
+  //  source indices, and returns those distinct indices in increasing order
+  private static int[] compact(int[] indices) {
+    int[] distinct = Arrays.stream(indices).filter(i -> i >= 0).sorted().distinct().toArray();
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] >= 0) {
+        indices[i] = Arrays.binarySearch(distinct, indices[i]);
+      }
+    }
+    return distinct;
+  }
+
+  //the position after the run of consecutive values starting at position i
+  private static int nextRun(int[] values, int i) {
+    int end = i + 1;
+    while (end < values.length && values[end] == values[end - 1] + 1) {
+      end++;
+    }
+    return end;
+  }
+
+  //separates the kernel if it is separable and separating it saves work, or returns null;
+  //  a k by j kernel costs k * j per pixel directly, and about k + j (twice over, for the
+  //  intermediate rows each band recomputes) when separated
+  private static double[][] separableFactors(double[][] kernel) {
+    int kernelRows = kernel.length;
+    int kernelCols = kernel[0].length;
+    if (kernelRows * kernelCols < 2 * (kernelRows + kernelCols)) {
+      return null;
+    }
+    return Kernels.separate(kernel);
+  }
+
+  //finds the source index of each of count positions along a dimension, starting half before 0
+  private static int[] sourceIndices(EdgeMode edges, int half, int count, int size) {
+    int[] indices = new int[count];
+    for (int i = 0; i < count; i++) {
+      indices[i] = edges.sourceIndex(i - half, size);
+    }
+    return indices;
+  }
+
+  //copies padded row i of the raster (source row rows[i], read across cols, with source rows
+  //  srcWidth apart) into three planes of doubles at the given offset, leaving the row black if
+  //  rows[i] reads as black
+  private static void unpackRow(int[] src, int srcWidth, int[] rows, int[] cols, int i,
+                                double[] red, double[] green, double[] blue, int offset) {
+    int row = rows[i];
+    int paddedWidth = cols.length;
+    if (row < 0) {
+      Arrays.fill(red, offset, offset + paddedWidth, 0.0);
+      Arrays.fill(green, offset, offset + paddedWidth, 0.0);
+      Arrays.fill(blue, offset, offset + paddedWidth, 0.0);
+      return;
+    }
+
+    int rowStart = row * srcWidth;
+    for (int j = 0; j < paddedWidth; j++) {
+      int col = cols[j];
+      if (col < 0) {
+        red[offset + j] = 0.0;
+        green[offset + j] = 0.0;
+        blue[offset + j] = 0.0;
+      } else {
+        int rgb = src[rowStart + col];
+        red[offset + j] = PackedRGB.red(rgb);
+        green[offset + j] = PackedRGB.green(rgb);
+        blue[offset + j] = PackedRGB.blue(rgb);
+      }
+    }
+  }
+
+  //computes output rows [startRow, endRow), width pixels wide, with the full kernel at every
+  //  pixel, keeping the last kernel.length padded rows in a ring
+  private static void direct(int[] src, int srcWidth, int width, double[][] kernel, int[] rows,
+                             int[] cols, int[] out, int startRow, int endRow) {
+    int kernelRows = kernel.length;
+    int taps = kernel[0].length;
+    int paddedWidth = cols.length;
+
+    double[] red = new double[kernelRows * paddedWidth];
+    double[] green = new double[kernelRows * paddedWidth];
+    double[] blue = new double[kernelRows * paddedWidth];
+    for (int i = 0; i < kernelRows - 1; i++) {
+      unpackRow(src, srcWidth, rows, cols, startRow + i, red, green, blue, i * paddedWidth);
+    }
+
+    double[] sumR = new double[width];
+    double[] sumG = new double[width];
+    double[] sumB = new double[width];
+    for (int row = startRow; row < endRow; row++) {
+      //padded rows row - startRow through row - startRow + kernelRows - 1 are needed
+      int newest = row - startRow + kernelRows - 1;
+      unpackRow(src, srcWidth, rows, cols, startRow + newest, red, green, blue,
+              (newest % kernelRows) * paddedWidth);
+
+      Arrays.fill(sumR, 0.0);
+      Arrays.fill(sumG, 0.0);
+      Arrays.fill(sumB, 0.0);
+
+      for (int r = 0; r < kernelRows; r++) {
+        int rowBase = ((row - startRow + r) % kernelRows) * paddedWidth;
+        for (int c = 0; c < taps; c++) {
+          double kernelFactor = kernel[r][c];
+          int base = rowBase + c;
+          multiplyAdd(kernelFactor, red, base, sumR, 0, width);
+          multiplyAdd(kernelFactor, green, base, sumG, 0, width);
+          multiplyAdd(kernelFactor, blue, base, sumB, 0, width);
+        }
+      }
+
+      pack(sumR, sumG, sumB, out, row * width);
+    }
+  }
+
+  //computes output rows [startRow, endRow) for the kernel columnFactors[r] * rowFactors[c],
+  //  filtering each padded row horizontally as it is reached, keeping the last
+  //  columnFactors.length of those intermediate rows in a ring, and filtering them vertically
+  private static void separable(int[] src, int srcWidth, int width,
+                                double[] columnFactors, double[] rowFactors,
+                                int[] rows, int[] cols, int[] out, int startRow, int endRow) {
+    int kernelRows = columnFactors.length;
+    int paddedWidth = cols.length;
+
+    double[] red = new double[paddedWidth];
+    double[] green = new double[paddedWidth];
+    double[] blue = new double[paddedWidth];
+
+    double[] acrossR = new double[kernelRows * width];
+    double[] acrossG = new double[kernelRows * width];
+    double[] acrossB = new double[kernelRows * width];
+    for (int i = 0; i < kernelRows - 1; i++) {
+      horizontal(src, srcWidth, width, rowFactors, rows, cols, startRow + i, red, green, blue,
+              acrossR, acrossG, acrossB, i * width);
+    }
+
+    double[] sumR = new double[width];
+    double[] sumG = new double[width];
+    double[] sumB = new double[width];
+    for (int row = startRow; row < endRow; row++) {
+      int newest = row - startRow + kernelRows - 1;
+      horizontal(src, srcWidth, width, rowFactors, rows, cols, startRow + newest, red, green,
+              blue, acrossR, acrossG, acrossB, (newest % kernelRows) * width);
+
+      Arrays.fill(sumR, 0.0);
+      Arrays.fill(sumG, 0.0);
+      Arrays.fill(sumB, 0.0);
+
+      for (int r = 0; r < kernelRows; r++) {
+        double factor = columnFactors[r];
+        int base = ((row - startRow + r) % kernelRows) * width;
+        multiplyAdd(factor, acrossR, base, sumR, 0, width);
+        multiplyAdd(factor, acrossG, base, sumG, 0, width);
+        multiplyAdd(factor, acrossB, base, sumB, 0, width);
+      }
+
+      pack(sumR, sumG, sumB, out, row * width);
+    }
+  }
+
+  //filters padded row i horizontally into the intermediate rows at the given offset, using
+  //  red, green and blue as room to unpack the row into
+  private static void horizontal(int[] src, int srcWidth, int width, double[] rowFactors,
+                                 int[] rows, int[] cols, int i, double[] red, double[] green,
+                                 double[] blue, double[] acrossR, double[] acrossG,
+                                 double[] acrossB, int offset) {
+    Arrays.fill(acrossR, offset, offset + width, 0.0);
+    Arrays.fill(acrossG, offset, offset + width, 0.0);
+    Arrays.fill(acrossB, offset, offset + width, 0.0);
+    if (rows[i] < 0) {
+      //every tap of a row which reads as black is black
+      return;
+    }
+
+    unpackRow(src, srcWidth, rows, cols, i, red, green, blue, 0);
+    for (int c = 0; c < rowFactors.length; c++) {
+      double factor = rowFactors[c];
+      multiplyAdd(factor, red, c, acrossR, offset, width);
+      multiplyAdd(factor, green, c, acrossG, offset, width);
+      multiplyAdd(factor, blue, c, acrossB, offset, width);
+    }
+  }
+
+  //adds factor times length values of src to dest; kept as its own small loop over primitive
+  //  arrays so that the JIT compiles it to SIMD instructions
+  private static void multiplyAdd(double factor, double[] src, int srcOffset,
+                                  double[] dest, int destOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[destOffset + i] += factor * src[srcOffset + i];
+    }
+  }
+
+  //rounds, clamps and packs one row of filtered channels into out at the given offset
+  private static void pack(double[] red, double[] green, double[] blue, int[] out, int offset) {
+    for (int col = 0; col < red.length; col++) {
+      out[offset + col] = toRGB(red[col], green[col], blue[col]);
+    }
+  }
+
+  /**
+   * Rounds and clamps the channels of a filtered pixel, and packs them.
+   * @param r the red channel.
+   * @param g the green channel.
+   * @param b the blue channel.
+   * @return the packed color.
+   */
+  static int toRGB(double r, double g, double b) {
+    return PackedRGB.pack(Math.min(255, Math.max(0, (int) Math.round(r))),
+            Math.min(255, Math.max(0, (int) Math.round(g))),
+            Math.min(255, Math.max(0, (int) Math.round(b))));
+  }
+}
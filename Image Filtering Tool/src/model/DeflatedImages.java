@@ -0,0 +1,79 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Writes images compressed, as the three bytes (red, green, blue) of each pixel in row-major
+ *   order run through deflate, and reads them back. The width and height are not written, and
+ *   must be kept by whoever keeps the bytes. Compression favours speed over size, as it is used
+ *   to put images aside while they are not needed.
+ */
+final class DeflatedImages {
+
+  private DeflatedImages() {
+  }
+
+  /**
+   * Writes an image compressed. The stream is finished but not closed.
+   * @param image the image to write.
+   * @param out where to write it.
+   * @throws IOException if writing fails.
+   */
+  static void write(Image image, OutputStream out) throws IOException {
+    int width = image.getWidth();
+    int[] row = new int[width];
+    byte[] rowBytes = new byte[width * 3];
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 64 * 1024);
+      for (int i = 0; i < image.getHeight(); i++) {
+        image.getRow(i, row);
+        for (int j = 0; j < width; j++) {
+          rowBytes[j * 3] = (byte) PackedRGB.red(row[j]);
+          rowBytes[j * 3 + 1] = (byte) PackedRGB.green(row[j]);
+          rowBytes[j * 3 + 2] = (byte) PackedRGB.blue(row[j]);
+        }
+        deflated.write(rowBytes);
+      }
+      deflated.finish();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Reads an image written by write.
+   * @param in where to read it from.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @return the image.
+   * @throws IOException if reading fails, or the stream ends before the image does.
+   */
+  static Image read(InputStream in, int width, int height) throws IOException {
+    int[] pixels = new int[width * height];
+    byte[] rowBytes = new byte[width * 3];
+    Inflater inflater = new Inflater();
+    try {
+      InflaterInputStream inflated = new InflaterInputStream(in, inflater, 64 * 1024);
+      for (int i = 0; i < height; i++) {
+        if (inflated.readNBytes(rowBytes, 0, rowBytes.length) < rowBytes.length) {
+          throw new EOFException("Compressed image ended early.");
+        }
+        for (int j = 0; j < width; j++) {
+          pixels[i * width + j] = PackedRGB.pack(rowBytes[j * 3] & 0xFF,
+                  rowBytes[j * 3 + 1] & 0xFF, rowBytes[j * 3 + 2] & 0xFF);
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+    return new PackedImage(width, height, pixels);
+  }
+}
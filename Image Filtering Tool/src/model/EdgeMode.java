@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * Represents one of the ways a filter can treat the pixels that its kernel reaches past the edges
+ *   of an image.
+ * Zero: pixels past the edge are black.
+ * Clamp: pixels past the edge repeat the nearest edge pixel.
+ * Mirror: the image is reflected at its edges, without repeating the edge pixel.
+ * Wrap: the image repeats, so pixels past one edge come from the opposite edge.
+ */
+public enum EdgeMode {
+  Zero, Clamp, Mirror, Wrap;
+
+  /**
+   * Finds the edge mode with the given name, ignoring case.
+   * @param name the name of the edge mode, such as "clamp".
+   * @return the edge mode.
+   * @throws IllegalArgumentException if there is no edge mode with that name.
+   */
+  public static EdgeMode fromName(String name) throws IllegalArgumentException {
+    for (EdgeMode mode : EdgeMode.values()) {
+      if (mode.name().equalsIgnoreCase(name)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("No edge mode named " + name + ".");
+  }
+
+  /**
+   * Finds where an index along one dimension of an image reads from under this edge mode.
+   * @param index the index, which may be outside of [0, size).
+   * @param size the size of the dimension.
+   * @return the index in [0, size) to read from, or -1 if the pixel is black.
+   */
+  int sourceIndex(int index, int size) {
+    if (index >= 0 && index < size) {
+      return index;
+    }
+    switch (this) {
+      case Clamp:
+        return index < 0 ? 0 : size - 1;
+      case Mirror:
+        if (size == 1) {
+          return 0;
+        }
+        int period = 2 * (size - 1);
+        int folded = Math.floorMod(index, period);
+        return folded < size ? folded : period - folded;
+      case Wrap:
+        return Math.floorMod(index, size);
+      case Zero:
+      default:
+        return -1;
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remembers every image an image has been edited into, so that edits can be undone and redone
+ *   without limit, while keeping no more than a budget of bytes of past images in memory. Each
+ *   edit is remembered as a recipe, which makes its image from the one before it. Edits which can
+ *   be undone by another cheap recipe, such as flips, keep only their recipes. The images of
+ *   other edits are kept whole while they fit in the budget, then compressed, starting with
+ *   those furthest from the current image, and dropped once even that does not fit; a dropped
+ *   image is made again when it is needed, from the nearest earlier image that was kept.
+ */
+public final class EditHistory {
+
+  /**
+   * The budget of a history made without one, in bytes.
+   */
+  public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+  //one image of the history, how it was made, and what is kept of it
+  private static final class Entry {
+
+    /**
+     * Invariant: redo is null only for the first image, which is never dropped.
+     * Invariant: at most one of image and compressed is kept.
+     */
+    private final UnaryOperator<Image> redo;
+    private final UnaryOperator<Image> undo;
+    private Image image;
+    private byte[] compressed;
+    private int width;
+    private int height;
+
+    private Entry(UnaryOperator<Image> redo, UnaryOperator<Image> undo, Image image) {
+      this.redo = redo;
+      this.undo = undo;
+      this.image = image;
+      this.compressed = null;
+    }
+
+    //whether the image has to be kept, as it can not be made cheaply from its neighbours
+    private boolean worthKeeping() {
+      return this.redo == null || this.undo == null;
+    }
+
+    //whether anything is kept of the image
+    private boolean isKept() {
+      return this.image != null || this.compressed != null;
+    }
+  }
+
+  /**
+   * Invariant: entries is empty, or position is the index of the current entry, which keeps its
+   *            image whole.
+   */
+  private final long budget;
+  private final List<Entry> entries;
+  private int position;
+
+  /**
+   * Constructs an empty history with the default budget.
+   */
+  public EditHistory() {
+    this(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructs an empty history which keeps no more than the given bytes of past images, not
+   *   counting the current image, or the first image once it can be compressed no further.
+   * @param budget the bytes of past images which may be kept.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public EditHistory(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative.");
+    }
+    this.budget = budget;
+    this.entries = new ArrayList<>();
+    this.position = 0;
+  }
+
+  /**
+   * Forgets every edit, and starts again from the given image.
+   * @param image the first image of the history.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public void reset(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    this.entries.clear();
+    this.entries.add(new Entry(null, null, image));
+    this.position = 0;
+  }
+
+  /**
+   * Remembers an edit of the current image, which becomes the current image. Any edits which
+   *   had been undone are forgotten.
+   * @param result the image the edit made.
+   * @param redo makes the edit again, from the image before it.
+   * @param undo takes the edit back, from the image it made, or null if it can not cheaply.
+   * @throws IllegalArgumentException if the result or redo is null.
+   * @throws IllegalStateException if the history has no image.
+   */
+  public void record(Image result, UnaryOperator<Image> redo, UnaryOperator<Image> undo)
+          throws IllegalArgumentException, IllegalStateException {
+    if (result == null || redo == null) {
+      throw new IllegalArgumentException("Given edit was null.");
+    }
+    this.checkStarted();
+    this.entries.subList(this.position + 1, this.entries.size()).clear();
+    this.entries.add(new Entry(redo, undo, null));
+    this.moveTo(this.position + 1, result);
+  }
+
+  /**
+   * Determines whether there is an edit to undo.
+   * @return true if the current image was made by an edit.
+   */
+  public boolean canUndo() {
+    return this.position > 0;
+  }
+
+  /**
+   * Determines whether there is an undone edit to redo.
+   * @return true if an edit of the current image has been undone.
+   */
+  public boolean canRedo() {
+    return this.position < this.entries.size() - 1;
+  }
+
+  /**
+   * Undoes the edit which made the current image.
+   * @return the image before the edit, which becomes the current image.
+   * @throws IllegalStateException if there is no edit to undo.
+   */
+  public Image undo() throws IllegalStateException {
+    if (!this.canUndo()) {
+      throw new IllegalStateException("Nothing to undo.");
+    }
+    Entry current = this.entries.get(this.position);
+    Entry before = this.entries.get(this.position - 1);
+    Image image;
+    if (before.isKept() || current.undo == null) {
+      image = this.rebuild(this.position - 1);
+    } else {
+      image = current.undo.apply(current.image);
+    }
+    this.moveTo(this.position - 1, image);
+    return image;
+  }
+
+  /**
+   * Redoes the last edit to have been undone.
+   * @return the image the edit made, which becomes the current image.
+   * @throws IllegalStateException if there is no edit to redo.
+   */
+  public Image redo() throws IllegalStateException {
+    if (!this.canRedo()) {
+      throw new IllegalStateException("Nothing to redo.");
+    }
+    Image image = this.rebuild(this.position + 1);
+    this.moveTo(this.position + 1, image);
+    return image;
+  }
+
+  /**
+   * Gets the current image.
+   * @return the current image.
+   * @throws IllegalStateException if the history has no image.
+   */
+  public Image current() throws IllegalStateException {
+    this.checkStarted();
+    return this.entries.get(this.position).image;
+  }
+
+  /**
+   * Counts the bytes of past images being kept, whole or compressed.
+   * @return the bytes kept, not counting the current image.
+   */
+  public long getKeptBytes() {
+    long kept = 0;
+    for (int i = 0; i < this.entries.size(); i++) {
+      if (i != this.position) {
+        kept += bytes(this.entries.get(i));
+      }
+    }
+    return kept;
+  }
+
+  //throws if there is no image yet
+  private void checkStarted() throws IllegalStateException {
+    if (this.entries.isEmpty()) {
+      throw new IllegalStateException("No image has been loaded.");
+    }
+  }
+
+  //the bytes kept of an entry's image
+  private static long bytes(Entry entry) {
+    if (entry.image != null) {
+      return 4L * entry.image.getWidth() * entry.image.getHeight();
+    }
+    return entry.compressed == null ? 0 : entry.compressed.length;
+  }
+
+  //makes the image of an entry from what is kept of it, or else from the nearest kept image
+  //before it, or the current image if that is nearer
+  private Image rebuild(int index) {
+    int from = index;
+    while (!this.entries.get(from).isKept()) {
+      from--;
+    }
+    Image image = this.restore(this.entries.get(from));
+    for (int i = from + 1; i <= index; i++) {
+      image = this.entries.get(i).redo.apply(image);
+    }
+    return image;
+  }
+
+  //makes the current image that of another entry, and keeps of the last current image what the
+  //budget allows
+  private void moveTo(int index, Image image) {
+    if (this.position < this.entries.size()) {
+      Entry last = this.entries.get(this.position);
+      if (!last.worthKeeping()) {
+        last.image = null;
+      }
+    }
+    Entry next = this.entries.get(index);
+    next.image = image;
+    next.compressed = null;
+    this.position = index;
+
+    long kept = this.getKeptBytes();
+    while (kept > this.budget) {
+      Entry furthest = this.furthest(true);
+      if (furthest != null) {
+        kept -= bytes(furthest);
+        compress(furthest);
+      } else {
+        furthest = this.furthest(false);
+        if (furthest == null) {
+          return;
+        }
+        kept -= bytes(furthest);
+        furthest.compressed = null;
+      }
+      kept += bytes(furthest);
+    }
+  }
+
+  //the past entry furthest from the current one which keeps its image whole, or else which
+  //keeps a compressed image it can drop
+  private Entry furthest(boolean whole) {
+    Entry furthest = null;
+    int distance = 0;
+    for (int i = 0; i < this.entries.size(); i++) {
+      Entry entry = this.entries.get(i);
+      boolean candidate = whole ? entry.image != null
+              : entry.compressed != null && entry.redo != null;
+      if (i != this.position && candidate && Math.abs(i - this.position) > distance) {
+        furthest = entry;
+        distance = Math.abs(i - this.position);
+      }
+    }
+    return furthest;
+  }
+
+  //keeps an entry's image compressed instead of whole
+  private static void compress(Entry entry) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      DeflatedImages.write(entry.image, out);
+    } catch (IOException e) {
+      //writing to memory does not fail
+      throw new UncheckedIOException(e);
+    }
+    entry.width = entry.image.getWidth();
+    entry.height = entry.image.getHeight();
+    entry.compressed = out.toByteArray();
+    entry.image = null;
+  }
+
+  //gets an entry's image from what is kept of it
+  private Image restore(Entry entry) {
+    if (entry.image != null) {
+      return entry.image;
+    }
+    try {
+      return DeflatedImages.read(new ByteArrayInputStream(entry.compressed), entry.width,
+              entry.height);
+    } catch (IOException e) {
+      //only ever given what compress made
+      throw new IllegalStateException("A kept image was damaged.", e);
+    }
+  }
+}
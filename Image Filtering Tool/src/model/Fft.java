@@ -0,0 +1,88 @@
+package model;
+
+/**
+ * An in-place radix-2 fast Fourier transform of one fixed, power of two size. The tables it
+ *   builds are never modified, so one Fft can be shared by any number of threads.
+ */
+final class Fft {
+
+  private final int size;
+  private final int[] reversed;
+  private final double[] cos;
+  private final double[] sin;
+
+  /**
+   * Builds the tables for transforms of the given size.
+   * @param size the number of complex values in each transform.
+   * @throws IllegalArgumentException if the size is not a positive power of two.
+   */
+  Fft(int size) throws IllegalArgumentException {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("FFT size must be a power of two.");
+    }
+    this.size = size;
+
+    int bits = Integer.numberOfTrailingZeros(size);
+    this.reversed = new int[size];
+    for (int i = 0; i < size; i++) {
+      this.reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+
+    this.cos = new double[size / 2];
+    this.sin = new double[size / 2];
+    for (int i = 0; i < size / 2; i++) {
+      double angle = -2 * Math.PI * i / size;
+      this.cos[i] = Math.cos(angle);
+      this.sin[i] = Math.sin(angle);
+    }
+  }
+
+  /**
+   * Gets the size of the transforms this does.
+   * @return the number of complex values in each transform.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Transforms size consecutive complex values in place. The inverse transform is not scaled,
+   *   so a forward transform followed by an inverse one multiplies every value by size.
+   * @param re the real parts.
+   * @param im the imaginary parts.
+   * @param offset the index of the first value in re and im.
+   * @param inverse whether to run the inverse transform.
+   */
+  void transform(double[] re, double[] im, int offset, boolean inverse) {
+    for (int i = 0; i < this.size; i++) {
+      int j = this.reversed[i];
+      if (j > i) {
+        double t = re[offset + i];
+        re[offset + i] = re[offset + j];
+        re[offset + j] = t;
+        t = im[offset + i];
+        im[offset + i] = im[offset + j];
+        im[offset + j] = t;
+      }
+    }
+
+    double direction = inverse ? -1.0 : 1.0;
+    for (int half = 1; half < this.size; half *= 2) {
+      int step = this.size / (2 * half);
+      for (int start = 0; start < this.size; start += 2 * half) {
+        for (int k = 0; k < half; k++) {
+          double wr = this.cos[k * step];
+          double wi = direction * this.sin[k * step];
+          int a = offset + start + k;
+          int b = a + half;
+          double tr = re[b] * wr - im[b] * wi;
+          double ti = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - tr;
+          im[b] = im[a] - ti;
+          re[a] += tr;
+          im[a] += ti;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Filters rasters of packed colors with large kernels in the frequency domain. The output is cut
+ *   into tiles, and each tile reads the region of the source it needs, padded to a power of two
+ *   size, multiplies its spectrum by the kernel's, and transforms back. Tiles are independent of
+ *   each other, so very large images never need one transform the size of the whole image, and
+ *   rows of tiles run in parallel.
+ * The red and green channels share one complex transform, as its real and imaginary parts, and
+ *   blue has a transform of its own; since the kernel is real, the channels never mix.
+ */
+final class FourierConvolution {
+
+  //the largest transform used along one dimension, unless the kernel itself needs a larger one
+  private static final int MAX_SIZE = 1024;
+  //rough cost of one butterfly, relative to one tap of a direct convolution
+  private static final double BUTTERFLY_COST = 1.5;
+  //rough cost per padded pixel of filling a tile and multiplying spectra, relative to one tap
+  private static final double PIXEL_COST = 9.0;
+
+  /**
+   * The transform sizes chosen for filtering one image with one kernel size.
+   */
+  static final class Plan {
+    private final int rowSize;
+    private final int colSize;
+    private final double costPerPixel;
+
+    private Plan(int rowSize, int colSize, double costPerPixel) {
+      this.rowSize = rowSize;
+      this.colSize = colSize;
+      this.costPerPixel = costPerPixel;
+    }
+
+    /**
+     * Gets the estimated cost of filtering with this plan, per pixel of the image, in units of
+     *   one tap of a direct convolution.
+     * @return the estimated cost.
+     */
+    double costPerPixel() {
+      return this.costPerPixel;
+    }
+  }
+
+  private FourierConvolution() {
+  }
+
+  /**
+   * Chooses the cheapest transform sizes for filtering an image of the given size with a kernel
+   *   of the given size.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @param kernelRows the number of rows in the kernel.
+   * @param kernelCols the number of columns in the kernel.
+   * @return the plan.
+   */
+  static Plan plan(int width, int height, int kernelRows, int kernelCols) {
+    Plan best = null;
+    for (int rowSize = smallestSize(kernelRows); rowSize <= largestSize(height, kernelRows);
+         rowSize *= 2) {
+      for (int colSize = smallestSize(kernelCols); colSize <= largestSize(width, kernelCols);
+           colSize *= 2) {
+        int tileHeight = Math.min(height, rowSize - kernelRows + 1);
+        int tileWidth = Math.min(width, colSize - kernelCols + 1);
+        long tiles = (long) ceilDiv(height, tileHeight) * ceilDiv(width, tileWidth);
+        double cost = tiles * tileCost(rowSize, colSize, tileHeight, kernelRows)
+                / ((double) width * height);
+        if (best == null || cost < best.costPerPixel) {
+          best = new Plan(rowSize, colSize, cost);
+        }
+      }
+    }
+    return best;
+  }
+
+  //the smallest transform which fits a kernel and at least one row or column of output
+  private static int smallestSize(int kernelLength) {
+    return Integer.highestOneBit(kernelLength) * 2;
+  }
+
+  //the largest transform worth trying: one which fits the whole image, or MAX_SIZE
+  private static int largestSize(int imageLength, int kernelLength) {
+    int whole = Integer.highestOneBit(imageLength + kernelLength - 1);
+    if (whole < imageLength + kernelLength - 1) {
+      whole *= 2;
+    }
+    return Math.max(smallestSize(kernelLength), Math.min(MAX_SIZE, whole));
+  }
+
+  //estimates the cost of one tile: two forward and two inverse transforms, skipping the rows
+  //  which are known to be zero going in or unused coming out, plus the per-pixel work
+  private static double tileCost(int rowSize, int colSize, int tileHeight, int kernelRows) {
+    int rowLog = Integer.numberOfTrailingZeros(rowSize);
+    int colLog = Integer.numberOfTrailingZeros(colSize);
+    double rowPasses = (tileHeight + kernelRows - 1 + tileHeight) * (colSize / 2.0) * colLog;
+    double colPasses = 2.0 * colSize * (rowSize / 2.0) * rowLog;
+    return 2 * (rowPasses + colPasses) * BUTTERFLY_COST
+            + (double) rowSize * colSize * PIXEL_COST;
+  }
+
+  private static int ceilDiv(int a, int b) {
+    return (a + b - 1) / b;
+  }
+
+  /**
+   * Filters a raster with the given kernel, following the given plan.
+   * @param src the raster, packed and in row-major order.
+   * @param width the width of the raster.
+   * @param height the height of the raster.
+   * @param kernel the kernel, which must already have been checked by Kernels.checkKernel.
+   * @param rows rows[i] is the source row read for row i of the padded image, or -1 for black.
+   * @param cols cols[j] is the source column read for column j of the padded image, or -1.
+   * @param out the raster to write the result into.
+   * @param plan the plan, made by plan() for this raster and kernel size.
+   */
+  static void filter(int[] src, int width, int height, double[][] kernel,
+                     int[] rows, int[] cols, int[] out, Plan plan) {
+    int kernelRows = kernel.length;
+    int kernelCols = kernel[0].length;
+    int rowSize = plan.rowSize;
+    int colSize = plan.colSize;
+    int tileHeight = Math.min(height, rowSize - kernelRows + 1);
+    int tileWidth = Math.min(width, colSize - kernelCols + 1);
+
+    Fft rowFft = new Fft(colSize);
+    Fft colFft = new Fft(rowSize);
+
+    //the output at (y, x) is the sum of kernel[r][c] * padded[y + r][x + c], which is a
+    //  circular convolution with the kernel placed at (-r, -c)
+    double[] kernelRe = new double[rowSize * colSize];
+    double[] kernelIm = new double[rowSize * colSize];
+    for (int r = 0; r < kernelRows; r++) {
+      for (int c = 0; c < kernelCols; c++) {
+        int index = ((rowSize - r) % rowSize) * colSize + (colSize - c) % colSize;
+        kernelRe[index] = kernel[r][c];
+      }
+    }
+    transform2d(kernelRe, kernelIm, rowFft, colFft, rowSize, rowSize, false);
+
+    int tileRows = ceilDiv(height, tileHeight);
+    int tileCols = ceilDiv(width, tileWidth);
+    RowScheduler.getDefault().forEachRowBand(tileRows, tileHeight * width,
+        (startTile, endTile) -> {
+          double[] redGreenRe = new double[rowSize * colSize];
+          double[] redGreenIm = new double[rowSize * colSize];
+          double[] blueRe = new double[rowSize * colSize];
+          double[] blueIm = new double[rowSize * colSize];
+          for (int tileRow = startTile; tileRow < endTile; tileRow++) {
+            for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+              int top = tileRow * tileHeight;
+              int left = tileCol * tileWidth;
+              int outHeight = Math.min(tileHeight, height - top);
+              int outWidth = Math.min(tileWidth, width - left);
+              int inHeight = outHeight + kernelRows - 1;
+
+              fillTile(src, width, rows, cols, top, left, inHeight,
+                      outWidth + kernelCols - 1, colSize, redGreenRe, redGreenIm, blueRe, blueIm);
+              transform2d(redGreenRe, redGreenIm, rowFft, colFft, rowSize, inHeight, false);
+              transform2d(blueRe, blueIm, rowFft, colFft, rowSize, inHeight, false);
+              multiply(redGreenRe, redGreenIm, kernelRe, kernelIm);
+              multiply(blueRe, blueIm, kernelRe, kernelIm);
+              transform2d(redGreenRe, redGreenIm, rowFft, colFft, rowSize, outHeight, true);
+              transform2d(blueRe, blueIm, rowFft, colFft, rowSize, outHeight, true);
+
+              double scale = 1.0 / ((double) rowSize * colSize);
+              for (int y = 0; y < outHeight; y++) {
+                for (int x = 0; x < outWidth; x++) {
+                  int index = y * colSize + x;
+                  out[(top + y) * width + left + x] = Convolution.toRGB(
+                          redGreenRe[index] * scale,
+                          redGreenIm[index] * scale,
+                          blueRe[index] * scale);
+                }
+              }
+            }
+          }
+        });
+  }
+
+  //copies the padded source region for one tile into the transform buffers, zeroing the rest
+  private static void fillTile(int[] src, int width, int[] rows, int[] cols, int top, int left,
+                               int inHeight, int inWidth, int colSize,
+                               double[] redGreenRe, double[] redGreenIm,
+                               double[] blueRe, double[] blueIm) {
+    Arrays.fill(redGreenRe, 0.0);
+    Arrays.fill(redGreenIm, 0.0);
+    Arrays.fill(blueRe, 0.0);
+    Arrays.fill(blueIm, 0.0);
+    for (int y = 0; y < inHeight; y++) {
+      int row = rows[top + y];
+      if (row < 0) {
+        continue;
+      }
+      for (int x = 0; x < inWidth; x++) {
+        int col = cols[left + x];
+        if (col < 0) {
+          continue;
+        }
+        int rgb = src[row * width + col];
+        int index = y * colSize + x;
+        redGreenRe[index] = PackedRGB.red(rgb);
+        redGreenIm[index] = PackedRGB.green(rgb);
+        blueRe[index] = PackedRGB.blue(rgb);
+      }
+    }
+  }
+
+  //multiplies the spectrum a by the spectrum b, in place
+  private static void multiply(double[] aRe, double[] aIm, double[] bRe, double[] bIm) {
+    for (int i = 0; i < aRe.length; i++) {
+      double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+      double im = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+      aRe[i] = re;
+      aIm[i] = im;
+    }
+  }
+
+  //transforms a rowSize by rowFft.size() grid in place; a forward transform assumes only the
+  //  first usedRows rows are nonzero, and an inverse one only computes the first usedRows rows
+  private static void transform2d(double[] re, double[] im, Fft rowFft, Fft colFft,
+                                  int rowSize, int usedRows, boolean inverse) {
+    int colSize = rowFft.size();
+    if (!inverse) {
+      for (int y = 0; y < usedRows; y++) {
+        rowFft.transform(re, im, y * colSize, false);
+      }
+    }
+
+    double[] columnRe = new double[rowSize];
+    double[] columnIm = new double[rowSize];
+    for (int x = 0; x < colSize; x++) {
+      for (int y = 0; y < rowSize; y++) {
+        columnRe[y] = re[y * colSize + x];
+        columnIm[y] = im[y * colSize + x];
+      }
+      colFft.transform(columnRe, columnIm, 0, inverse);
+      for (int y = 0; y < rowSize; y++) {
+        re[y * colSize + x] = columnRe[y];
+        im[y * colSize + x] = columnIm[y];
+      }
+    }
+
+    if (inverse) {
+      for (int y = 0; y < usedRows; y++) {
+        rowFft.transform(re, im, y * colSize, true);
+      }
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Counts how many pixels of an image have each value of red, green, blue and intensity. Counting
+ *   is split into bands of rows, each counted into its own buckets and merged at the end, and the
+ *   histogram of each image is kept for as long as the image is, so that showing or measuring
+ *   the same image again costs nothing.
+ */
+public final class Histogram {
+
+  //images are immutable, so a histogram stays correct for as long as its image exists
+  private static final Map<Image, Histogram> CACHE =
+          Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * Invariant: red, green and blue each have 256 counts, one per channel value.
+   * Invariant: sums has 766 counts, one per sum of the three channels, so that intensity can be
+   *            regrouped into buckets exactly as (r + g + b) / 3.0.
+   * Invariant: each array's counts add up to pixelCount.
+   */
+  private final long[] red;
+  private final long[] green;
+  private final long[] blue;
+  private final long[] sums;
+  private final long pixelCount;
+
+  private Histogram(long[] red, long[] green, long[] blue, long[] sums, long pixelCount) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+    this.sums = sums;
+    this.pixelCount = pixelCount;
+  }
+
+  /**
+   * Gets the histogram of an image, counting it only if it has not been counted before.
+   * @param image the image.
+   * @return the histogram.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static Histogram of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    Histogram cached = CACHE.get(image);
+    if (cached == null) {
+      //two threads may count the same image at once, in which case either result will do
+      cached = count(image);
+      CACHE.put(image, cached);
+    }
+    return cached;
+  }
+
+  /**
+   * Gets the number of pixels counted.
+   * @return the number of pixels in the image.
+   */
+  public long getPixelCount() {
+    return this.pixelCount;
+  }
+
+  /**
+   * Gets the number of pixels with each value of a component, from 0 to 255. The intensity of a
+   *   pixel is counted as the average of its channels, rounded down.
+   * @param comp the component, which is one of red, green, blue or intensity.
+   * @return a new array of 256 counts.
+   * @throws IllegalArgumentException if the component is null or not one of those counted.
+   */
+  public long[] getCounts(ColorComponent comp) throws IllegalArgumentException {
+    return this.getBuckets(comp, 256);
+  }
+
+  /**
+   * Gets the number of pixels in each of some number of equally wide buckets of a component's
+   *   values. A value v falls in bucket floor(v / (256 / bucketCount)), where the intensity of a
+   *   pixel is the exact average of its channels.
+   * @param comp the component, which is one of red, green, blue or intensity.
+   * @param bucketCount the number of buckets.
+   * @return a new array of counts, one per bucket.
+   * @throws IllegalArgumentException if the component is null or not one of those counted, or the
+   *                                  bucket count is less than 1.
+   */
+  public long[] getBuckets(ColorComponent comp, int bucketCount)
+          throws IllegalArgumentException {
+    if (bucketCount < 1) {
+      throw new IllegalArgumentException("Bucket count must be at least 1.");
+    }
+    double bucketWidth = 256.0 / bucketCount;
+    long[] buckets = new long[bucketCount];
+    if (comp == ColorComponent.Intensity) {
+      for (int sum = 0; sum < this.sums.length; sum++) {
+        buckets[(int) Math.floor(sum / 3.0 / bucketWidth)] += this.sums[sum];
+      }
+      return buckets;
+    }
+
+    long[] counts = this.channel(comp);
+    for (int value = 0; value < 256; value++) {
+      buckets[(int) Math.floor(value / bucketWidth)] += counts[value];
+    }
+    return buckets;
+  }
+
+  /**
+   * Gets the mean value of a component over every pixel, where the intensity of a pixel is the
+   *   exact average of its channels.
+   * @param comp the component, which is one of red, green, blue or intensity.
+   * @return the mean, or 0 for an image without pixels.
+   * @throws IllegalArgumentException if the component is null or not one of those counted.
+   */
+  public double mean(ColorComponent comp) throws IllegalArgumentException {
+    long[] counts = this.channelOrSums(comp);
+    if (this.pixelCount == 0) {
+      return 0;
+    }
+    double total = 0;
+    for (int value = 0; value < counts.length; value++) {
+      total += (double) value * counts[value];
+    }
+    return total / this.pixelCount / (counts == this.sums ? 3 : 1);
+  }
+
+  /**
+   * Gets the smallest value of a component which at least the given fraction of pixels are at
+   *   or below, where the intensity of a pixel is the average of its channels, rounded down.
+   * @param comp the component, which is one of red, green, blue or intensity.
+   * @param fraction the fraction of pixels, in [0,1].
+   * @return the value, from 0 to 255, or 0 for an image without pixels.
+   * @throws IllegalArgumentException if the component is null or not one of those counted, or the
+   *                                  fraction is outside of [0,1].
+   */
+  public int percentile(ColorComponent comp, double fraction) throws IllegalArgumentException {
+    if (!(fraction >= 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Fraction must be within [0,1].");
+    }
+    long[] counts = this.getCounts(comp);
+    double needed = fraction * this.pixelCount;
+    long seen = 0;
+    for (int value = 0; value < 255; value++) {
+      seen += counts[value];
+      if (seen > 0 && seen >= needed) {
+        return value;
+      }
+    }
+    return this.pixelCount == 0 ? 0 : 255;
+  }
+
+  //the counts of a channel, which must not be changed
+  private long[] channel(ColorComponent comp) {
+    if (comp == null) {
+      throw new IllegalArgumentException("Given component was null.");
+    }
+    switch (comp) {
+      case Red:
+        return this.red;
+      case Green:
+        return this.green;
+      case Blue:
+        return this.blue;
+      default:
+        throw new IllegalArgumentException("No histogram of " + comp + ".");
+    }
+  }
+
+  //the counts of a channel, or the sums of the channels for intensity
+  private long[] channelOrSums(ColorComponent comp) {
+    return comp == ColorComponent.Intensity ? this.sums : this.channel(comp);
+  }
+
+  private static Histogram count(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    long[] red = new long[256];
+    long[] green = new long[256];
+    long[] blue = new long[256];
+    long[] sums = new long[766];
+
+    RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) -> {
+      //each band counts into its own buckets, so that bands never contend until they merge
+      long[] bandRed = new long[256];
+      long[] bandGreen = new long[256];
+      long[] bandBlue = new long[256];
+      long[] bandSums = new long[766];
+      int[] row = new int[width];
+      for (int i = startRow; i < endRow; i++) {
+        image.getRow(i, row);
+        for (int rgb : row) {
+          int r = PackedRGB.red(rgb);
+          int g = PackedRGB.green(rgb);
+          int b = PackedRGB.blue(rgb);
+          bandRed[r]++;
+          bandGreen[g]++;
+          bandBlue[b]++;
+          bandSums[r + g + b]++;
+        }
+      }
+
+      synchronized (sums) {
+        add(red, bandRed);
+        add(green, bandGreen);
+        add(blue, bandBlue);
+        add(sums, bandSums);
+      }
+    });
+    return new Histogram(red, green, blue, sums, (long) width * height);
+  }
+
+  private static void add(long[] total, long[] counts) {
+    for (int i = 0; i < total.length; i++) {
+      total[i] += counts[i];
+    }
+  }
+}
@@ -27,6 +27,54 @@ public interface Image {
    */
   Pixel getPixelAt(int row, int col) throws IllegalArgumentException;
 
+  /**
+   * Copies the colors of a rectangular region of this image into an array, packed as 0xRRGGBB
+   *   (see PackedRGB), without creating a Pixel for each one.
+   *
+   * @param row the top row of the region.
+   * @param col the left column of the region.
+   * @param height the number of rows in the region.
+   * @param width the number of columns in the region.
+   * @param dest the array to copy the colors into.
+   * @param offset the index in dest of the top left pixel of the region.
+   * @param scanSize the distance in dest between the starts of two consecutive rows.
+   * @throws IllegalArgumentException if the region is not inside of this image, or does not fit
+   *                                  in dest.
+   */
+  void getRegion(int row, int col, int height, int width, int[] dest, int offset, int scanSize)
+          throws IllegalArgumentException;
+
+  /**
+   * Copies the colors of one row of this image into an array, packed as 0xRRGGBB.
+   *
+   * @param row the row to copy.
+   * @param dest the array to copy the colors into, starting from index 0.
+   * @throws IllegalArgumentException if the row is not inside of this image, or dest is shorter
+   *                                  than the width of this image.
+   */
+  default void getRow(int row, int[] dest) throws IllegalArgumentException {
+    this.getRegion(row, 0, 1, this.getWidth(), dest, 0, this.getWidth());
+  }
+
+  /**
+   * Replaces the colors of a rectangular region of this image with colors from an array,
+   *   packed as 0xRRGGBB.
+   * Does not modify this image, but rather returns a new image with this region replaced.
+   *
+   * @param row the top row of the region.
+   * @param col the left column of the region.
+   * @param height the number of rows in the region.
+   * @param width the number of columns in the region.
+   * @param src the array to copy the colors from.
+   * @param offset the index in src of the top left pixel of the region.
+   * @param scanSize the distance in src between the starts of two consecutive rows.
+   * @return a new image with the given region replaced.
+   * @throws IllegalArgumentException if the region is not inside of this image, or does not fit
+   *                                  in src.
+   */
+  Image withRegion(int row, int col, int height, int width, int[] src, int offset, int scanSize)
+          throws IllegalArgumentException;
+
   /**
    * Reflects this image across its center row.
    * Does not modify this image, but rather returns a new image with this effect.
@@ -41,6 +89,43 @@ public interface Image {
    */
   Image flipHorizontal();
 
+  /**
+   * Turns this image a quarter turn clockwise, so that its left column becomes its top row.
+   * Does not modify this image, but rather returns a new image with this effect, which reads the
+   *   pixels of this image in place.
+   * @return a new image which is this image turned clockwise, as wide as this image is tall.
+   */
+  default Image rotateClockwise() {
+    return ViewImage.of(this).rotateClockwise();
+  }
+
+  /**
+   * Turns this image a quarter turn counterclockwise, so that its top row becomes its left
+   *   column.
+   * Does not modify this image, but rather returns a new image with this effect, which reads the
+   *   pixels of this image in place.
+   * @return a new image which is this image turned counterclockwise, as wide as this image is
+   *         tall.
+   */
+  default Image rotateCounterclockwise() {
+    return ViewImage.of(this).rotateCounterclockwise();
+  }
+
+  /**
+   * Cuts a rectangular region out of this image.
+   * Does not modify this image, but rather returns a new image with this effect, which reads the
+   *   pixels of this image in place.
+   * @param row the top row of the region.
+   * @param col the left column of the region.
+   * @param height the number of rows in the region.
+   * @param width the number of columns in the region.
+   * @return a new image of just the region.
+   * @throws IllegalArgumentException if the region is empty, or not inside of this image.
+   */
+  default Image crop(int row, int col, int height, int width) throws IllegalArgumentException {
+    return ViewImage.of(this).crop(row, col, height, width);
+  }
+
   /**
    * Adjusts the image's brightness up or down.
    * Does not modify this image, but rather returns a new image with this effect.
@@ -57,6 +142,15 @@ public interface Image {
    */
   Image grayscale(ColorComponent comp);
 
+  /**
+   * Applies an operation which changes the color of each pixel based only on its own color.
+   * Does not modify this image, but rather returns a new image with this effect.
+   * @param op the operation.
+   * @return a new image with the operation applied to every pixel.
+   * @throws IllegalArgumentException if the operation is null.
+   */
+  Image applyPointOp(PointOp op) throws IllegalArgumentException;
+
   /**
    * Applies a matrix multiplication to the color of this image, and returns a new image, with this
    *   new coloring.
@@ -76,6 +170,18 @@ public interface Image {
    */
   Image filter(double[][] kernel) throws IllegalArgumentException;
 
+  /**
+   * Applies a filter to this image based on a given kernel, reading the pixels that the kernel
+   *   reaches past the edges of this image according to the given edge mode, and returns a new
+   *   image, with this filter applied. Filtering with EdgeMode.Zero is the same as filter(kernel).
+   * @param kernel the transformation kernel.
+   * @param edges how pixels past the edges of this image are read.
+   * @return the new, separate image with the filter applied.
+   * @throws IllegalArgumentException if the array is not rectangular, or one of its dimensions
+   *                                  is not odd, or the edge mode is null.
+   */
+  Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException;
+
   /**
    * Applies a mosiacking filter to the image to produce a new image.
    * @param seedCount number of mosaic "tiles" of different color in the produced image.
@@ -83,4 +189,16 @@ public interface Image {
    * @throws IllegalArgumentException if seed count is < 1
    */
   Image mosaic(int seedCount) throws IllegalArgumentException;
+
+  /**
+   * Applies a mosiacking filter to the image to produce a new image, placing the tiles from a
+   *   given random seed, so that the same seed always produces the same mosaic.
+   * @param seedCount number of mosaic "tiles" of different color in the produced image.
+   * @param seed the seed of the random placement of the tiles.
+   * @param average whether each tile is the average color of the pixels it covers, rather than
+   *                the color of the pixel it grew from.
+   * @return the mosaicked image.
+   * @throws IllegalArgumentException if seed count is < 1
+   */
+  Image mosaic(int seedCount, long seed, boolean average) throws IllegalArgumentException;
 }
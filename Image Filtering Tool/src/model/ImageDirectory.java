@@ -0,0 +1,384 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the images of an image processor model by name, keeping no more than a budget of bytes
+ *   of them in memory. When adding or using an image takes the directory over its budget, the
+ *   least recently used images are spilled: written compressed to a file of their own, in a
+ *   temporary folder of the directory's own, and let go. A spilled image is read back into
+ *   memory the next time it is asked for, spilling others in turn if need be, and its file is
+ *   deleted. Files are also deleted when their image is replaced, and the folder when the
+ *   directory is closed.
+ * Images are compressed, written and read back without holding the directory, so that other
+ *   images may be added and used meanwhile. An image which is used, replaced or let go of while
+ *   it is being spilled stays as it is, and its file is thrown away.
+ * An image is counted as the heap it keeps alive: views and pending color operations count the
+ *   images they read from, and an image kept alive by several others is counted once. Images
+ *   whose pixels are kept outside the heap already, such as MappedImages and TiledImages, and
+ *   views and color operations of them, take none of the budget and are never spilled.
+ */
+public final class ImageDirectory implements AutoCloseable {
+
+  /**
+   * The budget of a directory made without one: half of the largest heap allowed.
+   */
+  public static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 2;
+
+  //one named image, held in memory or spilled to a file
+  private static final class Slot {
+
+    /**
+     * Invariant: exactly one of image and file is not null.
+     * Invariant: charged is the heap image kept alive when last counted, and is null exactly
+     *   when image is.
+     * Invariant: spilling is only true while image is being written to a file, and is set back
+     *   to false if the slot is used, replaced or let go of meanwhile.
+     */
+    private Image image;
+    private Path file;
+    private Set<Image> charged;
+    private boolean spilling;
+    private final int width;
+    private final int height;
+
+    private Slot(Image image) {
+      this.image = image;
+      this.file = null;
+      this.charged = null;
+      this.spilling = false;
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+    }
+  }
+
+  /**
+   * Invariant: counts holds each image in the charged set of some slot, with the number of such
+   *   sets it is in.
+   * Invariant: used is the total of heapBytes over the images in counts.
+   * Invariant: slots is in order of least to most recently used.
+   * Invariant: folder is null until the first image is spilled, and after closing.
+   */
+  private final long budget;
+  private final LinkedHashMap<String, Slot> slots;
+  private final Map<Image, Integer> counts;
+  private long used;
+  private Path folder;
+
+  /**
+   * Constructs an empty directory with the default budget.
+   */
+  public ImageDirectory() {
+    this(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructs an empty directory which holds at most the given bytes of images in memory, not
+   *   counting the image added or used last, which is always held.
+   * @param budget the bytes of images which may be held in memory.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ImageDirectory(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative.");
+    }
+    this.budget = budget;
+    this.slots = new LinkedHashMap<>(16, 0.75f, true);
+    this.counts = new IdentityHashMap<>();
+    this.used = 0;
+    this.folder = null;
+  }
+
+  /**
+   * Gets the bytes of images this directory may hold in memory.
+   * @return the budget of this directory.
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Determines whether there is an image with the given name, held or spilled.
+   * @param name the name.
+   * @return true if there is such an image.
+   */
+  public synchronized boolean contains(String name) {
+    return this.slots.containsKey(name);
+  }
+
+  /**
+   * Adds an image under a name, replacing any image which had that name.
+   * @param name the name.
+   * @param image the image.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public void put(String name, Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    Map<Slot, Image> victims;
+    synchronized (this) {
+      Slot slot = new Slot(image);
+      Slot old = this.slots.put(name, slot);
+      if (old != null) {
+        this.forget(old);
+      }
+      this.charge(slot);
+      victims = this.chooseSpills(name);
+    }
+    this.spill(victims);
+  }
+
+  /**
+   * Gets the image with the given name, reading it back into memory if it was spilled.
+   * @param name the name.
+   * @return the image, or null if there is none with that name.
+   * @throws IllegalStateException if a spilled image can not be read back.
+   */
+  public Image get(String name) throws IllegalStateException {
+    while (true) {
+      Slot slot;
+      Path file;
+      Image image;
+      Map<Slot, Image> victims = Collections.emptyMap();
+      synchronized (this) {
+        slot = this.slots.get(name);
+        if (slot == null) {
+          return null;
+        }
+        file = slot.file;
+        image = slot.image;
+        if (image != null) {
+          //a used image is kept, and counted again in case it has made copies since
+          slot.spilling = false;
+          this.discharge(slot);
+          this.charge(slot);
+          victims = this.chooseSpills(name);
+        }
+      }
+      if (image != null) {
+        this.spill(victims);
+        return image;
+      }
+
+      IOException failure = null;
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+        image = DeflatedImages.read(in, slot.width, slot.height);
+      } catch (IOException e) {
+        failure = e;
+      }
+
+      synchronized (this) {
+        //otherwise it was read back, replaced or spilled again meanwhile, so is looked up again
+        if (this.slots.get(name) != slot || slot.file != file) {
+          continue;
+        }
+        if (image == null) {
+          throw new IllegalStateException("Could not read back " + name + ".", failure);
+        }
+        slot.image = image;
+        deleteFile(slot);
+        this.charge(slot);
+        victims = this.chooseSpills(name);
+      }
+      this.spill(victims);
+      return image;
+    }
+  }
+
+  /**
+   * Reports which images are held in memory and which are spilled.
+   * @return the report.
+   */
+  public synchronized MemoryReport report() {
+    List<String> resident = new ArrayList<>();
+    List<String> spilled = new ArrayList<>();
+    for (Map.Entry<String, Slot> entry : this.slots.entrySet()) {
+      if (entry.getValue().image != null) {
+        resident.add(entry.getKey());
+      } else {
+        spilled.add(entry.getKey());
+      }
+    }
+    return new MemoryReport(resident, spilled, this.used, this.budget);
+  }
+
+  /**
+   * Lets go of every image, and deletes the files of those spilled and the folder they were in.
+   *   The directory is left empty, and may be used again.
+   */
+  @Override
+  public synchronized void close() {
+    for (Slot slot : this.slots.values()) {
+      this.forget(slot);
+    }
+    this.slots.clear();
+    if (this.folder != null) {
+      this.folder.toFile().delete();
+      this.folder = null;
+    }
+  }
+
+  //picks the least recently used images which keep heap alive, other than the named one, whose
+  //spilling would bring the directory within its budget, and marks them as being spilled
+  private Map<Slot, Image> chooseSpills(String keep) {
+    Map<Slot, Image> victims = new LinkedHashMap<>();
+    long over = this.used - this.budget;
+    //the number of times each image is counted by the slots chosen so far
+    Map<Image, Integer> chosen = new IdentityHashMap<>();
+    for (Map.Entry<String, Slot> entry : this.slots.entrySet()) {
+      if (over <= 0) {
+        break;
+      }
+      Slot slot = entry.getValue();
+      if (slot.image == null || slot.spilling || entry.getKey().equals(keep)
+              || slot.charged.isEmpty()) {
+        continue;
+      }
+      slot.spilling = true;
+      victims.put(slot, slot.image);
+      for (Image image : slot.charged) {
+        if (chosen.merge(image, 1, Integer::sum).equals(this.counts.get(image))) {
+          over -= heapBytes(image);
+        }
+      }
+    }
+    return victims;
+  }
+
+  //writes images to files of their own, without holding the directory, then lets go of each one
+  //still being spilled
+  private void spill(Map<Slot, Image> victims) {
+    for (Map.Entry<Slot, Image> victim : victims.entrySet()) {
+      Path file = null;
+      try {
+        file = Files.createTempFile(this.folder(), "image", ".deflated");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+          DeflatedImages.write(victim.getValue(), out);
+        }
+      } catch (IOException e) {
+        //kept in memory instead, over the budget
+        if (file != null) {
+          file.toFile().delete();
+        }
+        file = null;
+      }
+      this.finishSpill(victim.getKey(), file);
+    }
+  }
+
+  //lets go of the image of a slot written to the given file, unless the slot was used, replaced
+  //or let go of meanwhile, or the file could not be written
+  private synchronized void finishSpill(Slot slot, Path file) {
+    if (slot.spilling && file != null) {
+      this.discharge(slot);
+      slot.image = null;
+      slot.file = file;
+    } else if (file != null) {
+      file.toFile().delete();
+      if (!file.getParent().equals(this.folder)) {
+        //the directory was closed meanwhile, so the folder is only left with this file
+        file.getParent().toFile().delete();
+      }
+    }
+    slot.spilling = false;
+  }
+
+  //the folder images are spilled into, made the first time it is needed
+  private synchronized Path folder() throws IOException {
+    if (this.folder == null) {
+      this.folder = Files.createTempDirectory("images");
+    }
+    return this.folder;
+  }
+
+  //counts the heap kept alive by the image of a slot
+  private void charge(Slot slot) {
+    slot.charged = heapOf(slot.image);
+    for (Image image : slot.charged) {
+      if (this.counts.merge(image, 1, Integer::sum) == 1) {
+        this.used += heapBytes(image);
+      }
+    }
+  }
+
+  //stops counting the heap kept alive by the image of a slot, if it was counted
+  private void discharge(Slot slot) {
+    if (slot.charged == null) {
+      return;
+    }
+    for (Image image : slot.charged) {
+      int count = this.counts.get(image);
+      if (count == 1) {
+        this.counts.remove(image);
+        this.used -= heapBytes(image);
+      } else {
+        this.counts.put(image, count - 1);
+      }
+    }
+    slot.charged = null;
+  }
+
+  //lets go of a replaced or closed slot: stops counting its image, and deletes its file
+  private void forget(Slot slot) {
+    this.discharge(slot);
+    slot.spilling = false;
+    deleteFile(slot);
+  }
+
+  //deletes the file of a slot, if it has one
+  private static void deleteFile(Slot slot) {
+    if (slot.file != null) {
+      slot.file.toFile().delete();
+      slot.file = null;
+    }
+  }
+
+  //the bytes of heap an image holding its own pixels takes
+  private static long heapBytes(Image image) {
+    if (image instanceof PackedImage) {
+      return ((PackedImage) image).heapBytes();
+    } else if (image instanceof BgrImage) {
+      return ((BgrImage) image).heapBytes();
+    } else if (image instanceof SimpleImage) {
+      return ((SimpleImage) image).heapBytes();
+    }
+    //an image made outside of the model, counted as though packed
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  //the images holding pixels on the heap which an image keeps alive, itself included
+  private static Set<Image> heapOf(Image image) {
+    Set<Image> heap = Collections.newSetFromMap(new IdentityHashMap<>());
+    collectHeap(image, heap);
+    return heap;
+  }
+
+  //adds the images holding pixels on the heap which an image keeps alive, itself included
+  private static void collectHeap(Image image, Set<Image> heap) {
+    if (image instanceof ViewImage) {
+      for (Image kept : ((ViewImage) image).retained()) {
+        collectHeap(kept, heap);
+      }
+    } else if (image instanceof PipelineImage) {
+      for (Image kept : ((PipelineImage) image).retained()) {
+        collectHeap(kept, heap);
+      }
+    } else if (!(image instanceof MappedImage || image instanceof TiledImage)) {
+      heap.add(image);
+    }
+  }
+}
@@ -3,7 +3,7 @@ package model;
 /**
  * Represents a system of storing and modifying images.
  */
-public interface ImageProcessorModel {
+public interface ImageProcessorModel extends AutoCloseable {
 
   /**
    * Adds an image into the processor, which will be referred to by a certain name.
@@ -60,6 +60,36 @@ public interface ImageProcessorModel {
   void flipImageVertical(String name, String newName)
           throws IllegalArgumentException;
 
+  /**
+   * Rotates image with given name in model a quarter turn, saves result in model under given
+   * new name.
+   * If the new name already exists, that image will be overwritten.
+   *
+   * @param name      of image to rotate.
+   * @param newName   to save result to in model.
+   * @param clockwise whether to turn the image clockwise, rather than counterclockwise.
+   * @throws IllegalArgumentException if image with given name does not exist in model.
+   */
+  void rotateImage(String name, String newName, boolean clockwise)
+          throws IllegalArgumentException;
+
+  /**
+   * Crops image with given name in model to a rectangle of it, saves result in model under
+   * given new name.
+   * If the new name already exists, that image will be overwritten.
+   *
+   * @param name    of image to crop.
+   * @param newName to save result to in model.
+   * @param row     the top row of the rectangle.
+   * @param col     the left column of the rectangle.
+   * @param height  the height of the rectangle.
+   * @param width   the width of the rectangle.
+   * @throws IllegalArgumentException if image with given name does not exist in model, or the
+   *                                  rectangle is empty or not inside of the image.
+   */
+  void cropImage(String name, String newName, int row, int col, int height, int width)
+          throws IllegalArgumentException;
+
   /**
    * Adjusts brightness by given delta of image with given name in model,
    * saves result in model under given new name.
@@ -73,6 +103,20 @@ public interface ImageProcessorModel {
   void adjustImageBrightness(String name, String newName, int delta)
           throws IllegalArgumentException;
 
+  /**
+   * Applies a point operation, which changes the color of each pixel based only on its own
+   * color, to the image with given name in model, and saves the result under given new name.
+   * If the new name already exists, that image will be overwritten.
+   *
+   * @param name    of image to apply the operation to.
+   * @param newName to save the result under.
+   * @param op      the operation.
+   * @throws IllegalArgumentException if image with given name does not exist in model, or the
+   *                                  operation is null.
+   */
+  void applyPointOp(String name, String newName, PointOp op)
+          throws IllegalArgumentException;
+
   /**
    * Applies a matrix multiplication to the RGB color of an image, and stores a new image,
    *   with this new coloring.
@@ -92,4 +136,46 @@ public interface ImageProcessorModel {
    */
   void filterImage(String name, String newName, double[][] kernel)
           throws IllegalArgumentException;
+
+  /**
+   * Applies a kernel-based filter to the image, reading the pixels that the kernel reaches past
+   *   the edges of the image according to the given edge mode, and stores the result under a new
+   *   name.
+   * @param name name of image to filter.
+   * @param newName name to save the filtered image under.
+   * @param kernel the kernel with which to filter the image.
+   * @param edges how pixels past the edges of the image are read.
+   * @throws IllegalArgumentException if the kernel is non-rectangular, or one of its dimensions is
+   *                                  not odd, or the edge mode is null.
+   */
+  void filterImage(String name, String newName, double[][] kernel, EdgeMode edges)
+          throws IllegalArgumentException;
+
+  /**
+   * Splits the image into mosaic tiles of solid color, placed from a given random seed, and
+   *   stores the result under a new name.
+   * @param name name of image to mosaic.
+   * @param newName name to save the mosaicked image under.
+   * @param seedCount the number of tiles.
+   * @param seed the seed of the random placement of the tiles.
+   * @param average whether each tile is the average color of the pixels it covers, rather than
+   *                the color of the pixel it grew from.
+   * @throws IllegalArgumentException if image with given name does not exist in model, or the
+   *                                  seed count is less than 1.
+   */
+  void mosaicImage(String name, String newName, int seedCount, long seed, boolean average)
+          throws IllegalArgumentException;
+
+  /**
+   * Reports which images in the model are held in memory, and which have been spilled to disk
+   *   to keep the model within its memory budget.
+   * @return the report.
+   */
+  MemoryReport getMemoryReport();
+
+  /**
+   * Lets go of every image in the model, and deletes any files it made to hold them.
+   */
+  @Override
+  void close();
 }
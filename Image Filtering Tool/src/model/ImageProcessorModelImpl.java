@@ -1,20 +1,37 @@
 package model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents an implementation of an ImageProcessorModel. It stores a mapping of names to images.
+ * Per-pixel color operations (brightness, grayscale, color transforms and other point operations)
+ *   are recorded rather
+ *   than run, so a chain of them is run as one pass over the pixels, only once the image is read
+ *   or needed by another kind of operation.
+ * Images are kept in an ImageDirectory, which spills the least recently used of them to disk
+ *   once they take more than the model's memory budget, and reads them back when they are used.
  */
 public class ImageProcessorModelImpl implements ImageProcessorModel {
 
-  final protected Map<String, Image> directory;
+  final protected ImageDirectory directory;
 
   /**
-   * Constructs the model, initializing a map with no stored images.
+   * Constructs the model, initializing a directory with no stored images and the default
+   * memory budget.
    */
   public ImageProcessorModelImpl() {
-    directory = new HashMap<String, Image>();
+    this(ImageDirectory.DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructs the model, initializing a directory with no stored images, which keeps at most
+   * the given bytes of images in memory and spills the rest to disk.
+   *
+   * @param budget the bytes of images which may be kept in memory.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ImageProcessorModelImpl(long budget) throws IllegalArgumentException {
+    directory = new ImageDirectory(budget);
   }
 
   @Override
@@ -30,44 +47,93 @@ public class ImageProcessorModelImpl implements ImageProcessorModel {
 
   @Override
   public void grayscaleImage(String name, String newName, ColorComponent comp) {
-    nameCheck(name);
-    directory.put(newName, directory.get(name).grayscale(comp));
+    transform(name, newName, image -> PipelineImage.of(image).grayscale(comp));
   }
 
   @Override
   public void flipImageHorizontal(String name, String newName) {
-    nameCheck(name);
-    directory.put(newName, directory.get(name).flipHorizontal());
+    transform(name, newName, Image::flipHorizontal);
   }
 
   @Override
   public void flipImageVertical(String name, String newName) {
-    nameCheck(name);
-    directory.put(newName, directory.get(name).flipVertical());
+    transform(name, newName, Image::flipVertical);
+  }
+
+  @Override
+  public void rotateImage(String name, String newName, boolean clockwise)
+          throws IllegalArgumentException {
+    transform(name, newName,
+        image -> clockwise ? image.rotateClockwise() : image.rotateCounterclockwise());
+  }
+
+  @Override
+  public void cropImage(String name, String newName, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    transform(name, newName, image -> image.crop(row, col, height, width));
   }
 
   @Override
   public void adjustImageBrightness(String name, String newName, int delta) {
-    nameCheck(name);
-    directory.put(newName, directory.get(name).adjustBrightness(delta));
+    transform(name, newName, image -> PipelineImage.of(image).adjustBrightness(delta));
+  }
+
+  @Override
+  public void applyPointOp(String name, String newName, PointOp op)
+          throws IllegalArgumentException {
+    transform(name, newName, image -> PipelineImage.of(image).applyPointOp(op));
   }
 
   @Override
   public void transformImageColor(String name, String newName, double[][] matrix)
           throws IllegalArgumentException {
-    nameCheck(name);
-    directory.put(newName, directory.get(name).transformColor(matrix));
+    transform(name, newName, image -> PipelineImage.of(image).transformColor(matrix));
   }
 
   @Override
   public void filterImage(String name, String newName, double[][] kernel)
           throws IllegalArgumentException {
+    transform(name, newName, image -> image.filter(kernel));
+  }
+
+  @Override
+  public void filterImage(String name, String newName, double[][] kernel, EdgeMode edges)
+          throws IllegalArgumentException {
+    transform(name, newName, image -> image.filter(kernel, edges));
+  }
+
+  @Override
+  public void mosaicImage(String name, String newName, int seedCount, long seed,
+                          boolean average) throws IllegalArgumentException {
+    transform(name, newName, image -> image.mosaic(seedCount, seed, average));
+  }
+
+  @Override
+  public MemoryReport getMemoryReport() {
+    return directory.report();
+  }
+
+  @Override
+  public void close() {
+    directory.close();
+  }
+
+  /**
+   * Makes a new image from the image with the given name, and stores it under the new name.
+   * @param name the name of the image to read.
+   * @param newName the name to store the new image under.
+   * @param operation makes the new image from the one read.
+   * @throws IllegalArgumentException if image with given name does not exist in model, or the
+   *                                  operation can not be run on it.
+   */
+  protected void transform(String name, String newName, UnaryOperator<Image> operation)
+          throws IllegalArgumentException {
     nameCheck(name);
-    directory.put(newName, directory.get(name).filter(kernel));
+    directory.put(newName, operation.apply(directory.get(name)));
   }
 
   protected void nameCheck(String name) throws IllegalArgumentException {
-    if (!directory.containsKey(name)) {
+    if (!directory.contains(name)) {
       throw new IllegalArgumentException(name + " not found.");
     }
   }
@@ -0,0 +1,158 @@
+package model;
+
+/**
+ * Helper methods for checking the kernels and color matrices that images are given.
+ */
+final class Kernels {
+
+  //relative size of the largest difference allowed between a kernel and its separated form
+  private static final double SEPARABLE_TOLERANCE = 1e-6;
+  private static final int POWER_ITERATIONS = 30;
+
+  private Kernels() {
+  }
+
+  /**
+   * Checks that a kernel can be used to filter an image.
+   * @param kernel the kernel.
+   * @throws IllegalArgumentException if the kernel is null, jagged, or has an even dimension.
+   */
+  static void checkKernel(double[][] kernel) throws IllegalArgumentException {
+    if (kernel == null) {
+      throw new IllegalArgumentException("Given kernel was null.");
+    }
+
+    if (kernel.length % 2 == 0) {
+      throw new IllegalArgumentException("Given kernel had an even dimension.");
+    }
+
+    if (kernel[0].length % 2 == 0) {
+      throw new IllegalArgumentException("Given kernel had an even dimension.");
+    }
+
+    for (int i = 1; i < kernel.length; i++) {
+      if (kernel[i] == null || kernel[0].length != kernel[i].length) {
+        throw new IllegalArgumentException("Kernel was jagged.");
+      }
+    }
+  }
+
+  /**
+   * Checks that an edge mode can be used to filter an image.
+   * @param edges the edge mode.
+   * @throws IllegalArgumentException if the edge mode is null.
+   */
+  static void checkEdgeMode(EdgeMode edges) throws IllegalArgumentException {
+    if (edges == null) {
+      throw new IllegalArgumentException("Given edge mode was null.");
+    }
+  }
+
+  /**
+   * Splits a kernel into a column of factors and a row of factors whose outer product is the
+   *   kernel, if there is such a pair within a small tolerance. Exactly separable kernels are
+   *   split exactly; nearly separable ones are split into their closest separable kernel, found
+   *   by power iteration for the largest singular value.
+   * @param kernel the kernel, which must already have been checked by checkKernel.
+   * @return {columnFactors, rowFactors}, where kernel[r][c] is about
+   *         columnFactors[r] * rowFactors[c], or null if the kernel is not separable.
+   */
+  static double[][] separate(double[][] kernel) {
+    int rows = kernel.length;
+    int cols = kernel[0].length;
+
+    int pivotRow = 0;
+    int pivotCol = 0;
+    double largest = 0.0;
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        if (Math.abs(kernel[r][c]) > largest) {
+          largest = Math.abs(kernel[r][c]);
+          pivotRow = r;
+          pivotCol = c;
+        }
+      }
+    }
+
+    double[] columnFactors = new double[rows];
+    double[] rowFactors = new double[cols];
+
+    if (largest == 0.0) {
+      return new double[][]{columnFactors, rowFactors};
+    }
+
+    //if the kernel has rank 1, every row is a multiple of the pivot row
+    for (int r = 0; r < rows; r++) {
+      columnFactors[r] = kernel[r][pivotCol];
+    }
+    for (int c = 0; c < cols; c++) {
+      rowFactors[c] = kernel[pivotRow][c] / kernel[pivotRow][pivotCol];
+    }
+
+    double tolerance = SEPARABLE_TOLERANCE * largest;
+    if (largestError(kernel, columnFactors, rowFactors) <= tolerance) {
+      return new double[][]{columnFactors, rowFactors};
+    }
+
+    for (int i = 0; i < POWER_ITERATIONS; i++) {
+      columnFactors = leastSquaresFactors(kernel, rowFactors, false);
+      rowFactors = leastSquaresFactors(kernel, columnFactors, true);
+    }
+
+    if (largestError(kernel, columnFactors, rowFactors) <= tolerance) {
+      return new double[][]{columnFactors, rowFactors};
+    }
+    return null;
+  }
+
+  //given the factors along one side, finds the best factors along the other side
+  private static double[] leastSquaresFactors(double[][] kernel, double[] known,
+                                              boolean knownIsColumn) {
+    double norm = 0.0;
+    for (double factor : known) {
+      norm += factor * factor;
+    }
+
+    double[] result = new double[knownIsColumn ? kernel[0].length : kernel.length];
+    if (norm == 0.0) {
+      return result;
+    }
+
+    for (int r = 0; r < kernel.length; r++) {
+      for (int c = 0; c < kernel[r].length; c++) {
+        if (knownIsColumn) {
+          result[c] += kernel[r][c] * known[r] / norm;
+        } else {
+          result[r] += kernel[r][c] * known[c] / norm;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static double largestError(double[][] kernel, double[] columnFactors,
+                                     double[] rowFactors) {
+    double error = 0.0;
+    for (int r = 0; r < kernel.length; r++) {
+      for (int c = 0; c < kernel[r].length; c++) {
+        error = Math.max(error, Math.abs(kernel[r][c] - columnFactors[r] * rowFactors[c]));
+      }
+    }
+    return error;
+  }
+
+  /**
+   * Checks that a matrix can be used to transform the colors of an image.
+   * @param matrix the matrix.
+   * @throws IllegalArgumentException if the matrix is not 3x3.
+   */
+  static void checkColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix.length != 3) {
+      throw new IllegalArgumentException("matrix not 3x3");
+    }
+
+    if (matrix[0].length != 3 || matrix[1].length != 3 || matrix[2].length != 3) {
+      throw new IllegalArgumentException("matrix not 3x3");
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package model;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Represents a rectangular image whose colors are stored in a file rather than in memory, as
+ *   three bytes (red, green, blue) per pixel in row-major order, the same layout as the raster of
+ *   a raw (P6) PPM file. The file is memory-mapped, so the image may be far larger than the heap,
+ *   and only the parts of it in use are paged in by the operating system.
+ * Operations work through the image a strip of rows at a time, and write their result into a new
+ *   file of their own, which is itself a valid raw PPM file, and which is deleted once the image
+ *   it holds is no longer used, or when the program exits.
+ */
+public final class MappedImage implements Image {
+
+  //mapped regions hold whole rows, and at most this many bytes each
+  private static final long CHUNK_BYTES = 1L << 28;
+  //operations read and write about this many pixels at a time
+  private static final int STRIP_PIXELS = 1 << 18;
+
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  /**
+   * Invariant: rows [i * rowsPerChunk, (i + 1) * rowsPerChunk) are stored in chunks[i].
+   * Invariant: the file is never modified through this image after construction.
+   */
+  private final int width;
+  private final int height;
+  private final int rowsPerChunk;
+  private final ByteBuffer[] chunks;
+
+  private MappedImage(FileChannel channel, FileChannel.MapMode mode, long offset, int width,
+                      int height) throws IOException {
+    this.width = width;
+    this.height = height;
+    long rowBytes = 3L * width;
+    this.rowsPerChunk = (int) Math.min(height, Math.max(1, CHUNK_BYTES / rowBytes));
+    this.chunks = new ByteBuffer[(height + this.rowsPerChunk - 1) / this.rowsPerChunk];
+    for (int i = 0; i < this.chunks.length; i++) {
+      int rows = Math.min(this.rowsPerChunk, height - i * this.rowsPerChunk);
+      this.chunks[i] = channel.map(mode, offset + i * this.rowsPerChunk * rowBytes,
+              rows * rowBytes);
+    }
+  }
+
+  /**
+   * Opens the raster of a file in place, without copying it. The raster must be three bytes
+   *   per pixel, red, green and blue, in row-major order, as in a raw PPM file whose maximum
+   *   value is 255. The file must not be changed while the image is in use.
+   * @param file the file.
+   * @param offset the position in the file of the first byte of the raster.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @return the image.
+   * @throws IOException if the file can not be opened or mapped.
+   * @throws IllegalArgumentException if a dimension is less than 1, or the file is too short to
+   *                                  hold the raster.
+   */
+  public static MappedImage open(Path file, long offset, int width, int height)
+          throws IOException, IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Given dimensions must be at least 1.");
+    }
+
+    try (FileChannel channel = FileChannel.open(file)) {
+      if (offset < 0 || channel.size() - offset < 3L * width * height) {
+        throw new IllegalArgumentException("File is too short for the given dimensions.");
+      }
+      //a mapping stays valid after its channel is closed
+      return new MappedImage(channel, FileChannel.MapMode.READ_ONLY, offset, width, height);
+    }
+  }
+
+  /**
+   * Produces a mapped version of any image, by writing it into a new file. If the image is
+   *   already a MappedImage, it is returned as is.
+   * @param image the image to convert.
+   * @return a MappedImage with the same colors as the given image.
+   * @throws IllegalArgumentException if the image is null.
+   * @throws IllegalStateException if the file for the new image can not be created.
+   */
+  public static MappedImage of(Image image)
+          throws IllegalArgumentException, IllegalStateException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    if (image instanceof MappedImage) {
+      return (MappedImage) image;
+    }
+
+    return create(image.getWidth(), image.getHeight(), stripRows(image.getWidth()),
+        (startRow, endRow, dest) -> image.getRegion(startRow, 0, endRow - startRow,
+                image.getWidth(), dest, 0, image.getWidth()));
+  }
+
+  /**
+   * Computes the colors of a strip of rows of a new image.
+   */
+  private interface Strip {
+
+    /**
+     * Computes rows startRow through endRow.
+     * @param startRow the first row.
+     * @param endRow one past the last row.
+     * @param dest the array to put the colors in, packed and in row-major order from index 0.
+     */
+    void compute(int startRow, int endRow, int[] dest);
+  }
+
+  //the number of rows of the given width that make up about STRIP_PIXELS pixels
+  private static int stripRows(int width) {
+    return Math.max(1, STRIP_PIXELS / width);
+  }
+
+  //creates a new image in a new file, computing it a strip of at most stripRows rows at a time,
+  //  with strips running in parallel
+  private static MappedImage create(int width, int height, int stripRows, Strip strip)
+          throws IllegalStateException {
+    MappedImage image;
+    try {
+      Path file = Files.createTempFile("image", ".ppm");
+      file.toFile().deleteOnExit();
+      byte[] header = ("P6\n" + width + " " + height + "\n255\n")
+              .getBytes(StandardCharsets.US_ASCII);
+      try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+        raf.write(header);
+        raf.setLength(header.length + 3L * width * height);
+        image = new MappedImage(raf.getChannel(), FileChannel.MapMode.READ_WRITE,
+                header.length, width, height);
+      }
+      //the file is only needed for as long as the image is
+      CLEANER.register(image, () -> file.toFile().delete());
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not create a file for the image.", e);
+    }
+
+    MappedImage result = image;
+    RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) -> {
+      int[] colors = new int[Math.min(stripRows, endRow - startRow) * width];
+      for (int row = startRow; row < endRow; row += stripRows) {
+        int end = Math.min(endRow, row + stripRows);
+        strip.compute(row, end, colors);
+        result.putRows(row, end, colors);
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb), PackedRGB.blue(rgb));
+  }
+
+  /**
+   * Returns the packed color of the pixel at the given location, without allocating a Pixel.
+   * @param row the row of the pixel.
+   * @param col the column of the pixel.
+   * @return the color of the pixel, packed as 0xRRGGBB.
+   * @throws IllegalArgumentException if the location is outside of this image.
+   */
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IllegalArgumentException("row or column out of range.");
+    }
+    ByteBuffer chunk = this.chunks[row / this.rowsPerChunk];
+    int index = this.indexOf(row, col);
+    return PackedRGB.pack(chunk.get(index) & 0xFF, chunk.get(index + 1) & 0xFF,
+            chunk.get(index + 2) & 0xFF);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    byte[] bytes = new byte[3 * width];
+    for (int r = 0; r < height; r++) {
+      //a duplicate has a position of its own, so threads reading at once do not share one
+      this.chunks[(row + r) / this.rowsPerChunk].duplicate().position(this.indexOf(row + r, col))
+              .get(bytes);
+      int to = offset + r * scanSize;
+      for (int c = 0, k = 0; c < width; c++, k += 3) {
+        dest[to + c] = PackedRGB.pack(bytes[k] & 0xFF, bytes[k + 1] & 0xFF, bytes[k + 2] & 0xFF);
+      }
+    }
+  }
+
+  //writes whole rows [startRow, endRow) from src, starting at index 0; only used while the
+  //  image is being created
+  private void putRows(int startRow, int endRow, int[] src) {
+    byte[] bytes = new byte[3 * this.width];
+    for (int row = startRow; row < endRow; row++) {
+      int from = (row - startRow) * this.width;
+      for (int c = 0, k = 0; c < this.width; c++, k += 3) {
+        int rgb = src[from + c];
+        bytes[k] = (byte) PackedRGB.red(rgb);
+        bytes[k + 1] = (byte) PackedRGB.green(rgb);
+        bytes[k + 2] = (byte) PackedRGB.blue(rgb);
+      }
+      this.chunks[row / this.rowsPerChunk].duplicate().position(this.indexOf(row, 0)).put(bytes);
+    }
+  }
+
+  //the index within its chunk of the first byte of a pixel
+  private int indexOf(int row, int col) {
+    return (row % this.rowsPerChunk) * 3 * this.width + 3 * col;
+  }
+
+  //reads whole rows [startRow, endRow) into dest, starting at index 0
+  private void getRows(int startRow, int endRow, int[] dest) {
+    this.getRegion(startRow, 0, endRow - startRow, this.width, dest, 0, this.width);
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, src, offset, scanSize);
+    return create(this.width, this.height, stripRows(this.width), (startRow, endRow, dest) -> {
+      this.getRows(startRow, endRow, dest);
+      for (int r = Math.max(startRow, row); r < Math.min(endRow, row + height); r++) {
+        for (int c = 0; c < width; c++) {
+          dest[(r - startRow) * this.width + col + c] =
+                  src[offset + (r - row) * scanSize + c] & 0xFFFFFF;
+        }
+      }
+    });
+  }
+
+  @Override
+  public Image flipVertical() {
+    return ViewImage.of(this).flipVertical();
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return ViewImage.of(this).flipHorizontal();
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.applyPointOp(PointOp.brightness(delta));
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) {
+    return this.applyPointOp(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public MappedImage applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (op == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+
+    return create(this.width, this.height, stripRows(this.width), (startRow, endRow, dest) -> {
+      this.getRows(startRow, endRow, dest);
+      op.apply(dest, dest, 0, (endRow - startRow) * this.width);
+    });
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.applyPointOp(PointOp.colorMatrix(matrix));
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.filter(kernel, EdgeMode.Zero);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    Kernels.checkKernel(kernel);
+    Kernels.checkEdgeMode(edges);
+
+    //each strip also reads the rows the kernel reaches past it, so strips are kept tall enough
+    //  for that to be a small part of the work
+    int stripRows = Math.max(stripRows(this.width), 4 * kernel.length);
+    return create(this.width, this.height, stripRows, (startRow, endRow, dest) -> {
+      int[] filtered = Convolution.filterRegion(this, kernel, edges, startRow, endRow, 0,
+              this.width);
+      System.arraycopy(filtered, 0, dest, 0, filtered.length);
+    });
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.mosaic(seedCount, new Random().nextLong(), false);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    if (seedCount < 1) {
+      throw new IllegalArgumentException("Seed Count < 1");
+    }
+
+    Mosaic mosaic = new Mosaic(this.width, this.height, seedCount, seed);
+    //averaging the cells takes a pass of its own, before the pass which writes them
+    return TaskMonitor.passes(average ? 2 : 1, () -> {
+      int[] colors;
+      if (average) {
+        //a first pass finds the average color of every cell, a strip of rows at a time
+        long[] sums = new long[4 * mosaic.seedCount()];
+        int stripRows = stripRows(this.width);
+        RowScheduler.getDefault().forEachRowBand(this.height, this.width, (startRow, endRow) -> {
+          long[] bandSums = new long[sums.length];
+          int[] cells = new int[Math.min(stripRows, endRow - startRow) * this.width];
+          int[] pixels = new int[cells.length];
+          for (int row = startRow; row < endRow; row += stripRows) {
+            int end = Math.min(endRow, row + stripRows);
+            mosaic.nearestSeeds(row, end, cells, 0);
+            this.getRows(row, end, pixels);
+            Mosaic.addColors(pixels, cells, 0, (end - row) * this.width, bandSums);
+          }
+          synchronized (sums) {
+            for (int i = 0; i < sums.length; i++) {
+              sums[i] += bandSums[i];
+            }
+          }
+        });
+        colors = Mosaic.averageColors(sums);
+      } else {
+        colors = new int[mosaic.seedCount()];
+        for (int i = 0; i < colors.length; i++) {
+          colors[i] = this.getRGB(mosaic.seedRow(i), mosaic.seedCol(i));
+        }
+      }
+
+      return create(this.width, this.height, stripRows(this.width), (startRow, endRow, dest) -> {
+        mosaic.nearestSeeds(startRow, endRow, dest, 0);
+        for (int i = 0; i < (endRow - startRow) * this.width; i++) {
+          dest[i] = colors[dest[i]];
+        }
+      });
+    });
+  }
+}
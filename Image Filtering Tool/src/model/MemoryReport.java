@@ -0,0 +1,68 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes where the images of an image processor model are kept at one moment: which are held
+ *   in memory, and which have been spilled to disk to keep the model within its memory budget.
+ */
+public final class MemoryReport {
+
+  private final List<String> resident;
+  private final List<String> spilled;
+  private final long used;
+  private final long budget;
+
+  /**
+   * Constructs a report.
+   * @param resident the names of the images held in memory, least recently used first.
+   * @param spilled the names of the images spilled to disk, least recently used first.
+   * @param used the bytes of memory the held images take.
+   * @param budget the bytes of memory the images may take.
+   * @throws IllegalArgumentException if either list is null.
+   */
+  public MemoryReport(List<String> resident, List<String> spilled, long used, long budget)
+          throws IllegalArgumentException {
+    if (resident == null || spilled == null) {
+      throw new IllegalArgumentException("Given names were null.");
+    }
+    this.resident = Collections.unmodifiableList(new ArrayList<>(resident));
+    this.spilled = Collections.unmodifiableList(new ArrayList<>(spilled));
+    this.used = used;
+    this.budget = budget;
+  }
+
+  /**
+   * Gets the names of the images held in memory.
+   * @return the names, least recently used first.
+   */
+  public List<String> getResident() {
+    return this.resident;
+  }
+
+  /**
+   * Gets the names of the images spilled to disk, which are read back when next used.
+   * @return the names, least recently used first.
+   */
+  public List<String> getSpilled() {
+    return this.spilled;
+  }
+
+  /**
+   * Gets the bytes of memory the images held in memory take.
+   * @return the bytes used.
+   */
+  public long getUsed() {
+    return this.used;
+  }
+
+  /**
+   * Gets the bytes of memory the images may take before some are spilled.
+   * @return the budget.
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+}
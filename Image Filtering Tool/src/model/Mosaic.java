@@ -0,0 +1,351 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Mosaics images: seeds are dropped at random pixels, and every pixel takes the color of the seed
+ *   nearest to it (the lowest numbered seed, if several are equally near), splitting the image
+ *   into Voronoi cells.
+ * To find nearest seeds quickly, the seeds are sorted into a grid of square blocks holding about
+ *   one seed each. For each block, only the seeds which could be nearest to some pixel of the
+ *   block are kept as candidates, found by searching outwards from the block one ring of blocks
+ *   at a time, and each pixel of the block then only compares those few candidates. Rows of
+ *   pixels are independent of each other, so they run in parallel, and can be worked through a
+ *   few at a time for images too large to hold in memory.
+ */
+final class Mosaic {
+
+  //above this many pixels, taken seed positions are kept in a set rather than an array
+  private static final long MAX_TAKEN_ARRAY = 1 << 26;
+
+  private final int width;
+  private final int height;
+  private final int[] seedRows;
+  private final int[] seedCols;
+  private final int blockSize;
+  private final int blockRows;
+  private final int blockCols;
+  //the seeds in block (r, c) are blockSeeds[blockStart[b]] up to blockSeeds[blockStart[b + 1]],
+  //  in increasing order, where b = r * blockCols + c
+  private final int[] blockStart;
+  private final int[] blockSeeds;
+
+  /**
+   * Drops the seeds for a mosaic of an image of the given size.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @param seedCount the number of seeds, which must be at least 1. If greater than the number
+   *                  of pixels, every pixel becomes a seed.
+   * @param seed the seed of the random placement, so that the same seed always gives the same
+   *             mosaic of the same image.
+   */
+  Mosaic(int width, int height, int seedCount, long seed) {
+    this.width = width;
+    this.height = height;
+
+    long area = (long) width * height;
+    long[] seeds = dropSeeds(area, (int) Math.min(seedCount, area), seed);
+    this.blockSize = (int) Math.max(1, Math.sqrt((double) area / seeds.length));
+    this.blockRows = (height + this.blockSize - 1) / this.blockSize;
+    this.blockCols = (width + this.blockSize - 1) / this.blockSize;
+
+    this.seedRows = new int[seeds.length];
+    this.seedCols = new int[seeds.length];
+    this.blockStart = new int[this.blockRows * this.blockCols + 1];
+    for (int i = 0; i < seeds.length; i++) {
+      this.seedRows[i] = (int) (seeds[i] / width);
+      this.seedCols[i] = (int) (seeds[i] % width);
+      this.blockStart[this.blockOf(i) + 1]++;
+    }
+    for (int b = 0; b < this.blockRows * this.blockCols; b++) {
+      this.blockStart[b + 1] += this.blockStart[b];
+    }
+
+    this.blockSeeds = new int[seeds.length];
+    int[] next = Arrays.copyOf(this.blockStart, this.blockStart.length - 1);
+    for (int i = 0; i < seeds.length; i++) {
+      this.blockSeeds[next[this.blockOf(i)]++] = i;
+    }
+  }
+
+  /**
+   * Mosaics a raster.
+   * @param src the raster, packed and in row-major order.
+   * @param width the width of the raster.
+   * @param height the height of the raster.
+   * @param seedCount the number of seeds, which must be at least 1.
+   * @param seed the seed of the random placement.
+   * @param average whether each cell is the average color of its pixels, rather than the color
+   *                of the pixel its seed was dropped on.
+   * @return a new raster of the same size, mosaicked.
+   */
+  static int[] mosaic(int[] src, int width, int height, int seedCount, long seed,
+                      boolean average) {
+    Mosaic mosaic = new Mosaic(width, height, seedCount, seed);
+
+    //first every pixel is set to the number of its nearest seed, then to that seed's color
+    return TaskMonitor.passes(2, () -> {
+      int[] out = new int[src.length];
+      RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) ->
+              mosaic.nearestSeeds(startRow, endRow, out, startRow * width));
+
+      int[] colors;
+      if (average) {
+        long[] sums = new long[4 * mosaic.seedCount()];
+        addColors(src, out, 0, src.length, sums);
+        colors = averageColors(sums);
+      } else {
+        colors = new int[mosaic.seedCount()];
+        for (int i = 0; i < colors.length; i++) {
+          colors[i] = src[mosaic.seedRow(i) * width + mosaic.seedCol(i)];
+        }
+      }
+
+      RowScheduler.getDefault().forEachRowBand(height, width, (startRow, endRow) -> {
+        for (int i = startRow * width; i < endRow * width; i++) {
+          out[i] = colors[out[i]];
+        }
+      });
+      return out;
+    });
+  }
+
+  //picks count distinct pixel indices at random, skipping ahead from any already taken
+  private static long[] dropSeeds(long area, int count, long seed) {
+    Random rand = new Random(seed);
+    boolean[] takenArray = area <= MAX_TAKEN_ARRAY ? new boolean[(int) area] : null;
+    Set<Long> takenSet = takenArray == null ? new HashSet<>() : null;
+    long[] seeds = new long[count];
+    for (int i = 0; i < count; i++) {
+      long index = area <= Integer.MAX_VALUE ? rand.nextInt((int) area)
+              : Math.floorMod(rand.nextLong(), area);
+      while (takenArray != null ? takenArray[(int) index] : takenSet.contains(index)) {
+        index = (index + 1) % area;
+      }
+      if (takenArray != null) {
+        takenArray[(int) index] = true;
+      } else {
+        takenSet.add(index);
+      }
+      seeds[i] = index;
+    }
+    return seeds;
+  }
+
+  /**
+   * Adds the colors of some pixels to the running sums for the cells they are in.
+   * @param pixels the colors of the pixels, packed.
+   * @param cells the number of the nearest seed of each pixel.
+   * @param offset the index of the first pixel in pixels and cells.
+   * @param length the number of pixels.
+   * @param sums the red, green and blue sums and the pixel count of seed i, at indices 4 * i
+   *             through 4 * i + 3.
+   */
+  static void addColors(int[] pixels, int[] cells, int offset, int length, long[] sums) {
+    for (int i = offset; i < offset + length; i++) {
+      int cell = 4 * cells[i];
+      sums[cell] += PackedRGB.red(pixels[i]);
+      sums[cell + 1] += PackedRGB.green(pixels[i]);
+      sums[cell + 2] += PackedRGB.blue(pixels[i]);
+      sums[cell + 3]++;
+    }
+  }
+
+  /**
+   * Finds the rounded average color of each cell from the sums made by addColors.
+   * @param sums the sums over every pixel of the image.
+   * @return the packed average color of each cell.
+   */
+  static int[] averageColors(long[] sums) {
+    int[] colors = new int[sums.length / 4];
+    for (int i = 0; i < colors.length; i++) {
+      //every seed is nearest to at least its own pixel, so the count is never 0
+      long count = sums[4 * i + 3];
+      long half = count / 2;
+      colors[i] = PackedRGB.pack((int) ((sums[4 * i] + half) / count),
+              (int) ((sums[4 * i + 1] + half) / count), (int) ((sums[4 * i + 2] + half) / count));
+    }
+    return colors;
+  }
+
+  /**
+   * Gets the number of seeds, which is less than asked for only if the image is smaller.
+   * @return the number of seeds.
+   */
+  int seedCount() {
+    return this.seedRows.length;
+  }
+
+  /**
+   * Gets the row of a seed.
+   * @param seed the number of the seed.
+   * @return the row.
+   */
+  int seedRow(int seed) {
+    return this.seedRows[seed];
+  }
+
+  /**
+   * Gets the column of a seed.
+   * @param seed the number of the seed.
+   * @return the column.
+   */
+  int seedCol(int seed) {
+    return this.seedCols[seed];
+  }
+
+  /**
+   * Finds the nearest seed of every pixel in the given rows.
+   * @param startRow the first row.
+   * @param endRow one past the last row.
+   * @param cells the array to put the number of each pixel's nearest seed in, in row-major order.
+   * @param offset the index in cells of the first pixel of the first row.
+   */
+  void nearestSeeds(int startRow, int endRow, int[] cells, int offset) {
+    this.nearestSeeds(startRow, endRow, 0, this.width, cells, offset);
+  }
+
+  /**
+   * Finds the nearest seed of every pixel in the given rectangle.
+   * @param startRow the first row.
+   * @param endRow one past the last row.
+   * @param startCol the first column.
+   * @param endCol one past the last column.
+   * @param cells the array to put the number of each pixel's nearest seed in, in row-major order
+   *              with rows endCol - startCol apart.
+   * @param offset the index in cells of the pixel at (startRow, startCol).
+   */
+  void nearestSeeds(int startRow, int endRow, int startCol, int endCol, int[] cells,
+                    int offset) {
+    int[] candidates = new int[this.seedCount()];
+    for (int blockRow = startRow / this.blockSize; blockRow * this.blockSize < endRow;
+         blockRow++) {
+      for (int blockCol = startCol / this.blockSize; blockCol * this.blockSize < endCol;
+           blockCol++) {
+        int count = this.candidates(blockRow, blockCol, candidates);
+        this.assign(blockRow, blockCol, candidates, count, cells, offset, startRow, endRow,
+                startCol, endCol);
+      }
+    }
+  }
+
+  private int blockOf(int seed) {
+    return (this.seedRows[seed] / this.blockSize) * this.blockCols
+            + this.seedCols[seed] / this.blockSize;
+  }
+
+  //finds every seed which is nearest to some pixel of the given block, and possibly a few
+  //  more, in increasing order, returning how many were put into candidates
+  private int candidates(int blockRow, int blockCol, int[] candidates) {
+    int top = blockRow * this.blockSize;
+    int left = blockCol * this.blockSize;
+    int bottom = Math.min(this.height, top + this.blockSize) - 1;
+    int right = Math.min(this.width, left + this.blockSize) - 1;
+
+    //bound is the least, over the seeds found so far, of how far the farthest pixel of the
+    //  block is from the seed, so every pixel has a seed within bound, and no seed further
+    //  than bound from the whole block is nearest to any of its pixels
+    long bound = Long.MAX_VALUE;
+    int rings = 0;
+    for (int ring = 0; this.mayReach(ring, bound, blockRow, blockCol); ring++) {
+      for (int b : this.ring(blockRow, blockCol, ring)) {
+        for (int k = this.blockStart[b]; k < this.blockStart[b + 1]; k++) {
+          int s = this.blockSeeds[k];
+          bound = Math.min(bound, farthest(this.seedRows[s], this.seedCols[s],
+                  top, left, bottom, right));
+        }
+      }
+      rings = ring + 1;
+    }
+
+    int count = 0;
+    for (int ring = 0; ring < rings; ring++) {
+      for (int b : this.ring(blockRow, blockCol, ring)) {
+        for (int k = this.blockStart[b]; k < this.blockStart[b + 1]; k++) {
+          int s = this.blockSeeds[k];
+          if (nearest(this.seedRows[s], this.seedCols[s], top, left, bottom, right) <= bound) {
+            candidates[count++] = s;
+          }
+        }
+      }
+    }
+    Arrays.sort(candidates, 0, count);
+    return count;
+  }
+
+  //whether any block in the given ring exists and could hold a seed within bound of the
+  //  center block, whose seeds are at least (ring - 1) * blockSize + 1 away along one axis
+  private boolean mayReach(int ring, long bound, int blockRow, int blockCol) {
+    if (ring > Math.max(Math.max(blockRow, this.blockRows - 1 - blockRow),
+            Math.max(blockCol, this.blockCols - 1 - blockCol))) {
+      return false;
+    }
+    long gap = ring == 0 ? 0 : (long) (ring - 1) * this.blockSize + 1;
+    return gap * gap <= bound;
+  }
+
+  //the blocks exactly ring blocks away from the given block, which are inside the grid
+  private int[] ring(int blockRow, int blockCol, int ring) {
+    int[] blocks = new int[ring == 0 ? 1 : 8 * ring];
+    int count = 0;
+    for (int r = blockRow - ring; r <= blockRow + ring; r++) {
+      if (r < 0 || r >= this.blockRows) {
+        continue;
+      }
+      //the top and bottom rows of the ring are whole, the others only have their two ends
+      int step = (r == blockRow - ring || r == blockRow + ring) ? 1 : Math.max(1, 2 * ring);
+      for (int c = blockCol - ring; c <= blockCol + ring; c += step) {
+        if (c >= 0 && c < this.blockCols) {
+          blocks[count++] = r * this.blockCols + c;
+        }
+      }
+    }
+    return Arrays.copyOf(blocks, count);
+  }
+
+  //sets each pixel of the block in rows [startRow, endRow) and columns [startCol, endCol) to
+  //  the number of the nearest of the given candidates, putting the pixel at (row, col) at
+  //  cells[offset + (row - startRow) * (endCol - startCol) + col - startCol]
+  private void assign(int blockRow, int blockCol, int[] candidates, int count, int[] cells,
+                      int offset, int startRow, int endRow, int startCol, int endCol) {
+    int top = Math.max(startRow, blockRow * this.blockSize);
+    int left = Math.max(startCol, blockCol * this.blockSize);
+    int bottom = Math.min(endRow, (blockRow + 1) * this.blockSize);
+    int right = Math.min(endCol, (blockCol + 1) * this.blockSize);
+    for (int row = top; row < bottom; row++) {
+      int rowStart = offset + (row - startRow) * (endCol - startCol) - startCol;
+      for (int col = left; col < right; col++) {
+        int closest = candidates[0];
+        long closestDistance = Long.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+          int s = candidates[k];
+          long dr = row - this.seedRows[s];
+          long dc = col - this.seedCols[s];
+          long distance = dr * dr + dc * dc;
+          if (distance < closestDistance) {
+            closest = s;
+            closestDistance = distance;
+          }
+        }
+        cells[rowStart + col] = closest;
+      }
+    }
+  }
+
+  //the squared distance from a point to the nearest pixel of a block
+  private static long nearest(int row, int col, int top, int left, int bottom, int right) {
+    long dr = Math.max(0, Math.max(top - row, row - bottom));
+    long dc = Math.max(0, Math.max(left - col, col - right));
+    return dr * dr + dc * dc;
+  }
+
+  //the squared distance from a point to the farthest pixel of a block
+  private static long farthest(int row, int col, int top, int left, int bottom, int right) {
+    long dr = Math.max(row - top, bottom - row);
+    long dc = Math.max(col - left, right - col);
+    return dr * dr + dc * dc;
+  }
+}
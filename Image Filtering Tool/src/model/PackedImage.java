@@ -0,0 +1,222 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Represents a rectangular image with at least 1 pixel, whose colors are stored in a single
+ *   array of packed ints (see PackedRGB) in row-major order, rather than as individual Pixel
+ *   objects. Produces modified versions of itself in the same representation, except for flips,
+ *   rotations and crops, which are views that read its pixels in place.
+ */
+public class PackedImage implements Image {
+
+  /**
+   * Invariant: data.length == width * height.
+   * Invariant: the color of the pixel at (row, col) is data[row * width + col].
+   * Invariant: data is never modified after construction.
+   */
+  private final int[] data;
+  private final int width;
+  private final int height;
+
+  /**
+   * Constructs the image from an array of packed colors. The array is used as is, not copied,
+   *   so it must not be modified after being given to this image.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @param data the colors of the image, in row-major order, packed as 0xRRGGBB.
+   * @throws IllegalArgumentException if data is null, a dimension is less than 1, or the length
+   *                                  of data is not width * height.
+   */
+  public PackedImage(int width, int height, int[] data) throws IllegalArgumentException {
+    if (data == null) {
+      throw new IllegalArgumentException("Given array of pixels was null.");
+    }
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Given dimensions must be at least 1.");
+    }
+
+    if ((long) width * height != data.length) {
+      throw new IllegalArgumentException("Given array does not match the given dimensions.");
+    }
+
+    this.data = data;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Produces a packed version of any image. If the image is already a PackedImage, it is
+   *   returned as is.
+   * @param image the image to convert.
+   * @return a PackedImage with the same colors as the given image.
+   * @throws IllegalArgumentException if the image is null, or has more pixels than an array can
+   *                                  hold.
+   */
+  public static PackedImage of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    if (image instanceof PackedImage) {
+      return (PackedImage) image;
+    }
+
+    long size = (long) image.getWidth() * image.getHeight();
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Given image has too many pixels to pack.");
+    }
+
+    int[] data = new int[(int) size];
+    image.getRegion(0, 0, image.getHeight(), image.getWidth(), data, 0, image.getWidth());
+
+    return new PackedImage(image.getWidth(), image.getHeight(), data);
+  }
+
+  /**
+   * Gets the array of colors of this image itself, rather than a copy, so that it can back a
+   *   BufferedImage. Its values may have bits set above the lowest 24, which are not part of the
+   *   colors. The array must not be modified.
+   * @return the colors of this image, in row-major order.
+   */
+  int[] sharedData() {
+    return this.data;
+  }
+
+  /**
+   * Estimates the bytes of heap this image takes.
+   * @return the size of its array of colors.
+   */
+  long heapBytes() {
+    return 4L * this.data.length;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb), PackedRGB.blue(rgb));
+  }
+
+  /**
+   * Returns the packed color of the pixel at the given location, without allocating a Pixel.
+   * @param row the row of the pixel.
+   * @param col the column of the pixel.
+   * @return the color of the pixel, packed as 0xRRGGBB.
+   * @throws IllegalArgumentException if the location is outside of this image.
+   */
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IllegalArgumentException("row or column out of range.");
+    }
+    return this.data[row * this.width + col] & 0xFFFFFF;
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    for (int r = 0; r < height; r++) {
+      int from = (row + r) * this.width + col;
+      int to = offset + r * scanSize;
+      for (int c = 0; c < width; c++) {
+        dest[to + c] = this.data[from + c] & 0xFFFFFF;
+      }
+    }
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, src, offset, scanSize);
+    int[] newData = this.data.clone();
+    for (int r = 0; r < height; r++) {
+      int to = (row + r) * this.width + col;
+      int from = offset + r * scanSize;
+      for (int c = 0; c < width; c++) {
+        newData[to + c] = src[from + c] & 0xFFFFFF;
+      }
+    }
+    return new PackedImage(this.width, this.height, newData);
+  }
+
+  @Override
+  public Image flipVertical() {
+    return ViewImage.of(this).flipVertical();
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return ViewImage.of(this).flipHorizontal();
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.applyPointOp(PointOp.brightness(delta));
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) {
+    return this.applyPointOp(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public PackedImage applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (op == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+
+    int[] newData = new int[this.data.length];
+    this.forEachRowBand((startRow, endRow) ->
+            op.apply(this.data, newData, startRow * this.width, endRow * this.width));
+    return new PackedImage(this.width, this.height, newData);
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.applyPointOp(PointOp.colorMatrix(matrix));
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.filter(kernel, EdgeMode.Zero);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    Kernels.checkKernel(kernel);
+    Kernels.checkEdgeMode(edges);
+    return new PackedImage(this.width, this.height,
+            Convolution.filter(this.data, this.width, this.height, kernel, edges));
+  }
+
+  private void forEachRowBand(RowScheduler.RowBand band) {
+    RowScheduler.getDefault().forEachRowBand(this.height, this.width, band);
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.mosaic(seedCount, new Random().nextLong(), false);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    if (seedCount < 1) {
+      throw new IllegalArgumentException("Seed Count < 1");
+    }
+
+    return new PackedImage(this.width, this.height,
+            Mosaic.mosaic(this.data, this.width, this.height, seedCount, seed, average));
+  }
+}
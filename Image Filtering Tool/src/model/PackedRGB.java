@@ -0,0 +1,105 @@
+package model;
+
+/**
+ * Helper methods for working with colors packed into a single int as 0xRRGGBB, the layout used
+ *   by PackedImage and by java.awt's TYPE_INT_RGB images. Any bits above the lowest 24 are
+ *   ignored when reading a packed color.
+ */
+public final class PackedRGB {
+
+  private PackedRGB() {
+  }
+
+  /**
+   * Packs the three given channel values into a single int.
+   * @param r red value, in [0,255].
+   * @param g green value, in [0,255].
+   * @param b blue value, in [0,255].
+   * @return the packed color.
+   */
+  public static int pack(int r, int g, int b) {
+    return (r << 16) | (g << 8) | b;
+  }
+
+  /**
+   * Gets the red value of a packed color.
+   * @param rgb the packed color.
+   * @return its red value, in [0,255].
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Gets the green value of a packed color.
+   * @param rgb the packed color.
+   * @return its green value, in [0,255].
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Gets the blue value of a packed color.
+   * @param rgb the packed color.
+   * @return its blue value, in [0,255].
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Gets a specified component (R,G,B,Luma,Intensity,Value) of a packed color, computed the same
+   *   way as RGBPixel computes it.
+   * @param rgb the packed color.
+   * @param comp Color component to fetch.
+   * @return the value of this component for this color.
+   */
+  public static int component(int rgb, ColorComponent comp) {
+    int r = red(rgb);
+    int g = green(rgb);
+    int b = blue(rgb);
+    switch (comp) {
+      case Red:
+        return r;
+      case Green:
+        return g;
+      case Blue:
+        return b;
+      case Luma:
+        return (int) Math.round(0.2126 * r + 0.7152 * g + 0.0722 * b);
+      case Value:
+        return Math.max(r, Math.max(g, b));
+      case Intensity:
+        return (r + g + b) / 3;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Clamps a channel value into [0,255].
+   * @param value the value to clamp.
+   * @return 0 if value is negative, 255 if value is above 255, otherwise value.
+   */
+  public static int clamp(int value) {
+    if (value < 0) {
+      return 0;
+    } else if (value > 255) {
+      return 255;
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Packs a pixel's color into a single int.
+   * @param pixel the pixel.
+   * @return the packed color of the pixel.
+   */
+  public static int of(Pixel pixel) {
+    return pack(pixel.getComponent(ColorComponent.Red),
+            pixel.getComponent(ColorComponent.Green),
+            pixel.getComponent(ColorComponent.Blue));
+  }
+}
@@ -0,0 +1,170 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Represents an image as a source image followed by per-pixel color operations (brightness,
+ *   grayscale, color matrices and any other PointOp) which have not been run yet. Adding another
+ *   such operation only combines it into the recorded PointOp, which is run in a single pass the
+ *   first time the pixels of the image are needed, whether to read them or for an operation like
+ *   filter which reads neighboring pixels. The result of that pass is kept, so it is only ever
+ *   run once, even if several threads need the pixels at the same time. A source which is not held
+ *   in memory (a MappedImage or a TiledImage, or a view of one) is not copied into memory either;
+ *   the operation is handed to it instead, so that it runs a strip or a tile at a time.
+ */
+final class PipelineImage implements Image {
+
+  private final Image source;
+  private final PointOp op;
+  private volatile Image result;
+
+  private PipelineImage(Image source, PointOp op) {
+    this.source = source;
+    this.op = op;
+  }
+
+  /**
+   * Produces a version of an image whose per-pixel color operations are recorded rather than run.
+   *   If the image already records its operations, it is returned as is.
+   * @param image the image.
+   * @return a pipeline with the given image as its source, and no operations yet.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  static PipelineImage of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    if (image instanceof PipelineImage) {
+      return (PipelineImage) image;
+    }
+
+    return new PipelineImage(image, null);
+  }
+
+  //records one more operation, starting from the pixels of this image if they already exist
+  private PipelineImage then(PointOp next) {
+    Image done = this.result;
+    if (done != null) {
+      return new PipelineImage(done, next);
+    }
+
+    return new PipelineImage(this.source, this.op == null ? next : this.op.then(next));
+  }
+
+  /**
+   * Gets the images this pipeline keeps alive: its source, and its result once it has been run.
+   * @return those images.
+   */
+  List<Image> retained() {
+    Image done = this.result;
+    return done == null ? List.of(this.source) : List.of(this.source, done);
+  }
+
+  /**
+   * Runs the recorded operations, if they have not been run already.
+   * @return an image with every recorded operation applied to the source.
+   */
+  Image materialize() {
+    Image done = this.result;
+    if (done == null) {
+      synchronized (this) {
+        done = this.result;
+        if (done == null) {
+          if (this.source instanceof MappedImage || this.source instanceof TiledImage
+                  || this.source instanceof ViewImage && ((ViewImage) this.source).isOffHeap()) {
+            done = this.op == null ? this.source : this.source.applyPointOp(this.op);
+          } else {
+            done = PackedImage.of(this.source);
+            if (this.op != null) {
+              done = done.applyPointOp(this.op);
+            }
+          }
+          this.result = done;
+        }
+      }
+    }
+    return done;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.source.getHeight();
+  }
+
+  @Override
+  public int getWidth() {
+    return this.source.getWidth();
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    return this.materialize().getPixelAt(row, col);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest, int offset,
+                        int scanSize) throws IllegalArgumentException {
+    this.materialize().getRegion(row, col, height, width, dest, offset, scanSize);
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width, int[] src, int offset,
+                          int scanSize) throws IllegalArgumentException {
+    return this.materialize().withRegion(row, col, height, width, src, offset, scanSize);
+  }
+
+  @Override
+  public Image flipVertical() {
+    return ViewImage.of(this).flipVertical();
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return ViewImage.of(this).flipHorizontal();
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.then(PointOp.brightness(delta));
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) throws IllegalArgumentException {
+    return this.then(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public Image applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (op == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+    return this.then(op);
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.then(PointOp.colorMatrix(matrix));
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.materialize().filter(kernel);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    return this.materialize().filter(kernel, edges);
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.materialize().mosaic(seedCount);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    return this.materialize().mosaic(seedCount, seed, average);
+  }
+}
@@ -0,0 +1,427 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Represents an operation which changes the color of each pixel of an image based only on that
+ *   pixel's own color, compiled into lookup tables so that applying it costs a few table reads
+ *   per pixel no matter how it was defined.
+ * Operations on each channel separately (brightness, gamma, levels, curves) become one 256-entry
+ *   table per channel. Operations which mix the channels become tables too: a color matrix
+ *   becomes nine tables of products, which are summed, rounded and clamped exactly as a direct
+ *   multiplication would be. Chaining operations with then() folds the per-channel tables into
+ *   their neighbors, so a chain costs no more than the operations in it which mix channels.
+ */
+public final class PointOp {
+
+  private static final int[] IDENTITY = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      IDENTITY[i] = i;
+    }
+  }
+
+  private final Stage[] stages;
+
+  private PointOp(Stage... stages) {
+    this.stages = stages;
+  }
+
+  /**
+   * Produces the operation which leaves every color as it is.
+   * @return the identity operation.
+   */
+  public static PointOp identity() {
+    return new PointOp(Stage.channels(IDENTITY, IDENTITY, IDENTITY));
+  }
+
+  /**
+   * Produces the operation which adds a value to every channel, clamping the results.
+   * @param delta the amount to change each channel by. Can be positive or negative.
+   * @return the brightness operation.
+   */
+  public static PointOp brightness(int delta) {
+    int[] table = new int[256];
+    for (int i = 0; i < 256; i++) {
+      table[i] = PackedRGB.clamp(i + delta);
+    }
+    return new PointOp(Stage.channels(table, table, table));
+  }
+
+  /**
+   * Produces the operation which grayscales a color by one of its components, computed the
+   *   same way as PackedRGB.component computes it.
+   * @param comp the component to grayscale by.
+   * @return the grayscale operation.
+   * @throws IllegalArgumentException if the component is null.
+   */
+  public static PointOp grayscale(ColorComponent comp) throws IllegalArgumentException {
+    if (comp == null) {
+      throw new IllegalArgumentException("Given component was null.");
+    }
+
+    switch (comp) {
+      case Red:
+        return colorMatrix(new double[][]{{1, 0, 0}, {1, 0, 0}, {1, 0, 0}});
+      case Green:
+        return colorMatrix(new double[][]{{0, 1, 0}, {0, 1, 0}, {0, 1, 0}});
+      case Blue:
+        return colorMatrix(new double[][]{{0, 0, 1}, {0, 0, 1}, {0, 0, 1}});
+      case Luma:
+        return colorMatrix(new double[][]{
+            {0.2126, 0.7152, 0.0722},
+            {0.2126, 0.7152, 0.0722},
+            {0.2126, 0.7152, 0.0722}});
+      case Value:
+        return new PointOp(Stage.gray(Stage.VALUE));
+      case Intensity:
+      default:
+        return new PointOp(Stage.gray(Stage.INTENSITY));
+    }
+  }
+
+  /**
+   * Produces the operation which multiplies a color by a 3x3 matrix, rounding and clamping
+   *   each channel of the result.
+   * @param matrix the matrix. It is read once, when this is called.
+   * @return the color matrix operation.
+   * @throws IllegalArgumentException if the matrix is not 3x3.
+   */
+  public static PointOp colorMatrix(double[][] matrix) throws IllegalArgumentException {
+    Kernels.checkColorMatrix(matrix);
+    return new PointOp(Stage.matrix(matrix));
+  }
+
+  /**
+   * Produces the operation which applies gamma correction to every channel: each channel,
+   *   scaled to [0,1], is raised to the power 1 / gamma. A gamma above 1 brightens the midtones
+   *   and a gamma below 1 darkens them, while black and white stay the same.
+   * @param gamma the gamma.
+   * @return the gamma operation.
+   * @throws IllegalArgumentException if gamma is not a positive number.
+   */
+  public static PointOp gamma(double gamma) throws IllegalArgumentException {
+    return levels(0, 255, gamma, 0, 255);
+  }
+
+  /**
+   * Produces the operation which remaps the range of every channel: values at or below
+   *   inputBlack become outputBlack, values at or above inputWhite become outputWhite, and values
+   *   in between are scaled into [0,1], gamma corrected as by gamma(), and scaled into the
+   *   output range.
+   * @param inputBlack the input value which becomes outputBlack.
+   * @param inputWhite the input value which becomes outputWhite.
+   * @param gamma the gamma correction for values in between.
+   * @param outputBlack the darkest output value.
+   * @param outputWhite the lightest output value.
+   * @return the levels operation.
+   * @throws IllegalArgumentException if a value is outside of [0,255], inputBlack is not below
+   *                                  inputWhite, or gamma is not a positive number.
+   */
+  public static PointOp levels(int inputBlack, int inputWhite, double gamma,
+                               int outputBlack, int outputWhite) throws IllegalArgumentException {
+    if (inputBlack < 0 || inputWhite > 255 || inputBlack >= inputWhite) {
+      throw new IllegalArgumentException("Input levels must satisfy 0 <= black < white <= 255.");
+    }
+    if (outputBlack < 0 || outputBlack > 255 || outputWhite < 0 || outputWhite > 255) {
+      throw new IllegalArgumentException("Output levels must be within [0,255].");
+    }
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Gamma must be a positive number.");
+    }
+
+    int[] table = new int[256];
+    for (int i = 0; i < 256; i++) {
+      double t = (i - inputBlack) / (double) (inputWhite - inputBlack);
+      t = Math.pow(Math.min(1.0, Math.max(0.0, t)), 1.0 / gamma);
+      table[i] = PackedRGB.clamp((int) Math.round(outputBlack + t * (outputWhite - outputBlack)));
+    }
+    return new PointOp(Stage.channels(table, table, table));
+  }
+
+  /**
+   * Produces the operation which maps every channel through a tone curve, given by control
+   *   points which the curve passes through in straight lines. Inputs before the first point or
+   *   after the last one keep the output of that point.
+   * @param inputs the input value of each control point, in increasing order.
+   * @param outputs the output value of each control point.
+   * @return the tone curve operation.
+   * @throws IllegalArgumentException if the arrays are null, empty or of different lengths, a
+   *                                  value is outside of [0,255], or the inputs are not
+   *                                  strictly increasing.
+   */
+  public static PointOp curve(int[] inputs, int[] outputs) throws IllegalArgumentException {
+    if (inputs == null || outputs == null || inputs.length == 0
+            || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("Curve needs the same positive number of inputs and "
+              + "outputs.");
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      if (inputs[i] < 0 || inputs[i] > 255 || outputs[i] < 0 || outputs[i] > 255) {
+        throw new IllegalArgumentException("Curve points must be within [0,255].");
+      }
+      if (i > 0 && inputs[i] <= inputs[i - 1]) {
+        throw new IllegalArgumentException("Curve inputs must be strictly increasing.");
+      }
+    }
+
+    int[] table = new int[256];
+    int point = 0;
+    for (int i = 0; i < 256; i++) {
+      while (point < inputs.length && inputs[point] < i) {
+        point++;
+      }
+      if (point == 0) {
+        table[i] = outputs[0];
+      } else if (point == inputs.length) {
+        table[i] = outputs[inputs.length - 1];
+      } else {
+        double t = (i - inputs[point - 1]) / (double) (inputs[point] - inputs[point - 1]);
+        table[i] = (int) Math.round(outputs[point - 1]
+                + t * (outputs[point] - outputs[point - 1]));
+      }
+    }
+    return new PointOp(Stage.channels(table, table, table));
+  }
+
+  /**
+   * Produces the levels operation which stretches the colors of an image with the given
+   *   histogram to fill [0,255], ignoring the darkest and lightest half a percent of each channel.
+   * @param histogram the histogram of the image to stretch.
+   * @return the levels operation, or the identity if the image has a single value.
+   * @throws IllegalArgumentException if the histogram is null.
+   */
+  public static PointOp autoLevels(Histogram histogram) throws IllegalArgumentException {
+    return autoLevels(histogram, 0.005);
+  }
+
+  /**
+   * Produces the levels operation which stretches the colors of an image with the given
+   *   histogram to fill [0,255]. The darkest and lightest clip fraction of each channel are
+   *   ignored in finding its range, so that a few stray pixels do not hold the range in place.
+   *   The same levels apply to every channel, so the balance of colors is kept.
+   * @param histogram the histogram of the image to stretch.
+   * @param clip the fraction of pixels at each end of each channel to ignore, in [0,0.5).
+   * @return the levels operation, or the identity if the image has a single value.
+   * @throws IllegalArgumentException if the histogram is null or clip is outside of [0,0.5).
+   */
+  public static PointOp autoLevels(Histogram histogram, double clip)
+          throws IllegalArgumentException {
+    if (histogram == null) {
+      throw new IllegalArgumentException("Given histogram was null.");
+    }
+    if (!(clip >= 0 && clip < 0.5)) {
+      throw new IllegalArgumentException("Clip must be within [0,0.5).");
+    }
+
+    int black = 255;
+    int white = 0;
+    for (ColorComponent comp : new ColorComponent[]{ColorComponent.Red, ColorComponent.Green,
+        ColorComponent.Blue}) {
+      black = Math.min(black, histogram.percentile(comp, clip));
+      white = Math.max(white, histogram.percentile(comp, 1 - clip));
+    }
+    if (black >= white) {
+      return identity();
+    }
+    return levels(black, white, 1.0, 0, 255);
+  }
+
+  /**
+   * Produces the operation which applies this operation, and then the given one.
+   * @param next the operation to apply after this one.
+   * @return the combined operation.
+   * @throws IllegalArgumentException if next is null.
+   */
+  public PointOp then(PointOp next) throws IllegalArgumentException {
+    if (next == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+
+    Stage last = this.stages[this.stages.length - 1];
+    Stage first = next.stages[0];
+
+    Stage[] combined;
+    if (first.mix == Stage.NONE) {
+      //the next operation starts by changing each channel, which can be done by this one's
+      //  output tables instead
+      combined = Arrays.copyOf(this.stages, this.stages.length + next.stages.length - 1);
+      combined[this.stages.length - 1] = last.withOutputs(first.outputs);
+      System.arraycopy(next.stages, 1, combined, this.stages.length, next.stages.length - 1);
+    } else if (last.mix == Stage.NONE) {
+      //this operation only changes each channel, which the next one can do as it reads them
+      combined = Arrays.copyOf(this.stages, this.stages.length - 1 + next.stages.length);
+      combined[this.stages.length - 1] = first.withInputs(last.outputs);
+      System.arraycopy(next.stages, 1, combined, this.stages.length, next.stages.length - 1);
+    } else {
+      combined = Arrays.copyOf(this.stages, this.stages.length + next.stages.length);
+      System.arraycopy(next.stages, 0, combined, this.stages.length, next.stages.length);
+    }
+    return new PointOp(combined);
+  }
+
+  /**
+   * Applies this operation to one packed color.
+   * @param rgb the packed color.
+   * @return the new packed color.
+   */
+  public int apply(int rgb) {
+    for (Stage stage : this.stages) {
+      rgb = stage.apply(rgb);
+    }
+    return rgb;
+  }
+
+  /**
+   * Applies this operation to a range of a raster of packed colors.
+   * @param src the colors to read.
+   * @param dest the array to write the new colors into, which may be src.
+   * @param from the first index to change.
+   * @param to one past the last index to change.
+   */
+  void apply(int[] src, int[] dest, int from, int to) {
+    if (this.stages.length == 1) {
+      Stage stage = this.stages[0];
+      for (int i = from; i < to; i++) {
+        dest[i] = stage.apply(src[i]);
+      }
+    } else {
+      for (int i = from; i < to; i++) {
+        dest[i] = this.apply(src[i]);
+      }
+    }
+  }
+
+  /**
+   * One step of an operation: an optional mix of the channels, whose inputs have already been
+   *   passed through any per-channel tables before it, followed by one table per channel.
+   */
+  private static final class Stage {
+
+    static final int NONE = 0;
+    static final int MATRIX = 1;
+    static final int INTENSITY = 2;
+    static final int VALUE = 3;
+
+    final int mix;
+    //for MATRIX: products[(out * 3 + in) * 256 + value] is matrix[out][in] times value
+    final double[] products;
+    //for INTENSITY and VALUE: inputs[in * 256 + value] is what the channel reads as
+    final int[] inputs;
+    //outputs[out * 256 + value] is the final value of channel out
+    final int[] outputs;
+
+    private Stage(int mix, double[] products, int[] inputs, int[] outputs) {
+      this.mix = mix;
+      this.products = products;
+      this.inputs = inputs;
+      this.outputs = outputs;
+    }
+
+    static Stage channels(int[] red, int[] green, int[] blue) {
+      return new Stage(NONE, null, null, concat(red, green, blue));
+    }
+
+    static Stage matrix(double[][] matrix) {
+      double[] products = new double[9 * 256];
+      for (int out = 0; out < 3; out++) {
+        for (int in = 0; in < 3; in++) {
+          for (int value = 0; value < 256; value++) {
+            products[(out * 3 + in) * 256 + value] = value * matrix[out][in];
+          }
+        }
+      }
+      return new Stage(MATRIX, products, null, concat(IDENTITY, IDENTITY, IDENTITY));
+    }
+
+    static Stage gray(int mix) {
+      return new Stage(mix, null, concat(IDENTITY, IDENTITY, IDENTITY),
+              concat(IDENTITY, IDENTITY, IDENTITY));
+    }
+
+    private static int[] concat(int[] red, int[] green, int[] blue) {
+      int[] tables = new int[3 * 256];
+      System.arraycopy(red, 0, tables, 0, 256);
+      System.arraycopy(green, 0, tables, 256, 256);
+      System.arraycopy(blue, 0, tables, 512, 256);
+      return tables;
+    }
+
+    //this stage, with every output then passed through the given per-channel tables
+    Stage withOutputs(int[] tables) {
+      int[] newOutputs = new int[3 * 256];
+      for (int channel = 0; channel < 3; channel++) {
+        for (int value = 0; value < 256; value++) {
+          newOutputs[channel * 256 + value] =
+                  tables[channel * 256 + this.outputs[channel * 256 + value]];
+        }
+      }
+      return new Stage(this.mix, this.products, this.inputs, newOutputs);
+    }
+
+    //this stage, with every input first passed through the given per-channel tables
+    Stage withInputs(int[] tables) {
+      switch (this.mix) {
+        case MATRIX:
+          double[] newProducts = new double[9 * 256];
+          for (int out = 0; out < 3; out++) {
+            for (int in = 0; in < 3; in++) {
+              for (int value = 0; value < 256; value++) {
+                newProducts[(out * 3 + in) * 256 + value] =
+                        this.products[(out * 3 + in) * 256 + tables[in * 256 + value]];
+              }
+            }
+          }
+          return new Stage(MATRIX, newProducts, null, this.outputs);
+        case INTENSITY:
+        case VALUE:
+          int[] newInputs = new int[3 * 256];
+          for (int in = 0; in < 3; in++) {
+            for (int value = 0; value < 256; value++) {
+              newInputs[in * 256 + value] = this.inputs[in * 256 + tables[in * 256 + value]];
+            }
+          }
+          return new Stage(this.mix, null, newInputs, this.outputs);
+        case NONE:
+        default:
+          int[] newOutputs = new int[3 * 256];
+          for (int channel = 0; channel < 3; channel++) {
+            for (int value = 0; value < 256; value++) {
+              newOutputs[channel * 256 + value] =
+                      this.outputs[channel * 256 + tables[channel * 256 + value]];
+            }
+          }
+          return new Stage(NONE, null, null, newOutputs);
+      }
+    }
+
+    int apply(int rgb) {
+      int r = (rgb >> 16) & 0xFF;
+      int g = (rgb >> 8) & 0xFF;
+      int b = rgb & 0xFF;
+      switch (this.mix) {
+        case MATRIX:
+          double[] p = this.products;
+          int newRed = (int) Math.round(p[r] + p[256 + g] + p[512 + b]);
+          int newGreen = (int) Math.round(p[768 + r] + p[1024 + g] + p[1280 + b]);
+          int newBlue = (int) Math.round(p[1536 + r] + p[1792 + g] + p[2048 + b]);
+          return PackedRGB.pack(this.outputs[PackedRGB.clamp(newRed)],
+                  this.outputs[256 + PackedRGB.clamp(newGreen)],
+                  this.outputs[512 + PackedRGB.clamp(newBlue)]);
+        case INTENSITY:
+          int intensity = (this.inputs[r] + this.inputs[256 + g] + this.inputs[512 + b]) / 3;
+          return PackedRGB.pack(this.outputs[intensity], this.outputs[256 + intensity],
+                  this.outputs[512 + intensity]);
+        case VALUE:
+          int value = Math.max(this.inputs[r], Math.max(this.inputs[256 + g],
+                  this.inputs[512 + b]));
+          return PackedRGB.pack(this.outputs[value], this.outputs[256 + value],
+                  this.outputs[512 + value]);
+        case NONE:
+        default:
+          return PackedRGB.pack(this.outputs[r], this.outputs[256 + g], this.outputs[512 + b]);
+      }
+    }
+  }
+}
@@ -36,22 +36,7 @@ public class RGBPixel implements Pixel {
   }
 
   private int getComponentHelp(ColorComponent comp) {
-    switch (comp) {
-      case Red:
-        return this.r;
-      case Green:
-        return this.g;
-      case Blue:
-        return this.b;
-      case Luma:
-        return (int) Math.round(0.2126 * this.r + 0.7152 * g + 0.0722 * b);
-      case Value:
-        return Math.max(r, Math.max(g, b));
-      case Intensity:
-        return (this.r + this.g + this.b) / 3;
-      default:
-        return 0;
-    }
+    return PackedRGB.component(PackedRGB.pack(this.r, this.g, this.b), comp);
   }
 
   @Override
@@ -78,13 +63,7 @@ public class RGBPixel implements Pixel {
 
   @Override
   public Pixel transformColor(double[][] matrix) throws IllegalArgumentException {
-    if (matrix.length != 3) {
-      throw new IllegalArgumentException("matrix not 3x3");
-    }
-
-    if (matrix[0].length != 3 || matrix[1].length != 3 || matrix[2].length != 3) {
-      throw new IllegalArgumentException("matrix not 3x3");
-    }
+    Kernels.checkColorMatrix(matrix);
 
     int newRed = (int) Math.round(r * matrix[0][0] + g * matrix[0][1] + b * matrix[0][2]);
     int newGreen = (int) Math.round(r * matrix[1][0] + g * matrix[1][1] + b * matrix[1][2]);
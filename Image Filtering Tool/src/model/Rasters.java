@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * Helper methods shared by the images which copy packed colors in and out of arrays.
+ */
+final class Rasters {
+
+  private Rasters() {
+  }
+
+  /**
+   * Checks that a region lies inside of an image of the given size, and that it fits in an array
+   *   laid out with the given offset and scan size.
+   * @throws IllegalArgumentException if the region is out of range, or does not fit in the array.
+   */
+  static void checkRegion(int imageWidth, int imageHeight,
+                          int row, int col, int height, int width,
+                          int[] array, int offset, int scanSize)
+          throws IllegalArgumentException {
+    if (array == null) {
+      throw new IllegalArgumentException("Given array was null.");
+    }
+
+    if (row < 0 || col < 0 || height < 0 || width < 0
+            || row + height > imageHeight || col + width > imageWidth) {
+      throw new IllegalArgumentException("Region out of range.");
+    }
+
+    if (height == 0 || width == 0) {
+      return;
+    }
+
+    if (offset < 0 || scanSize < width
+            || offset + (long) (height - 1) * scanSize + width > array.length) {
+      throw new IllegalArgumentException("Region does not fit in the given array.");
+    }
+  }
+}
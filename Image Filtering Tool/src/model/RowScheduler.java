@@ -0,0 +1,187 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs per-row work over an image, either on the calling thread or split into bands of rows on
+ *   a ForkJoinPool. Work given to a scheduler must compute each output row independently of the
+ *   others, so that the result is identical no matter how the rows were split up.
+ */
+public final class RowScheduler implements AutoCloseable {
+
+  /**
+   * Represents work over a band of consecutive rows.
+   */
+  public interface RowBand {
+
+    /**
+     * Does the work for rows startRow (inclusive) through endRow (exclusive).
+     * @param startRow the first row of the band.
+     * @param endRow one past the last row of the band.
+     */
+    void run(int startRow, int endRow);
+  }
+
+  //below this many pixels in a band, splitting further costs more than it saves
+  private static final int MIN_PIXELS_PER_BAND = 16384;
+  //the fewest bands that monitored work is split into
+  private static final int MONITORED_BANDS = 16;
+
+  private static volatile RowScheduler defaultScheduler =
+          new RowScheduler(ForkJoinPool.commonPool());
+
+  /**
+   * Invariant: pool is null exactly when this scheduler runs everything on the calling thread.
+   */
+  private final ForkJoinPool pool;
+
+  private RowScheduler(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Produces a scheduler that does all of its work on the calling thread.
+   * @return the sequential scheduler.
+   */
+  public static RowScheduler sequential() {
+    return new RowScheduler(null);
+  }
+
+  /**
+   * Produces a scheduler that splits its work across a dedicated pool of threads. The threads
+   *   are daemon threads, so they never keep the program running, but the pool should still be
+   *   closed once it is no longer needed.
+   * @param parallelism the number of threads to use.
+   * @return the parallel scheduler, or a sequential one if parallelism is 1.
+   * @throws IllegalArgumentException if parallelism is less than 1.
+   */
+  public static RowScheduler parallel(int parallelism) throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    if (parallelism == 1) {
+      return sequential();
+    }
+    return new RowScheduler(new ForkJoinPool(parallelism));
+  }
+
+  /**
+   * Gets the scheduler that images use for their operations. Unless changed, this splits work
+   *   across the common ForkJoinPool.
+   * @return the default scheduler.
+   */
+  public static RowScheduler getDefault() {
+    return defaultScheduler;
+  }
+
+  /**
+   * Sets the scheduler that images use for their operations.
+   * @param scheduler the new default scheduler.
+   * @throws IllegalArgumentException if the scheduler is null.
+   */
+  public static void setDefault(RowScheduler scheduler) throws IllegalArgumentException {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("Scheduler was null.");
+    }
+    defaultScheduler = scheduler;
+  }
+
+  /**
+   * Gets the number of threads this scheduler may use at once.
+   * @return the parallelism of this scheduler.
+   */
+  public int getParallelism() {
+    return this.pool == null ? 1 : this.pool.getParallelism();
+  }
+
+  /**
+   * Runs the given work over every row of an image of the given size, returning once all rows
+   *   are done. Any exception thrown by the work is rethrown here. If the calling thread is
+   *   running work under a TaskMonitor, each band counts towards its progress, and the work
+   *   stops with a CancellationException at the next band once the monitor is cancelled.
+   * @param height the number of rows.
+   * @param width the number of pixels in each row, used to decide how finely to split the rows.
+   * @param band the work to do.
+   */
+  public void forEachRowBand(int height, int width, RowBand band) {
+    int minRows = Math.max(1, MIN_PIXELS_PER_BAND / Math.max(1, width));
+    TaskMonitor monitor = TaskMonitor.current();
+    if (monitor != null) {
+      band = monitored(band, monitor, width);
+      monitor.begin((long) height * width);
+    }
+
+    if (this.pool == null || this.pool.isShutdown() || height <= minRows) {
+      if (monitor == null) {
+        band.run(0, height);
+        return;
+      }
+      //bands small enough that cancelling and reporting progress still happen during the work
+      int rowsPerBand = Math.max(minRows, (height + MONITORED_BANDS - 1) / MONITORED_BANDS);
+      for (int row = 0; row < height; row += rowsPerBand) {
+        band.run(row, Math.min(height, row + rowsPerBand));
+      }
+      return;
+    }
+
+    //a few bands per thread, so that uneven bands still keep every thread busy, and at least
+    //  enough for monitored work to be cancelled and report progress during the work
+    int bands = this.pool.getParallelism() * 4;
+    if (monitor != null) {
+      bands = Math.max(bands, MONITORED_BANDS);
+    }
+    int rowsPerBand = Math.max(minRows, height / bands);
+    this.pool.invoke(new BandTask(band, 0, height, rowsPerBand));
+  }
+
+  /**
+   * Shuts down the pool of threads of a scheduler produced by parallel, once the work already
+   *   given to it is done. Work given to it afterwards runs on the calling thread. Does nothing
+   *   to a scheduler which has no pool of its own.
+   */
+  @Override
+  public void close() {
+    //has no effect on the common pool
+    if (this.pool != null) {
+      this.pool.shutdown();
+    }
+  }
+
+  //work which checks for cancellation before each band, and counts each band as progress after
+  private static RowBand monitored(RowBand band, TaskMonitor monitor, int width) {
+    return (startRow, endRow) -> {
+      monitor.checkCancelled();
+      band.run(startRow, endRow);
+      monitor.finish((long) (endRow - startRow) * width);
+    };
+  }
+
+  private static class BandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowBand band;
+    private final int startRow;
+    private final int endRow;
+    private final int rowsPerBand;
+
+    BandTask(RowBand band, int startRow, int endRow, int rowsPerBand) {
+      this.band = band;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.endRow - this.startRow <= this.rowsPerBand) {
+        this.band.run(this.startRow, this.endRow);
+        return;
+      }
+      int middle = (this.startRow + this.endRow) >>> 1;
+      invokeAll(new BandTask(this.band, this.startRow, middle, this.rowsPerBand),
+              new BandTask(this.band, middle, this.endRow, this.rowsPerBand));
+    }
+  }
+}
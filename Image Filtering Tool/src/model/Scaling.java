@@ -0,0 +1,90 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Shrinks images, averaging every pixel of the source image into the pixel of the result that
+ *   covers it, so that detail smaller than a result pixel is blended rather than dropped.
+ */
+public final class Scaling {
+
+  private Scaling() {
+  }
+
+  /**
+   * Produces an image which fits within the given size, keeping the proportions of the given
+   *   image. Images which already fit are given back as they are; larger ones are shrunk until
+   *   their wider side just fits, and each pixel of the result is the average of the block of
+   *   source pixels it covers.
+   * @param image the image to shrink.
+   * @param maxWidth the widest the result may be.
+   * @param maxHeight the tallest the result may be.
+   * @return the image, or a smaller copy of it.
+   * @throws IllegalArgumentException if the image is null, or either size is less than 1.
+   */
+  public static Image toFit(Image image, int maxWidth, int maxHeight)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    if (maxWidth < 1 || maxHeight < 1) {
+      throw new IllegalArgumentException("Size must be at least 1 by 1.");
+    }
+
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (width <= maxWidth && height <= maxHeight) {
+      return image;
+    }
+    double scale = Math.min(maxWidth / (double) width, maxHeight / (double) height);
+    int newWidth = Math.max(1, Math.min(maxWidth, (int) Math.round(width * scale)));
+    int newHeight = Math.max(1, Math.min(maxHeight, (int) Math.round(height * scale)));
+    return shrink(image, newWidth, newHeight);
+  }
+
+  //averages each block of source pixels into one pixel of a newWidth by newHeight image
+  private static Image shrink(Image image, int newWidth, int newHeight) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    //the column of the result which covers each column of the source
+    int[] columnOf = new int[width];
+    for (int col = 0; col < width; col++) {
+      columnOf[col] = (int) ((long) col * newWidth / width);
+    }
+
+    int[] result = new int[newWidth * newHeight];
+    RowScheduler.getDefault().forEachRowBand(newHeight, newWidth, (startRow, endRow) -> {
+      int[] row = new int[width];
+      long[] red = new long[newWidth];
+      long[] green = new long[newWidth];
+      long[] blue = new long[newWidth];
+      int[] counts = new int[newWidth];
+      for (int i = startRow; i < endRow; i++) {
+        Arrays.fill(red, 0);
+        Arrays.fill(green, 0);
+        Arrays.fill(blue, 0);
+        Arrays.fill(counts, 0);
+        int firstRow = (int) ((long) i * height / newHeight);
+        int lastRow = (int) ((long) (i + 1) * height / newHeight);
+        for (int sourceRow = firstRow; sourceRow < lastRow; sourceRow++) {
+          image.getRow(sourceRow, row);
+          for (int col = 0; col < width; col++) {
+            int rgb = row[col];
+            int to = columnOf[col];
+            red[to] += PackedRGB.red(rgb);
+            green[to] += PackedRGB.green(rgb);
+            blue[to] += PackedRGB.blue(rgb);
+            counts[to]++;
+          }
+        }
+
+        for (int j = 0; j < newWidth; j++) {
+          int count = counts[j];
+          result[i * newWidth + j] = PackedRGB.pack((int) ((red[j] + count / 2) / count),
+                  (int) ((green[j] + count / 2) / count), (int) ((blue[j] + count / 2) / count));
+        }
+      }
+    });
+    return new PackedImage(newWidth, newHeight, result);
+  }
+}
@@ -1,9 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -12,6 +8,11 @@ import java.util.Random;
  */
 public class SimpleImage implements Image {
 
+  //the heap taken by one RGBPixel, its three ints and object header, and the reference to it
+  private static final long PIXEL_BYTES = 28;
+  //the header of each column array
+  private static final long ARRAY_BYTES = 16;
+
   /**
    * Invariant: pixels will always have dimensions [width][height].
    * Invariant: pixels has at least 1 pixel.
@@ -56,6 +57,15 @@ public class SimpleImage implements Image {
     this.width = pixels.length;
   }
 
+  /**
+   * Estimates the bytes of heap this image takes, as though each of its pixels were an RGBPixel
+   *   of its own.
+   * @return the estimate.
+   */
+  long heapBytes() {
+    return PIXEL_BYTES * this.width * this.height + ARRAY_BYTES * (this.width + 1);
+  }
+
   @Override
   public int getHeight() {
     return this.height;
@@ -74,458 +84,139 @@ public class SimpleImage implements Image {
     return getCopyOfPixel(col, row);
   }
 
-  protected Pixel getCopyOfPixel(int col, int row) {
-    Pixel pixelToCopy = pixels[col][row]; //immutable -> can just return pixels[col][row]??
-
-    return new RGBPixel(pixelToCopy.getComponent(ColorComponent.Red),
-            pixelToCopy.getComponent(ColorComponent.Green),
-            pixelToCopy.getComponent(ColorComponent.Blue));
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        dest[offset + r * scanSize + c] = PackedRGB.of(this.pixels[col + c][row + r]);
+      }
+    }
   }
 
-  protected Pixel[][] copyPixels() {
-    Pixel[][] newPixels = new Pixel[this.width][this.height];
-
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, src, offset, scanSize);
+    Pixel[][] newPixels = new Pixel[this.width][];
     for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        newPixels[w][h] = getCopyOfPixel(w, h);
+      newPixels[w] = this.pixels[w].clone(); //pixels are immutable, so they can be shared
+    }
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        int rgb = src[offset + r * scanSize + c];
+        newPixels[col + c][row + r] =
+                new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb), PackedRGB.blue(rgb));
       }
     }
+    return new SimpleImage(newPixels);
+  }
 
-    return newPixels;
+  protected Pixel getCopyOfPixel(int col, int row) {
+    Pixel pixelToCopy = pixels[col][row]; //immutable -> can just return pixels[col][row]??
+
+    return new RGBPixel(pixelToCopy.getComponent(ColorComponent.Red),
+            pixelToCopy.getComponent(ColorComponent.Green),
+            pixelToCopy.getComponent(ColorComponent.Blue));
   }
 
   @Override
   public Image flipVertical() {
-    Pixel[][] newPixels = this.copyPixels();
-    for (int w = 0; w < this.width; w++) {
-      List<Pixel> pixelsOfThisColumn = Arrays.asList(newPixels[w]);
-      Collections.reverse(pixelsOfThisColumn);
-      newPixels[w] = pixelsOfThisColumn.toArray(new Pixel[0]);
-    }
-    return new SimpleImage(newPixels);
+    return ViewImage.of(this).flipVertical();
   }
 
   @Override
   public Image flipHorizontal() {
-    Pixel[][] newPixels = this.copyPixels();
-    List<Pixel[]> columnsList = Arrays.asList(newPixels);
-    Collections.reverse(columnsList);
-    Pixel[][] flippedPixels = columnsList.toArray(new Pixel[0][0]);
-    return new SimpleImage(flippedPixels);
+    return ViewImage.of(this).flipHorizontal();
   }
 
   @Override
   public Image adjustBrightness(int delta) {
-    Pixel[][] newPixels = new Pixel[this.width][this.height];
-
-    for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        newPixels[w][h] = getCopyOfPixel(w, h).adjustBrightness(delta);
-      }
-    }
-
-    return new SimpleImage(newPixels);
+    return this.applyPointOp(PointOp.brightness(delta));
   }
 
   @Override
   public Image grayscale(ColorComponent comp) {
+    return this.applyPointOp(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public Image applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (op == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+
     Pixel[][] newPixels = new Pixel[this.width][this.height];
 
-    for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        newPixels[w][h] = getCopyOfPixel(w, h).grayscale(comp);
+    this.forEachRowBand((startRow, endRow) -> {
+      int[] row = new int[this.width];
+      for (int h = startRow; h < endRow; h++) {
+        this.getRow(h, row);
+        op.apply(row, row, 0, this.width);
+        for (int w = 0; w < this.width; w++) {
+          newPixels[w][h] = new RGBPixel(PackedRGB.red(row[w]), PackedRGB.green(row[w]),
+                  PackedRGB.blue(row[w]));
+        }
       }
-    }
+    });
 
     return new SimpleImage(newPixels);
   }
 
   @Override
   public Image transformColor(double[][] matrix) throws IllegalArgumentException {
-    Pixel[][] newPixels = new Pixel[this.width][this.height];
-
-    for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        newPixels[w][h] = getCopyOfPixel(w, h).transformColor(matrix);
-      }
-    }
-
-    return new SimpleImage(newPixels);
+    return this.applyPointOp(PointOp.colorMatrix(matrix));
   }
 
   @Override
   public Image filter(double[][] kernel) throws IllegalArgumentException {
-    if (kernel == null) {
-      throw new IllegalArgumentException("Given kernel was null.");
-    }
-
-    if (kernel.length % 2 == 0) {
-      throw new IllegalArgumentException("Given kernel had an even dimension.");
-    }
-
-    if (kernel[0].length % 2 == 0) {
-      throw new IllegalArgumentException("Given kernel had an even dimension.");
-    }
-
-    for (int i = 1; i < kernel.length; i++) {
-      if (kernel[i] == null || kernel[0].length != kernel[i].length) {
-        throw new IllegalArgumentException("Kernel was jagged.");
-      }
-    }
+    return this.filter(kernel, EdgeMode.Zero);
+  }
 
-    Pixel[][] newPixels = new Pixel[this.width][this.height];
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    Kernels.checkKernel(kernel);
+    Kernels.checkEdgeMode(edges);
+
+    int[] packed = new int[this.width * this.height];
+    this.getRegion(0, 0, this.height, this.width, packed, 0, this.width);
+    int[] filtered = Convolution.filter(packed, this.width, this.height, kernel, edges);
+    return new SimpleImage(toPixels(filtered, this.width, this.height));
+  }
 
-    for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        newPixels[w][h] = this.resultOfKernel(w,h,kernel);
+  //unpacks a row-major raster of packed colors into pixels, indexed [col][row]
+  private static Pixel[][] toPixels(int[] packed, int width, int height) {
+    Pixel[][] newPixels = new Pixel[width][height];
+    for (int w = 0; w < width; w++) {
+      for (int h = 0; h < height; h++) {
+        int rgb = packed[h * width + w];
+        newPixels[w][h] = new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb),
+                PackedRGB.blue(rgb));
       }
     }
+    return newPixels;
+  }
 
-    return new SimpleImage(newPixels);
+  private void forEachRowBand(RowScheduler.RowBand band) {
+    RowScheduler.getDefault().forEachRowBand(this.height, this.width, band);
   }
 
   @Override
-  public Image mosaic(int dotCount) throws IllegalArgumentException {
-    if (false) {
-      return this.mosaic2(dotCount);
-    }
-      Pixel[][] pixels = this.copyPixels();
-      int xMax = pixels.length;
-      int yMax = pixels[0].length;
-      int[][] dots = new int[pixels.length][pixels[0].length];
-    Pixel[][] newPixels = new Pixel[pixels.length][pixels[0].length];
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.mosaic(seedCount, new Random().nextLong(), false);
+  }
 
-    if (dotCount < 1) {
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    if (seedCount < 1) {
       throw new IllegalArgumentException("Seed Count < 1");
     }
 
-      if(dotCount > xMax * yMax) {
-        //throw new IllegalArgumentException("Too many seeds!");
-        dotCount = xMax * yMax;
-      }
-
-
-      Random r = new Random();
-
-      List<PixelLocation> dotList = new ArrayList<>();
-
-      for (int i = 1; i < dotCount + 1; i++) { //randomly drop some dots
-        int x = r.nextInt(xMax);
-        int y = r.nextInt(yMax);
-
-        while (dots[x][y] > 0) {
-          x++;
-          if (x >= xMax) {
-            x = 0;
-            y++;
-            if (y >= yMax) {
-              y = 0;
-            }
-          }
-        }
-
-        dots[x][y] = i;
-        PixelLocation newPl = new PixelLocation(pixels[x][y], x, y);
-        dotList.add(newPl);
-      }
-
-      List<List<List<int[]>>> expansionOffsetsByDistanceInOrder = new ArrayList<>();
-      for(int i = 0; i < (xMax + yMax) * 2; i++) {
-        expansionOffsetsByDistanceInOrder.add(new ArrayList<>());
-      }
-
-      List<int[]> frontiers = new ArrayList<>(List.of(new int[]{0,0}));
-      int distanceOut = 0;
-      for (int i = 0; i < (xMax * yMax) / Math.max(1, dotCount / 5); i++) { //as many distances as there possibly could be (could find tighter upperbound)
-        int closestAmongFrontiers = 0;
-        double closestDistance = Math.sqrt(
-                frontiers.get(0)[0] * frontiers.get(0)[0] +
-                        frontiers.get(0)[1] * frontiers.get(0)[1]);
-        for (int j = 1; j < frontiers.size(); j++) {
-          double distanceJ = Math.sqrt(
-                  frontiers.get(j)[0] * frontiers.get(j)[0] +
-                          frontiers.get(j)[1] * frontiers.get(j)[1]);
-          if (distanceJ < closestDistance) {
-            closestAmongFrontiers = j;
-            closestDistance = distanceJ;
-          }
-        }
-
-        int[] closest = frontiers.remove(closestAmongFrontiers);
-        int x = closest[0];
-        int y = closest[1];
-
-        List<int[]> list = new ArrayList<>();
-
-        if (y == 0) {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{y, x});
-          list.add(new int[]{y, -x});
-
-          frontiers.add(new int[]{x + 1, y});
-          if (x != 0) {
-            frontiers.add(new int[]{x, y + 1});
-          }
-        } else if (x == y) {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{x, -y});
-          list.add(new int[]{-x, -y});
-        } else {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{y, x});
-          list.add(new int[]{y, -x});
-          list.add(new int[]{x, -y});
-          list.add(new int[]{-x, -y});
-          list.add(new int[]{-y, x});
-          list.add(new int[]{-y, -x});
-
-          if (y < Math.min(yMax, xMax)) {
-            frontiers.add(new int[]{x, y + 1});
-          }
-        }
-
-        if (Math.floor(closestDistance) / 1 > distanceOut) { //dictates width of the bands
-          distanceOut++;
-        }
-
-        expansionOffsetsByDistanceInOrder.get(distanceOut).add(list);
-      }
-
-      int fillDistance = 0;
-
-      boolean[] uncompletedDots;
-
-      while (!dotList.isEmpty()) {
-        uncompletedDots = new boolean[dotList.size()];
-
-        for (int m = 0; m < expansionOffsetsByDistanceInOrder.get(fillDistance).size(); m++) {
-          for (int[] offsetPair : expansionOffsetsByDistanceInOrder.get(fillDistance).get(m)) {
-            for (int i = 0; i < dotList.size(); i++) {
-              int x = dotList.get(i).getX() + offsetPair[0];
-              int y = dotList.get(i).getY() + offsetPair[1];
-              if (!(x < 0 || y < 0 || x >= xMax || y >= yMax || newPixels[x][y] != null)) {
-                newPixels[x][y] = dotList.get(i).getPixel();
-                uncompletedDots[i] = true;
-              }
-            }
-          }
-        }
-
-        for (int i = uncompletedDots.length - 1; i >= 0; i--) {
-          if (!uncompletedDots[i]) {
-            dotList.remove(i);
-          }
-        }
-        fillDistance++;
-      }
-
-      for(int x = 0; x < xMax; x++) {
-        for(int y = 0; y < yMax; y++) {
-          if (newPixels[x][y] == null) {
-            newPixels[x][y] = new RGBPixel(255, 0, 0);
-          }
-        }
-      }
-
-      return new SimpleImage(newPixels);
-    }
-
-    private class PixelLocation {
-
-      Pixel pixel;
-      int x;
-      int y;
-
-      PixelLocation(Pixel pixel, int x, int y) {
-        this.pixel = pixel;
-        this.x = x;
-        this.y = y;
-      }
-
-      public int getX() {
-        return x;
-      }
-
-      public int getY() {
-        return y;
-      }
-
-      public Pixel getPixel() {
-        return pixel;
-      }
-    }
-
-    public Image mosaic2(int dotCount) {
-      Pixel[][] pixels = this.copyPixels();
-      int xMax = pixels.length;
-      int yMax = pixels[0].length;
-      boolean[][] dots = new boolean[pixels.length][pixels[0].length];
-      Pixel[][] newPixels = new Pixel[pixels.length][pixels[0].length];
-
-      if (dotCount < 1) {
-        throw new IllegalArgumentException("Seed Count < 1");
-      }
-
-      if(dotCount > xMax * yMax) {
-        return new SimpleImage(pixels);
-      }
-
-      Random r = new Random();
-
-      List<PixelLocation> dotList = new ArrayList<>();
-
-      for (int i = 0; i < dotCount; i++) { //randomly drop some dots
-        int x = r.nextInt(xMax);
-        int y = r.nextInt(yMax);
-
-        while (dots[x][y]) {
-          x++;
-          if (x >= xMax) {
-            x = 0;
-            y++;
-            if (y >= yMax) {
-              y = 0;
-            }
-          }
-        }
-
-        dots[x][y] = true;
-        PixelLocation newPl = new PixelLocation(pixels[x][y], x, y);
-        dotList.add(newPl);
-        newPixels[x][y] = newPl.getPixel();
-      }
-
-      List<PointDistance> frontiers = new ArrayList<>();
-      frontiers.add(new PointDistance(0,1));
-
-      int distanceOut = 1;
-      boolean[] uncompletedDots = new boolean[dotList.size()];
-
-      while (!dotList.isEmpty()) {
-
-        PointDistance dist = frontiers.remove(0);
-        List<PointDistance> toAdd = new ArrayList<>();
-        if (dist.x == 0) {
-          toAdd.add(new PointDistance(0, dist.y + 1));
-        }
-        if (dist.x < dist.y) {
-          toAdd.add(new PointDistance(dist.x + 1, dist.y));
-        }
-        //frontiers.sort((pd1, pd2) -> Double.compare(pd1.dist, pd2.dist));
-        for (PointDistance pd : toAdd) { // insert those 1-2 in the sorted list
-          int i = 0;
-          while (i < frontiers.size()) {
-            if (frontiers.get(i).dist >= pd.dist) {
-              break;
-            }
-          }
-          frontiers.add(i, pd);
-        }
-
-        List<int[]> expandTo = dist.getMirrors();
-
-        for (int[] offset : expandTo) {
-          for (int i = 0; i < dotList.size(); i++) {
-            int x = dotList.get(i).getX() + offset[0];
-            int y = dotList.get(i).getY() + offset[1];
-            if (!(x < 0 || y < 0 || x >= xMax || y >= yMax || newPixels[x][y] != null)) {
-              newPixels[x][y] = dotList.get(i).getPixel();
-              uncompletedDots[i] = true;
-            }
-          }
-        }
-
-        if (Math.floor(dist.dist) / 1 > distanceOut) { //dictates width of the bands
-          distanceOut++;
-          for (int i = uncompletedDots.length - 1; i >= 0; i--) {
-            if (!uncompletedDots[i]) {
-              dotList.remove(i);
-            }
-          }
-          uncompletedDots = new boolean[dotList.size()];
-        }
-      }
-
-      for(int x = 0; x < xMax; x++) {
-        for(int y = 0; y < yMax; y++) {
-          if (newPixels[x][y] == null) {
-            newPixels[x][y] = new RGBPixel(255, 0, 0);
-          }
-        }
-      }
-
-      return new SimpleImage(newPixels);
-    }
-
-    private static class PointDistance {
-      int x;
-      int y;
-      double dist;
-
-      PointDistance(int x, int y) {
-        this.x = x;
-        this.y = y;
-        this.dist = Math.sqrt(0.0 + x * x + y * y);
-      }
-
-      List<int[]> getMirrors() {
-        List<int[]> list = new ArrayList<>();
-        if (y == 0) {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{y, x});
-          list.add(new int[]{y, -x});
-        } else if (x == y) {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{x, -y});
-          list.add(new int[]{-x, -y});
-        } else {
-          list.add(new int[]{x, y});
-          list.add(new int[]{-x, y});
-          list.add(new int[]{y, x});
-          list.add(new int[]{y, -x});
-          list.add(new int[]{x, -y});
-          list.add(new int[]{-x, -y});
-          list.add(new int[]{-y, x});
-          list.add(new int[]{-y, -x});
-        }
-        return list;
-      }
-    }
-
-
-  private Pixel resultOfKernel(int w, int h, double[][] kernel) {
-    int topMostRow = h - (kernel[0].length / 2);
-    int leftMostCol = w - (kernel.length / 2);
-
-    double newR = 0.0;
-    double newG = 0.0;
-    double newB = 0.0;
-
-    for (int r = 0; r < kernel.length; r++) {
-      for (int c = 0; c < kernel[r].length; c++) {
-        Pixel pixelHere;
-        double kernelFactor = kernel[r][c];
-        try {
-          pixelHere = getCopyOfPixel(leftMostCol + c, topMostRow + r);
-        } catch (ArrayIndexOutOfBoundsException e) {
-          pixelHere = new RGBPixel(0,0,0);
-        }
-
-        newR += kernelFactor * pixelHere.getComponent(ColorComponent.Red);
-        newG += kernelFactor * pixelHere.getComponent(ColorComponent.Green);
-        newB += kernelFactor * pixelHere.getComponent(ColorComponent.Blue);
-      }
-    }
-
-    int r = Math.min(255, Math.max(0, (int) Math.round(newR)));
-    int g = Math.min(255, Math.max(0, (int) Math.round(newG)));
-    int b = Math.min(255, Math.max(0, (int) Math.round(newB)));
-
-    return new RGBPixel(r, g, b);
+    int[] packed = new int[this.width * this.height];
+    this.getRegion(0, 0, this.height, this.width, packed, 0, this.width);
+    int[] mosaicked = Mosaic.mosaic(packed, this.width, this.height, seedCount, seed, average);
+    return new SimpleImage(toPixels(mosaicked, this.width, this.height));
   }
 }
@@ -0,0 +1,213 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Watches over work on images run through it, reporting how far along the work is and letting
+ *   another thread cancel it. While work runs through a monitor, every RowScheduler it uses
+ *   counts the pixels of each band it finishes towards the monitor's progress, and checks before
+ *   each band whether the monitor has been cancelled, abandoning the work if it has. Each pass
+ *   over an image is given a share of a fixed whole, so that progress never goes backwards: work
+ *   is expected to make one pass, unless it declares more up front through passes.
+ */
+public final class TaskMonitor {
+
+  private static final ThreadLocal<TaskMonitor> CURRENT = new ThreadLocal<>();
+
+  //a part of the whole progress, shared equally by the passes expected to be made in it
+  private static final class Part {
+
+    private double start;
+    private final double end;
+    private int passesLeft;
+
+    private Part(double start, double end, int passes) {
+      this.start = start;
+      this.end = end;
+      this.passesLeft = passes;
+    }
+
+    //takes the share of the next pass, which is nothing once every expected pass has been made
+    private double take() {
+      double share = this.passesLeft > 0 ? (this.end - this.start) / this.passesLeft : 0;
+      this.passesLeft = Math.max(0, this.passesLeft - 1);
+      this.start += share;
+      return share;
+    }
+  }
+
+  /**
+   * Invariant: parts holds the part of the progress of each level of passes declared, innermost
+   *            first, with the whole of it at the bottom.
+   * Invariant: the pass running covers passStart to passStart + passShare of the whole, of
+   *            which passDone of passTotal pixels are done.
+   * Invariant: every field but the listener and cancelled is guarded by this monitor's lock.
+   */
+  private final DoubleConsumer listener;
+  private final Deque<Part> parts;
+  private double passStart;
+  private double passShare;
+  private long passTotal;
+  private long passDone;
+  private double progress;
+  private volatile boolean cancelled;
+
+  /**
+   * Constructs a monitor which reports nothing as the work goes on.
+   */
+  public TaskMonitor() {
+    this(fraction -> { });
+  }
+
+  /**
+   * Constructs a monitor which reports progress to the given listener, from whichever thread
+   *   finished the work.
+   * @param listener given the fraction of the work done so far, from 0 to 1, after each band.
+   * @throws IllegalArgumentException if the listener is null.
+   */
+  public TaskMonitor(DoubleConsumer listener) throws IllegalArgumentException {
+    if (listener == null) {
+      throw new IllegalArgumentException("Given listener was null.");
+    }
+    this.listener = listener;
+    this.parts = new ArrayDeque<>();
+    this.parts.push(new Part(0, 1, 1));
+    this.progress = 0;
+    this.cancelled = false;
+  }
+
+  /**
+   * Runs work which makes the given number of passes over its images, under the monitor the
+   *   calling thread is running work under, if any. Each of the passes, which may themselves be
+   *   work declaring passes of its own, gets an equal share of the progress the work is given
+   *   as a pass of the work around it. Passes beyond those declared add nothing to the progress.
+   * @param count the number of passes.
+   * @param work the work to run.
+   * @param <T> the type of the work's result.
+   * @return the result of the work.
+   * @throws IllegalArgumentException if the count is less than 1, or the work is null.
+   */
+  public static <T> T passes(int count, Supplier<T> work) throws IllegalArgumentException {
+    if (count < 1) {
+      throw new IllegalArgumentException("Passes must be at least 1.");
+    }
+    if (work == null) {
+      throw new IllegalArgumentException("Given work was null.");
+    }
+    TaskMonitor monitor = CURRENT.get();
+    if (monitor == null) {
+      return work.get();
+    }
+    synchronized (monitor) {
+      Part outer = monitor.parts.peek();
+      double start = outer.start;
+      monitor.parts.push(new Part(start, start + outer.take(), count));
+    }
+    try {
+      return work.get();
+    } finally {
+      synchronized (monitor) {
+        monitor.parts.pop();
+      }
+    }
+  }
+
+  /**
+   * Runs work on the calling thread under this monitor.
+   * @param work the work to run.
+   * @param <T> the type of the work's result.
+   * @return the result of the work.
+   * @throws IllegalArgumentException if the work is null.
+   * @throws CancellationException if this monitor was cancelled before or during the work.
+   */
+  public <T> T run(Supplier<T> work) throws IllegalArgumentException, CancellationException {
+    if (work == null) {
+      throw new IllegalArgumentException("Given work was null.");
+    }
+    TaskMonitor outer = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      this.checkCancelled();
+      T result = work.get();
+      this.checkCancelled();
+      return result;
+    } finally {
+      if (outer == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(outer);
+      }
+    }
+  }
+
+  /**
+   * Cancels the work running under this monitor, which stops at its next band of rows, and any
+   *   work run under it later.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Determines whether this monitor has been cancelled.
+   * @return true if it has been cancelled.
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  /**
+   * Gets the fraction of the work which is done.
+   * @return the progress, from 0 to 1.
+   */
+  public synchronized double getProgress() {
+    return this.progress;
+  }
+
+  /**
+   * Gets the monitor which work on the calling thread is running under.
+   * @return the monitor, or null if there is none.
+   */
+  static TaskMonitor current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Abandons the work if this monitor has been cancelled.
+   * @throws CancellationException if this monitor has been cancelled.
+   */
+  void checkCancelled() throws CancellationException {
+    if (this.cancelled) {
+      throw new CancellationException("Work was cancelled.");
+    }
+  }
+
+  /**
+   * Begins a pass, which takes the next share of the progress from the passes declared.
+   * @param units the amount of work in the pass, in pixels.
+   */
+  synchronized void begin(long units) {
+    //the pass before is over, even if it was not counted as done in full
+    this.passStart = this.parts.peek().start;
+    this.passShare = this.parts.peek().take();
+    this.passTotal = units;
+    this.passDone = 0;
+  }
+
+  /**
+   * Counts work of the pass running as done, and reports the progress. Bands finished on
+   *   different threads report one at a time, so the listener never sees progress go backwards.
+   * @param units the amount of work, in pixels.
+   */
+  synchronized void finish(long units) {
+    this.passDone += units;
+    double fraction = this.passTotal == 0 ? 1 : Math.min(1.0, this.passDone
+            / (double) this.passTotal);
+    this.progress = Math.max(this.progress, this.passStart + this.passShare * fraction);
+    this.listener.accept(this.progress);
+  }
+}
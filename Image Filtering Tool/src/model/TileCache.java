@@ -0,0 +1,155 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Holds the tiles of TiledImages which have been computed, up to a budget of bytes. When adding a
+ *   tile takes the cache over its budget, the least recently used tiles are evicted, and are
+ *   computed again if they are needed later. Tiles are computed outside of the cache's lock, so
+ *   several threads may compute tiles at once, including tiles which need other tiles.
+ */
+public final class TileCache {
+
+  private static volatile TileCache defaultCache =
+          withBudget(Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4));
+
+  /**
+   * Identifies a tile by the number of its image and its index within the image. Images are
+   *   identified by number rather than held, so that the cache never keeps an image alive.
+   */
+  static final class Key {
+    private final long image;
+    private final long tile;
+
+    Key(long image, long tile) {
+      this.image = image;
+      this.tile = tile;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) other;
+      return this.image == that.image && this.tile == that.tile;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(this.image) * 31 + Long.hashCode(this.tile);
+    }
+  }
+
+  /**
+   * Invariant: used is the total size in bytes of the tiles in tiles.
+   * Invariant: tiles is in order of least to most recently used.
+   */
+  private final long budget;
+  private final LinkedHashMap<Key, int[]> tiles;
+  private long used;
+
+  private TileCache(long budget) {
+    this.budget = budget;
+    this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+    this.used = 0;
+  }
+
+  /**
+   * Produces an empty cache which holds at most the given number of bytes of tiles.
+   * @param bytes the budget of the cache.
+   * @return the cache.
+   * @throws IllegalArgumentException if the budget is less than 1.
+   */
+  public static TileCache withBudget(long bytes) throws IllegalArgumentException {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Budget must be at least 1 byte.");
+    }
+    return new TileCache(bytes);
+  }
+
+  /**
+   * Gets the cache that new TiledImages keep their tiles in. Unless changed, this has a budget
+   *   of 256MB, or a quarter of the largest heap allowed if that is less.
+   * @return the default cache.
+   */
+  public static TileCache getDefault() {
+    return defaultCache;
+  }
+
+  /**
+   * Sets the cache that new TiledImages keep their tiles in. Images already made keep using the
+   *   cache they were made with.
+   * @param cache the new default cache.
+   * @throws IllegalArgumentException if the cache is null.
+   */
+  public static void setDefault(TileCache cache) throws IllegalArgumentException {
+    if (cache == null) {
+      throw new IllegalArgumentException("Cache was null.");
+    }
+    defaultCache = cache;
+  }
+
+  /**
+   * Gets the number of bytes of tiles this cache may hold.
+   * @return the budget of this cache.
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Gets the number of bytes of tiles this cache holds now.
+   * @return the bytes used.
+   */
+  public synchronized long getUsed() {
+    return this.used;
+  }
+
+  /**
+   * Evicts every tile from this cache.
+   */
+  public synchronized void clear() {
+    this.tiles.clear();
+    this.used = 0;
+  }
+
+  /**
+   * Gets a tile, computing it and adding it to this cache if it is not already held.
+   * @param key the tile.
+   * @param compute computes the tile if needed.
+   * @return the tile, which must not be changed.
+   */
+  int[] get(Key key, Supplier<int[]> compute) {
+    synchronized (this) {
+      int[] tile = this.tiles.get(key);
+      if (tile != null) {
+        return tile;
+      }
+    }
+
+    int[] tile = compute.get();
+    synchronized (this) {
+      //another thread may have computed the same tile meanwhile, in which case either will do
+      int[] old = this.tiles.put(key, tile);
+      if (old != null) {
+        this.used -= bytes(old);
+      }
+      this.used += bytes(tile);
+
+      Iterator<Map.Entry<Key, int[]>> eldest = this.tiles.entrySet().iterator();
+      while (this.used > this.budget && eldest.hasNext()) {
+        this.used -= bytes(eldest.next().getValue());
+        eldest.remove();
+      }
+    }
+    return tile;
+  }
+
+  private static long bytes(int[] tile) {
+    return 4L * tile.length;
+  }
+}
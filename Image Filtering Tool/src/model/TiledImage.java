@@ -0,0 +1,374 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a rectangular image split into square tiles (smaller at the right and bottom edges)
+ *   which are only computed when their pixels are needed, and are then kept in a TileCache until
+ *   evicted. Operations on a tiled image return another tiled image right away, whose tiles are
+ *   computed from the tiles of this one on demand: filtering a tile reads the neighboring tiles
+ *   its kernel reaches into, and every other operation reads only the tiles it needs. Since at
+ *   most the cache's budget of tiles is held at once, an image far larger than the heap, such as
+ *   a MappedImage, can be processed a few tiles at a time.
+ * Reading a region computes its missing tiles in parallel, a row of tiles per task.
+ */
+public final class TiledImage implements Image {
+
+  /**
+   * The width and height of tiles, unless given otherwise.
+   */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  private static final AtomicLong NEXT_ID = new AtomicLong();
+
+  /**
+   * Computes the pixels of one tile.
+   */
+  private interface Tiles {
+
+    /**
+     * Computes a rectangle of the image.
+     * @param top the first row.
+     * @param left the first column.
+     * @param height the number of rows.
+     * @param width the number of columns.
+     * @return the colors of the rectangle, packed and in row-major order.
+     */
+    int[] compute(int top, int left, int height, int width);
+  }
+
+  /**
+   * Invariant: the tile at (tileRow, tileCol) covers rows from tileRow * tileSize and columns
+   *   from tileCol * tileSize, up to tileSize of each but not past the edges of the image.
+   * Invariant: id is different for every TiledImage, so that their tiles never mix in a cache.
+   */
+  private final int width;
+  private final int height;
+  private final int tileSize;
+  private final int tileCols;
+  private final long id;
+  private final TileCache cache;
+  private final Tiles tiles;
+
+  private TiledImage(int width, int height, int tileSize, TileCache cache, Tiles tiles) {
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+    this.tileCols = (width + tileSize - 1) / tileSize;
+    this.id = NEXT_ID.getAndIncrement();
+    this.cache = cache;
+    this.tiles = tiles;
+  }
+
+  /**
+   * Produces a tiled version of any image, with tiles of the default size, kept in the default
+   *   TileCache. Each tile is copied from the image the first time it is needed.
+   * @param image the image to tile.
+   * @return a TiledImage with the same colors as the given image, or the image itself if it is
+   *         already tiled the same way.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static TiledImage of(Image image) throws IllegalArgumentException {
+    return of(image, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Produces a tiled version of any image, kept in the default TileCache. Each tile is copied
+   *   from the image the first time it is needed.
+   * @param image the image to tile.
+   * @param tileSize the width and height of the tiles.
+   * @return a TiledImage with the same colors as the given image, or the image itself if it is
+   *         already tiled the same way.
+   * @throws IllegalArgumentException if the image is null, or the tile size is less than 1.
+   */
+  public static TiledImage of(Image image, int tileSize) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("Tile size must be at least 1.");
+    }
+
+    if (image instanceof TiledImage && ((TiledImage) image).tileSize == tileSize) {
+      return (TiledImage) image;
+    }
+
+    return new TiledImage(image.getWidth(), image.getHeight(), tileSize,
+        TileCache.getDefault(), (top, left, height, width) -> {
+          int[] tile = new int[height * width];
+          image.getRegion(top, left, height, width, tile, 0, width);
+          return tile;
+        });
+  }
+
+  //an image of the same size and tiling whose tiles are computed by the given function
+  private TiledImage derive(Tiles tiles) {
+    return new TiledImage(this.width, this.height, this.tileSize, this.cache, tiles);
+  }
+
+  /**
+   * Gets the width and height of the tiles of this image.
+   * @return the tile size.
+   */
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  //gets a tile from the cache, computing it if needed
+  private int[] tile(int tileRow, int tileCol) {
+    int top = tileRow * this.tileSize;
+    int left = tileCol * this.tileSize;
+    int rows = Math.min(this.tileSize, this.height - top);
+    int cols = Math.min(this.tileSize, this.width - left);
+    return this.cache.get(new TileCache.Key(this.id, (long) tileRow * this.tileCols + tileCol),
+        () -> this.tiles.compute(top, left, rows, cols));
+  }
+
+  //the width of the tiles in a column of tiles
+  private int tileWidth(int tileCol) {
+    return Math.min(this.tileSize, this.width - tileCol * this.tileSize);
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IllegalArgumentException("row or column out of range.");
+    }
+    int tileCol = col / this.tileSize;
+    int rgb = this.tile(row / this.tileSize, tileCol)[(row % this.tileSize)
+            * this.tileWidth(tileCol) + col % this.tileSize];
+    return new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb), PackedRGB.blue(rgb));
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    if (height == 0 || width == 0) {
+      return;
+    }
+
+    int firstTileRow = row / this.tileSize;
+    int tileRows = (row + height - 1) / this.tileSize - firstTileRow + 1;
+    RowScheduler.getDefault().forEachRowBand(tileRows, width * this.tileSize, (start, end) -> {
+      for (int tileRow = firstTileRow + start; tileRow < firstTileRow + end; tileRow++) {
+        for (int tileCol = col / this.tileSize; tileCol * this.tileSize < col + width;
+             tileCol++) {
+          int[] tile = this.tile(tileRow, tileCol);
+          int tileTop = tileRow * this.tileSize;
+          int tileLeft = tileCol * this.tileSize;
+          int tileWidth = this.tileWidth(tileCol);
+          int top = Math.max(row, tileTop);
+          int bottom = Math.min(row + height, tileTop + this.tileSize);
+          int left = Math.max(col, tileLeft);
+          int right = Math.min(col + width, tileLeft + tileWidth);
+          for (int r = top; r < bottom; r++) {
+            System.arraycopy(tile, (r - tileTop) * tileWidth + left - tileLeft,
+                    dest, offset + (r - row) * scanSize + left - col, right - left);
+          }
+        }
+      }
+    });
+  }
+
+  //reads a rectangle of this image into a new array
+  private int[] read(int top, int left, int height, int width) {
+    int[] pixels = new int[height * width];
+    this.getRegion(top, left, height, width, pixels, 0, width);
+    return pixels;
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, src, offset, scanSize);
+    int[] patch = new int[height * width];
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        patch[r * width + c] = src[offset + r * scanSize + c] & 0xFFFFFF;
+      }
+    }
+
+    return this.derive((top, left, rows, cols) -> {
+      int[] tile = this.read(top, left, rows, cols);
+      int fromCol = Math.max(left, col);
+      int toCol = Math.min(left + cols, col + width);
+      for (int r = Math.max(top, row); r < Math.min(top + rows, row + height); r++) {
+        if (fromCol < toCol) {
+          System.arraycopy(patch, (r - row) * width + fromCol - col,
+                  tile, (r - top) * cols + fromCol - left, toCol - fromCol);
+        }
+      }
+      return tile;
+    });
+  }
+
+  @Override
+  public Image flipVertical() {
+    return this.derive((top, left, rows, cols) -> {
+      int[] tile = this.read(this.height - top - rows, left, rows, cols);
+      int[] swap = new int[cols];
+      for (int i = 0, j = rows - 1; i < j; i++, j--) {
+        System.arraycopy(tile, i * cols, swap, 0, cols);
+        System.arraycopy(tile, j * cols, tile, i * cols, cols);
+        System.arraycopy(swap, 0, tile, j * cols, cols);
+      }
+      return tile;
+    });
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return this.derive((top, left, rows, cols) -> {
+      int[] tile = this.read(top, this.width - left - cols, rows, cols);
+      for (int start = 0; start < tile.length; start += cols) {
+        for (int i = start, j = start + cols - 1; i < j; i++, j--) {
+          int swap = tile[i];
+          tile[i] = tile[j];
+          tile[j] = swap;
+        }
+      }
+      return tile;
+    });
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.applyPointOp(PointOp.brightness(delta));
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) {
+    return this.applyPointOp(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public TiledImage applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (op == null) {
+      throw new IllegalArgumentException("Given operation was null.");
+    }
+
+    return this.derive((top, left, rows, cols) -> {
+      int[] tile = this.read(top, left, rows, cols);
+      op.apply(tile, tile, 0, tile.length);
+      return tile;
+    });
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.applyPointOp(PointOp.colorMatrix(matrix));
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.filter(kernel, EdgeMode.Zero);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    Kernels.checkKernel(kernel);
+    Kernels.checkEdgeMode(edges);
+
+    //tiles are computed long after this returns, so they must not see later changes to kernel
+    double[][] taps = new double[kernel.length][];
+    for (int r = 0; r < kernel.length; r++) {
+      taps[r] = Arrays.copyOf(kernel[r], kernel[r].length);
+    }
+    return this.derive((top, left, rows, cols) ->
+            Convolution.filterRegion(this, taps, edges, top, top + rows, left, left + cols));
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.mosaic(seedCount, new Random().nextLong(), false);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    if (seedCount < 1) {
+      throw new IllegalArgumentException("Seed Count < 1");
+    }
+
+    //the colors of the cells are found right away, a tile at a time; only the cells themselves
+    //  are left to be computed on demand
+    Mosaic mosaic = new Mosaic(this.width, this.height, seedCount, seed);
+    int[] colors = average ? this.averageColors(mosaic) : this.seedColors(mosaic);
+    return this.derive((top, left, rows, cols) -> {
+      int[] tile = new int[rows * cols];
+      mosaic.nearestSeeds(top, top + rows, left, left + cols, tile, 0);
+      for (int i = 0; i < tile.length; i++) {
+        tile[i] = colors[tile[i]];
+      }
+      return tile;
+    });
+  }
+
+  //finds the average color of each cell, over every tile in parallel
+  private int[] averageColors(Mosaic mosaic) {
+    long[] sums = new long[4 * mosaic.seedCount()];
+    int tileRows = (this.height + this.tileSize - 1) / this.tileSize;
+    RowScheduler.getDefault().forEachRowBand(tileRows, this.width * this.tileSize,
+        (start, end) -> {
+          long[] bandSums = new long[sums.length];
+          for (int tileRow = start; tileRow < end; tileRow++) {
+            for (int tileCol = 0; tileCol < this.tileCols; tileCol++) {
+              int top = tileRow * this.tileSize;
+              int left = tileCol * this.tileSize;
+              int[] tile = this.tile(tileRow, tileCol);
+              int[] cells = new int[tile.length];
+              mosaic.nearestSeeds(top, top + tile.length / this.tileWidth(tileCol), left,
+                      left + this.tileWidth(tileCol), cells, 0);
+              Mosaic.addColors(tile, cells, 0, tile.length, bandSums);
+            }
+          }
+          synchronized (sums) {
+            for (int i = 0; i < sums.length; i++) {
+              sums[i] += bandSums[i];
+            }
+          }
+        });
+    return Mosaic.averageColors(sums);
+  }
+
+  //finds the color of the pixel under each seed, visiting the seeds a tile at a time so that
+  //  each tile is read once, however small the cache
+  private int[] seedColors(Mosaic mosaic) {
+    //each seed is sorted by its tile in the high bits, with its number in the low bits
+    long[] order = new long[mosaic.seedCount()];
+    for (int i = 0; i < order.length; i++) {
+      long tile = (long) (mosaic.seedRow(i) / this.tileSize) * this.tileCols
+              + mosaic.seedCol(i) / this.tileSize;
+      order[i] = tile << 32 | i;
+    }
+    Arrays.sort(order);
+
+    int[] colors = new int[order.length];
+    int[] tile = null;
+    long tileIndex = -1;
+    for (long entry : order) {
+      int i = (int) entry;
+      if (entry >>> 32 != tileIndex) {
+        tileIndex = entry >>> 32;
+        tile = this.tile((int) (tileIndex / this.tileCols), (int) (tileIndex % this.tileCols));
+      }
+      int tileCol = (int) (tileIndex % this.tileCols);
+      colors[i] = tile[(mosaic.seedRow(i) % this.tileSize) * this.tileWidth(tileCol)
+              + mosaic.seedCol(i) % this.tileSize];
+    }
+    return colors;
+  }
+}
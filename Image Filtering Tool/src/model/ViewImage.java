@@ -0,0 +1,290 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Represents a flipped, rotated or cropped view of another image, which reads the pixels of that
+ *   image in place rather than copying them. Each pixel of the view is found by mapping its row
+ *   and column onto the source image, so flipping, rotating or cropping a view only makes another
+ *   view of the same source, however many times it is done, and takes the same time for any size
+ *   of image. Reading a region reads the matching region of the source and rearranges it.
+ * Operations which read neighboring pixels (filters and mosaics) or replace pixels copy the view
+ *   once, the first time one of them is run, into an image like its source: a PackedImage, or for
+ *   sources which are not held in memory, a MappedImage or a TiledImage. Per-pixel color
+ *   operations are recorded against the view, as for any other image held in memory.
+ */
+final class ViewImage implements Image {
+
+  //regions are rearranged at most this many pixels at a time
+  private static final int STRIP_PIXELS = 1 << 16;
+
+  /**
+   * Invariant: the pixel at (row, col) of this view is the pixel of source at
+   *   (top + rowByRow * row + rowByCol * col, left + colByRow * row + colByCol * col), which is
+   *   inside of source for every row and col inside of this view.
+   * Invariant: the matrix {{rowByRow, rowByCol}, {colByRow, colByCol}} is a rotation or
+   *   reflection, with one of -1 or 1 in each row and column, and 0 elsewhere.
+   */
+  private final Image source;
+  private final int width;
+  private final int height;
+  private final int top;
+  private final int left;
+  private final int rowByRow;
+  private final int rowByCol;
+  private final int colByRow;
+  private final int colByCol;
+  private volatile Image copy;
+
+  private ViewImage(Image source, int width, int height, int top, int left,
+                    int rowByRow, int rowByCol, int colByRow, int colByCol) {
+    this.source = source;
+    this.width = width;
+    this.height = height;
+    this.top = top;
+    this.left = left;
+    this.rowByRow = rowByRow;
+    this.rowByCol = rowByCol;
+    this.colByRow = colByRow;
+    this.colByCol = colByCol;
+  }
+
+  /**
+   * Produces a view of an image, which shows all of it unchanged. If the image is already a view,
+   *   it is returned as is.
+   * @param image the image.
+   * @return a view of the image.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  static ViewImage of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+
+    if (image instanceof ViewImage) {
+      return (ViewImage) image;
+    }
+
+    return new ViewImage(image, image.getWidth(), image.getHeight(), 0, 0, 1, 0, 0, 1);
+  }
+
+  //makes another view of the source, or gives back the source if the view would show all of it
+  //unchanged
+  private Image view(int width, int height, int top, int left,
+                     int rowByRow, int rowByCol, int colByRow, int colByCol) {
+    if (top == 0 && left == 0 && rowByRow == 1 && colByCol == 1
+            && width == this.source.getWidth() && height == this.source.getHeight()) {
+      return this.source;
+    }
+    return new ViewImage(this.source, width, height, top, left,
+            rowByRow, rowByCol, colByRow, colByCol);
+  }
+
+  /**
+   * Determines whether the source of this view keeps its pixels outside of the heap, as should
+   *   copies of this view.
+   * @return true if the source is a MappedImage or a TiledImage.
+   */
+  boolean isOffHeap() {
+    return this.source instanceof MappedImage || this.source instanceof TiledImage;
+  }
+
+  /**
+   * Gets the images this view keeps alive: its source, and its copy once it has been made.
+   * @return those images.
+   */
+  List<Image> retained() {
+    Image done = this.copy;
+    return done == null ? List.of(this.source) : List.of(this.source, done);
+  }
+
+  /**
+   * Copies the pixels of this view into an image of their own, if that has not been done already.
+   * @return an image with the same colors as this view, laid out like its source.
+   */
+  Image materialize() {
+    Image done = this.copy;
+    if (done == null) {
+      synchronized (this) {
+        done = this.copy;
+        if (done == null) {
+          if (this.source instanceof MappedImage) {
+            done = MappedImage.of(this);
+          } else if (this.source instanceof TiledImage) {
+            done = TiledImage.of(this);
+          } else {
+            done = PackedImage.of(this);
+          }
+          this.copy = done;
+        }
+      }
+    }
+    return done;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IllegalArgumentException("row or column out of range.");
+    }
+    return this.source.getPixelAt(this.top + this.rowByRow * row + this.rowByCol * col,
+            this.left + this.colByRow * row + this.colByCol * col);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width,
+                        int[] dest, int offset, int scanSize) throws IllegalArgumentException {
+    Rasters.checkRegion(this.width, this.height, row, col, height, width, dest, offset, scanSize);
+    if (height == 0 || width == 0) {
+      return;
+    }
+    int sourceRow = this.top + this.rowByRow * row + this.rowByCol * col;
+    int sourceCol = this.left + this.colByRow * row + this.colByCol * col;
+    if (this.rowByRow == 1 && this.colByCol == 1) {
+      //rows of the view are rows of the source, in the same order
+      this.source.getRegion(sourceRow, sourceCol, height, width, dest, offset, scanSize);
+      return;
+    }
+
+    int stripRows = Math.max(1, STRIP_PIXELS / width);
+    int[] strip = new int[Math.min(height, stripRows) * width];
+    for (int start = 0; start < height; start += stripRows) {
+      int rows = Math.min(stripRows, height - start);
+      this.rearrange(row + start, col, rows, width, strip, dest, offset + start * scanSize,
+              scanSize);
+    }
+  }
+
+  //reads the region of the source under a region of this view into strip, then copies it into
+  //dest in the order of the view
+  private void rearrange(int row, int col, int height, int width, int[] strip,
+                         int[] dest, int offset, int scanSize) {
+    //the corners of the region, in the source
+    int firstRow = this.top + this.rowByRow * row + this.rowByCol * col;
+    int firstCol = this.left + this.colByRow * row + this.colByCol * col;
+    int lastRow = firstRow + this.rowByRow * (height - 1) + this.rowByCol * (width - 1);
+    int lastCol = firstCol + this.colByRow * (height - 1) + this.colByCol * (width - 1);
+    int stripTop = Math.min(firstRow, lastRow);
+    int stripLeft = Math.min(firstCol, lastCol);
+    int stripWidth = Math.abs(lastCol - firstCol) + 1;
+    this.source.getRegion(stripTop, stripLeft, Math.abs(lastRow - firstRow) + 1, stripWidth,
+            strip, 0, stripWidth);
+
+    //how far a step along a row or down a column of the view moves through the strip
+    int alongRow = this.rowByCol * stripWidth + this.colByCol;
+    int downColumn = this.rowByRow * stripWidth + this.colByRow;
+    int rowStart = (firstRow - stripTop) * stripWidth + (firstCol - stripLeft);
+    for (int r = 0; r < height; r++, rowStart += downColumn) {
+      int to = offset + r * scanSize;
+      for (int c = 0, from = rowStart; c < width; c++, from += alongRow) {
+        dest[to + c] = strip[from];
+      }
+    }
+  }
+
+  @Override
+  public Image withRegion(int row, int col, int height, int width,
+                          int[] src, int offset, int scanSize) throws IllegalArgumentException {
+    return this.materialize().withRegion(row, col, height, width, src, offset, scanSize);
+  }
+
+  @Override
+  public Image flipVertical() {
+    return this.view(this.width, this.height,
+            this.top + this.rowByRow * (this.height - 1),
+            this.left + this.colByRow * (this.height - 1),
+            -this.rowByRow, this.rowByCol, -this.colByRow, this.colByCol);
+  }
+
+  @Override
+  public Image flipHorizontal() {
+    return this.view(this.width, this.height,
+            this.top + this.rowByCol * (this.width - 1),
+            this.left + this.colByCol * (this.width - 1),
+            this.rowByRow, -this.rowByCol, this.colByRow, -this.colByCol);
+  }
+
+  @Override
+  public Image rotateClockwise() {
+    //row r, column c of the result is row height - 1 - c, column r of this view
+    return this.view(this.height, this.width,
+            this.top + this.rowByRow * (this.height - 1),
+            this.left + this.colByRow * (this.height - 1),
+            this.rowByCol, -this.rowByRow, this.colByCol, -this.colByRow);
+  }
+
+  @Override
+  public Image rotateCounterclockwise() {
+    //row r, column c of the result is row c, column width - 1 - r of this view
+    return this.view(this.height, this.width,
+            this.top + this.rowByCol * (this.width - 1),
+            this.left + this.colByCol * (this.width - 1),
+            -this.rowByCol, this.rowByRow, -this.colByCol, this.colByRow);
+  }
+
+  @Override
+  public Image crop(int row, int col, int height, int width) throws IllegalArgumentException {
+    if (row < 0 || col < 0 || height < 1 || width < 1
+            || row + height > this.height || col + width > this.width) {
+      throw new IllegalArgumentException("Crop out of range.");
+    }
+    return this.view(width, height,
+            this.top + this.rowByRow * row + this.rowByCol * col,
+            this.left + this.colByRow * row + this.colByCol * col,
+            this.rowByRow, this.rowByCol, this.colByRow, this.colByCol);
+  }
+
+  @Override
+  public Image adjustBrightness(int delta) {
+    return this.applyPointOp(PointOp.brightness(delta));
+  }
+
+  @Override
+  public Image grayscale(ColorComponent comp) {
+    return this.applyPointOp(PointOp.grayscale(comp));
+  }
+
+  @Override
+  public Image applyPointOp(PointOp op) throws IllegalArgumentException {
+    if (this.isOffHeap()) {
+      return this.materialize().applyPointOp(op);
+    }
+    return PipelineImage.of(this).applyPointOp(op);
+  }
+
+  @Override
+  public Image transformColor(double[][] matrix) throws IllegalArgumentException {
+    return this.applyPointOp(PointOp.colorMatrix(matrix));
+  }
+
+  @Override
+  public Image filter(double[][] kernel) throws IllegalArgumentException {
+    return this.materialize().filter(kernel);
+  }
+
+  @Override
+  public Image filter(double[][] kernel, EdgeMode edges) throws IllegalArgumentException {
+    return this.materialize().filter(kernel, edges);
+  }
+
+  @Override
+  public Image mosaic(int seedCount) throws IllegalArgumentException {
+    return this.materialize().mosaic(seedCount);
+  }
+
+  @Override
+  public Image mosaic(int seedCount, long seed, boolean average)
+          throws IllegalArgumentException {
+    return this.materialize().mosaic(seedCount, seed, average);
+  }
+}
@@ -0,0 +1,67 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces files by writing a temporary file beside them, then moving it over them in one step.
+ *   A file is never seen half written, and an image mapped from the file it replaces keeps the
+ *   pixels it was mapped with, as the mapping holds on to the old file rather than having it
+ *   truncated and rewritten underneath it.
+ */
+final class FileReplacer {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Represents what is written into a file.
+   */
+  interface Contents {
+
+    /**
+     * Writes the contents.
+     * @param out the stream to write them to, which is closed afterwards.
+     * @throws IOException if they can not be written.
+     */
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private FileReplacer() {
+  }
+
+  /**
+   * Writes a file, replacing it if it exists. If the contents can not be written, any file
+   *   already there is left as it was.
+   * @param filename the path of the file.
+   * @param contents writes the contents of the file.
+   * @throws IOException if the file can not be written, or its directory does not exist.
+   */
+  static void replace(String filename, Contents contents) throws IOException {
+    Path target = new File(filename).getAbsoluteFile().toPath();
+    //hidden beside the file, so that moving it is a rename within one file system
+    Path temp = target.resolveSibling("." + target.getFileName() + "."
+            + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp.toFile()),
+              BUFFER_SIZE)) {
+        contents.writeTo(out);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package utils;
+
+/**
+ * Represents where the pixels of a loaded image are kept.
+ * Memory: in an array on the heap, the fastest to work with.
+ * Mapped: in a file which is memory-mapped, for images too large for the heap, which are worked
+ *   through a strip of rows at a time.
+ * Tiled: in tiles which are computed on demand and kept in a bounded cache, for images too large
+ *   for the heap, which are worked through a tile at a time. The tiles are read from a mapped
+ *   file where possible.
+ */
+public enum ImageStorage {
+  Memory, Mapped, Tiled;
+
+  /**
+   * Finds the storage with the given name, ignoring case.
+   * @param name the name of the storage, such as "mapped".
+   * @return the storage.
+   * @throws IllegalArgumentException if there is no storage with that name.
+   */
+  public static ImageStorage fromName(String name) throws IllegalArgumentException {
+    for (ImageStorage storage : ImageStorage.values()) {
+      if (storage.name().equalsIgnoreCase(name)) {
+        return storage;
+      }
+    }
+    throw new IllegalArgumentException("No image storage named " + name + ".");
+  }
+}
@@ -5,25 +5,22 @@ import java.awt.image.BufferedImage;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Scanner;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import javax.swing.ImageIcon;
 
+import model.AwtImages;
 import model.ColorComponent;
+import model.Histogram;
 import model.Image;
-import model.Pixel;
-import model.RGBPixel;
-import model.SimpleImage;
 
 
 /**
@@ -33,53 +30,33 @@ import model.SimpleImage;
 public class ImageUtils {
 
   /**
-   * Read an image file in the PPM format return it as an Image.
+   * Read an image file in the PPM format return it as an Image. Plain (P3) and raw (P6) PPM
+   *   files are supported, as are PAM (P7) files of RGB tuples.
    *
    * @param filename the path of the file.
+   * @throws FileNotFoundException if the file does not exist or can not be read, is not a PPM
+   *                               file, or is malformed.
    */
   public static Image readPPM(String filename)
           throws FileNotFoundException {
-    Scanner sc;
-
-    try {
-      sc = new Scanner(new FileInputStream(filename));
-    } catch (FileNotFoundException e) {
-      throw new FileNotFoundException("File " + filename + " not found!");
-    }
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
-      }
-    }
-
-    //now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-
-    String token;
-
-    token = sc.next();
-    if (!token.equals("P3")) {
-      throw new FileNotFoundException("File found was not raw ppm");
-    }
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int maxValue = sc.nextInt();
-
-    Pixel[][] pixels = new Pixel[width][height];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = (int) Math.round(sc.nextInt() * (255.0 / maxValue));
-        int g = (int) Math.round(sc.nextInt() * (255.0 / maxValue));
-        int b = (int) Math.round(sc.nextInt() * (255.0 / maxValue));
-        pixels[j][i] = new RGBPixel(r, g, b);
-      }
-    }
+    return PpmReader.read(filename);
+  }
 
-    return new SimpleImage(pixels);
+  /**
+   * Opens an image file in the PPM format as an Image whose pixels are kept in a file rather than
+   *   in memory, so that it may be larger than the heap. Raw (P6) PPM and PAM (P7) files with a
+   *   maximum value of 255 are used in place, without being copied; any other PPM file is read,
+   *   then written into a new file. Saving an image over the file replaces it, leaving the
+   *   mapped image as it was, but the file must not be changed in place while the image is in
+   *   use.
+   *
+   * @param filename the path of the file.
+   * @throws FileNotFoundException if the file does not exist or can not be read, is not a PPM
+   *                               file, or is malformed.
+   */
+  public static Image mapPPM(String filename)
+          throws FileNotFoundException {
+    return PpmReader.map(filename);
   }
 
   /**
@@ -97,25 +74,12 @@ public class ImageUtils {
     }
 
     BufferedImage img = ImageIO.read(imageFile);
-
-    int width = img.getWidth();
-    int height = img.getHeight();
-
-    Pixel[][] pixels = new Pixel[width][height];
-
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int pixel = img.getRGB(j, i);
-        Color color = new Color(pixel, true);
-        int r = color.getRed();
-        int g = color.getGreen();
-        int b = color.getBlue();
-        pixels[j][i] = new RGBPixel(r, g, b);
-      }
+    if (img == null) {
+      throw new IOException("File " + filename + " could not be read!");
     }
 
-    return new SimpleImage(pixels);
+    //shares the decoded raster where its layout allows, dropping any alpha channel
+    return AwtImages.fromBufferedImage(img);
   }
 
   /**
@@ -127,27 +91,25 @@ public class ImageUtils {
    */
   public static void savePPM(Image image, String name)
           throws IOException {
+    savePPM(image, name, PpmFormat.Plain);
+  }
 
-    FileWriter ppmWriter = new FileWriter(name);
-
-    ppmWriter.write("P3\n#Created by Image Processor\n");
-
-    ppmWriter.write(image.getWidth() + " " + image.getHeight() + "\n");
-
-    ppmWriter.write("255\n");
-
-    for (int i = 0; i < image.getHeight(); i++) {
-      for (int j = 0; j < image.getWidth(); j++) {
-        int r = image.getPixelAt(i, j).getComponent(ColorComponent.Red);
-        int g = image.getPixelAt(i, j).getComponent(ColorComponent.Green);
-        int b = image.getPixelAt(i, j).getComponent(ColorComponent.Blue);
-        ppmWriter.write(r + "\n");
-        ppmWriter.write(g + "\n");
-        ppmWriter.write(b + "\n");
-      }
+  /**
+   * Saves the information in an Image object as a PPM file of the given format, either plain
+   *   (P3) or raw (P6).
+   *
+   * @param image  the image to save.
+   * @param name   the filepath to save the image to.
+   * @param format the format of the file.
+   * @throws IOException if there is an error writing to the file.
+   * @throws IllegalArgumentException if the format is null.
+   */
+  public static void savePPM(Image image, String name, PpmFormat format)
+          throws IOException, IllegalArgumentException {
+    if (format == null) {
+      throw new IllegalArgumentException("Given format was null.");
     }
-
-    ppmWriter.close();
+    PpmWriter.write(image, name, format);
   }
 
   /**
@@ -160,27 +122,32 @@ public class ImageUtils {
 
     BufferedImage bufferedImage = convertToBufferedImage(image);
 
-    File outputFile = new File(name);
-
-    FileWriter fw = new FileWriter(outputFile);
-
     String fileType = getFileType(name);
 
-    switch (fileType) {
-      case "jpg":
-      case "jpeg": //special case to write jpeg w/o compression
-        ImageWriter writer = ImageIO.getImageWritersByFormatName(fileType).next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionType("JPEG");
-        param.setCompressionQuality(1.0f); //retain best quality
-        writer.setOutput(new FileImageOutputStream(outputFile));
-        writer.write(null, new IIOImage(bufferedImage, null, null), param);
-        break;
-      default:
-        ImageIO.write(bufferedImage, fileType, outputFile);
-        break;
-    }
+    //unlike a FileImageOutputStream, this replaces any existing file as a whole
+    FileReplacer.replace(name, file -> {
+      try (ImageOutputStream output = new MemoryCacheImageOutputStream(file)) {
+        switch (fileType) {
+          case "jpg":
+          case "jpeg": //special case to write jpeg w/o compression
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(fileType).next();
+            try {
+              ImageWriteParam param = writer.getDefaultWriteParam();
+              param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+              param.setCompressionType("JPEG");
+              param.setCompressionQuality(1.0f); //retain best quality
+              writer.setOutput(output);
+              writer.write(null, new IIOImage(bufferedImage, null, null), param);
+            } finally {
+              writer.dispose();
+            }
+            break;
+          default:
+            ImageIO.write(bufferedImage, fileType, output);
+            break;
+        }
+      }
+    });
   }
 
   /**
@@ -194,32 +161,21 @@ public class ImageUtils {
 
   /**
    * Creates BufferedImage displaying a histogram of given Image, with specified number of buckets,
-   * and width of each column.
+   * and width of each column. The counts come from the image's Histogram, so drawing the same
+   * image again does not count its pixels again.
    * @param image to use for histogram.
    * @param numBuckets for the histogram.
    * @param colWidthInPixels column width in pixels of the histogram image.
    * @return BufferedImage of the histogram.
    */
   public static BufferedImage makeHistogram(Image image, int numBuckets, int colWidthInPixels) {
-    double bucketWidth = 256.0 / (numBuckets + 0.0);
-    int[] redBuckets = new int[numBuckets];
-    int[] greenBuckets = new int[numBuckets];
-    int[] blueBuckets = new int[numBuckets];
-    int[] intensityBuckets = new int[numBuckets];
-
-    int mostInABucket = 0;
-
-    for (int i = 0; i < image.getHeight(); i++) {
-      for (int j = 0; j < image.getWidth(); j++) {
-        int r = image.getPixelAt(i, j).getComponent(ColorComponent.Red);
-        int g = image.getPixelAt(i, j).getComponent(ColorComponent.Green);
-        int b = image.getPixelAt(i, j).getComponent(ColorComponent.Blue);
-        redBuckets[(int) Math.floor(r / bucketWidth)]++;
-        blueBuckets[(int) Math.floor(g / bucketWidth)]++;
-        greenBuckets[(int) Math.floor(b / bucketWidth)]++;
-        intensityBuckets[(int) Math.floor(((r + g + b) / 3.0) / bucketWidth)]++;
-      }
-    }
+    Histogram histogram = Histogram.of(image);
+    long[] redBuckets = histogram.getBuckets(ColorComponent.Red, numBuckets);
+    long[] greenBuckets = histogram.getBuckets(ColorComponent.Green, numBuckets);
+    long[] blueBuckets = histogram.getBuckets(ColorComponent.Blue, numBuckets);
+    long[] intensityBuckets = histogram.getBuckets(ColorComponent.Intensity, numBuckets);
+
+    long mostInABucket = 0;
 
     for (int i = 0; i < numBuckets; i++) {
       mostInABucket = Math.max(mostInABucket,
@@ -275,21 +231,9 @@ public class ImageUtils {
     return bufferedImage;
   }
 
+  //shares the colors of the image where possible, so the result must only be read
   private static BufferedImage convertToBufferedImage(Image image) {
-    BufferedImage bufferedImage = new BufferedImage(image.getWidth(),
-            image.getHeight(),
-            BufferedImage.TYPE_INT_RGB);
-
-    for (int i = 0; i < bufferedImage.getHeight(); i++) {
-      for (int j = 0; j < bufferedImage.getWidth(); j++) {
-        Color c = new Color(image.getPixelAt(i, j).getComponent(ColorComponent.Red),
-                image.getPixelAt(i, j).getComponent(ColorComponent.Green),
-                image.getPixelAt(i, j).getComponent(ColorComponent.Blue));
-        bufferedImage.setRGB(j, i, c.getRGB());
-      }
-    }
-
-    return bufferedImage;
+    return AwtImages.toBufferedImage(image);
   }
 
   private static String getFileType(String fileName) {
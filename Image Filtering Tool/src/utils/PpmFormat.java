@@ -0,0 +1,32 @@
+package utils;
+
+/**
+ * Represents one of the two kinds of PPM file an image can be saved as.
+ * Plain: a P3 file, with every sample written as decimal text on its own line.
+ * Raw: a P6 file, with every sample written as a single byte, about a quarter of the size.
+ */
+public enum PpmFormat {
+  Plain, Raw;
+
+  /**
+   * Finds the format with the given name, ignoring case. The magic numbers "P3" and "P6" are
+   *   also accepted as names of the plain and raw formats.
+   * @param name the name of the format, such as "raw".
+   * @return the format.
+   * @throws IllegalArgumentException if there is no format with that name.
+   */
+  public static PpmFormat fromName(String name) throws IllegalArgumentException {
+    if ("P3".equalsIgnoreCase(name)) {
+      return Plain;
+    }
+    if ("P6".equalsIgnoreCase(name)) {
+      return Raw;
+    }
+    for (PpmFormat format : PpmFormat.values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("No PPM format named " + name + ".");
+  }
+}
@@ -0,0 +1,389 @@
+package utils;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+
+import model.Image;
+import model.MappedImage;
+import model.PackedImage;
+import model.PackedRGB;
+
+/**
+ * Reads PPM files, either plain (P3, with samples written as decimal text) or raw (P6, with
+ *   samples written as bytes), and PAM files (P7, with samples written as bytes like raw PPM, but
+ *   a header of named fields) whose tuples are RGB, straight from a buffered stream into a packed
+ *   raster, one byte at a time, without ever holding the text of the file in memory. Comments,
+ *   from a # to the end of its line, may appear anywhere whitespace may in the header, and
+ *   anywhere in the samples of a plain file. Samples are scaled from the file's maximum value to 0
+ *   to 255, and a sample above the maximum makes the file malformed.
+ */
+final class PpmReader {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  //the position in the file of buffer[0]
+  private long bufferStart;
+
+  private PpmReader(InputStream in) {
+    this.in = in;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.position = 0;
+    this.limit = 0;
+    this.bufferStart = 0;
+  }
+
+  /**
+   * The format, size and maximum sample value of a file, as given by its header.
+   */
+  private static final class Header {
+    private final int format;
+    private final int width;
+    private final int height;
+    private final int maxValue;
+
+    private Header(int format, int width, int height, int maxValue) {
+      this.format = format;
+      this.width = width;
+      this.height = height;
+      this.maxValue = maxValue;
+    }
+  }
+
+  /**
+   * Reads a PPM file into an image.
+   * @param filename the path of the file.
+   * @return the image.
+   * @throws FileNotFoundException if the file does not exist or can not be read, if it is not a
+   *                               P3, P6 or P7 file, or if its contents are malformed.
+   */
+  static Image read(String filename) throws FileNotFoundException {
+    try (InputStream in = open(filename)) {
+      PpmReader reader = new PpmReader(in);
+      Header header = reader.readHeader();
+      if ((long) header.width * header.height > Integer.MAX_VALUE) {
+        throw malformed();
+      }
+      return reader.readPixels(header);
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw notRead(filename, e);
+    }
+  }
+
+  /**
+   * Opens a raw PPM or PAM file with one byte samples as a MappedImage, whose pixels stay in the
+   *   file, where they are paged in as needed rather than read into memory. Any other file is read
+   *   as usual, then written into a new file of its own.
+   * @param filename the path of the file.
+   * @return the image.
+   * @throws FileNotFoundException if the file does not exist or can not be read or mapped, if it
+   *                               is not a P3, P6 or P7 file, or if its contents are malformed.
+   */
+  static Image map(String filename) throws FileNotFoundException {
+    Header header;
+    long offset;
+    try (InputStream in = open(filename)) {
+      PpmReader reader = new PpmReader(in);
+      header = reader.readHeader();
+      offset = reader.bufferStart + reader.position;
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw notRead(filename, e);
+    }
+
+    if (header.format == '3' || header.maxValue != 255) {
+      return MappedImage.of(read(filename));
+    }
+
+    try {
+      return MappedImage.open(Paths.get(filename), offset, header.width, header.height);
+    } catch (IllegalArgumentException e) {
+      //the file is too short for its raster
+      throw malformed();
+    } catch (IOException e) {
+      throw notRead(filename, e);
+    }
+  }
+
+  private static InputStream open(String filename) throws FileNotFoundException {
+    try {
+      return new FileInputStream(filename);
+    } catch (FileNotFoundException e) {
+      throw new FileNotFoundException("File " + filename + " not found!");
+    }
+  }
+
+  private static FileNotFoundException notRead(String filename, IOException cause) {
+    FileNotFoundException notRead =
+            new FileNotFoundException("File " + filename + " could not be read!");
+    notRead.initCause(cause);
+    return notRead;
+  }
+
+  //reads the header, leaving the reader at the first sample
+  private Header readHeader() throws IOException {
+    this.skipWhitespace();
+    int p = this.read();
+    int format = this.read();
+    if (p != 'P' || (format != '3' && format != '6' && format != '7')
+            || !isWhitespace(this.peek())) {
+      throw new FileNotFoundException("File found was not raw ppm");
+    }
+
+    Header header;
+    if (format == '7') {
+      header = this.readPamHeader();
+    } else {
+      header = new Header(format, this.readHeaderNumber(), this.readHeaderNumber(),
+              this.readHeaderNumber());
+    }
+    if (header.width < 1 || header.height < 1 || header.maxValue < 1
+            || header.maxValue > 65535) {
+      throw malformed();
+    }
+
+    if (format != '3') {
+      //exactly one whitespace byte separates the header from the samples
+      this.read();
+    }
+    return header;
+  }
+
+  //reads the named fields of a PAM header, up to and including ENDHDR; the tuples must be RGB
+  private Header readPamHeader() throws IOException {
+    int width = 0;
+    int height = 0;
+    int depth = 0;
+    int maxValue = 0;
+    while (true) {
+      String field = this.readToken();
+      switch (field) {
+        case "WIDTH":
+          width = this.readHeaderNumber();
+          break;
+        case "HEIGHT":
+          height = this.readHeaderNumber();
+          break;
+        case "DEPTH":
+          depth = this.readHeaderNumber();
+          break;
+        case "MAXVAL":
+          maxValue = this.readHeaderNumber();
+          break;
+        case "TUPLTYPE":
+          if (!this.readToken().equals("RGB")) {
+            throw malformed();
+          }
+          break;
+        case "ENDHDR":
+          if (depth != 3) {
+            throw malformed();
+          }
+          return new Header('7', width, height, maxValue);
+        default:
+          throw malformed();
+      }
+    }
+  }
+
+  //reads the samples of a file whose header has been read
+  private Image readPixels(Header header) throws IOException {
+    int[] scale = scaleTable(header.maxValue);
+    int[] pixels = new int[header.width * header.height];
+    if (header.format == '3') {
+      this.readPlain(pixels, scale);
+    } else {
+      this.readRaw(pixels, header.width, header.maxValue > 255 ? 2 : 1, scale);
+    }
+
+    return new PackedImage(header.width, header.height, pixels);
+  }
+
+  //maps each sample value from 0 to maxValue to 0 to 255, rounding to nearest
+  private static int[] scaleTable(int maxValue) {
+    int[] scale = new int[maxValue + 1];
+    for (int v = 0; v <= maxValue; v++) {
+      scale[v] = (int) Math.round(v * (255.0 / maxValue));
+    }
+    return scale;
+  }
+
+  //reads decimal samples, three to a pixel
+  private void readPlain(int[] pixels, int[] scale) throws IOException {
+    for (int i = 0; i < pixels.length; i++) {
+      int r = this.readSample(scale);
+      int g = this.readSample(scale);
+      int b = this.readSample(scale);
+      pixels[i] = PackedRGB.pack(r, g, b);
+    }
+  }
+
+  //reads one decimal sample, scaled to 0 to 255
+  private int readSample(int[] scale) throws IOException {
+    int value = this.readNumber();
+    if (value >= scale.length) {
+      throw malformed();
+    }
+    return scale[value];
+  }
+
+  //reads binary samples of the given number of bytes each, most significant byte first, a row
+  //  at a time
+  private void readRaw(int[] pixels, int width, int sampleBytes, int[] scale)
+          throws IOException {
+    int maxValue = scale.length - 1;
+    byte[] row = new byte[width * 3 * sampleBytes];
+    for (int start = 0; start < pixels.length; start += width) {
+      this.readFully(row);
+      if (sampleBytes == 1 && maxValue == 255) {
+        for (int j = 0, k = 0; j < width; j++, k += 3) {
+          pixels[start + j] = PackedRGB.pack(row[k] & 0xFF, row[k + 1] & 0xFF,
+                  row[k + 2] & 0xFF);
+        }
+      } else {
+        int[] samples = new int[3];
+        for (int j = 0, k = 0; j < width; j++) {
+          for (int c = 0; c < 3; c++, k += sampleBytes) {
+            int v = row[k] & 0xFF;
+            if (sampleBytes == 2) {
+              v = v << 8 | (row[k + 1] & 0xFF);
+            }
+            if (v > maxValue) {
+              throw malformed();
+            }
+            samples[c] = scale[v];
+          }
+          pixels[start + j] = PackedRGB.pack(samples[0], samples[1], samples[2]);
+        }
+      }
+    }
+  }
+
+  //reads a number in the header, which must be preceded by whitespace or comments
+  private int readHeaderNumber() throws IOException {
+    if (!isWhitespace(this.peek()) && this.peek() != '#') {
+      throw malformed();
+    }
+    return this.readNumber();
+  }
+
+  //skips whitespace and comments, then reads a word of at most a few characters
+  private String readToken() throws IOException {
+    this.skipWhitespace();
+    StringBuilder token = new StringBuilder();
+    int c = this.peek();
+    while (c != -1 && !isWhitespace(c) && c != '#') {
+      if (token.length() == 8) {
+        throw malformed();
+      }
+      token.append((char) this.read());
+      c = this.peek();
+    }
+    return token.toString();
+  }
+
+  //skips whitespace and comments, then reads a non-negative decimal number
+  private int readNumber() throws IOException {
+    this.skipWhitespace();
+    int c = this.peek();
+    if (c < '0' || c > '9') {
+      throw malformed();
+    }
+
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      this.read();
+      value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+      c = this.peek();
+    }
+    return (int) value;
+  }
+
+  //skips any whitespace and comments
+  private void skipWhitespace() throws IOException {
+    int c = this.peek();
+    while (isWhitespace(c) || c == '#') {
+      this.read();
+      if (c == '#') {
+        while (c != '\n' && c != '\r' && c != -1) {
+          c = this.read();
+        }
+      }
+      c = this.peek();
+    }
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+  }
+
+  private static FileNotFoundException malformed() {
+    return new FileNotFoundException("File found was not a valid ppm");
+  }
+
+  //gets the next byte without consuming it, or -1 at the end of the file
+  private int peek() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.position] & 0xFF;
+  }
+
+  //consumes the next byte, or returns -1 at the end of the file
+  private int read() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.position++] & 0xFF;
+  }
+
+  //consumes exactly dest.length bytes, reading straight into dest when at least a whole buffer
+  //  is still needed, and through the buffer otherwise
+  private void readFully(byte[] dest) throws IOException {
+    int done = 0;
+    while (done < dest.length) {
+      if (this.position == this.limit) {
+        if (dest.length - done >= this.buffer.length) {
+          int count = this.in.read(dest, done, dest.length - done);
+          if (count < 0) {
+            throw malformed();
+          }
+          done += count;
+          //the buffer is now empty, and starts after the bytes read
+          this.bufferStart += this.limit + count;
+          this.position = 0;
+          this.limit = 0;
+          continue;
+        }
+        if (!this.fill()) {
+          throw malformed();
+        }
+      }
+      int count = Math.min(dest.length - done, this.limit - this.position);
+      System.arraycopy(this.buffer, this.position, dest, done, count);
+      this.position += count;
+      done += count;
+    }
+  }
+
+  //reads more of the file into the empty buffer, returning false at the end of the file
+  private boolean fill() throws IOException {
+    int count = this.in.read(this.buffer, 0, this.buffer.length);
+    if (count <= 0) {
+      return false;
+    }
+    this.bufferStart += this.limit;
+    this.position = 0;
+    this.limit = count;
+    return true;
+  }
+}
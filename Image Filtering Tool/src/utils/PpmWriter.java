@@ -0,0 +1,85 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import model.Image;
+import model.PackedRGB;
+
+/**
+ * Writes images as PPM files. Each row of the image is encoded into one array of bytes, which is
+ *   written through a large buffer, so a file takes a handful of writes however many pixels it
+ *   has. Plain files are laid out as they always have been: a comment after the magic number, and
+ *   every sample on its own line.
+ */
+final class PpmWriter {
+
+  //the text of every sample, followed by a newline, so that encoding a sample is one copy
+  private static final byte[][] SAMPLE_TEXT = new byte[256][];
+
+  static {
+    for (int v = 0; v < 256; v++) {
+      SAMPLE_TEXT[v] = (v + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private PpmWriter() {
+  }
+
+  /**
+   * Writes an image to a file, replacing the file if it exists, through a FileReplacer.
+   * @param image the image to write.
+   * @param filename the path of the file.
+   * @param format whether to write a plain (P3) or raw (P6) file.
+   * @throws IOException if the file can not be written.
+   */
+  static void write(Image image, String filename, PpmFormat format) throws IOException {
+    FileReplacer.replace(filename, out -> write(image, out, format));
+  }
+
+  private static void write(Image image, OutputStream out, PpmFormat format)
+          throws IOException {
+    int width = image.getWidth();
+    String magic = format == PpmFormat.Raw ? "P6" : "P3";
+    out.write((magic + "\n#Created by Image Processor\n" + width + " " + image.getHeight()
+            + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+
+    int[] row = new int[width];
+    //a sample is at most three digits and a newline as text, and one byte raw
+    byte[] bytes = new byte[width * 3 * (format == PpmFormat.Raw ? 1 : 4)];
+    for (int i = 0; i < image.getHeight(); i++) {
+      image.getRow(i, row);
+      int length = format == PpmFormat.Raw ? encodeRaw(row, bytes) : encodePlain(row, bytes);
+      out.write(bytes, 0, length);
+    }
+  }
+
+  //encodes a row as bytes, returning how many were used
+  private static int encodeRaw(int[] row, byte[] bytes) {
+    int k = 0;
+    for (int rgb : row) {
+      bytes[k++] = (byte) PackedRGB.red(rgb);
+      bytes[k++] = (byte) PackedRGB.green(rgb);
+      bytes[k++] = (byte) PackedRGB.blue(rgb);
+    }
+    return k;
+  }
+
+  //encodes a row as lines of text, returning how many bytes were used
+  private static int encodePlain(int[] row, byte[] bytes) {
+    int k = 0;
+    for (int rgb : row) {
+      k = appendSample(PackedRGB.red(rgb), bytes, k);
+      k = appendSample(PackedRGB.green(rgb), bytes, k);
+      k = appendSample(PackedRGB.blue(rgb), bytes, k);
+    }
+    return k;
+  }
+
+  private static int appendSample(int value, byte[] bytes, int k) {
+    byte[] text = SAMPLE_TEXT[value];
+    System.arraycopy(text, 0, bytes, k, text.length);
+    return k + text.length;
+  }
+}
@@ -0,0 +1,258 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import model.Image;
+
+/**
+ * Saves images to files, either on the calling thread or in the background on a small pool of
+ *   threads. A background service holds at most a fixed number of saves which have not finished,
+ *   and makes callers wait for one to finish before taking another, so that a script saving
+ *   faster than files can be written never holds more than that many images for saving at once.
+ *   Files ending in .ppm are saved as ppm files, and any other file as the type its extension
+ *   names.
+ */
+public final class SaveService {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  /**
+   * Invariant: executor and slots are null exactly when this service saves on the calling thread.
+   * Invariant: pending maps the saves given to the executor which have not finished, along with
+   *            anything run when their futures completed, to the absolute paths of their files,
+   *            and is guarded by itself.
+   */
+  private final ThreadPoolExecutor executor;
+  private final Semaphore slots;
+  private final Map<CompletableFuture<Void>, Path> pending;
+  private final Queue<String> failures;
+
+  private SaveService(ThreadPoolExecutor executor, Semaphore slots) {
+    this.executor = executor;
+    this.slots = slots;
+    this.pending = new HashMap<>();
+    this.failures = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * Produces a service that saves each image on the calling thread, before returning.
+   * @return the synchronous service.
+   */
+  public static SaveService synchronous() {
+    return new SaveService(null, null);
+  }
+
+  /**
+   * Produces a service that saves images in the background, on a pool of threads which are let
+   *   go once they have been idle for a while.
+   * @param threads the number of images to save at once.
+   * @param maxPending the number of saves which may be waiting or running before callers wait.
+   * @return the background service.
+   * @throws IllegalArgumentException if either number is less than 1.
+   */
+  public static SaveService background(int threads, int maxPending)
+          throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Threads must be at least 1.");
+    }
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("Pending saves must be at least 1.");
+    }
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+              //not a daemon, so that a program never exits with a file half written
+              return new Thread(r, "image-save-" + THREAD_COUNT.incrementAndGet());
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return new SaveService(executor, new Semaphore(maxPending));
+  }
+
+  /**
+   * Produces a service that saves images in the background, with two threads and up to four
+   *   saves waiting or running at once.
+   * @return the background service.
+   */
+  public static SaveService background() {
+    return background(2, 4);
+  }
+
+  /**
+   * Determines whether this service saves each image on the calling thread, before returning.
+   * @return true if this service is synchronous.
+   */
+  public boolean isSynchronous() {
+    return this.executor == null;
+  }
+
+  /**
+   * Saves an image to a file. A background service returns as soon as the save has been queued,
+   *   first waiting for an earlier save to finish if it already holds its most pending saves,
+   *   and records the file name of a save which fails, to be taken with takeFailures. The image
+   *   must not be changed until the save has finished, and the file should not be read until
+   *   then either, which awaitFile waits for.
+   * @param image the image to save.
+   * @param fileName the file to save to.
+   * @param format whether a ppm file is written as plain (P3) or raw (P6).
+   * @return a future which completes when the file has been written, or completes exceptionally
+   *         with the reason it could not be.
+   * @throws IllegalArgumentException if any argument is null.
+   * @throws IOException if this service saves on the calling thread and writing the file fails.
+   */
+  public CompletableFuture<Void> save(Image image, String fileName, PpmFormat format)
+          throws IllegalArgumentException, IOException {
+    if (image == null) {
+      throw new IllegalArgumentException("Given image was null.");
+    }
+    if (fileName == null) {
+      throw new IllegalArgumentException("Given file name was null.");
+    }
+    if (format == null) {
+      throw new IllegalArgumentException("Given format was null.");
+    }
+
+    if (this.executor == null) {
+      write(image, fileName, format);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    this.slots.acquireUninterruptibly();
+    CompletableFuture<Void> saved = new CompletableFuture<>();
+    synchronized (this.pending) {
+      this.pending.put(saved, absolute(fileName));
+    }
+    try {
+      this.executor.execute(() -> {
+        Throwable failure = null;
+        try {
+          write(image, fileName, format);
+        } catch (Throwable e) {
+          failure = e;
+          this.failures.add(fileName);
+        } finally {
+          //completes first, so that a save is pending until everything waiting on it has run
+          try {
+            if (failure == null) {
+              saved.complete(null);
+            } else {
+              saved.completeExceptionally(failure);
+            }
+          } finally {
+            this.finished(saved);
+          }
+        }
+        if (failure instanceof Error) {
+          //still ends the thread, now that the save is no longer pending
+          throw (Error) failure;
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.finished(saved);
+      throw e;
+    }
+    return saved;
+  }
+
+  /**
+   * Waits for every save given to this service so far to finish, whether or not it succeeds,
+   *   along with anything run when its future completed.
+   */
+  public void awaitAll() {
+    this.await(file -> true);
+  }
+
+  /**
+   * Waits for every save to the given file given to this service so far to finish, whether or
+   *   not it succeeds, along with anything run when its future completed, so that the file can
+   *   be read.
+   * @param fileName the file, which is the same as a file saved to under another name if both
+   *                 name the same path.
+   * @throws IllegalArgumentException if the file name is null.
+   */
+  public void awaitFile(String fileName) throws IllegalArgumentException {
+    if (fileName == null) {
+      throw new IllegalArgumentException("Given file name was null.");
+    }
+    Path file = absolute(fileName);
+    this.await(file::equals);
+  }
+
+  /**
+   * Gets the file names of the background saves which have failed since this was last called,
+   *   in the order they failed.
+   * @return the file names.
+   */
+  public List<String> takeFailures() {
+    List<String> taken = new ArrayList<>();
+    for (String fileName = this.failures.poll(); fileName != null;
+         fileName = this.failures.poll()) {
+      taken.add(fileName);
+    }
+    return taken;
+  }
+
+  //waits for the pending saves to the files which match
+  private void await(Predicate<Path> files) {
+    boolean interrupted = false;
+    synchronized (this.pending) {
+      //joining the futures would not do, since they may complete before their other dependents run
+      Set<CompletableFuture<Void>> waiting = new HashSet<>();
+      for (Map.Entry<CompletableFuture<Void>, Path> save : this.pending.entrySet()) {
+        if (files.test(save.getValue())) {
+          waiting.add(save.getKey());
+        }
+      }
+      while (!waiting.isEmpty()) {
+        try {
+          this.pending.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+        waiting.retainAll(this.pending.keySet());
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  //the absolute path of a file, without any . or .. in it
+  private static Path absolute(String fileName) {
+    return new File(fileName).getAbsoluteFile().toPath().normalize();
+  }
+
+  //stops counting a save as pending, and frees its slot
+  private void finished(CompletableFuture<Void> saved) {
+    synchronized (this.pending) {
+      this.pending.remove(saved);
+      this.pending.notifyAll();
+    }
+    this.slots.release();
+  }
+
+  //writes the file on the calling thread
+  private static void write(Image image, String fileName, PpmFormat format) throws IOException {
+    if (fileName.endsWith(".ppm")) {
+      ImageUtils.savePPM(image, fileName, format);
+    } else {
+      ImageUtils.saveOther(image, fileName);
+    }
+  }
+}
@@ -25,4 +25,11 @@ public interface ImageProcessorGUIView {
    * @param message string.
    */
   void showMessage(String message);
+
+  /**
+   * Shows how far along the running command is.
+   * @param fraction the fraction of the command done, from 0 to 1, or a negative number once no
+   *                 command is running.
+   */
+  void showProgress(double fraction);
 }
@@ -17,6 +17,7 @@ import javax.swing.JButton;
 import javax.swing.JScrollPane;
 import javax.swing.JFileChooser;
 import javax.swing.JComboBox;
+import javax.swing.JProgressBar;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.BorderFactory;
@@ -39,9 +40,15 @@ public class ImageProcessorGraphicsView extends JFrame
   private final JLabel imageLabel;
   private final JLabel graphLabel;
   private final JComboBox<String> combobox;
+  private final JComboBox<String> edgeCombobox;
   private final JButton visualizeButton;
+  private final JProgressBar progressBar;
+  private final JButton cancelButton;
 
 
+  //edge mode names, in the order they appear in the edge combobox
+  private static final String[] EDGE_MODES = {"zero", "clamp", "mirror", "wrap"};
+
   private ImageProcessorControllerFeatures controller;
 
   private Map<String, String> compMap;
@@ -155,6 +162,14 @@ public class ImageProcessorGraphicsView extends JFrame
     blurButton.addActionListener(this);
     blurPanel.add(blurButton);
 
+    //edge mode used by blur and sharpen
+    JPanel edgePanel = new JPanel();
+    edgePanel.setLayout(new FlowLayout());
+    editPanel.add(edgePanel);
+    edgeCombobox = new JComboBox<String>(new String[]{"Zero Edges", "Clamp Edges",
+        "Mirror Edges", "Wrap Edges"});
+    edgePanel.add(edgeCombobox);
+
     //sharpen
     JPanel sharpenPanel = new JPanel();
     sharpenPanel.setLayout(new FlowLayout());
@@ -199,6 +214,19 @@ public class ImageProcessorGraphicsView extends JFrame
     vertflipButton.addActionListener(this);
     vertflipPanel.add(vertflipButton);
 
+    //rotations
+    JPanel rotatePanel = new JPanel();
+    rotatePanel.setLayout(new FlowLayout());
+    editPanel.add(rotatePanel);
+    JButton rotateCounterclockwiseButton = new JButton("Rotate Left");
+    rotateCounterclockwiseButton.setActionCommand("rotate-counterclockwise");
+    rotateCounterclockwiseButton.addActionListener(this);
+    rotatePanel.add(rotateCounterclockwiseButton);
+    JButton rotateClockwiseButton = new JButton("Rotate Right");
+    rotateClockwiseButton.setActionCommand("rotate-clockwise");
+    rotateClockwiseButton.addActionListener(this);
+    rotatePanel.add(rotateClockwiseButton);
+
     //sepia
     JPanel sepiaPanel = new JPanel();
     sepiaPanel.setLayout(new FlowLayout());
@@ -217,6 +245,28 @@ public class ImageProcessorGraphicsView extends JFrame
     grayscaleButton.addActionListener(this);
     grayscalePanel.add(grayscaleButton);
 
+    //auto levels
+    JPanel autoLevelsPanel = new JPanel();
+    autoLevelsPanel.setLayout(new FlowLayout());
+    editPanel.add(autoLevelsPanel);
+    JButton autoLevelsButton = new JButton("Auto Levels");
+    autoLevelsButton.setActionCommand("auto-levels");
+    autoLevelsButton.addActionListener(this);
+    autoLevelsPanel.add(autoLevelsButton);
+
+    //undo and redo
+    JPanel historyPanel = new JPanel();
+    historyPanel.setLayout(new FlowLayout());
+    editPanel.add(historyPanel);
+    JButton undoButton = new JButton("Undo");
+    undoButton.setActionCommand("undo");
+    undoButton.addActionListener(this);
+    historyPanel.add(undoButton);
+    JButton redoButton = new JButton("Redo");
+    redoButton.setActionCommand("redo");
+    redoButton.addActionListener(this);
+    historyPanel.add(redoButton);
+
     //save image
     JPanel filesavePanel = new JPanel();
     filesavePanel.setLayout(new FlowLayout());
@@ -228,6 +278,18 @@ public class ImageProcessorGraphicsView extends JFrame
 
     mainPanel.add(editPanel);
 
+    //progress of the running command, which can be cancelled
+    JPanel progressPanel = new JPanel();
+    progressPanel.setLayout(new FlowLayout());
+    progressBar = new JProgressBar(0, 100);
+    progressPanel.add(progressBar);
+    cancelButton = new JButton("Cancel");
+    cancelButton.setActionCommand("cancel");
+    cancelButton.addActionListener(this);
+    cancelButton.setEnabled(false);
+    progressPanel.add(cancelButton);
+    mainPanel.add(progressPanel);
+
     this.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
     this.setVisible(true);
 
@@ -262,12 +324,23 @@ public class ImageProcessorGraphicsView extends JFrame
       case "luma-component":
       case "horizontal-flip":
       case "vertical-flip":
-      case "blur":
-      case "sharpen":
+      case "rotate-clockwise":
+      case "rotate-counterclockwise":
       case "grayscale":
       case "sepia":
+      case "auto-levels":
         this.controller.runCommand(event.getActionCommand());
         break;
+      case "blur":
+      case "sharpen":
+        //pixels past the edges are black unless another edge mode is chosen
+        String edges = EDGE_MODES[Math.max(0, this.edgeCombobox.getSelectedIndex())];
+        if (edges.equals("zero")) {
+          this.controller.runCommand(event.getActionCommand());
+        } else {
+          this.controller.runCommand(event.getActionCommand() + " " + edges);
+        }
+        break;
       case "load": {
         final JFileChooser fchooser = new JFileChooser(".");
         FileNameExtensionFilter filter = new FileNameExtensionFilter(
@@ -329,8 +402,24 @@ public class ImageProcessorGraphicsView extends JFrame
 
         cmd.append(n);
 
+        int average = JOptionPane.showConfirmDialog(this,
+                "Color each tile by the average of its pixels?", "Mosaic",
+                JOptionPane.YES_NO_OPTION);
+        if (average == JOptionPane.YES_OPTION) {
+          cmd.append(" average");
+        }
+
         this.controller.runCommand(cmd.toString());
         break;
+      case "cancel":
+        this.controller.cancelCommand();
+        break;
+      case "undo":
+        this.controller.undo();
+        break;
+      case "redo":
+        this.controller.redo();
+        break;
       default: break;
     }
   }
@@ -351,6 +440,17 @@ public class ImageProcessorGraphicsView extends JFrame
             graphLabel.getWidth(), graphLabel.getHeight()));
   }
 
+  /**
+   * Shows how far along the running command is in the progress bar, and lets it be cancelled
+   * while it runs.
+   * @param fraction the fraction of the command done, or a negative number once none is running.
+   */
+  @Override
+  public void showProgress(double fraction) {
+    this.progressBar.setValue(fraction < 0 ? 0 : (int) Math.round(fraction * 100));
+    this.cancelButton.setEnabled(fraction >= 0);
+  }
+
   @Override
   public void passFeatures(ImageProcessorControllerFeatures cont) {
     this.controller = cont;
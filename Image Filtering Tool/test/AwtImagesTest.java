@@ -0,0 +1,144 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import model.AwtImages;
+import model.ColorComponent;
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.Pixel;
+import model.RGBPixel;
+import model.SimpleImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the AwtImages class, checking that conversions keep every color, and share the arrays
+ *   behind BufferedImages where their layouts allow.
+ */
+public class AwtImagesTest {
+
+  //colors of a 3 wide, 2 tall image, in row-major order
+  int[] colors;
+  Image packed;
+
+  /**
+   * Sets up test images.
+   */
+  @Before
+  public void setup() {
+    colors = new int[]{0x123456, 0xFF0000, 0x00FF00, 0x0000FF, 0xABCDEF, 0x000000};
+    packed = new PackedImage(3, 2, colors.clone());
+  }
+
+  @Test
+  public void testFromIntRGB() {
+    BufferedImage buffered = filled(BufferedImage.TYPE_INT_RGB);
+    Image image = AwtImages.fromBufferedImage(buffered);
+    assertTrue(sameColors(packed, image));
+    //converting back shares the same array
+    assertSame(((DataBufferInt) buffered.getRaster().getDataBuffer()).getData(),
+            ((DataBufferInt) AwtImages.toBufferedImage(image).getRaster().getDataBuffer())
+                    .getData());
+  }
+
+  @Test
+  public void testFromIntARGB() {
+    BufferedImage buffered = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+    for (int i = 0; i < colors.length; i++) {
+      buffered.setRGB(i % 3, i / 3, 0x80000000 | colors[i]);
+    }
+    Image image = AwtImages.fromBufferedImage(buffered);
+    assertTrue(sameColors(packed, image));
+    assertEquals(PackedRGB.pack(0x12, 0x34, 0x56), PackedRGB.of(image.getPixelAt(0, 0)));
+  }
+
+  @Test
+  public void testFromByteBGR() {
+    BufferedImage buffered = filled(BufferedImage.TYPE_3BYTE_BGR);
+    Image image = AwtImages.fromBufferedImage(buffered);
+    assertTrue(sameColors(packed, image));
+    assertEquals(PackedRGB.pack(0xAB, 0xCD, 0xEF), PackedRGB.of(image.getPixelAt(1, 1)));
+    assertSame(buffered, AwtImages.toBufferedImage(image));
+
+    //operations run on a copy, and give the same results as on a PackedImage
+    assertTrue(sameColors(packed.flipHorizontal(), image.flipHorizontal()));
+    assertTrue(sameColors(packed.grayscale(ColorComponent.Luma),
+            image.grayscale(ColorComponent.Luma)));
+    assertTrue(sameColors(packed.filter(new double[][]{{0.5, 0.25, 0.5}}),
+            image.filter(new double[][]{{0.5, 0.25, 0.5}})));
+    assertTrue(sameColors(packed.mosaic(2, 3L, true), image.mosaic(2, 3L, true)));
+    assertEquals(6, ((DataBufferByte) buffered.getRaster().getDataBuffer()).getData().length / 3);
+  }
+
+  @Test
+  public void testFromOtherTypes() {
+    assertTrue(sameColors(packed,
+            AwtImages.fromBufferedImage(filled(BufferedImage.TYPE_INT_BGR))));
+    assertTrue(sameColors(packed,
+            AwtImages.fromBufferedImage(filled(BufferedImage.TYPE_4BYTE_ABGR))));
+
+    //a subimage shares its parent's raster, but not its layout
+    BufferedImage parent = new BufferedImage(5, 4, BufferedImage.TYPE_INT_RGB);
+    for (int i = 0; i < colors.length; i++) {
+      parent.setRGB(1 + i % 3, 2 + i / 3, colors[i]);
+    }
+    assertTrue(sameColors(packed, AwtImages.fromBufferedImage(parent.getSubimage(1, 2, 3, 2))));
+  }
+
+  @Test
+  public void testToBufferedImage() {
+    BufferedImage fromPacked = AwtImages.toBufferedImage(packed);
+    assertEquals(BufferedImage.TYPE_INT_RGB, fromPacked.getType());
+    Image simple = new SimpleImage(new Pixel[][]{
+        {new RGBPixel(1, 2, 3), new RGBPixel(4, 5, 6)},
+        {new RGBPixel(7, 8, 9), new RGBPixel(10, 11, 12)}});
+    BufferedImage fromSimple = AwtImages.toBufferedImage(simple);
+    for (int row = 0; row < 2; row++) {
+      for (int col = 0; col < 3; col++) {
+        assertEquals(colors[row * 3 + col], fromPacked.getRGB(col, row) & 0xFFFFFF);
+      }
+      for (int col = 0; col < 2; col++) {
+        assertEquals(PackedRGB.of(simple.getPixelAt(row, col)),
+                fromSimple.getRGB(col, row) & 0xFFFFFF);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromBufferedImageException() {
+    AwtImages.fromBufferedImage(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testToBufferedImageException() {
+    AwtImages.toBufferedImage(null);
+  }
+
+  private BufferedImage filled(int type) {
+    BufferedImage buffered = new BufferedImage(3, 2, type);
+    for (int i = 0; i < colors.length; i++) {
+      buffered.setRGB(i % 3, i / 3, colors[i]);
+    }
+    return buffered;
+  }
+
+  private boolean sameColors(Image first, Image second) {
+    if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+      return false;
+    }
+    int[] firstPixels = new int[first.getWidth() * first.getHeight()];
+    int[] secondPixels = new int[firstPixels.length];
+    first.getRegion(0, 0, first.getHeight(), first.getWidth(), firstPixels, 0, first.getWidth());
+    second.getRegion(0, 0, second.getHeight(), second.getWidth(), secondPixels, 0,
+            second.getWidth());
+    return Arrays.equals(firstPixels, secondPixels);
+  }
+}
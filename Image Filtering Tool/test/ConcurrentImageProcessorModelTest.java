@@ -0,0 +1,179 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import model.ConcurrentImageProcessorModel;
+import model.Image;
+import model.ImageProcessorModel;
+import model.PackedImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ConcurrentImageProcessorModel, from many threads at once.
+ */
+public class ConcurrentImageProcessorModelTest {
+
+  ImageProcessorModel model;
+  Image image;
+
+  @Before
+  public void setup() {
+    model = new ConcurrentImageProcessorModel();
+    Random rand = new Random(3L);
+    int[] pixels = new int[120 * 80];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt() & 0xFFFFFF;
+    }
+    image = new PackedImage(120, 80, pixels);
+  }
+
+  //an image whose mosaic waits until it is let go, after saying it has started
+  private static final class SlowImage extends PackedImage {
+
+    private final CountDownLatch started;
+    private final CountDownLatch release;
+
+    private SlowImage(CountDownLatch started, CountDownLatch release) {
+      super(1, 1, new int[]{0});
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public Image mosaic(int seedCount, long seed, boolean average) {
+      this.started.countDown();
+      try {
+        this.release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return this;
+    }
+  }
+
+  //all of the pixels of an image, in row-major order
+  private static int[] pixels(Image image) {
+    int[] pixels = new int[image.getWidth() * image.getHeight()];
+    image.getRegion(0, 0, image.getHeight(), image.getWidth(), pixels, 0, image.getWidth());
+    return pixels;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingName() {
+    model.flipImageHorizontal("missing", "found");
+  }
+
+  @Test
+  public void testManyThreadsTransformOneImage() throws Exception {
+    model.addImage("source", image);
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<?>> done = new ArrayList<>();
+    try {
+      for (int i = 0; i < 64; i++) {
+        String name = "result" + i;
+        int delta = i;
+        done.add(threads.submit(() -> {
+          model.adjustImageBrightness("source", name, delta);
+          model.rotateImage(name, name, true);
+          model.filterImage(name, name, new double[][]{{0, 0, 0}, {0, 1, 0}, {0, 0, 0}});
+        }));
+      }
+      for (Future<?> future : done) {
+        future.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+
+    for (int i = 0; i < 64; i++) {
+      assertArrayEquals(pixels(image.adjustBrightness(i).rotateClockwise()),
+              pixels(model.returnImage("result" + i)));
+    }
+  }
+
+  @Test
+  public void testReadersDoNotBlockEachOther() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Image slow = new SlowImage(started, release);
+    model.addImage("slow", slow);
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      //holds its read of slow until released
+      Future<?> reading = threads.submit(() -> model.mosaicImage("slow", "tiles", 1, 0, false));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+
+      //another reader of slow goes ahead, but a writer of it waits
+      assertSame(slow, threads.submit(() -> model.returnImage("slow")).get(10, TimeUnit.SECONDS));
+      Future<?> writing = threads.submit(() -> model.addImage("slow", image));
+      Thread.sleep(100);
+      assertFalse(writing.isDone());
+
+      release.countDown();
+      reading.get(10, TimeUnit.SECONDS);
+      writing.get(10, TimeUnit.SECONDS);
+      assertSame(image, model.returnImage("slow"));
+      assertSame(slow, model.returnImage("tiles"));
+    } finally {
+      release.countDown();
+      threads.shutdown();
+    }
+  }
+
+  @Test
+  public void testWritersOfOneNameOnlyWaitToStore() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Image slow = new SlowImage(started, release);
+    model.addImage("slow", slow);
+    model.addImage("other", image);
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> first = threads.submit(() -> model.mosaicImage("slow", "out", 1, 0, false));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      threads.submit(() -> model.flipImageVertical("other", "out")).get(10, TimeUnit.SECONDS);
+      assertArrayEquals(pixels(image.flipVertical()), pixels(model.returnImage("out")));
+
+      //the last to finish is stored last
+      release.countDown();
+      first.get(10, TimeUnit.SECONDS);
+      assertSame(slow, model.returnImage("out"));
+    } finally {
+      release.countDown();
+      threads.shutdown();
+    }
+  }
+
+  @Test
+  public void testReadersDoNotWaitForResultOfSameLock() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Image slow = new SlowImage(started, release);
+    model.addImage("slow", slow);
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      //stores under the name it reads, which is guarded by the same lock
+      Future<?> replacing = threads.submit(() -> model.mosaicImage("slow", "slow", 1, 0, false));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      assertSame(slow, threads.submit(() -> model.returnImage("slow")).get(10, TimeUnit.SECONDS));
+
+      release.countDown();
+      replacing.get(10, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      threads.shutdown();
+    }
+  }
+}
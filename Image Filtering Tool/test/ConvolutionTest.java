@@ -0,0 +1,307 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import model.ColorComponent;
+import model.EdgeMode;
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.Pixel;
+import model.RGBPixel;
+import model.SimpleImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests filtering images, checking the results against a plain per-pixel convolution.
+ */
+public class ConvolutionTest {
+
+  private static final double[] BINOMIAL_5 = new double[]{0.0625, 0.25, 0.375, 0.25, 0.0625};
+  private static final double[] BINOMIAL_7 =
+      new double[]{1 / 64.0, 6 / 64.0, 15 / 64.0, 20 / 64.0, 15 / 64.0, 6 / 64.0, 1 / 64.0};
+
+  @Test
+  public void testSeparableSquareKernel() {
+    Image image = randomImage(61, 47, 1);
+    double[][] kernel = outer(BINOMIAL_5, BINOMIAL_5);
+    assertArrayEquals(reference(image, kernel), pixelsOf(image.filter(kernel)));
+  }
+
+  @Test
+  public void testSeparableNonSquareKernel() {
+    Image image = randomImage(40, 33, 2);
+    double[][] kernel = outer(BINOMIAL_5, BINOMIAL_7);
+    assertArrayEquals(reference(image, kernel), pixelsOf(image.filter(kernel)));
+
+    kernel = outer(BINOMIAL_7, BINOMIAL_5);
+    assertArrayEquals(reference(image, kernel), pixelsOf(image.filter(kernel)));
+  }
+
+  @Test
+  public void testNegativeSeparableKernel() {
+    Image image = randomImage(30, 30, 3);
+    double[][] kernel = outer(new double[]{-0.5, 1.0, 2.0, 1.0, -0.5},
+            new double[]{0.25, -0.5, 1.5, -0.5, 0.25});
+    //splitting this kernel needs a division which is not exact, so rounding may differ by 1
+    assertTrue(closeTo(reference(image, kernel), pixelsOf(image.filter(kernel)), 1));
+  }
+
+  @Test
+  public void testNearlySeparableKernel() {
+    Image image = randomImage(50, 20, 4);
+    double[][] kernel = outer(BINOMIAL_7, BINOMIAL_7);
+    kernel[2][3] += 1e-9;
+    assertTrue(closeTo(reference(image, kernel), pixelsOf(image.filter(kernel)), 1));
+  }
+
+  @Test
+  public void testNonSeparableKernel() {
+    Image image = randomImage(25, 25, 5);
+    double[][] kernel = new double[][]{
+            {-0.125, -0.125, -0.125, -0.125, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, 0.25, 1.0, 0.25, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, -0.125, -0.125, -0.125, -0.125}};
+    assertArrayEquals(reference(image, kernel), pixelsOf(image.filter(kernel)));
+  }
+
+  @Test
+  public void testEdgeModes() {
+    Image image = randomImage(37, 29, 6);
+    double[][] separable = outer(BINOMIAL_5, BINOMIAL_7);
+    double[][] nonSeparable = new double[][]{
+            {0.0, -1.0, 0.0},
+            {-1.0, 5.0, -1.0},
+            {0.0, -1.0, 0.0}};
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertArrayEquals(reference(image, separable, edges),
+              pixelsOf(image.filter(separable, edges)));
+      assertArrayEquals(reference(image, nonSeparable, edges),
+              pixelsOf(image.filter(nonSeparable, edges)));
+    }
+  }
+
+  @Test
+  public void testZeroEdgesMatchPlainFilter() {
+    Image image = randomImage(20, 30, 7);
+    double[][] kernel = outer(BINOMIAL_7, BINOMIAL_5);
+    assertArrayEquals(pixelsOf(image.filter(kernel)),
+            pixelsOf(image.filter(kernel, EdgeMode.Zero)));
+  }
+
+  @Test
+  public void testKernelLargerThanImage() {
+    Image image = randomImage(3, 2, 8);
+    double[][] kernel = outer(BINOMIAL_7, BINOMIAL_5);
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertArrayEquals(reference(image, kernel, edges), pixelsOf(image.filter(kernel, edges)));
+    }
+
+    Image pixel = randomImage(1, 1, 9);
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertArrayEquals(reference(pixel, kernel, edges), pixelsOf(pixel.filter(kernel, edges)));
+    }
+  }
+
+  @Test
+  public void testClampKeepsFlatImageFlat() {
+    int[] data = new int[16 * 12];
+    Arrays.fill(data, PackedRGB.pack(200, 100, 50));
+    Image flat = new PackedImage(16, 12, data);
+    double[][] kernel = outer(BINOMIAL_5, BINOMIAL_5);
+    assertArrayEquals(data, pixelsOf(flat.filter(kernel, EdgeMode.Clamp)));
+    assertArrayEquals(data, pixelsOf(flat.filter(kernel, EdgeMode.Mirror)));
+    assertArrayEquals(data, pixelsOf(flat.filter(kernel, EdgeMode.Wrap)));
+  }
+
+  @Test
+  public void testSimpleImageEdgeModes() {
+    Image packed = randomImage(15, 11, 10);
+    Pixel[][] pixels = new Pixel[15][11];
+    for (int w = 0; w < 15; w++) {
+      for (int h = 0; h < 11; h++) {
+        Pixel p = packed.getPixelAt(h, w);
+        pixels[w][h] = new RGBPixel(p.getComponent(ColorComponent.Red),
+                p.getComponent(ColorComponent.Green), p.getComponent(ColorComponent.Blue));
+      }
+    }
+    Image simple = new SimpleImage(pixels);
+    double[][] kernel = outer(BINOMIAL_5, BINOMIAL_5);
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertArrayEquals(pixelsOf(packed.filter(kernel, edges)),
+              pixelsOf(simple.filter(kernel, edges)));
+    }
+  }
+
+  @Test
+  public void testLargeKernel() {
+    //large enough that the kernel is filtered in the frequency domain, in several tiles
+    Image image = randomImage(230, 170, 12);
+    double[][] kernel = randomKernel(31, 31, 13);
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertTrue(closeTo(reference(image, kernel, edges), pixelsOf(image.filter(kernel, edges)),
+              1));
+    }
+  }
+
+  @Test
+  public void testLargeNonSquareKernel() {
+    Image image = randomImage(90, 110, 14);
+    double[][] kernel = randomKernel(17, 25, 15);
+    assertTrue(closeTo(reference(image, kernel), pixelsOf(image.filter(kernel)), 1));
+    kernel = randomKernel(25, 17, 16);
+    assertTrue(closeTo(reference(image, kernel, EdgeMode.Mirror),
+            pixelsOf(image.filter(kernel, EdgeMode.Mirror)), 1));
+  }
+
+  @Test
+  public void testLargeKernelOnSmallImage() {
+    Image image = randomImage(6, 9, 17);
+    double[][] kernel = randomKernel(41, 41, 18);
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertTrue(closeTo(reference(image, kernel, edges), pixelsOf(image.filter(kernel, edges)),
+              1));
+    }
+  }
+
+  @Test
+  public void testLargeSeparableKernel() {
+    double[] factors = new double[41];
+    for (int i = 0; i < factors.length; i++) {
+      factors[i] = 1.0 / factors.length;
+    }
+    Image image = randomImage(150, 120, 19);
+    double[][] kernel = outer(factors, factors);
+    assertTrue(closeTo(reference(image, kernel, EdgeMode.Clamp),
+            pixelsOf(image.filter(kernel, EdgeMode.Clamp)), 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullEdgeMode() {
+    randomImage(5, 5, 11).filter(outer(BINOMIAL_5, BINOMIAL_5), null);
+  }
+
+  @Test
+  public void testEdgeModeNames() {
+    assertEquals(EdgeMode.Clamp, EdgeMode.fromName("clamp"));
+    assertEquals(EdgeMode.Mirror, EdgeMode.fromName("MIRROR"));
+    assertEquals(EdgeMode.Wrap, EdgeMode.fromName("Wrap"));
+    assertEquals(EdgeMode.Zero, EdgeMode.fromName("zero"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadEdgeModeName() {
+    EdgeMode.fromName("sideways");
+  }
+
+  //a kernel of random weights, some negative, summing to about 1
+  private static double[][] randomKernel(int rows, int cols, long seed) {
+    Random rand = new Random(seed);
+    double[][] kernel = new double[rows][cols];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        kernel[r][c] = (rand.nextDouble() * 2.2 - 0.2) / (rows * cols);
+      }
+    }
+    return kernel;
+  }
+
+  private static double[][] outer(double[] column, double[] row) {
+    double[][] kernel = new double[column.length][row.length];
+    for (int r = 0; r < column.length; r++) {
+      for (int c = 0; c < row.length; c++) {
+        kernel[r][c] = column[r] * row[c];
+      }
+    }
+    return kernel;
+  }
+
+  //the original SimpleImage convolution, one pixel at a time
+  private static int[] reference(Image image, double[][] kernel) {
+    return reference(image, kernel, EdgeMode.Zero);
+  }
+
+  //the original SimpleImage convolution, reading pixels past the edges by the given edge mode
+  private static int[] reference(Image image, double[][] kernel, EdgeMode edges) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] src = pixelsOf(image);
+    int[] out = new int[src.length];
+    for (int h = 0; h < height; h++) {
+      for (int w = 0; w < width; w++) {
+        double[] sum = new double[3];
+        for (int r = 0; r < kernel.length; r++) {
+          for (int c = 0; c < kernel[r].length; c++) {
+            int row = edgeIndex(h - kernel[0].length / 2 + r, height, edges);
+            int col = edgeIndex(w - kernel.length / 2 + c, width, edges);
+            if (row < 0 || col < 0) {
+              continue;
+            }
+            int rgb = src[row * width + col];
+            sum[0] += kernel[r][c] * PackedRGB.red(rgb);
+            sum[1] += kernel[r][c] * PackedRGB.green(rgb);
+            sum[2] += kernel[r][c] * PackedRGB.blue(rgb);
+          }
+        }
+        out[h * width + w] = PackedRGB.pack(
+                PackedRGB.clamp((int) Math.round(sum[0])),
+                PackedRGB.clamp((int) Math.round(sum[1])),
+                PackedRGB.clamp((int) Math.round(sum[2])));
+      }
+    }
+    return out;
+  }
+
+  //walks an index back into [0, size) one step at a time, or returns -1 for a black pixel
+  private static int edgeIndex(int index, int size, EdgeMode edges) {
+    while (index < 0 || index >= size) {
+      switch (edges) {
+        case Zero:
+          return -1;
+        case Clamp:
+          return index < 0 ? 0 : size - 1;
+        case Mirror:
+          if (size == 1) {
+            return 0;
+          }
+          index = index < 0 ? -index : 2 * (size - 1) - index;
+          break;
+        default:
+          index = index < 0 ? index + size : index - size;
+      }
+    }
+    return index;
+  }
+
+  private static boolean closeTo(int[] expected, int[] actual, int tolerance) {
+    for (int i = 0; i < expected.length; i++) {
+      if (Math.abs(PackedRGB.red(expected[i]) - PackedRGB.red(actual[i])) > tolerance
+              || Math.abs(PackedRGB.green(expected[i]) - PackedRGB.green(actual[i])) > tolerance
+              || Math.abs(PackedRGB.blue(expected[i]) - PackedRGB.blue(actual[i])) > tolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Image randomImage(int width, int height, long seed) {
+    Random rand = new Random(seed);
+    int[] data = new int[width * height];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = rand.nextInt(0x1000000);
+    }
+    return new PackedImage(width, height, data);
+  }
+
+  private static int[] pixelsOf(Image image) {
+    int[] data = new int[image.getWidth() * image.getHeight()];
+    image.getRegion(0, 0, image.getHeight(), image.getWidth(), data, 0, image.getWidth());
+    return data;
+  }
+}
@@ -0,0 +1,208 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import model.EditHistory;
+import model.Image;
+import model.PackedImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the EditHistory class, by checking the images it gives back against those it was given,
+ *   however little of them it was allowed to keep.
+ */
+public class EditHistoryTest {
+
+  Image image;
+  int[] applied;
+  UnaryOperator<Image> brighten;
+  UnaryOperator<Image> flip;
+
+  @Before
+  public void setup() {
+    Random rand = new Random(3L);
+    int[] pixels = new int[10 * 10];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt() & 0xFFFFFF;
+    }
+    image = new PackedImage(10, 10, pixels);
+    applied = new int[1];
+    brighten = im -> {
+      applied[0]++;
+      return im.adjustBrightness(20);
+    };
+    flip = im -> im.flipHorizontal();
+  }
+
+  @Test
+  public void testUndoRedo() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    assertFalse(history.canUndo());
+    assertFalse(history.canRedo());
+
+    Image brighter = brighten.apply(image);
+    history.record(brighter, brighten, null);
+    Image flipped = flip.apply(brighter);
+    history.record(flipped, flip, flip);
+    assertSame(flipped, history.current());
+    assertTrue(history.canUndo());
+
+    assertSamePixels(brighter, history.undo());
+    assertSamePixels(image, history.undo());
+    assertFalse(history.canUndo());
+    assertTrue(history.canRedo());
+    assertSamePixels(brighter, history.redo());
+    assertSamePixels(flipped, history.redo());
+    assertFalse(history.canRedo());
+  }
+
+  @Test
+  public void testRecordForgetsUndone() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    history.record(brighten.apply(image), brighten, null);
+    history.undo();
+    Image flipped = flip.apply(image);
+    history.record(flipped, flip, flip);
+
+    assertFalse(history.canRedo());
+    assertSamePixels(image, history.undo());
+    assertSamePixels(flipped, history.redo());
+  }
+
+  @Test
+  public void testCheapEditsKeepNoImage() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    assertEquals(0, history.getKeptBytes());
+    Image brighter = brighten.apply(image);
+    history.record(brighter, brighten, null);
+    assertEquals(400, history.getKeptBytes());
+    Image flipped = flip.apply(brighter);
+    history.record(flipped, flip, flip);
+    assertEquals(800, history.getKeptBytes());
+    history.record(flip.apply(flipped), flip, flip);
+    assertEquals(800, history.getKeptBytes());
+
+    //undoing a flip flips back, rather than making the image again
+    applied[0] = 0;
+    assertSamePixels(flipped, history.undo());
+    assertSamePixels(brighter, history.undo());
+    assertEquals(0, applied[0]);
+  }
+
+  @Test
+  public void testCompressesWithinBudget() {
+    EditHistory history = new EditHistory(500);
+    history.reset(image);
+    Image brighter = brighten.apply(image);
+    history.record(brighter, brighten, null);
+    Image brightest = brighten.apply(brighter);
+    history.record(brightest, brighten, null);
+
+    assertTrue(history.getKeptBytes() <= 500);
+    applied[0] = 0;
+    assertSamePixels(brighter, history.undo());
+    assertSamePixels(image, history.undo());
+    assertSamePixels(brighter, history.redo());
+    assertSamePixels(brightest, history.redo());
+    assertTrue(history.getKeptBytes() <= 500);
+  }
+
+  @Test
+  public void testRemakesDroppedImages() {
+    EditHistory history = new EditHistory(0);
+    history.reset(image);
+    Image current = image;
+    Image[] images = new Image[6];
+    images[0] = image;
+    for (int i = 1; i < images.length; i++) {
+      current = brighten.apply(current);
+      images[i] = current;
+      history.record(current, brighten, null);
+    }
+    //only the first image is kept, compressed, as nothing can make it again
+    assertTrue(history.getKeptBytes() > 0);
+    assertTrue(history.getKeptBytes() < 400);
+
+    applied[0] = 0;
+    assertSamePixels(images[4], history.undo());
+    assertEquals(4, applied[0]);
+    for (int i = 3; i >= 0; i--) {
+      assertSamePixels(images[i], history.undo());
+    }
+    applied[0] = 0;
+    for (int i = 1; i < images.length; i++) {
+      assertSamePixels(images[i], history.redo());
+    }
+    //each redo starts from the current image
+    assertEquals(5, applied[0]);
+  }
+
+  @Test
+  public void testResetForgetsEdits() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    history.record(brighten.apply(image), brighten, null);
+    Image other = new PackedImage(1, 1, new int[]{0x123456});
+    history.reset(other);
+
+    assertSame(other, history.current());
+    assertFalse(history.canUndo());
+    assertEquals(0, history.getKeptBytes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNothingToUndo() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    history.undo();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNothingToRedo() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    history.redo();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRecordBeforeReset() {
+    new EditHistory().record(image, flip, flip);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullEdit() {
+    EditHistory history = new EditHistory();
+    history.reset(image);
+    history.record(image, null, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new EditHistory(-1);
+  }
+
+  private void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    int[] expectedPixels = new int[expected.getWidth() * expected.getHeight()];
+    int[] actualPixels = new int[expectedPixels.length];
+    for (int i = 0; i < expected.getHeight(); i++) {
+      int[] row = new int[expected.getWidth()];
+      expected.getRow(i, row);
+      System.arraycopy(row, 0, expectedPixels, i * row.length, row.length);
+      actual.getRow(i, row);
+      System.arraycopy(row, 0, actualPixels, i * row.length, row.length);
+    }
+    assertArrayEquals(expectedPixels, actualPixels);
+  }
+}
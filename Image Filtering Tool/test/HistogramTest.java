@@ -0,0 +1,167 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import model.ColorComponent;
+import model.Histogram;
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.PointOp;
+import model.RowScheduler;
+import model.TiledImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the Histogram class, by checking its counts against counting each pixel directly.
+ */
+public class HistogramTest {
+
+  RowScheduler oldDefault;
+  Image image;
+  int[] pixels;
+
+  /**
+   * Sets up a test image, large enough that counting it is split into several bands.
+   */
+  @Before
+  public void setup() {
+    oldDefault = RowScheduler.getDefault();
+    Random rand = new Random(5L);
+    pixels = new int[300 * 200];
+    for (int i = 0; i < pixels.length; i++) {
+      //bits above the color are ignored
+      pixels[i] = rand.nextInt();
+    }
+    image = new PackedImage(300, 200, pixels);
+  }
+
+  /**
+   * Puts back the default scheduler.
+   */
+  @After
+  public void tearDown() {
+    RowScheduler.setDefault(oldDefault);
+  }
+
+  @Test
+  public void testCounts() {
+    long[] red = new long[256];
+    long[] green = new long[256];
+    long[] blue = new long[256];
+    long[] intensity = new long[256];
+    for (int rgb : pixels) {
+      red[PackedRGB.red(rgb)]++;
+      green[PackedRGB.green(rgb)]++;
+      blue[PackedRGB.blue(rgb)]++;
+      intensity[(PackedRGB.red(rgb) + PackedRGB.green(rgb) + PackedRGB.blue(rgb)) / 3]++;
+    }
+
+    Histogram histogram = Histogram.of(image);
+    assertEquals(60000, histogram.getPixelCount());
+    assertArrayEquals(red, histogram.getCounts(ColorComponent.Red));
+    assertArrayEquals(green, histogram.getCounts(ColorComponent.Green));
+    assertArrayEquals(blue, histogram.getCounts(ColorComponent.Blue));
+    assertArrayEquals(intensity, histogram.getCounts(ColorComponent.Intensity));
+  }
+
+  @Test
+  public void testBuckets() {
+    for (int bucketCount : new int[]{1, 7, 64, 256}) {
+      double bucketWidth = 256.0 / bucketCount;
+      long[] green = new long[bucketCount];
+      long[] intensity = new long[bucketCount];
+      for (int rgb : pixels) {
+        int r = PackedRGB.red(rgb);
+        int g = PackedRGB.green(rgb);
+        int b = PackedRGB.blue(rgb);
+        green[(int) Math.floor(g / bucketWidth)]++;
+        intensity[(int) Math.floor(((r + g + b) / 3.0) / bucketWidth)]++;
+      }
+      Histogram histogram = Histogram.of(image);
+      assertArrayEquals(green, histogram.getBuckets(ColorComponent.Green, bucketCount));
+      assertArrayEquals(intensity, histogram.getBuckets(ColorComponent.Intensity, bucketCount));
+    }
+  }
+
+  @Test
+  public void testSameWhateverTheScheduler() {
+    Image tiled = TiledImage.of(image, 64);
+    RowScheduler.setDefault(RowScheduler.sequential());
+    Histogram sequential = Histogram.of(tiled);
+    RowScheduler.setDefault(RowScheduler.parallel(3));
+    Histogram parallel = Histogram.of(image);
+    for (ColorComponent comp : new ColorComponent[]{ColorComponent.Red, ColorComponent.Green,
+        ColorComponent.Blue, ColorComponent.Intensity}) {
+      assertArrayEquals(sequential.getCounts(comp), parallel.getCounts(comp));
+    }
+  }
+
+  @Test
+  public void testCached() {
+    Histogram histogram = Histogram.of(image);
+    assertSame(histogram, Histogram.of(image));
+    assertNotSame(histogram, Histogram.of(image.flipVertical()));
+  }
+
+  @Test
+  public void testStatistics() {
+    Image small = new PackedImage(2, 2, new int[]{
+        PackedRGB.pack(255, 0, 0), PackedRGB.pack(180, 180, 0),
+        PackedRGB.pack(255, 0, 0), PackedRGB.pack(90, 90, 90)});
+    Histogram histogram = Histogram.of(small);
+    assertEquals(195.0, histogram.mean(ColorComponent.Red), 1e-9);
+    assertEquals(95.0, histogram.mean(ColorComponent.Intensity), 1e-9);
+    assertEquals(90, histogram.percentile(ColorComponent.Red, 0));
+    assertEquals(180, histogram.percentile(ColorComponent.Red, 0.5));
+    assertEquals(255, histogram.percentile(ColorComponent.Red, 1));
+    assertEquals(0, histogram.percentile(ColorComponent.Green, 0.5));
+    assertEquals(90, histogram.percentile(ColorComponent.Blue, 0.9));
+  }
+
+  @Test
+  public void testAutoLevels() {
+    Image dull = new PackedImage(2, 2, new int[]{
+        PackedRGB.pack(50, 60, 70), PackedRGB.pack(100, 110, 120),
+        PackedRGB.pack(150, 160, 170), PackedRGB.pack(200, 190, 180)});
+    PointOp levels = PointOp.autoLevels(Histogram.of(dull));
+    assertEquals(PackedRGB.pack(0, 17, 34), levels.apply(PackedRGB.pack(50, 60, 70)));
+    assertEquals(PackedRGB.pack(255, 238, 221), levels.apply(PackedRGB.pack(200, 190, 180)));
+
+    Image flat = new PackedImage(1, 1, new int[]{PackedRGB.pack(40, 40, 40)});
+    assertEquals(PackedRGB.pack(40, 40, 40),
+            PointOp.autoLevels(Histogram.of(flat)).apply(PackedRGB.pack(40, 40, 40)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfException() {
+    Histogram.of(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testComponentException() {
+    Histogram.of(image).getCounts(ColorComponent.Luma);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBucketCountException() {
+    Histogram.of(image).getBuckets(ColorComponent.Red, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPercentileException() {
+    Histogram.of(image).percentile(ColorComponent.Red, 1.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAutoLevelsClipException() {
+    PointOp.autoLevels(Histogram.of(image), 0.5);
+  }
+}
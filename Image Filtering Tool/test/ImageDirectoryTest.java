@@ -0,0 +1,334 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import model.Image;
+import model.ImageDirectory;
+import model.ImageProcessorModel;
+import model.ImageProcessorModelImpl;
+import model.MappedImage;
+import model.MemoryReport;
+import model.PackedImage;
+import model.Pixel;
+import model.RGBPixel;
+import model.SimpleImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ImageDirectory class, by checking which images it spills, and that spilled images
+ *   come back unchanged.
+ */
+public class ImageDirectoryTest {
+
+  Image first;
+  Image second;
+  Image third;
+
+  @Before
+  public void setup() {
+    first = new PackedImage(2, 2, new int[]{0xFF0000, 0x00FF00, 0x0000FF, 0x123456});
+    second = new PackedImage(2, 2, new int[]{0xABCDEF, 0xFFFFFF, 0x000000, 0x010203});
+    third = new PackedImage(1, 2, new int[]{0x808080, 0x7F7F7F});
+  }
+
+  @Test
+  public void testWithinBudget() {
+    ImageDirectory directory = new ImageDirectory(100);
+    directory.put("first", first);
+    directory.put("second", second);
+
+    assertTrue(directory.contains("first"));
+    assertFalse(directory.contains("third"));
+    assertSame(first, directory.get("first"));
+    assertNull(directory.get("third"));
+    MemoryReport report = directory.report();
+    assertEquals(Arrays.asList("second", "first"), report.getResident());
+    assertEquals(Collections.emptyList(), report.getSpilled());
+    assertEquals(32, report.getUsed());
+    assertEquals(100, report.getBudget());
+  }
+
+  @Test
+  public void testSpillsLeastRecentlyUsed() {
+    ImageDirectory directory = new ImageDirectory(30);
+    directory.put("first", first);
+    directory.put("second", second);
+    directory.get("first");
+    directory.put("third", third);
+
+    MemoryReport report = directory.report();
+    assertEquals(Arrays.asList("first", "third"), report.getResident());
+    assertEquals(Arrays.asList("second"), report.getSpilled());
+    assertEquals(24, report.getUsed());
+    assertTrue(directory.contains("second"));
+    directory.close();
+  }
+
+  @Test
+  public void testReadsBackSpilled() {
+    ImageDirectory directory = new ImageDirectory(0);
+    directory.put("first", first);
+    directory.put("second", second);
+    assertEquals(Arrays.asList("first"), directory.report().getSpilled());
+
+    assertSamePixels(first, directory.get("first"));
+    assertEquals(Arrays.asList("second"), directory.report().getSpilled());
+    assertSamePixels(second, directory.get("second"));
+    assertSamePixels(first, directory.get("first"));
+    assertEquals(Arrays.asList("first"), directory.report().getResident());
+    directory.close();
+  }
+
+  @Test
+  public void testReplaceSpilled() {
+    ImageDirectory directory = new ImageDirectory(0);
+    directory.put("first", first);
+    directory.put("second", second);
+    directory.put("first", third);
+
+    assertSamePixels(third, directory.get("first"));
+    assertSamePixels(second, directory.get("second"));
+    assertEquals(16, directory.report().getUsed());
+    directory.close();
+  }
+
+  @Test
+  public void testMappedImagesTakeNoBudget() {
+    ImageDirectory directory = new ImageDirectory(16);
+    directory.put("mapped", MappedImage.of(second));
+    directory.put("first", first);
+
+    MemoryReport report = directory.report();
+    assertEquals(Arrays.asList("mapped", "first"), report.getResident());
+    assertEquals(16, report.getUsed());
+  }
+
+  @Test
+  public void testSharedSourceCountedOnce() {
+    ImageDirectory directory = new ImageDirectory(100);
+    directory.put("first", first);
+    directory.put("flipped", first.flipHorizontal());
+    directory.put("cropped", first.crop(0, 0, 1, 1));
+
+    assertEquals(16, directory.report().getUsed());
+  }
+
+  @Test
+  public void testViewKeepsSourceAlive() {
+    ImageDirectory directory = new ImageDirectory(100);
+    directory.put("first", first);
+    directory.put("cropped", first.crop(0, 0, 1, 1));
+    directory.put("first", second);
+
+    assertEquals(32, directory.report().getUsed());
+  }
+
+  @Test
+  public void testSimpleImageCountsItsPixels() {
+    ImageDirectory directory = new ImageDirectory(100);
+    directory.put("simple", new SimpleImage(new Pixel[][]{
+        {new RGBPixel(1, 2, 3), new RGBPixel(4, 5, 6)},
+        {new RGBPixel(7, 8, 9), new RGBPixel(10, 11, 12)}}));
+
+    //four pixel objects and the references to them, and three arrays
+    assertEquals(4 * 28 + 3 * 16, directory.report().getUsed());
+  }
+
+  @Test
+  public void testPointOpOfMappedTakesNoBudget() {
+    ImageProcessorModel model = new ImageProcessorModelImpl(0);
+    model.addImage("mapped", MappedImage.of(second));
+    model.adjustImageBrightness("mapped", "brighter", 10);
+    model.addImage("first", first);
+
+    MemoryReport report = model.getMemoryReport();
+    assertEquals(Arrays.asList("mapped", "brighter", "first"), report.getResident());
+    assertEquals(16, report.getUsed());
+  }
+
+  @Test
+  public void testDeletesSpillFiles() throws IOException {
+    int before = spillFiles();
+    int folders = spillFolders();
+    ImageDirectory directory = new ImageDirectory(0);
+    directory.put("first", first);
+    directory.put("second", second);
+    assertEquals(before + 1, spillFiles());
+
+    //first is read back and its file deleted, as second is spilled
+    directory.get("first");
+    assertEquals(before + 1, spillFiles());
+
+    directory.close();
+    assertEquals(before, spillFiles());
+    assertEquals(folders, spillFolders());
+    assertFalse(directory.contains("first"));
+    assertEquals(0, directory.report().getUsed());
+  }
+
+  @Test
+  public void testReadsBackFromManyThreads() throws Exception {
+    //every get reads back one image and spills the other
+    ImageDirectory directory = new ImageDirectory(0);
+    directory.put("first", first);
+    directory.put("second", second);
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    List<Future<?>> done = new ArrayList<>();
+    try {
+      for (int i = 0; i < 200; i++) {
+        boolean even = i % 2 == 0;
+        done.add(threads.submit(() -> assertSamePixels(even ? first : second,
+                directory.get(even ? "first" : "second"))));
+      }
+      for (Future<?> future : done) {
+        future.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+    directory.close();
+  }
+
+  @Test
+  public void testSpillsWithoutHoldingDirectory() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ImageDirectory directory = new ImageDirectory(16);
+    directory.put("slow", new SlowImage(started, release));
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      //spills slow, which holds its writer until released
+      Future<?> adding = threads.submit(() -> directory.put("first", first));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+
+      //first is spilled in turn, as slow is already on its way out
+      threads.submit(() -> directory.put("second", second)).get(10, TimeUnit.SECONDS);
+      assertSame(second, threads.submit(() -> directory.get("second")).get(10, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("slow", "second"), directory.report().getResident());
+
+      release.countDown();
+      adding.get(10, TimeUnit.SECONDS);
+      assertEquals(Arrays.asList("slow", "first"), directory.report().getSpilled());
+    } finally {
+      release.countDown();
+      threads.shutdown();
+      directory.close();
+    }
+  }
+
+  @Test
+  public void testUseDuringSpillKeepsImage() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Image slow = new SlowImage(started, release);
+    ImageDirectory directory = new ImageDirectory(16);
+    directory.put("slow", slow);
+    int before = spillFiles();
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> adding = threads.submit(() -> directory.put("first", first));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      assertSame(slow, threads.submit(() -> directory.get("slow")).get(10, TimeUnit.SECONDS));
+
+      release.countDown();
+      adding.get(10, TimeUnit.SECONDS);
+      //the used image stays in memory, and the file written for it is thrown away, while first
+      //is spilled in its place
+      assertEquals(Arrays.asList("slow"), directory.report().getResident());
+      assertEquals(Arrays.asList("first"), directory.report().getSpilled());
+      assertEquals(before + 1, spillFiles());
+    } finally {
+      release.countDown();
+      threads.shutdown();
+      directory.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new ImageDirectory(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPutNull() {
+    new ImageDirectory().put("first", null);
+  }
+
+  //an image whose rows are only read once it is let go, after saying it has started
+  private static final class SlowImage extends PackedImage {
+
+    private final CountDownLatch started;
+    private final CountDownLatch release;
+
+    private SlowImage(CountDownLatch started, CountDownLatch release) {
+      super(2, 2, new int[4]);
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public void getRow(int row, int[] dest) {
+      this.started.countDown();
+      try {
+        this.release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      super.getRow(row, dest);
+    }
+  }
+
+  //the folders images are spilled into
+  private static File[] folders() throws IOException {
+    File[] folders = new File(System.getProperty("java.io.tmpdir"))
+            .listFiles((dir, name) -> name.startsWith("images"));
+    if (folders == null) {
+      throw new IOException("Could not list the temporary directory.");
+    }
+    return folders;
+  }
+
+  //the number of folders images are spilled into
+  private static int spillFolders() throws IOException {
+    return folders().length;
+  }
+
+  //the number of files images have been spilled to
+  private static int spillFiles() throws IOException {
+    int count = 0;
+    for (File folder : folders()) {
+      String[] files = folder.list((dir, name) -> name.endsWith(".deflated"));
+      count += files == null ? 0 : files.length;
+    }
+    return count;
+  }
+
+  private void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    int[] expectedPixels = new int[expected.getWidth() * expected.getHeight()];
+    int[] actualPixels = new int[expectedPixels.length];
+    expected.getRegion(0, 0, expected.getHeight(), expected.getWidth(), expectedPixels, 0,
+            expected.getWidth());
+    actual.getRegion(0, 0, actual.getHeight(), actual.getWidth(), actualPixels, 0,
+            actual.getWidth());
+    assertArrayEquals(expectedPixels, actualPixels);
+  }
+}
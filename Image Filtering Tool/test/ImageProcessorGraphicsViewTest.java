@@ -27,6 +27,21 @@ public class ImageProcessorGraphicsViewTest {
       this.appendToLog(command);
     }
 
+    @Override
+    public void cancelCommand() {
+      this.appendToLog("cancel");
+    }
+
+    @Override
+    public void undo() {
+      this.appendToLog("undo");
+    }
+
+    @Override
+    public void redo() {
+      this.appendToLog("redo");
+    }
+
     @Override
     public void loadImage(String filepath) {
       this.appendToLog(filepath);
@@ -120,5 +135,19 @@ public class ImageProcessorGraphicsViewTest {
     assertEquals("red-component green-component blue-component luma-component " +
             "intensity-component value-component vertical-flip horizontal-flip blur sharpen " +
             "sepia grayscale ", log.toString());
+
+    action = new ActionEvent(view, 99, "cancel");
+    view.actionPerformed(action);
+    assertEquals("red-component green-component blue-component luma-component " +
+            "intensity-component value-component vertical-flip horizontal-flip blur sharpen " +
+            "sepia grayscale cancel ", log.toString());
+
+    action = new ActionEvent(view, 99, "undo");
+    view.actionPerformed(action);
+    action = new ActionEvent(view, 99, "redo");
+    view.actionPerformed(action);
+    assertEquals("red-component green-component blue-component luma-component " +
+            "intensity-component value-component vertical-flip horizontal-flip blur sharpen " +
+            "sepia grayscale cancel undo redo ", log.toString());
   }
 }
\ No newline at end of file
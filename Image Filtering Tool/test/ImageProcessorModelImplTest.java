@@ -117,6 +117,21 @@ public class ImageProcessorModelImplTest {
     model.returnImage("nah");
   }
 
+  @Test
+  public void testMosaicImage() {
+    model.mosaicImage("im32", "im32-a", 3, 77L, false);
+    model.mosaicImage("im32", "im32-b", 3, 77L, false);
+    assertTrue(sameColorPixelsInImage(model.returnImage("im32-a"),
+            model.returnImage("im32-b")));
+    assertTrue(sameColorPixelsInImage(model.returnImage("im32-a"),
+            model.returnImage("im32").mosaic(3, 77L, false)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicImageNotFound() {
+    model.mosaicImage("nah", "im32-a", 3, 77L, false);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void checkCapitalsMatter() {
     model.returnImage("IM22");
@@ -397,6 +412,43 @@ public class ImageProcessorModelImplTest {
             new double[][]{{0.0,-0.25,0.0},{-0.25,2.0,-0.25},{0.0,-0.25,0.0}});
   }
 
+  @Test
+  public void testChainedColorOperations() {
+    double[][] sepia = new double[][]{
+        {0.393, 0.769, 0.189},
+        {0.349, 0.686, 0.168},
+        {0.272, 0.534, 0.131}};
+    model.adjustImageBrightness("im32", "bright", 10);
+    model.transformImageColor("bright", "sepia", sepia);
+    model.grayscaleImage("sepia", "red", ColorComponent.Red);
+    model.filterImage("red", "blurred",
+            new double[][]{{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125},
+                {0.0625, 0.125, 0.0625}});
+    model.adjustImageBrightness("blurred", "dark", -30);
+
+    Image bright = image32.adjustBrightness(10);
+    Image sepiaImage = bright.transformColor(sepia);
+    Image red = sepiaImage.grayscale(ColorComponent.Red);
+    Image blurred = red.filter(new double[][]{{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125},
+        {0.0625, 0.125, 0.0625}});
+
+    assertTrue(sameColorPixelsInImage(model.returnImage("red"), red));
+    assertTrue(sameColorPixelsInImage(model.returnImage("sepia"), sepiaImage));
+    assertTrue(sameColorPixelsInImage(model.returnImage("bright"), bright));
+    assertTrue(sameColorPixelsInImage(model.returnImage("blurred"), blurred));
+    assertTrue(sameColorPixelsInImage(model.returnImage("dark"), blurred.adjustBrightness(-30)));
+    assertTrue(sameColorPixelsInImage(model.returnImage("im32"), image32));
+  }
+
+  @Test
+  public void testChangingMatrixAfterTransform() {
+    double[][] matrix = new double[][]{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
+    model.transformImageColor("im22", "same", matrix);
+    matrix[0][0] = 0;
+    matrix[1][1] = 0;
+    assertTrue(sameColorPixelsInImage(model.returnImage("same"), image22));
+  }
+
   private boolean sameColorPixelsInImage(Image im1, Image im2) {
     if (im1.getHeight() != im2.getHeight() || im1.getWidth() != im2.getWidth()) {
       return false;
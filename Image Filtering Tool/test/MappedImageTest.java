@@ -0,0 +1,189 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import model.ColorComponent;
+import model.EdgeMode;
+import model.Image;
+import model.MappedImage;
+import model.PackedImage;
+import model.PackedRGB;
+import model.PointOp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the MappedImage class, by checking that it produces the same results as the equivalent
+ *   PackedImage.
+ */
+public class MappedImageTest {
+
+  Image packedSmall;
+  Image mappedSmall;
+  //wide enough that operations on it work through several strips
+  Image packedLarge;
+  Image mappedLarge;
+
+  /**
+   * Sets up test images.
+   */
+  @Before
+  public void setup() {
+    packedSmall = randomImage(7, 5, 1L);
+    mappedSmall = MappedImage.of(packedSmall);
+    packedLarge = randomImage(900, 400, 2L);
+    mappedLarge = MappedImage.of(packedLarge);
+  }
+
+  @Test
+  public void testOf() {
+    assertTrue(samePixels(packedSmall, mappedSmall));
+    assertTrue(samePixels(packedLarge, mappedLarge));
+    assertEquals(5, mappedSmall.getHeight());
+    assertEquals(7, mappedSmall.getWidth());
+    assertEquals(PackedRGB.of(packedSmall.getPixelAt(4, 6)),
+            PackedRGB.of(mappedSmall.getPixelAt(4, 6)));
+    assertSame(mappedSmall, MappedImage.of(mappedSmall));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfException() {
+    MappedImage.of(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPixelAtException() {
+    mappedSmall.getPixelAt(5, 0);
+  }
+
+  @Test
+  public void testOpen() {
+    try {
+      Path file = new File("test/util/readFrom/im32Raw.ppm").toPath();
+      //the raster is the last 18 bytes of the file
+      Image image = MappedImage.open(file, file.toFile().length() - 18, 2, 3);
+      assertEquals(PackedRGB.pack(0, 100, 255), PackedRGB.of(image.getPixelAt(0, 0)));
+      assertEquals(PackedRGB.pack(200, 175, 115), PackedRGB.of(image.getPixelAt(2, 1)));
+    } catch (IOException e) {
+      fail("Could not open im32Raw.ppm");
+    }
+  }
+
+  @Test
+  public void testOpenTooShort() {
+    try {
+      Path file = new File("test/util/readFrom/im32Raw.ppm").toPath();
+      MappedImage.open(file, file.toFile().length() - 17, 2, 3);
+      fail("Opened a raster past the end of the file");
+    } catch (IllegalArgumentException e) {
+      assertEquals("File is too short for the given dimensions.", e.getMessage());
+    } catch (IOException e) {
+      fail("Could not open im32Raw.ppm");
+    }
+  }
+
+  @Test
+  public void testFlips() {
+    assertTrue(samePixels(packedLarge.flipVertical(), mappedLarge.flipVertical()));
+    assertTrue(samePixels(packedLarge.flipHorizontal(), mappedLarge.flipHorizontal()));
+    assertTrue(samePixels(packedSmall.flipHorizontal().flipVertical(),
+            mappedSmall.flipHorizontal().flipVertical()));
+  }
+
+  @Test
+  public void testPointOps() {
+    assertTrue(samePixels(packedLarge.adjustBrightness(40), mappedLarge.adjustBrightness(40)));
+    assertTrue(samePixels(packedLarge.grayscale(ColorComponent.Luma),
+            mappedLarge.grayscale(ColorComponent.Luma)));
+    assertTrue(samePixels(packedSmall.applyPointOp(PointOp.gamma(2.2)),
+            mappedSmall.applyPointOp(PointOp.gamma(2.2))));
+    double[][] sepia = new double[][]{{0.393, 0.769, 0.189},
+        {0.349, 0.686, 0.168},
+        {0.272, 0.534, 0.131}};
+    assertTrue(samePixels(packedSmall.transformColor(sepia), mappedSmall.transformColor(sepia)));
+  }
+
+  @Test
+  public void testFilter() {
+    double[][] blur = new double[][]{{0.0625, 0.125, 0.0625},
+        {0.125, 0.25, 0.125},
+        {0.0625, 0.125, 0.0625}};
+    double[][] tall = new double[9][1];
+    for (double[] row : tall) {
+      row[0] = 1.0 / 9;
+    }
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertTrue(samePixels(packedLarge.filter(blur, edges), mappedLarge.filter(blur, edges)));
+      assertTrue(samePixels(packedSmall.filter(tall, edges), mappedSmall.filter(tall, edges)));
+    }
+    assertTrue(samePixels(packedSmall.filter(blur), mappedSmall.filter(blur)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterException() {
+    mappedSmall.filter(new double[][]{{1.0}, {2.0}});
+  }
+
+  @Test
+  public void testMosaic() {
+    for (int seedCount : new int[]{1, 30, 5000}) {
+      assertTrue(samePixels(packedLarge.mosaic(seedCount, 9L, false),
+              mappedLarge.mosaic(seedCount, 9L, false)));
+      assertTrue(samePixels(packedLarge.mosaic(seedCount, 9L, true),
+              mappedLarge.mosaic(seedCount, 9L, true)));
+    }
+    assertTrue(samePixels(packedSmall, mappedSmall.mosaic(35, 3L, false)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicException() {
+    mappedSmall.mosaic(0, 1L, true);
+  }
+
+  @Test
+  public void testRegions() {
+    int[] region = new int[]{0x123456, 0xABCDEF, 0x010203, 0xFFFFFF, 0, 0x808080};
+    assertTrue(samePixels(packedSmall.withRegion(2, 4, 2, 3, region, 0, 3),
+            mappedSmall.withRegion(2, 4, 2, 3, region, 0, 3)));
+
+    int[] fromPacked = new int[12];
+    int[] fromMapped = new int[12];
+    packedLarge.getRegion(398, 897, 2, 3, fromPacked, 2, 5);
+    mappedLarge.getRegion(398, 897, 2, 3, fromMapped, 2, 5);
+    assertTrue(Arrays.equals(fromPacked, fromMapped));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionException() {
+    mappedSmall.getRegion(4, 0, 2, 1, new int[2], 0, 1);
+  }
+
+  private Image randomImage(int width, int height, long seed) {
+    Random rand = new Random(seed);
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt(1 << 24);
+    }
+    return new PackedImage(width, height, pixels);
+  }
+
+  private boolean samePixels(Image first, Image second) {
+    if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+      return false;
+    }
+    int[] firstPixels = new int[first.getWidth() * first.getHeight()];
+    int[] secondPixels = new int[firstPixels.length];
+    first.getRegion(0, 0, first.getHeight(), first.getWidth(), firstPixels, 0, first.getWidth());
+    second.getRegion(0, 0, second.getHeight(), second.getWidth(), secondPixels, 0,
+            second.getWidth());
+    return Arrays.equals(firstPixels, secondPixels);
+  }
+}
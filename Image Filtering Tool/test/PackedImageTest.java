@@ -0,0 +1,292 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import model.ColorComponent;
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.Pixel;
+import model.RGBPixel;
+import model.SimpleImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PackedImage class, mostly by checking that it produces the same results as the
+ *   equivalent SimpleImage.
+ */
+public class PackedImageTest {
+
+  Image simple22;
+  Image simple32;
+  Image packed22;
+  Image packed32;
+
+  /**
+   * Sets up test images.
+   */
+  @Before
+  public void setup() {
+    simple22 = new SimpleImage(
+            new Pixel[][]{{new RGBPixel(255,0,0), new RGBPixel(255,0,0)},
+                {new RGBPixel(180,180,0), new RGBPixel(90,90,90)}});
+    simple32 = new SimpleImage(
+            new Pixel[][]{{
+                    new RGBPixel(0,100,255),
+                    new RGBPixel(0,0,255),
+                    new RGBPixel(255,222,124)},{
+                    new RGBPixel(0,100,255),
+                    new RGBPixel(0,0,255),
+                    new RGBPixel(200,175,115)}});
+    packed22 = new PackedImage(2, 2, new int[]{
+        PackedRGB.pack(255, 0, 0), PackedRGB.pack(180, 180, 0),
+        PackedRGB.pack(255, 0, 0), PackedRGB.pack(90, 90, 90)});
+    packed32 = PackedImage.of(simple32);
+  }
+
+  @Test
+  public void testConstructor() {
+    assertTrue(sameColorPixelsInImage(simple22, packed22));
+    assertTrue(sameColorPixelsInImage(simple32, packed32));
+    assertEquals(3, packed32.getHeight());
+    assertEquals(2, packed32.getWidth());
+  }
+
+  @Test
+  public void testOfPackedImageIsSame() {
+    assertSame(packed22, PackedImage.of(packed22));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfTooManyPixels() {
+    //an image 46341 pixels on each side, whose pixels do not fit in one array
+    Image huge = (Image) Proxy.newProxyInstance(Image.class.getClassLoader(),
+        new Class<?>[]{Image.class}, (proxy, method, args) -> 46341);
+    PackedImage.of(huge);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullData() {
+    new PackedImage(1, 1, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongLength() {
+    new PackedImage(2, 2, new int[3]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroDimension() {
+    new PackedImage(0, 1, new int[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPixelOutOfRange() {
+    packed32.getPixelAt(3, 0);
+  }
+
+  @Test
+  public void testGetRegion() {
+    int[] dest = new int[8];
+    packed32.getRegion(1, 0, 2, 2, dest, 1, 3);
+    assertArrayEquals(new int[]{0, PackedRGB.pack(0, 0, 255), PackedRGB.pack(0, 0, 255), 0,
+        PackedRGB.pack(255, 222, 124), PackedRGB.pack(200, 175, 115), 0, 0}, dest);
+
+    int[] row = new int[2];
+    simple32.getRow(2, row);
+    assertArrayEquals(new int[]{PackedRGB.pack(255, 222, 124), PackedRGB.pack(200, 175, 115)},
+            row);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetRegionOutOfRange() {
+    packed32.getRegion(2, 0, 2, 2, new int[4], 0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetRegionArrayTooSmall() {
+    packed32.getRegion(0, 0, 2, 2, new int[4], 1, 2);
+  }
+
+  @Test
+  public void testWithRegion() {
+    int[] src = new int[]{PackedRGB.pack(1, 2, 3), PackedRGB.pack(4, 5, 6)};
+    Image packedResult = packed32.withRegion(1, 0, 1, 2, src, 0, 2);
+    Image simpleResult = simple32.withRegion(1, 0, 1, 2, src, 0, 2);
+
+    assertTrue(sameColorPixelsInImage(packedResult, simpleResult));
+    assertEquals(4, packedResult.getPixelAt(1, 1).getComponent(ColorComponent.Red));
+    assertEquals(0, packed32.getPixelAt(1, 1).getComponent(ColorComponent.Red));
+    assertEquals(0, simple32.getPixelAt(1, 1).getComponent(ColorComponent.Red));
+  }
+
+  @Test
+  public void testFlips() {
+    assertTrue(sameColorPixelsInImage(simple22.flipVertical(), packed22.flipVertical()));
+    assertTrue(sameColorPixelsInImage(simple32.flipVertical(), packed32.flipVertical()));
+    assertTrue(sameColorPixelsInImage(simple22.flipHorizontal(), packed22.flipHorizontal()));
+    assertTrue(sameColorPixelsInImage(simple32.flipHorizontal(), packed32.flipHorizontal()));
+  }
+
+  @Test
+  public void testPointOperations() {
+    assertTrue(sameColorPixelsInImage(simple22.adjustBrightness(-50),
+            packed22.adjustBrightness(-50)));
+    assertTrue(sameColorPixelsInImage(simple32.adjustBrightness(40),
+            packed32.adjustBrightness(40)));
+
+    for (ColorComponent comp : ColorComponent.values()) {
+      assertTrue(sameColorPixelsInImage(simple32.grayscale(comp), packed32.grayscale(comp)));
+    }
+
+    double[][] matrix = new double[][]{
+            {0.1, 0.8, 0.1},
+            {0.33, 0.33, 0.34},
+            {1.0, -1.0, 1.0}};
+    assertTrue(sameColorPixelsInImage(simple32.transformColor(matrix),
+            packed32.transformColor(matrix)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTransformColorException() {
+    packed22.transformColor(new double[][]{{0.33, 0.33, 0.33}, {0.33, 0.33, 0.33}});
+  }
+
+  @Test
+  public void testFilter() {
+    double[][] row = new double[][]{{-0.5, 2.0, -0.5}};
+    double[][] ring = new double[][]{{0.125, 0.125, 0.125},
+        {0.125, 0, 0.125},
+        {0.125, 0.125, 0.125}};
+    assertTrue(sameColorPixelsInImage(simple22.filter(row), packed22.filter(row)));
+    assertTrue(sameColorPixelsInImage(simple32.filter(ring), packed32.filter(ring)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterException() {
+    packed22.filter(new double[][]{{1.0},{2.0}});
+  }
+
+  @Test
+  public void testMosaic() {
+    Image oneSeed = packed32.mosaic(1);
+    int rgb = PackedRGB.of(oneSeed.getPixelAt(0, 0));
+    for (int r = 0; r < oneSeed.getHeight(); r++) {
+      for (int c = 0; c < oneSeed.getWidth(); c++) {
+        assertEquals(rgb, PackedRGB.of(oneSeed.getPixelAt(r, c)));
+      }
+    }
+
+    assertTrue(sameColorPixelsInImage(packed32, packed32.mosaic(6)));
+    assertTrue(sameColorPixelsInImage(packed32, packed32.mosaic(100)));
+  }
+
+  @Test
+  public void testMosaicSeeded() {
+    Image big = PackedImage.of(distinctColors(53, 37));
+    Image first = big.mosaic(40, 1234L, false);
+    assertTrue(sameColorPixelsInImage(first, big.mosaic(40, 1234L, false)));
+    assertTrue(sameColorPixelsInImage(first, distinctColors(53, 37).mosaic(40, 1234L, false)));
+  }
+
+  @Test
+  public void testMosaicTakesNearestSeed() {
+    Image big = distinctColors(61, 45);
+    for (int seedCount : new int[]{1, 7, 150, 2000}) {
+      Image mosaic = big.mosaic(seedCount, seedCount, false);
+
+      //every color is distinct, so the colors left are exactly those of the seeds
+      Set<Integer> seeds = new HashSet<>();
+      for (int r = 0; r < mosaic.getHeight(); r++) {
+        for (int c = 0; c < mosaic.getWidth(); c++) {
+          seeds.add(PackedRGB.of(mosaic.getPixelAt(r, c)));
+        }
+      }
+      assertEquals(Math.min(seedCount, 61 * 45), seeds.size());
+
+      for (int r = 0; r < mosaic.getHeight(); r++) {
+        for (int c = 0; c < mosaic.getWidth(); c++) {
+          int nearest = Integer.MAX_VALUE;
+          for (int seed : seeds) {
+            nearest = Math.min(nearest, distance(r, c, seed, big.getWidth()));
+          }
+          assertEquals(nearest,
+                  distance(r, c, PackedRGB.of(mosaic.getPixelAt(r, c)), big.getWidth()));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMosaicAverage() {
+    Image oneSeed = packed32.mosaic(1, 99L, true);
+    //the reds of simple32 sum to 455, the greens to 597 and the blues to 1259, over 6 pixels
+    int rgb = PackedRGB.pack(76, 100, 210);
+    for (int r = 0; r < oneSeed.getHeight(); r++) {
+      for (int c = 0; c < oneSeed.getWidth(); c++) {
+        assertEquals(rgb, PackedRGB.of(oneSeed.getPixelAt(r, c)));
+      }
+    }
+
+    assertTrue(sameColorPixelsInImage(packed32, packed32.mosaic(6, 5L, true)));
+    assertTrue(sameColorPixelsInImage(simple32.mosaic(3, 5L, true),
+            packed32.mosaic(3, 5L, true)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicException() {
+    packed22.mosaic(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicSeededException() {
+    simple22.mosaic(0, 1L, true);
+  }
+
+  //an image whose pixel at (row, col) has the color row * width + col
+  private Image distinctColors(int width, int height) {
+    Pixel[][] pixels = new Pixel[width][height];
+    for (int c = 0; c < width; c++) {
+      for (int r = 0; r < height; r++) {
+        int rgb = r * width + c;
+        pixels[c][r] = new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb),
+                PackedRGB.blue(rgb));
+      }
+    }
+    return new SimpleImage(pixels);
+  }
+
+  //the squared distance from (row, col) to the pixel of distinctColors whose color is rgb
+  private int distance(int row, int col, int rgb, int width) {
+    int dr = row - rgb / width;
+    int dc = col - rgb % width;
+    return dr * dr + dc * dc;
+  }
+
+  private boolean sameColorPixelsInImage(Image im1, Image im2) {
+    if (im1.getHeight() != im2.getHeight() || im1.getWidth() != im2.getWidth()) {
+      return false;
+    }
+
+    boolean sameSoFar = true;
+
+    for (int r = 0; r < im1.getHeight() && sameSoFar; r++) {
+      for (int c = 0; c < im1.getWidth() && sameSoFar; c++) {
+        Pixel p1 = im1.getPixelAt(r,c);
+        Pixel p2 = im2.getPixelAt(r,c);
+        sameSoFar &= p1.getComponent(ColorComponent.Red) == p2.getComponent(ColorComponent.Red) &&
+                p1.getComponent(ColorComponent.Green) == p2.getComponent(ColorComponent.Green) &&
+                p1.getComponent(ColorComponent.Blue) == p2.getComponent(ColorComponent.Blue);
+      }
+    }
+
+    return sameSoFar;
+  }
+}
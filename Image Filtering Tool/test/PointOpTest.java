@@ -0,0 +1,157 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.ColorComponent;
+import model.Pixel;
+import model.PackedRGB;
+import model.PointOp;
+import model.RGBPixel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests PointOp, checking the compiled tables against RGBPixel's arithmetic.
+ */
+public class PointOpTest {
+
+  private static final double[][] SEPIA = new double[][]{
+      {0.393, 0.769, 0.189},
+      {0.349, 0.686, 0.168},
+      {0.272, 0.534, 0.131}};
+
+  @Test
+  public void testBrightness() {
+    for (int delta : new int[]{-300, -37, 0, 12, 255}) {
+      PointOp op = PointOp.brightness(delta);
+      for (int rgb : sampleColors()) {
+        assertEquals(PackedRGB.of(pixel(rgb).adjustBrightness(delta)), op.apply(rgb));
+      }
+    }
+  }
+
+  @Test
+  public void testGrayscale() {
+    for (ColorComponent comp : ColorComponent.values()) {
+      PointOp op = PointOp.grayscale(comp);
+      for (int rgb : sampleColors()) {
+        assertEquals(PackedRGB.of(pixel(rgb).grayscale(comp)), op.apply(rgb));
+      }
+    }
+  }
+
+  @Test
+  public void testColorMatrix() {
+    Random rand = new Random(3);
+    double[][] random = new double[3][3];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        random[i][j] = rand.nextDouble() * 3 - 1.5;
+      }
+    }
+    for (double[][] matrix : new double[][][]{SEPIA, random}) {
+      PointOp op = PointOp.colorMatrix(matrix);
+      for (int rgb : sampleColors()) {
+        assertEquals(PackedRGB.of(pixel(rgb).transformColor(matrix)), op.apply(rgb));
+      }
+    }
+  }
+
+  @Test
+  public void testChainsMatchSteps() {
+    PointOp[] ops = new PointOp[]{
+        PointOp.brightness(20),
+        PointOp.colorMatrix(SEPIA),
+        PointOp.gamma(1.8),
+        PointOp.grayscale(ColorComponent.Intensity),
+        PointOp.brightness(-45),
+        PointOp.grayscale(ColorComponent.Value),
+        PointOp.curve(new int[]{0, 100, 255}, new int[]{30, 60, 240}),
+        PointOp.grayscale(ColorComponent.Luma),
+        PointOp.colorMatrix(SEPIA)};
+
+    PointOp chain = PointOp.identity();
+    for (PointOp op : ops) {
+      chain = chain.then(op);
+    }
+
+    for (int rgb : sampleColors()) {
+      int expected = rgb;
+      for (PointOp op : ops) {
+        expected = op.apply(expected);
+      }
+      assertEquals(expected, chain.apply(rgb));
+    }
+  }
+
+  @Test
+  public void testGammaAndLevels() {
+    assertEquals(0, PointOp.gamma(2.2).apply(0));
+    assertEquals(0xFFFFFF, PointOp.gamma(2.2).apply(0xFFFFFF));
+    assertEquals(PackedRGB.pack(186, 186, 186), PointOp.gamma(2.2).apply(0x808080));
+    assertEquals(PackedRGB.pack(56, 56, 56), PointOp.gamma(1 / 2.2).apply(0x808080));
+
+    PointOp levels = PointOp.levels(50, 150, 1.0, 20, 220);
+    assertEquals(PackedRGB.pack(20, 120, 220), levels.apply(PackedRGB.pack(10, 100, 200)));
+    assertEquals(PackedRGB.pack(255, 255, 0),
+            PointOp.levels(0, 255, 1.0, 255, 0).apply(PackedRGB.pack(0, 0, 255)));
+  }
+
+  @Test
+  public void testCurve() {
+    PointOp curve = PointOp.curve(new int[]{50, 100, 200}, new int[]{0, 200, 100});
+    assertEquals(PackedRGB.pack(0, 0, 0), curve.apply(PackedRGB.pack(0, 25, 50)));
+    assertEquals(PackedRGB.pack(100, 200, 150), curve.apply(PackedRGB.pack(75, 100, 150)));
+    assertEquals(PackedRGB.pack(100, 100, 100), curve.apply(PackedRGB.pack(200, 230, 255)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadGamma() {
+    PointOp.gamma(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadLevels() {
+    PointOp.levels(200, 100, 1.0, 0, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCurveNotIncreasing() {
+    PointOp.curve(new int[]{0, 100, 100}, new int[]{0, 50, 255});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCurveOutOfRange() {
+    PointOp.curve(new int[]{0, 256}, new int[]{0, 255});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadMatrix() {
+    PointOp.colorMatrix(new double[][]{{1, 0}, {0, 1}});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testThenNull() {
+    PointOp.identity().then(null);
+  }
+
+  private static Pixel pixel(int rgb) {
+    return new RGBPixel(PackedRGB.red(rgb), PackedRGB.green(rgb), PackedRGB.blue(rgb));
+  }
+
+  //every gray, every pure channel, and a spread of random colors
+  private static int[] sampleColors() {
+    Random rand = new Random(7);
+    int[] colors = new int[256 * 4 + 20000];
+    for (int i = 0; i < 256; i++) {
+      colors[i * 4] = PackedRGB.pack(i, i, i);
+      colors[i * 4 + 1] = PackedRGB.pack(i, 0, 0);
+      colors[i * 4 + 2] = PackedRGB.pack(0, i, 0);
+      colors[i * 4 + 3] = PackedRGB.pack(0, 0, i);
+    }
+    for (int i = 256 * 4; i < colors.length; i++) {
+      colors[i] = rand.nextInt(0x1000000);
+    }
+    return colors;
+  }
+}
@@ -0,0 +1,235 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import model.ColorComponent;
+import model.Histogram;
+import model.Image;
+import model.PackedImage;
+import model.RowScheduler;
+import model.TaskMonitor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the RowScheduler, and that images produce identical results whichever one they use.
+ */
+public class RowSchedulerTest {
+
+  @Test
+  public void testEveryRowRunOnce() {
+    AtomicIntegerArray counts = new AtomicIntegerArray(1000);
+    try (RowScheduler scheduler = RowScheduler.parallel(4)) {
+      scheduler.forEachRowBand(1000, 200, (startRow, endRow) -> {
+        for (int row = startRow; row < endRow; row++) {
+          counts.incrementAndGet(row);
+        }
+      });
+    }
+    for (int row = 0; row < 1000; row++) {
+      assertEquals(1, counts.get(row));
+    }
+  }
+
+  @Test
+  public void testClosedRunsOnCaller() {
+    RowScheduler scheduler = RowScheduler.parallel(4);
+    scheduler.close();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    scheduler.forEachRowBand(1000, 200, (startRow, endRow) -> threads.add(Thread.currentThread()));
+    assertEquals(Set.of(Thread.currentThread()), threads);
+  }
+
+  @Test
+  public void testMonitorProgress() {
+    for (RowScheduler scheduler : new RowScheduler[]{RowScheduler.sequential(),
+        RowScheduler.parallel(3)}) {
+      List<Double> reported = new ArrayList<>();
+      TaskMonitor monitor = new TaskMonitor(fraction -> {
+        synchronized (reported) {
+          reported.add(fraction);
+        }
+      });
+      AtomicInteger rows = new AtomicInteger();
+      String result = monitor.run(() -> {
+        scheduler.forEachRowBand(1000, 200, (startRow, endRow) ->
+                rows.addAndGet(endRow - startRow));
+        return "done";
+      });
+
+      assertEquals("done", result);
+      assertEquals(1000, rows.get());
+      //split into several bands, even on the calling thread
+      assertTrue(reported.size() > 1);
+      assertEquals(1.0, monitor.getProgress(), 1e-9);
+      assertFalse(monitor.isCancelled());
+    }
+  }
+
+  @Test
+  public void testMonitorPasses() {
+    for (RowScheduler scheduler : new RowScheduler[]{RowScheduler.sequential(),
+        RowScheduler.parallel(3)}) {
+      List<Double> reported = new ArrayList<>();
+      TaskMonitor monitor = new TaskMonitor(reported::add);
+      List<Double> between = new ArrayList<>();
+      monitor.run(() -> TaskMonitor.passes(2, () -> {
+        scheduler.forEachRowBand(1000, 200, (startRow, endRow) -> { });
+        between.add(monitor.getProgress());
+        //the second pass declares passes of its own, within its half
+        TaskMonitor.passes(3, () -> {
+          for (int i = 0; i < 3; i++) {
+            scheduler.forEachRowBand(500, 100, (startRow, endRow) -> { });
+            between.add(monitor.getProgress());
+          }
+          return null;
+        });
+        return null;
+      }));
+
+      assertEquals(0.5, between.get(0), 1e-9);
+      assertEquals(0.5 + 0.5 / 3, between.get(1), 1e-9);
+      assertEquals(0.5 + 1.0 / 3, between.get(2), 1e-9);
+      assertEquals(1.0, between.get(3), 1e-9);
+      assertNeverBackwards(reported);
+    }
+  }
+
+  @Test
+  public void testMonitorUndeclaredPasses() {
+    List<Double> reported = new ArrayList<>();
+    TaskMonitor monitor = new TaskMonitor(reported::add);
+    monitor.run(() -> {
+      //a pass beyond those declared adds nothing, rather than taking progress back
+      RowScheduler.sequential().forEachRowBand(1000, 200, (startRow, endRow) -> { });
+      RowScheduler.sequential().forEachRowBand(1000, 200, (startRow, endRow) -> { });
+      Histogram.of(new PackedImage(2, 2, new int[4]));
+      return null;
+    });
+    assertNeverBackwards(reported);
+    assertEquals(1.0, monitor.getProgress(), 1e-9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoPasses() {
+    TaskMonitor.passes(0, () -> null);
+  }
+
+  //checks that progress only ever went forwards
+  private static void assertNeverBackwards(List<Double> reported) {
+    for (int i = 1; i < reported.size(); i++) {
+      assertTrue(reported.get(i) >= reported.get(i - 1));
+    }
+  }
+
+  @Test
+  public void testMonitorCancel() {
+    for (RowScheduler scheduler : new RowScheduler[]{RowScheduler.sequential(),
+        RowScheduler.parallel(2)}) {
+      TaskMonitor monitor = new TaskMonitor();
+      AtomicInteger bands = new AtomicInteger();
+      try {
+        monitor.run(() -> {
+          scheduler.forEachRowBand(1000, 200, (startRow, endRow) -> {
+            bands.incrementAndGet();
+            monitor.cancel();
+          });
+          return null;
+        });
+        fail("Cancelled work finished");
+      } catch (CancellationException e) {
+        assertTrue(monitor.isCancelled());
+        assertTrue(monitor.getProgress() < 1);
+      }
+      //work after the cancelled work is not monitored
+      AtomicInteger rows = new AtomicInteger();
+      scheduler.forEachRowBand(1000, 200, (startRow, endRow) -> rows.addAndGet(endRow - startRow));
+      assertEquals(1000, rows.get());
+    }
+  }
+
+  @Test(expected = CancellationException.class)
+  public void testCancelledBeforeRunning() {
+    TaskMonitor monitor = new TaskMonitor();
+    monitor.cancel();
+    monitor.run(() -> "never");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMonitorNullListener() {
+    new TaskMonitor(null);
+  }
+
+  @Test
+  public void testParallelism() {
+    assertEquals(1, RowScheduler.sequential().getParallelism());
+    assertEquals(1, RowScheduler.parallel(1).getParallelism());
+    assertEquals(3, RowScheduler.parallel(3).getParallelism());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadParallelism() {
+    RowScheduler.parallel(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDefault() {
+    RowScheduler.setDefault(null);
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    Image image = randomImage(317, 229);
+    double[][] kernel = new double[][]{
+            {0.0625, 0.125, 0.0625},
+            {0.125, 0.25, 0.125},
+            {0.0625, 0.125, 0.0625}};
+    double[][] matrix = new double[][]{
+            {0.393, 0.769, 0.189},
+            {0.349, 0.686, 0.168},
+            {0.272, 0.534, 0.131}};
+
+    RowScheduler original = RowScheduler.getDefault();
+    try {
+      RowScheduler.setDefault(RowScheduler.sequential());
+      int[] filtered = pixelsOf(image.filter(kernel));
+      int[] brightened = pixelsOf(image.adjustBrightness(-37));
+      int[] grayscaled = pixelsOf(image.grayscale(ColorComponent.Luma));
+      int[] transformed = pixelsOf(image.transformColor(matrix));
+
+      RowScheduler.setDefault(RowScheduler.parallel(4));
+      assertArrayEquals(filtered, pixelsOf(image.filter(kernel)));
+      assertArrayEquals(brightened, pixelsOf(image.adjustBrightness(-37)));
+      assertArrayEquals(grayscaled, pixelsOf(image.grayscale(ColorComponent.Luma)));
+      assertArrayEquals(transformed, pixelsOf(image.transformColor(matrix)));
+    } finally {
+      RowScheduler.setDefault(original);
+    }
+  }
+
+  private static Image randomImage(int width, int height) {
+    Random rand = new Random(42);
+    int[] data = new int[width * height];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = rand.nextInt(0x1000000);
+    }
+    return new PackedImage(width, height, data);
+  }
+
+  private static int[] pixelsOf(Image image) {
+    int[] data = new int[image.getWidth() * image.getHeight()];
+    image.getRegion(0, 0, image.getHeight(), image.getWidth(), data, 0, image.getWidth());
+    return data;
+  }
+}
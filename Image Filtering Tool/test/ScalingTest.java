@@ -0,0 +1,130 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.RowScheduler;
+import model.Scaling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the Scaling class, by checking shrunk images against averaging blocks of pixels directly.
+ */
+public class ScalingTest {
+
+  RowScheduler oldDefault;
+  Image image;
+
+  @Before
+  public void setup() {
+    oldDefault = RowScheduler.getDefault();
+    Random rand = new Random(7L);
+    int[] pixels = new int[300 * 200];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt() & 0xFFFFFF;
+    }
+    image = new PackedImage(300, 200, pixels);
+  }
+
+  /**
+   * Puts back the default scheduler.
+   */
+  @After
+  public void tearDown() {
+    RowScheduler.setDefault(oldDefault);
+  }
+
+  @Test
+  public void testFittingImageUnchanged() {
+    assertSame(image, Scaling.toFit(image, 300, 200));
+    assertSame(image, Scaling.toFit(image, 1000, 1000));
+  }
+
+  @Test
+  public void testAveragesBlocks() {
+    Image small = new PackedImage(4, 2, new int[]{
+        0x000000, 0x0A0A0A, 0xFF0000, 0xFF0000,
+        0x141414, 0x1E1E1E, 0x0000FF, 0x0000FF});
+    Image shrunk = Scaling.toFit(small, 2, 2);
+
+    assertEquals(2, shrunk.getWidth());
+    assertEquals(1, shrunk.getHeight());
+    int[] row = new int[2];
+    shrunk.getRow(0, row);
+    //15 exactly, and 127.5 rounded up
+    assertArrayEquals(new int[]{0x0F0F0F, PackedRGB.pack(128, 0, 128)}, row);
+  }
+
+  @Test
+  public void testKeepsProportions() {
+    Image shrunk = Scaling.toFit(image, 100, 100);
+    assertEquals(100, shrunk.getWidth());
+    assertEquals(67, shrunk.getHeight());
+
+    shrunk = Scaling.toFit(image, 1000, 50);
+    assertEquals(75, shrunk.getWidth());
+    assertEquals(50, shrunk.getHeight());
+
+    shrunk = Scaling.toFit(new PackedImage(1000, 1, new int[1000]), 10, 10);
+    assertEquals(10, shrunk.getWidth());
+    assertEquals(1, shrunk.getHeight());
+  }
+
+  @Test
+  public void testMatchesDirectAverage() {
+    Image shrunk = Scaling.toFit(image, 100, 100);
+    for (int i = 0; i < shrunk.getHeight(); i++) {
+      for (int j = 0; j < shrunk.getWidth(); j++) {
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int count = 0;
+        for (int row = i * 200 / 67; row < (i + 1) * 200 / 67; row++) {
+          for (int col = j * 3; col < j * 3 + 3; col++) {
+            int rgb = PackedRGB.of(image.getPixelAt(row, col));
+            red += PackedRGB.red(rgb);
+            green += PackedRGB.green(rgb);
+            blue += PackedRGB.blue(rgb);
+            count++;
+          }
+        }
+        assertEquals(PackedRGB.pack(Math.round(red / (float) count),
+                Math.round(green / (float) count), Math.round(blue / (float) count)),
+                PackedRGB.of(shrunk.getPixelAt(i, j)));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    RowScheduler.setDefault(RowScheduler.sequential());
+    Image sequential = Scaling.toFit(image, 128, 128);
+    RowScheduler.setDefault(RowScheduler.parallel(4));
+    Image parallel = Scaling.toFit(image, 128, 128);
+
+    int[] expected = new int[sequential.getWidth() * sequential.getHeight()];
+    int[] actual = new int[expected.length];
+    sequential.getRegion(0, 0, sequential.getHeight(), sequential.getWidth(), expected, 0,
+            sequential.getWidth());
+    parallel.getRegion(0, 0, parallel.getHeight(), parallel.getWidth(), actual, 0,
+            parallel.getWidth());
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    Scaling.toFit(null, 10, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroSize() {
+    Scaling.toFit(image, 0, 10);
+  }
+}
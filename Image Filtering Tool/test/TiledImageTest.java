@@ -0,0 +1,208 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import model.ColorComponent;
+import model.EdgeMode;
+import model.Image;
+import model.PackedImage;
+import model.PackedRGB;
+import model.PointOp;
+import model.TileCache;
+import model.TiledImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TiledImage and TileCache classes, by checking that tiled images produce the same
+ *   results as the equivalent PackedImage, however small their tiles and their cache.
+ */
+public class TiledImageTest {
+
+  TileCache oldDefault;
+  Image packed;
+  //tiles which do not divide the image evenly, in a cache which holds only a few of them
+  Image tiled;
+
+  /**
+   * Sets up test images.
+   */
+  @Before
+  public void setup() {
+    oldDefault = TileCache.getDefault();
+    TileCache.setDefault(TileCache.withBudget(4 * 4 * 16 * 16 * 6));
+    packed = randomImage(101, 67, 3L);
+    tiled = TiledImage.of(packed, 16);
+  }
+
+  /**
+   * Puts back the default cache.
+   */
+  @After
+  public void tearDown() {
+    TileCache.setDefault(oldDefault);
+  }
+
+  @Test
+  public void testOf() {
+    assertTrue(samePixels(packed, tiled));
+    assertEquals(67, tiled.getHeight());
+    assertEquals(101, tiled.getWidth());
+    assertEquals(16, ((TiledImage) tiled).getTileSize());
+    assertEquals(PackedRGB.of(packed.getPixelAt(66, 100)),
+            PackedRGB.of(tiled.getPixelAt(66, 100)));
+    assertSame(tiled, TiledImage.of(tiled, 16));
+    assertEquals(TiledImage.DEFAULT_TILE_SIZE, TiledImage.of(tiled).getTileSize());
+    assertTrue(samePixels(packed, TiledImage.of(tiled)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfException() {
+    TiledImage.of(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfTileSizeException() {
+    TiledImage.of(packed, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPixelAtException() {
+    tiled.getPixelAt(0, 101);
+  }
+
+  @Test
+  public void testFlips() {
+    assertTrue(samePixels(packed.flipVertical(), tiled.flipVertical()));
+    assertTrue(samePixels(packed.flipHorizontal(), tiled.flipHorizontal()));
+    assertTrue(samePixels(packed.flipHorizontal().flipVertical(),
+            tiled.flipHorizontal().flipVertical()));
+  }
+
+  @Test
+  public void testPointOps() {
+    assertTrue(samePixels(packed.adjustBrightness(-30), tiled.adjustBrightness(-30)));
+    assertTrue(samePixels(packed.grayscale(ColorComponent.Value),
+            tiled.grayscale(ColorComponent.Value)));
+    assertTrue(samePixels(packed.applyPointOp(PointOp.gamma(0.5)),
+            tiled.applyPointOp(PointOp.gamma(0.5))));
+  }
+
+  @Test
+  public void testFilter() {
+    double[][] sharpen = new double[][]{{-0.125, -0.125, -0.125},
+        {-0.125, 2, -0.125},
+        {-0.125, -0.125, -0.125}};
+    //reaches across more than one tile in every direction
+    double[][] wide = new double[41][3];
+    for (double[] row : wide) {
+      Arrays.fill(row, 1.0 / 123);
+    }
+    for (EdgeMode edges : EdgeMode.values()) {
+      assertTrue(samePixels(packed.filter(sharpen, edges), tiled.filter(sharpen, edges)));
+      assertTrue(samePixels(packed.filter(wide, edges), tiled.filter(wide, edges)));
+    }
+    assertTrue(samePixels(packed.filter(sharpen).filter(sharpen),
+            tiled.filter(sharpen).filter(sharpen)));
+  }
+
+  @Test
+  public void testFilterKeepsKernel() {
+    double[][] kernel = new double[][]{{0.25, 0.5, 0.25}};
+    Image expected = packed.filter(kernel);
+    Image filtered = tiled.filter(kernel);
+    kernel[0][0] = 5;
+    assertTrue(samePixels(expected, filtered));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterException() {
+    tiled.filter(new double[][]{{1.0, 2.0}});
+  }
+
+  @Test
+  public void testMosaic() {
+    for (int seedCount : new int[]{1, 40, 3000}) {
+      assertTrue(samePixels(packed.mosaic(seedCount, 11L, false),
+              tiled.mosaic(seedCount, 11L, false)));
+      assertTrue(samePixels(packed.mosaic(seedCount, 11L, true),
+              tiled.mosaic(seedCount, 11L, true)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicException() {
+    tiled.mosaic(0);
+  }
+
+  @Test
+  public void testRegions() {
+    int[] region = new int[40 * 30];
+    Arrays.fill(region, 0xFF00FF);
+    assertTrue(samePixels(packed.withRegion(10, 50, 30, 40, region, 0, 40),
+            tiled.withRegion(10, 50, 30, 40, region, 0, 40)));
+
+    int[] fromPacked = new int[200];
+    int[] fromTiled = new int[200];
+    packed.getRegion(14, 30, 4, 35, fromPacked, 3, 40);
+    tiled.getRegion(14, 30, 4, 35, fromTiled, 3, 40);
+    assertTrue(Arrays.equals(fromPacked, fromTiled));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionException() {
+    tiled.getRegion(60, 0, 8, 1, new int[8], 0, 1);
+  }
+
+  @Test
+  public void testCache() {
+    TileCache cache = TileCache.withBudget(3000);
+    assertEquals(3000, cache.getBudget());
+    TileCache.setDefault(cache);
+    assertSame(cache, TileCache.getDefault());
+
+    Image small = TiledImage.of(packed, 8);
+    assertTrue(samePixels(packed.adjustBrightness(5), small.adjustBrightness(5)));
+    assertTrue(cache.getUsed() > 0);
+    assertTrue(cache.getUsed() <= 3000);
+    cache.clear();
+    assertEquals(0, cache.getUsed());
+    assertTrue(samePixels(packed, small));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCacheBudgetException() {
+    TileCache.withBudget(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetDefaultCacheException() {
+    TileCache.setDefault(null);
+  }
+
+  private Image randomImage(int width, int height, long seed) {
+    Random rand = new Random(seed);
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt(1 << 24);
+    }
+    return new PackedImage(width, height, pixels);
+  }
+
+  private boolean samePixels(Image first, Image second) {
+    if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+      return false;
+    }
+    int[] firstPixels = new int[first.getWidth() * first.getHeight()];
+    int[] secondPixels = new int[firstPixels.length];
+    first.getRegion(0, 0, first.getHeight(), first.getWidth(), firstPixels, 0, first.getWidth());
+    second.getRegion(0, 0, second.getHeight(), second.getWidth(), secondPixels, 0,
+            second.getWidth());
+    return Arrays.equals(firstPixels, secondPixels);
+  }
+}
@@ -0,0 +1,253 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.ColorComponent;
+import model.EdgeMode;
+import model.Image;
+import model.ImageProcessorModel;
+import model.ImageProcessorModelImpl;
+import model.MappedImage;
+import model.PackedImage;
+import model.PackedRGB;
+import model.PointOp;
+import model.TiledImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the flips, rotations and crops of images, which are views of the images they were made
+ *   from, by checking them against rearranging the pixels of those images directly.
+ */
+public class ViewImageTest {
+
+  Image small;
+  Image large;
+
+  @Before
+  public void setup() {
+    small = random(5, 3, 1L);
+    //more pixels than a view rearranges at once
+    large = random(700, 300, 2L);
+  }
+
+  //an image of random colors
+  private static Image random(int width, int height, long seed) {
+    Random rand = new Random(seed);
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rand.nextInt() & 0xFFFFFF;
+    }
+    return new PackedImage(width, height, pixels);
+  }
+
+  //all of the pixels of an image, in row-major order
+  private static int[] pixels(Image image) {
+    int[] pixels = new int[image.getWidth() * image.getHeight()];
+    image.getRegion(0, 0, image.getHeight(), image.getWidth(), pixels, 0, image.getWidth());
+    return pixels;
+  }
+
+  //the pixels of an image turned a quarter turn clockwise, found one at a time
+  private static int[] rotatedClockwise(int[] pixels, int width, int height) {
+    int[] result = new int[pixels.length];
+    for (int r = 0; r < width; r++) {
+      for (int c = 0; c < height; c++) {
+        result[r * height + c] = pixels[(height - 1 - c) * width + r];
+      }
+    }
+    return result;
+  }
+
+  //the pixels of an image mirrored left to right, found one at a time
+  private static int[] flippedHorizontal(int[] pixels, int width, int height) {
+    int[] result = new int[pixels.length];
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        result[r * width + c] = pixels[r * width + width - 1 - c];
+      }
+    }
+    return result;
+  }
+
+  //the pixels of an image mirrored top to bottom, found one at a time
+  private static int[] flippedVertical(int[] pixels, int width, int height) {
+    int[] result = new int[pixels.length];
+    for (int r = 0; r < height; r++) {
+      System.arraycopy(pixels, (height - 1 - r) * width, result, r * width, width);
+    }
+    return result;
+  }
+
+  //the pixels of a rectangle of an image
+  private static int[] cropped(int[] pixels, int width, int row, int col, int height,
+                               int cropWidth) {
+    int[] result = new int[height * cropWidth];
+    for (int r = 0; r < height; r++) {
+      System.arraycopy(pixels, (row + r) * width + col, result, r * cropWidth, cropWidth);
+    }
+    return result;
+  }
+
+  @Test
+  public void testRotateClockwise() {
+    Image rotated = small.rotateClockwise();
+
+    assertEquals(3, rotated.getWidth());
+    assertEquals(5, rotated.getHeight());
+    assertArrayEquals(rotatedClockwise(pixels(small), 5, 3), pixels(rotated));
+    assertArrayEquals(rotatedClockwise(pixels(large), 700, 300),
+            pixels(large.rotateClockwise()));
+  }
+
+  @Test
+  public void testRotateCounterclockwise() {
+    //three turns clockwise
+    int[] expected = pixels(large);
+    for (int i = 0; i < 3; i++) {
+      expected = rotatedClockwise(expected, i % 2 == 0 ? 700 : 300, i % 2 == 0 ? 300 : 700);
+    }
+
+    assertArrayEquals(expected, pixels(large.rotateCounterclockwise()));
+  }
+
+  @Test
+  public void testFlips() {
+    assertArrayEquals(flippedHorizontal(pixels(large), 700, 300),
+            pixels(large.flipHorizontal()));
+    assertArrayEquals(flippedVertical(pixels(large), 700, 300),
+            pixels(large.flipVertical()));
+  }
+
+  @Test
+  public void testCrop() {
+    Image crop = large.crop(10, 20, 200, 650);
+
+    assertEquals(650, crop.getWidth());
+    assertEquals(200, crop.getHeight());
+    assertArrayEquals(cropped(pixels(large), 700, 10, 20, 200, 650), pixels(crop));
+    assertEquals(PackedRGB.of(large.getPixelAt(10, 20)), PackedRGB.of(crop.getPixelAt(0, 0)));
+    assertEquals(PackedRGB.of(large.getPixelAt(209, 669)),
+            PackedRGB.of(crop.getPixelAt(199, 649)));
+  }
+
+  @Test
+  public void testCompositions() {
+    Image view = large.rotateClockwise().flipHorizontal().crop(5, 7, 600, 250)
+            .rotateCounterclockwise().flipVertical();
+    int[] expected = rotatedClockwise(pixels(large), 700, 300);
+    expected = flippedHorizontal(expected, 300, 700);
+    expected = cropped(expected, 300, 5, 7, 600, 250);
+    for (int i = 0; i < 3; i++) {
+      expected = rotatedClockwise(expected, i % 2 == 0 ? 250 : 600, i % 2 == 0 ? 600 : 250);
+    }
+    expected = flippedVertical(expected, 600, 250);
+
+    assertEquals(600, view.getWidth());
+    assertEquals(250, view.getHeight());
+    assertArrayEquals(expected, pixels(view));
+  }
+
+  @Test
+  public void testRegionsOfView() {
+    Image view = small.rotateCounterclockwise().flipVertical();
+    int[] all = pixels(view);
+    int[] dest = new int[20];
+
+    //a 2x2 region at row 1, column 1, written from offset 3 with rows 4 apart
+    view.getRegion(1, 1, 2, 2, dest, 3, 4);
+
+    assertEquals(all[3 + 1], dest[3]);
+    assertEquals(all[3 + 2], dest[4]);
+    assertEquals(all[2 * 3 + 1], dest[7]);
+    assertEquals(all[2 * 3 + 2], dest[8]);
+    for (int r = 0; r < 5; r++) {
+      for (int c = 0; c < 3; c++) {
+        assertEquals(view.getPixelAt(r, c).getComponent(ColorComponent.Red),
+                (all[r * 3 + c] >> 16) & 0xFF);
+      }
+    }
+  }
+
+  @Test
+  public void testUndoingGivesBackImage() {
+    assertSame(large, large.flipHorizontal().flipHorizontal());
+    assertSame(large, large.flipVertical().flipVertical());
+    assertSame(large, large.rotateClockwise().rotateCounterclockwise());
+    assertSame(large, large.rotateClockwise().rotateClockwise().rotateClockwise()
+            .rotateClockwise());
+    assertSame(large, large.flipHorizontal().flipVertical().rotateClockwise()
+            .rotateClockwise());
+    assertSame(large, large.crop(0, 0, 300, 700));
+  }
+
+  @Test
+  public void testOperationsOnViews() {
+    Image view = large.rotateClockwise().crop(100, 50, 300, 200);
+    Image copy = new PackedImage(200, 300, pixels(view));
+    double[][] blur = {{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125}, {0.0625, 0.125, 0.0625}};
+
+    assertArrayEquals(pixels(copy.adjustBrightness(30)), pixels(view.adjustBrightness(30)));
+    assertArrayEquals(pixels(copy.applyPointOp(PointOp.gamma(2.2))),
+            pixels(view.applyPointOp(PointOp.gamma(2.2))));
+    assertArrayEquals(pixels(copy.filter(blur)), pixels(view.filter(blur)));
+    assertArrayEquals(pixels(copy.filter(blur, EdgeMode.Mirror)),
+            pixels(view.filter(blur, EdgeMode.Mirror)));
+    assertArrayEquals(pixels(copy.mosaic(50, 3L, true)), pixels(view.mosaic(50, 3L, true)));
+  }
+
+  @Test
+  public void testViewsOfImagesOffHeap() {
+    Image mapped = MappedImage.of(large);
+    Image tiled = TiledImage.of(large, 64);
+    int[] expected = cropped(flippedVertical(pixels(large), 700, 300), 700, 30, 40, 100, 500);
+
+    Image mappedView = mapped.flipVertical().crop(30, 40, 100, 500);
+    Image tiledView = tiled.rotateClockwise().rotateClockwise().flipHorizontal()
+            .crop(30, 40, 100, 500);
+
+    assertArrayEquals(expected, pixels(mappedView));
+    assertArrayEquals(expected, pixels(tiledView));
+    //copies of views of images outside the heap stay outside the heap
+    assertTrue(mappedView.adjustBrightness(10) instanceof MappedImage);
+    assertTrue(mappedView.filter(new double[][]{{1}}) instanceof MappedImage);
+    assertArrayEquals(expected, pixels(mappedView.filter(new double[][]{{1}})));
+  }
+
+  @Test
+  public void testPointOpsOfViewsOffHeap() {
+    ImageProcessorModel model = new ImageProcessorModelImpl();
+    model.addImage("view", TiledImage.of(large, 64).flipVertical().crop(30, 40, 100, 500));
+    model.adjustImageBrightness("view", "brighter", 10);
+    model.filterImage("brighter", "filtered", new double[][]{{1}});
+
+    //the recorded brightness is run on a copy outside the heap, which the filter reads
+    assertTrue(model.returnImage("filtered") instanceof TiledImage);
+    assertArrayEquals(pixels(model.returnImage("view").adjustBrightness(10)),
+            pixels(model.returnImage("filtered")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropPastEdge() {
+    large.rotateClockwise().crop(0, 0, 300, 400);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropEmpty() {
+    small.crop(1, 1, 0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropNegative() {
+    small.crop(-1, 0, 2, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testViewPixelOutOfRange() {
+    small.rotateClockwise().getPixelAt(0, 3);
+  }
+}
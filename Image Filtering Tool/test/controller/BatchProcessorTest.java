@@ -0,0 +1,116 @@
+package controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import model.Image;
+import model.ImageProcessorModelImpl;
+import model.PackedRGB;
+import utils.ImageUtils;
+import view.ImageProcessorTextView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the BatchProcessor, by running templates on a directory tree of images made for each
+ *   test.
+ */
+public class BatchProcessorTest {
+
+  Path input;
+  Path output;
+  StringBuilder report;
+
+  @Before
+  public void setup() throws IOException {
+    input = Files.createTempDirectory("batch-in");
+    output = Files.createTempDirectory("batch-out").resolve("out");
+    report = new StringBuilder();
+    Path im22 = Paths.get("test/controller/readFrom/im22.ppm");
+    Files.copy(im22, input.resolve("a.ppm"));
+    Files.createDirectories(input.resolve("sub/deeper"));
+    Files.copy(im22, input.resolve("sub/b.ppm"));
+    Files.copy(im22, input.resolve("sub/deeper/c.ppm"));
+    Files.writeString(input.resolve("notes.txt"), "not an image");
+  }
+
+  /**
+   * Deletes the directories made for the test.
+   */
+  @After
+  public void tearDown() throws IOException {
+    for (Path dir : new Path[]{input, output.getParent()}) {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  @Test
+  public void testRunsTemplateOnEachImage() throws IOException {
+    BatchProcessor batch = new BatchProcessor("load $in im\n" +
+            "horizontal-flip im im\n" +
+            "save im $out.ppm\n", 2, ImageProcessorModelImpl::new);
+
+    assertEquals(0, batch.run(input, output, new ImageProcessorTextView(report)));
+
+    Image original = ImageUtils.readPPM("test/controller/readFrom/im22.ppm");
+    for (String file : new String[]{"a.ppm", "sub/b.ppm", "sub/deeper/c.ppm"}) {
+      Image flipped = ImageUtils.readPPM(output.resolve(file).toString());
+      assertEquals(PackedRGB.of(original.getPixelAt(0, 1)),
+              PackedRGB.of(flipped.getPixelAt(0, 0)));
+    }
+    assertFalse(Files.exists(output.resolve("notes")));
+    String[] lines = report.toString().split("\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].matches("a\\.ppm: \\d+ ms"));
+    assertTrue(lines[1].matches("sub/b\\.ppm: \\d+ ms"));
+    assertTrue(lines[2].matches("sub/deeper/c\\.ppm: \\d+ ms"));
+    assertTrue(lines[3].matches("Processed 3 images in \\d+ ms, 0 failed\\."));
+  }
+
+  @Test
+  public void testReportsFailures() throws IOException {
+    Files.writeString(input.resolve("sub/broken.ppm"), "P3 not really");
+    BatchProcessor batch = new BatchProcessor("load $in im\n" +
+            "save im $out.png\n" +
+            "sepia missing im\n", 1, ImageProcessorModelImpl::new);
+
+    assertEquals(4, batch.run(input, output, new ImageProcessorTextView(report)));
+
+    String[] lines = report.toString().split("\n");
+    assertEquals(5, lines.length);
+    assertTrue(lines[0].matches("a\\.ppm: failed in \\d+ ms: No such name in the system\\."));
+    assertTrue(lines[1].matches("sub/b\\.ppm: failed in \\d+ ms: .*"));
+    assertTrue(lines[2].startsWith("sub/broken.ppm: failed in "));
+    assertTrue(lines[4].matches("Processed 4 images in \\d+ ms, 4 failed\\."));
+    assertTrue(Files.exists(output.resolve("a.png")));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInputNotDirectory() throws IOException {
+    new BatchProcessor("q", 1, ImageProcessorModelImpl::new)
+            .run(input.resolve("a.ppm"), output, new ImageProcessorTextView(report));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoImagesInFlight() {
+    new BatchProcessor("q", 0, ImageProcessorModelImpl::new);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullTemplate() {
+    new BatchProcessor(null, 1, ImageProcessorModelImpl::new);
+  }
+}
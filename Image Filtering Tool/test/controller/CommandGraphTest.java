@@ -0,0 +1,125 @@
+package controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the CommandGraph, by holding the commands it gives its executor until they are let run,
+ *   and checking which are given out at each point.
+ */
+public class CommandGraphTest {
+
+  List<Runnable> ready;
+  StringBuilder log;
+  CommandGraph graph;
+
+  @Before
+  public void setup() {
+    ready = new ArrayList<>();
+    log = new StringBuilder();
+    graph = new CommandGraph(ready::add);
+  }
+
+  //a command which logs its name
+  private Runnable command(String name) {
+    return () -> log.append(name).append(" ");
+  }
+
+  //runs every command given out so far, which may give out more
+  private void runReady() {
+    List<Runnable> running = new ArrayList<>(ready);
+    ready.clear();
+    for (Runnable command : running) {
+      command.run();
+    }
+  }
+
+  @Test
+  public void testUnrelatedCommandsRunTogether() {
+    graph.add(List.of("a.png"), List.of("a"), command("load-a"));
+    graph.add(List.of("b.png"), List.of("b"), command("load-b"));
+    graph.add(List.of("a"), List.of("a2"), command("blur-a"));
+    graph.add(List.of("b"), List.of("b2"), command("blur-b"));
+
+    assertEquals(2, ready.size());
+    runReady();
+    assertEquals("load-a load-b ", log.toString());
+    assertEquals(2, ready.size());
+    runReady();
+    assertEquals("load-a load-b blur-a blur-b ", log.toString());
+    assertTrue(ready.isEmpty());
+  }
+
+  @Test
+  public void testWriteWaitsForEarlierReads() {
+    graph.add(List.of(), List.of("a"), command("load-a"));
+    graph.add(List.of("a"), List.of("b"), command("a-to-b"));
+    graph.add(List.of("a"), List.of("c"), command("a-to-c"));
+    graph.add(List.of("d"), List.of("a"), command("d-to-a"));
+
+    runReady();
+    //both readers of the first a run before a is written again
+    assertEquals(2, ready.size());
+    runReady();
+    assertEquals(1, ready.size());
+    assertTrue(log.toString().contains("a-to-b"));
+    assertTrue(log.toString().contains("a-to-c"));
+    runReady();
+    assertTrue(log.toString().endsWith("d-to-a "));
+  }
+
+  @Test
+  public void testWritesInOrder() {
+    graph.add(List.of("x"), List.of("out.png"), command("save-x"));
+    graph.add(List.of("y"), List.of("out.png"), command("save-y"));
+    graph.add(List.of("out.png"), List.of("z"), command("load-z"));
+
+    assertEquals(1, ready.size());
+    runReady();
+    runReady();
+    runReady();
+    assertEquals("save-x save-y load-z ", log.toString());
+  }
+
+  @Test
+  public void testBarrier() {
+    graph.add(List.of(), List.of("a"), command("a"));
+    graph.add(List.of(), List.of("b"), command("b"));
+    graph.addBarrier(command("memory"));
+    graph.add(List.of(), List.of("c"), command("c"));
+
+    assertEquals(2, ready.size());
+    runReady();
+    assertEquals(1, ready.size());
+    runReady();
+    assertEquals("a b memory ", log.toString());
+    assertEquals(1, ready.size());
+    runReady();
+    assertEquals("a b memory c ", log.toString());
+  }
+
+  @Test
+  public void testFailedCommandStillDone() {
+    CompletableFuture<Void> failed = graph.add(List.of(), List.of("a"), () -> {
+      throw new IllegalArgumentException("a not found.");
+    });
+    graph.add(List.of("a"), List.of("b"), command("a-to-b"));
+
+    runReady();
+    assertTrue(failed.isCompletedExceptionally());
+    runReady();
+    assertEquals("a-to-b ", log.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new CommandGraph(null);
+  }
+}
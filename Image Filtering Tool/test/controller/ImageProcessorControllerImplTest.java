@@ -3,16 +3,23 @@ package controller;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import mocks.MockImageProcessorModel;
+import model.ConcurrentImageProcessorModel;
 import model.ImageProcessorModel;
 import model.ImageProcessorModelImpl;
+import utils.SaveService;
 import view.ImageProcessorTextView;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests the ImageProcessorController.
@@ -127,7 +134,11 @@ public class ImageProcessorControllerImplTest {
             "  Command: q, quit\n" +
             "  Command: menu\n" +
             "  Command: load  |  Arguments: file-name image-name\n" +
+            "  Command: load-mapped  |  Arguments: file-name image-name\n" +
+            "  Command: load-tiled  |  Arguments: file-name image-name\n" +
             "  Command: save  |  Arguments: image-name file-name\n" +
+            "  Command: save-format  |  Arguments: ppm-format image-name file-name\n" +
+            "    (ppm-format is one of plain, raw)\n" +
             "  Command: red-component  |  Arguments: image-name new-image-name\n" +
             "  Command: green-component  |  Arguments: image-name new-image-name\n" +
             "  Command: blue-component  |  Arguments: image-name new-image-name\n" +
@@ -136,11 +147,30 @@ public class ImageProcessorControllerImplTest {
             "  Command: intensity-component  |  Arguments: image-name new-image-name\n" +
             "  Command: horizontal-flip  |  Arguments: image-name new-image-name\n" +
             "  Command: vertical-flip  |  Arguments: image-name new-image-name\n" +
+            "  Command: rotate-clockwise  |  Arguments: image-name new-image-name\n" +
+            "  Command: rotate-counterclockwise  |  Arguments: image-name new-image-name\n" +
+            "  Command: crop  |  Arguments: row column height width image-name " +
+            "new-image-name\n" +
             "  Command: brighten  |  Arguments: brightness-change image-name new-image-name\n" +
             "  Command: grayscale  |  Arguments: image-name new-image-name\n" +
             "  Command: sepia  |  Arguments: image-name new-image-name\n" +
             "  Command: blur  |  Arguments: image-name new-image-name\n" +
             "  Command: sharpen  |  Arguments: image-name new-image-name\n" +
+            "  Command: blur-edges  |  Arguments: edge-mode image-name new-image-name\n" +
+            "  Command: sharpen-edges  |  Arguments: edge-mode image-name new-image-name\n" +
+            "    (edge-mode is one of zero, clamp, mirror, wrap)\n" +
+            "  Command: gamma  |  Arguments: gamma image-name new-image-name\n" +
+            "  Command: levels  |  Arguments: in-black in-white gamma out-black out-white " +
+            "image-name new-image-name\n" +
+            "  Command: curve  |  Arguments: point-count in out [in out ...] " +
+            "image-name new-image-name\n" +
+            "  Command: auto-levels  |  Arguments: image-name new-image-name\n" +
+            "  Command: mosaic  |  Arguments: seed-count [random-seed] image-name " +
+            "new-image-name\n" +
+            "  Command: mosaic-average  |  Arguments: seed-count [random-seed] image-name " +
+            "new-image-name\n" +
+            "  Command: statistics  |  Arguments: image-name\n" +
+            "  Command: memory\n" +
             "Command:\n" +
             "Arguments:\n" +
             "Command:\n" +
@@ -168,6 +198,307 @@ public class ImageProcessorControllerImplTest {
             "returnImage im7\n", mockLog.toString());
   }
 
+  @Test
+  public void testEdgeModeCommands() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("blur-edges clamp a b\n" +
+                    "sharpen-edges Mirror b c\n" +
+                    "blur-edges zero c d\n" +
+                    "blur-edges sideways d e\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("filterImage a b Clamp 0.0625 0.125 0.0625 / 0.125 0.25 0.125 / " +
+            "0.0625 0.125 0.0625 /\n" +
+            "filterImage b c Mirror " +
+            "-0.125 -0.125 -0.125 -0.125 -0.125 / " +
+            "-0.125 0.25 0.25 0.25 -0.125 / " +
+            "-0.125 0.25 1.0 0.25 -0.125 / " +
+            "-0.125 0.25 0.25 0.25 -0.125 / " +
+            "-0.125 -0.125 -0.125 -0.125 -0.125 /\n" +
+            "filterImage c d 0.0625 0.125 0.0625 / 0.125 0.25 0.125 / 0.0625 0.125 0.0625 /\n",
+            mockLog.toString());
+  }
+
+  @Test
+  public void testPointOpCommands() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("gamma 2.2 a b\n" +
+                    "levels 10 240 1.0 0 255 b c\n" +
+                    "curve 3 0 0 128 160 255 255 c d\n" +
+                    "gamma -1 d e\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("applyPointOp a b\n" +
+            "applyPointOp b c\n" +
+            "applyPointOp c d\n", mockLog.toString());
+  }
+
+  @Test
+  public void testAutoLevelsCommand() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("auto-levels a b\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("returnImage a\n" +
+            "applyPointOp a b\n", mockLog.toString());
+  }
+
+  @Test
+  public void testStatisticsCommand() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            new ImageProcessorModelImpl(),
+            new StringReader("load test/controller/readFrom/im22.ppm im\n" +
+                    "statistics im\n" +
+                    "statistics nothing\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("Welcome to Image Processor. \"menu\" for command list.\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Pixels: 4\n" +
+            "Red: mean 195.00, median 180, min 90, max 255\n" +
+            "Green: mean 67.50, median 0, min 0, max 180\n" +
+            "Blue: mean 22.50, median 0, min 0, max 90\n" +
+            "Intensity: mean 95.00, median 85, min 85, max 120\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "No such name in the system.\n" +
+            "Command:\n" +
+            "Thank you for using Image Processor!\n", viewLog.toString());
+  }
+
+  @Test
+  public void testMemoryCommand() {
+    //room for one 2x2 image in memory
+    ImageProcessorModel model = new ImageProcessorModelImpl(20);
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            model,
+            new StringReader("memory\n" +
+                    "load test/controller/readFrom/im22.ppm a\n" +
+                    "load test/controller/readFrom/im22.ppm b\n" +
+                    "memory\n" +
+                    "red-component b c\n" +
+                    "memory\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("Welcome to Image Processor. \"menu\" for command list.\n" +
+            "Command:\n" +
+            "Memory: 0 of 20 bytes used\n" +
+            "Resident: none\n" +
+            "Spilled: none\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Command:\n" +
+            "Memory: 16 of 20 bytes used\n" +
+            "Resident: b\n" +
+            "Spilled: a\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Command:\n" +
+            "Memory: 16 of 20 bytes used\n" +
+            "Resident: b, c\n" +
+            "Spilled: a\n" +
+            "Command:\n" +
+            "Thank you for using Image Processor!\n", viewLog.toString());
+    model.close();
+  }
+
+  @Test
+  public void testMosaicCommands() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("mosaic 100 42 a b\n" +
+                    "mosaic-average 2000 -7 b c\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("mosaicImage a b 100 42 false\n" +
+            "mosaicImage b c 2000 -7 true\n", mockLog.toString());
+  }
+
+  @Test
+  public void testMosaicWithoutSeed() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("mosaic 100 a b\n" +
+                    "mosaic-average 20 b c\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    //the seeds are picked at random
+    assertTrue(mockLog.toString().matches(
+            "mosaicImage a b 100 -?\\d+ false\nmosaicImage b c 20 -?\\d+ true\n"));
+  }
+
+  @Test
+  public void testRotateAndCropCommands() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("rotate-clockwise a b\n" +
+                    "rotate-counterclockwise b c\n" +
+                    "crop 1 2 30 40 c d\n" +
+                    "q"
+            ),
+            new ImageProcessorTextView(viewLog)
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("rotateImage a b true\n" +
+            "rotateImage b c false\n" +
+            "cropImage c d 1 2 30 40\n", mockLog.toString());
+  }
+
+  @Test
+  public void testScriptMatchesSequentialRun() {
+    String script = "load test/controller/readFrom/im22.ppm a\n" +
+            "load test/controller/readFrom/couch.png c\n" +
+            "\n" +
+            "brighten 10 a a2\n" +
+            "blur c c2\n" +
+            "statistics a2\n" +
+            "frobnicate\n" +
+            "brighten x a b\n" +
+            "horizontal-flip missing m\n" +
+            "sepia c2 c3 statistics c3\n" +
+            "save a2 test/controller/saveTo/script.ppm\n" +
+            "load test/controller/saveTo/script.ppm a3\n" +
+            "statistics a3\n" +
+            "menu\n" +
+            "q\n" +
+            "blur a a\n";
+    new File("test/controller/saveTo/script.ppm").delete();
+    new ImageProcessorControllerImpl(new ImageProcessorModelImpl(), new StringReader(script),
+            new ImageProcessorTextView(viewLog), SaveService.synchronous()).activateProcessor();
+    new File("test/controller/saveTo/script.ppm").delete();
+    Appendable scriptLog = new StringBuilder();
+    ExecutorService workers = Executors.newFixedThreadPool(4);
+
+    try {
+      new ImageProcessorControllerImpl(new ConcurrentImageProcessorModel(),
+              new StringReader(script), new ImageProcessorTextView(scriptLog),
+              SaveService.synchronous(), workers).activateProcessor();
+    } finally {
+      workers.shutdown();
+      new File("test/controller/saveTo/script.ppm").delete();
+    }
+
+    assertTrue(viewLog.toString().contains("Command \"frobnicate\" not found."));
+    assertEquals(viewLog.toString(), scriptLog.toString());
+  }
+
+  @Test
+  public void testScriptRunsEachCommand() {
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            mockModel,
+            new StringReader("brighten 10 a b\n" +
+                    "curve 2 0 0 255 255 b c\n" +
+                    "mosaic 5 1 c d rotate-clockwise d e\n" +
+                    "quit\n"),
+            new ImageProcessorTextView(viewLog),
+            SaveService.synchronous(),
+            Runnable::run
+    );
+
+    cont.activateProcessor();
+
+    assertEquals("adjustImageBrightness a b 10\n" +
+            "applyPointOp b c\n" +
+            "mosaicImage c d 5 1 false\n" +
+            "rotateImage d e true\n", mockLog.toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testScriptWithoutQuit() {
+    new ImageProcessorControllerImpl(mockModel, new StringReader("brighten 10 a b\n"),
+            new ImageProcessorTextView(viewLog), SaveService.synchronous(), Runnable::run)
+            .activateProcessor();
+  }
+
+  @Test
+  public void testScriptArgumentsOnOneLine() {
+    new ImageProcessorControllerImpl(mockModel, new StringReader("brighten 10 a\nb\nq"),
+            new ImageProcessorTextView(viewLog), SaveService.synchronous(), Runnable::run)
+            .activateProcessor();
+
+    assertEquals("", mockLog.toString());
+    assertEquals("Welcome to Image Processor. \"menu\" for command list.\n" +
+            "Command:\n" +
+            "Arguments:\n" +
+            "Incorrect form of parameters.\n" +
+            "Command:\n" +
+            "Command \"b\" not found.\n" +
+            "Command:\n" +
+            "Thank you for using Image Processor!\n", viewLog.toString());
+  }
+
+  @Test
+  public void testFailuresRemembered() {
+    ImageProcessorControllerImpl cont = new ImageProcessorControllerImpl(
+            new ImageProcessorModelImpl(),
+            new StringReader("load test/controller/readFrom/nothing.ppm a\n" +
+                    "load test/controller/readFrom/im22.ppm a\n" +
+                    "sepia b c\n" +
+                    "frobnicate\n" +
+                    "brighten x a b\n" +
+                    "q"),
+            new ImageProcessorTextView(viewLog),
+            SaveService.synchronous()
+    );
+
+    cont.activateProcessor();
+
+    assertEquals(List.of("File not found!", "No such name in the system.",
+            "Command \"frobnicate\" not found.", "Incorrect form of parameters.",
+            "Command \"a\" not found.", "Command \"b\" not found."), cont.getFailures());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullScriptWorkers() {
+    new ImageProcessorControllerImpl(mockModel, new StringReader("q"),
+            new ImageProcessorTextView(viewLog), SaveService.synchronous(), null);
+  }
+
   @Test
   public void testArgumentsDontRunCommands() {
     ImageProcessorController cont = new ImageProcessorControllerImpl(
@@ -273,6 +604,31 @@ public class ImageProcessorControllerImplTest {
             "Thank you for using Image Processor!\n", viewLog.toString());
   }
 
+  @Test
+  public void testBackgroundSaveMessages() {
+    new File("test/controller/saveTo/im22Copy.ppm").delete();
+    ImageProcessorController cont = new ImageProcessorControllerImpl(
+            new ImageProcessorModelImpl(),
+            new StringReader("load test/controller/readFrom/im22.ppm im\n" +
+                    "save im test/controller/missing/im.png\n" +
+                    "save im test/controller/saveTo/im22Copy.ppm\n" +
+                    "quit"
+            ),
+            new ImageProcessorTextView(viewLog),
+            SaveService.background(1, 1)
+    );
+
+    cont.activateProcessor();
+
+    //the failure may be reported before any later prompt, but always before quitting
+    String log = viewLog.toString();
+    assertTrue(log.startsWith("Welcome to Image Processor. \"menu\" for command list.\n"));
+    assertTrue(log.endsWith("Thank you for using Image Processor!\n"));
+    assertTrue(log.contains("File test/controller/missing/im.png could not be saved!\n"));
+    assertEquals(1, log.split("could not be saved", -1).length - 1);
+    assertTrue(new File("test/controller/saveTo/im22Copy.ppm").exists());
+  }
+
   @Test
   public void checkFailureToReadInput() {
 
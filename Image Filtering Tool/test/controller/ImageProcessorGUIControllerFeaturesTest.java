@@ -4,14 +4,22 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
 
 import model.ColorComponent;
 import model.Image;
+import utils.ImageUtils;
+import utils.SaveService;
 import view.ImageProcessorGUIView;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * A JUnit testing class for ImageProcessorGUIControllerFeatures.
@@ -20,11 +28,15 @@ public class ImageProcessorGUIControllerFeaturesTest {
 
   ImageProcessorControllerFeatures cont;
   StringBuilder s;
+  List<Double> progress;
 
   @Before
   public void setup() {
     s = new StringBuilder();
-    cont = new ImageProcessorGUIControllerFeatures(new MockGUIView(s));
+    progress = new ArrayList<>();
+    //runs everything on the calling thread, so that the view is told everything before it returns
+    cont = new ImageProcessorGUIControllerFeatures(new MockGUIView(s, progress),
+            SaveService.synchronous(), Runnable::run, Runnable::run);
     new File("test/controller/saveTo/result.ppm").delete();
     new File("test/controller/saveTo/result.png").delete();
     new File("test/controller/saveTo/result.jpg").delete();
@@ -82,6 +94,16 @@ public class ImageProcessorGUIControllerFeaturesTest {
             "set image: 2x2 with pixel 0,0 = 85,85,85\n", s.toString());
   }
 
+  @Test
+  public void testAutoLevels() {
+    cont.loadImage("test/controller/readFrom/im22.ppm");
+    cont.runCommand("auto-levels");
+
+    assertEquals("passed " + cont + "\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n", s.toString());
+  }
+
   @Test
   public void testLoadImage() {
     cont.loadImage("test/controller/readFrom/im22.ppm");
@@ -130,12 +152,253 @@ public class ImageProcessorGUIControllerFeaturesTest {
 
   }
 
+  @Test
+  public void testSaveImageInBackground() throws Exception {
+    SaveService saves = SaveService.background(1, 2);
+    ImageProcessorControllerFeatures background =
+            new ImageProcessorGUIControllerFeatures(new MockGUIView(s, progress), saves,
+                    Runnable::run, SwingUtilities::invokeLater);
+    s.setLength(0);
+    background.loadImage("test/controller/readFrom/couch.png");
+
+    background.saveImage("test/controller/saveTo/result.ppm");
+    background.saveImage("test/controller/saveTo/result.png");
+    background.saveImage("this folder doesn't exist/result.png");
+    saves.awaitAll();
+    //the results are shown on the event dispatch thread, after the saves
+    SwingUtilities.invokeAndWait(() -> { });
+
+    assertTrue(new File("test/controller/saveTo/result.ppm").exists());
+    assertTrue(new File("test/controller/saveTo/result.png").exists());
+    assertEquals("set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "show message: Save successful.\n" +
+            "show message: Save successful.\n" +
+            "show message: File saving failed.\n", s.toString());
+  }
+
+  @Test
+  public void testCommandProgress() {
+    cont.loadImage("test/controller/readFrom/couch.png");
+    cont.runCommand("blur");
+
+    assertTrue(progress.size() > 2);
+    assertEquals(1.0, progress.get(progress.size() - 2), 1e-9);
+    assertEquals(-1.0, progress.get(progress.size() - 1), 1e-9);
+    for (int i = 0; i < progress.size() - 1; i++) {
+      assertTrue(progress.get(i) >= 0 && progress.get(i) <= 1);
+    }
+  }
+
+  @Test
+  public void testCancelCommand() {
+    List<Runnable> queued = new ArrayList<>();
+    ImageProcessorControllerFeatures queueing = new ImageProcessorGUIControllerFeatures(
+            new MockGUIView(s, progress), SaveService.synchronous(), queued::add, Runnable::run);
+    s.setLength(0);
+
+    queueing.loadImage("test/controller/readFrom/im22.ppm");
+    queueing.runCommand("brighten 50");
+    queueing.runCommand("sepia");
+    queueing.cancelCommand();
+    queueing.runCommand("brighten -40");
+    for (Runnable work : queued) {
+      work.run();
+    }
+
+    assertEquals("set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "show message: Command cancelled.\n" +
+            "show message: Command cancelled.\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n", s.toString());
+    assertEquals(-1.0, progress.get(progress.size() - 1), 1e-9);
+  }
+
+  @Test
+  public void testCommandInBackground() throws Exception {
+    ImageProcessorControllerFeatures background = new ImageProcessorGUIControllerFeatures(
+            new MockGUIView(s, progress), SaveService.synchronous());
+    s.setLength(0);
+
+    background.loadImage("test/controller/readFrom/im22.ppm");
+    background.runCommand("brighten 50");
+    background.saveImage("test/controller/saveTo/result.ppm");
+    //the save is the last work given to the worker, and reports on the event dispatch thread
+    for (int i = 0; i < 500 && !s.toString().contains("show message"); i++) {
+      SwingUtilities.invokeAndWait(() -> { });
+      Thread.sleep(10);
+    }
+
+    assertEquals("set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 255,50,50\n" +
+            "show message: Save successful.\n", s.toString());
+  }
+
+  @Test
+  public void testPreviewThenFullImage() {
+    ImageProcessorControllerFeatures previewing = new ImageProcessorGUIControllerFeatures(
+            new MockGUIView(s, progress), SaveService.synchronous(), Runnable::run,
+            Runnable::run, Runnable::run, 100);
+    s.setLength(0);
+
+    previewing.loadImage("test/controller/readFrom/couch.png");
+    previewing.runCommand("red-component");
+    previewing.runCommand("brighten 10");
+    previewing.saveImage("test/controller/saveTo/result.png");
+
+    assertEquals("set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "set image: 100x67 with pixel 0,0 = 210,210,210\n" +
+            "set image: 640x427 with pixel 0,0 = 210,210,210\n" +
+            "set image: 100x67 with pixel 0,0 = 220,220,220\n" +
+            "set image: 640x427 with pixel 0,0 = 220,220,220\n" +
+            "show message: Save successful.\n", s.toString());
+    //the full image is saved, not the preview
+    try {
+      Image saved = ImageUtils.readOther("test/controller/saveTo/result.png");
+      assertEquals(640, saved.getWidth());
+      assertEquals(427, saved.getHeight());
+      assertEquals(220, saved.getPixelAt(0, 0).getComponent(ColorComponent.Green));
+    } catch (IOException e) {
+      fail("Could not read the saved image");
+    }
+  }
+
+  @Test
+  public void testPreviewsBeforeWorkIsDone() {
+    List<Runnable> queued = new ArrayList<>();
+    ImageProcessorControllerFeatures previewing = new ImageProcessorGUIControllerFeatures(
+            new MockGUIView(s, progress), SaveService.synchronous(), Runnable::run, queued::add,
+            Runnable::run, 100);
+    s.setLength(0);
+
+    previewing.loadImage("test/controller/readFrom/couch.png");
+    queued.remove(0).run();
+    previewing.runCommand("red-component");
+    previewing.runCommand("brighten 10");
+    //both previews are shown before either command is done, and only the last is kept
+    s.append("ran commands\n");
+    while (!queued.isEmpty()) {
+      queued.remove(0).run();
+    }
+    previewing.runCommand("brighten -100");
+    previewing.cancelCommand();
+    s.append("cancelled\n");
+    while (!queued.isEmpty()) {
+      queued.remove(0).run();
+    }
+
+    assertEquals("set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "set image: 100x67 with pixel 0,0 = 210,210,210\n" +
+            "set image: 100x67 with pixel 0,0 = 220,220,220\n" +
+            "ran commands\n" +
+            "set image: 640x427 with pixel 0,0 = 220,220,220\n" +
+            "set image: 100x67 with pixel 0,0 = 120,120,120\n" +
+            "cancelled\n" +
+            "show message: Command cancelled.\n" +
+            "set image: 640x427 with pixel 0,0 = 220,220,220\n", s.toString());
+  }
+
+  @Test
+  public void testUndoRedo() {
+    cont.undo();
+    cont.loadImage("test/controller/readFrom/im22.ppm");
+    cont.runCommand("brighten -40");
+    cont.runCommand("sepia");
+    cont.undo();
+    cont.undo();
+    cont.undo();
+    cont.redo();
+    cont.runCommand("horizontal-flip");
+    cont.redo();
+    cont.undo();
+
+    assertEquals("passed " + cont + "\n" +
+            "show message: Nothing to undo.\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 84,75,58\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "show message: Nothing to undo.\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 140,140,0\n" +
+            "show message: Nothing to redo.\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n", s.toString());
+  }
+
+  @Test
+  public void testRotateAndUndo() {
+    cont.loadImage("test/controller/readFrom/couch.png");
+    cont.runCommand("rotate-clockwise");
+    cont.runCommand("rotate-clockwise");
+    cont.undo();
+    cont.runCommand("rotate-counterclockwise");
+
+    assertEquals("passed " + cont + "\n" +
+            "set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "set image: 427x640 with pixel 0,0 = 194,165,147\n" +
+            "set image: 640x427 with pixel 0,0 = 225,207,203\n" +
+            "set image: 427x640 with pixel 0,0 = 194,165,147\n" +
+            "set image: 640x427 with pixel 0,0 = 210,199,195\n", s.toString());
+  }
+
+  @Test
+  public void testUnknownCommand() {
+    cont.loadImage("test/controller/readFrom/im22.ppm");
+    cont.runCommand("brighten -40");
+    cont.runCommand("brihgten 50");
+    cont.runCommand("");
+    //the typo is not an edit, so undo takes back the brighten
+    cont.undo();
+
+    assertEquals("passed " + cont + "\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n" +
+            "set image: 2x2 with pixel 0,0 = 215,0,0\n" +
+            "show message: Command not found.\n" +
+            "show message: Command not found.\n" +
+            "set image: 2x2 with pixel 0,0 = 255,0,0\n", s.toString());
+  }
+
+  @Test
+  public void testLoadNullFile() {
+    cont.loadImage(null);
+
+    assertEquals("passed " + cont + "\n" +
+            "show message: File reading failed.\n", s.toString());
+  }
+
+  @Test
+  public void testUndoAfterPreview() {
+    ImageProcessorControllerFeatures previewing = new ImageProcessorGUIControllerFeatures(
+            new MockGUIView(s, progress), SaveService.synchronous(), Runnable::run,
+            Runnable::run, Runnable::run, 100);
+    s.setLength(0);
+
+    previewing.loadImage("test/controller/readFrom/couch.png");
+    previewing.runCommand("red-component");
+    previewing.undo();
+    previewing.runCommand("brighten 10");
+
+    assertEquals("set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "set image: 100x67 with pixel 0,0 = 210,210,210\n" +
+            "set image: 640x427 with pixel 0,0 = 210,210,210\n" +
+            "set image: 640x427 with pixel 0,0 = 210,199,195\n" +
+            "set image: 100x67 with pixel 0,0 = 220,209,205\n" +
+            "set image: 640x427 with pixel 0,0 = 220,209,205\n", s.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroPreviewSize() {
+    new ImageProcessorGUIControllerFeatures(new MockGUIView(s, progress),
+            SaveService.synchronous(), Runnable::run, Runnable::run, Runnable::run, 0);
+  }
+
   private static class MockGUIView implements ImageProcessorGUIView {
 
     StringBuilder log;
+    List<Double> progress;
 
-    MockGUIView(StringBuilder log) {
+    MockGUIView(StringBuilder log, List<Double> progress) {
       this.log = log;
+      this.progress = progress;
     }
 
     @Override
@@ -166,5 +429,10 @@ public class ImageProcessorGUIControllerFeaturesTest {
       log.append(message);
       log.append("\n");
     }
+
+    @Override
+    public void showProgress(double fraction) {
+      progress.add(fraction);
+    }
   }
 }
@@ -5,6 +5,8 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import mocks.MockImageProcessorModel;
 import model.ColorComponent;
@@ -14,6 +16,10 @@ import model.ImageProcessorModelImpl;
 import model.Pixel;
 import model.RGBPixel;
 import model.SimpleImage;
+import utils.ImageStorage;
+import utils.ImageUtils;
+import utils.PpmFormat;
+import utils.SaveService;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -33,6 +39,7 @@ public class ImageProcessorCommandTests {
     s = new StringBuilder();
     mock = new MockImageProcessorModel(s);
     new File("test/controller/commands/saveTo/a.ppm").delete();
+    new File("test/controller/commands/saveTo/aRaw.ppm").delete();
     new File("test/controller/commands/saveTo/a.jpg").delete();
     new File("test/controller/commands/saveTo/a.bmp").delete();
     new File("test/controller/commands/saveTo/a.png").delete();
@@ -149,6 +156,32 @@ public class ImageProcessorCommandTests {
             "addImage im22jpg 2x2 image\n", s.toString());
   }
 
+  @Test
+  public void testLoadMappedImageRunCommand() {
+    ImageProcessorCommand load1 = new LoadImageCommand(
+            "test/controller/commands/readFrom/im32.ppm", "im32ppm", ImageStorage.Mapped);
+    ImageProcessorCommand load2 = new LoadImageCommand(
+            "test/controller/commands/readFrom/im22.png", "im22png", ImageStorage.Mapped);
+    ImageProcessorCommand load3 = new LoadImageCommand(
+            "test/controller/commands/readFrom/im32.ppm", "im32tiled", ImageStorage.Tiled);
+    ImageProcessorCommand load4 = new LoadImageCommand(
+            "test/controller/commands/readFrom/im22.png", "im22tiled", ImageStorage.Tiled);
+
+    try {
+      load1.runCommand(mock);
+      load2.runCommand(mock);
+      load3.runCommand(mock);
+      load4.runCommand(mock);
+    } catch (Exception e) {
+      fail("Didn't find im32");
+    }
+
+    assertEquals("addImage im32ppm 2x3 image\n" +
+            "addImage im22png 2x2 image\n" +
+            "addImage im32tiled 2x3 image\n" +
+            "addImage im22tiled 2x2 image\n", s.toString());
+  }
+
   @Test
   public void testSaveImageRunCommand() {
     ImageProcessorCommand save1 =
@@ -198,6 +231,53 @@ public class ImageProcessorCommandTests {
             "returnImage a\n", s.toString());
   }
 
+  @Test
+  public void testSaveImageFormatRunCommand() {
+    ImageProcessorCommand save =
+            new SaveImageCommand("a", "test/controller/commands/saveTo/aRaw.ppm", PpmFormat.Raw);
+
+    ImageProcessorModel m = new ImageProcessorModelImpl();
+    Image a = new SimpleImage(new Pixel[][]{{new RGBPixel(255,255,255), new RGBPixel(0,0,0)}});
+    m.addImage("a", a);
+
+    try {
+      save.runCommand(m);
+      byte[] bytes = Files.readAllBytes(Paths.get("test/controller/commands/saveTo/aRaw.ppm"));
+      assertEquals('P', bytes[0]);
+      assertEquals('6', bytes[1]);
+      Image read = ImageUtils.readPPM("test/controller/commands/saveTo/aRaw.ppm");
+      assertEquals(255, read.getPixelAt(0, 0).getComponent(ColorComponent.Blue));
+      assertEquals(0, read.getPixelAt(1, 0).getComponent(ColorComponent.Blue));
+    } catch (IOException e) {
+      fail("Save failed.");
+    }
+  }
+
+  @Test
+  public void testLoadWaitsForSave() {
+    SaveService saves = SaveService.background();
+    ImageProcessorModel m = new ImageProcessorModelImpl();
+    Image a = new SimpleImage(new Pixel[][]{{new RGBPixel(255,255,255), new RGBPixel(0,0,0)}});
+    m.addImage("a", a);
+
+    try {
+      new SaveImageCommand("a", "test/controller/commands/saveTo/aLoaded.ppm",
+              PpmFormat.Plain, saves).runCommand(m);
+      new LoadImageCommand("test/controller/commands/saveTo/aLoaded.ppm", "b",
+              ImageStorage.Memory, saves).runCommand(m);
+      assertEquals(255, m.returnImage("b").getPixelAt(0, 0).getComponent(ColorComponent.Blue));
+    } catch (IOException e) {
+      fail("Save or load failed.");
+    } finally {
+      new File("test/controller/commands/saveTo/aLoaded.ppm").delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadNullSaveService() {
+    new LoadImageCommand("a.ppm", "a", ImageStorage.Memory, null);
+  }
+
   @Test
   public void testBlurRunCommand() {
     ImageProcessorCommand cmd = new BlurCommand("a", "a1");
@@ -258,5 +338,65 @@ public class ImageProcessorCommandTests {
             "0.5 0.25 0.4 / 0.5 0.25 0.4 / 0.5 0.25 0.4 /\n", s.toString());
   }
 
+  @Test
+  public void testMosaicRunCommand() {
+    ImageProcessorCommand cmd = new MosaicCommand(500, 12345L, true, "a", "a1");
+
+    try {
+      cmd.runCommand(mock);
+    } catch (IOException io) {
+      fail("Unable to run command.");
+    }
+
+    assertEquals("mosaicImage a a1 500 12345 true\n", s.toString());
+  }
+
+  @Test
+  public void testRotateRunCommand() {
+    ImageProcessorCommand cmd = new RotateCommand(false, "a", "a1");
+
+    try {
+      cmd.runCommand(mock);
+    } catch (IOException io) {
+      fail("Unable to run command.");
+    }
+
+    assertEquals("rotateImage a a1 false\n", s.toString());
+  }
+
+  @Test
+  public void testCropRunCommand() {
+    ImageProcessorCommand cmd = new CropCommand(3, 4, 5, 6, "a", "a1");
+
+    try {
+      cmd.runCommand(mock);
+    } catch (IOException io) {
+      fail("Unable to run command.");
+    }
+
+    assertEquals("cropImage a a1 3 4 5 6\n", s.toString());
+  }
+
+  @Test
+  public void testAutoLevelsRunCommand() {
+    ImageProcessorModel model = new ImageProcessorModelImpl();
+    model.addImage("a", new SimpleImage(new Pixel[][]{
+        {new RGBPixel(50, 60, 70), new RGBPixel(100, 110, 120)},
+        {new RGBPixel(150, 160, 170), new RGBPixel(200, 190, 180)}}));
+    ImageProcessorCommand cmd = new AutoLevelsCommand("a", "a1");
+
+    try {
+      cmd.runCommand(mock);
+      cmd.runCommand(model);
+    } catch (IOException io) {
+      fail("Unable to run command.");
+    }
+
+    assertEquals("returnImage a\napplyPointOp a a1\n", s.toString());
+    Image leveled = model.returnImage("a1");
+    assertEquals(0, leveled.getPixelAt(0, 0).getComponent(ColorComponent.Red));
+    assertEquals(255, leveled.getPixelAt(1, 1).getComponent(ColorComponent.Red));
+  }
+
 
 }
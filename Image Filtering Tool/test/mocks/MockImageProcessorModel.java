@@ -1,11 +1,15 @@
 package mocks;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import model.ColorComponent;
+import model.EdgeMode;
 import model.Image;
 import model.ImageProcessorModel;
+import model.MemoryReport;
 import model.Pixel;
+import model.PointOp;
 import model.RGBPixel;
 import model.SimpleImage;
 
@@ -98,6 +102,27 @@ public class MockImageProcessorModel implements ImageProcessorModel {
     }
   }
 
+  @Override
+  public void rotateImage(String name, String newName, boolean clockwise)
+          throws IllegalArgumentException {
+    try {
+      log.append("rotateImage " + name + " " + newName + " " + clockwise + "\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+
+  @Override
+  public void cropImage(String name, String newName, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    try {
+      log.append("cropImage " + name + " " + newName + " " + row + " " + col + " " + height + " "
+              + width + "\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+
   @Override
   public void adjustImageBrightness(String name, String newName, int delta)
           throws IllegalArgumentException {
@@ -108,6 +133,16 @@ public class MockImageProcessorModel implements ImageProcessorModel {
     }
   }
 
+  @Override
+  public void applyPointOp(String name, String newName, PointOp op)
+          throws IllegalArgumentException {
+    try {
+      log.append("applyPointOp " + name + " " + newName + "\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+
   @Override
   public void transformImageColor(String name, String newName, double[][] matrix)
           throws IllegalArgumentException {
@@ -141,5 +176,51 @@ public class MockImageProcessorModel implements ImageProcessorModel {
       throw new IllegalStateException("Writing to log failed.");
     }
   }
-}
 
+  @Override
+  public void filterImage(String name, String newName, double[][] kernel, EdgeMode edges)
+          throws IllegalArgumentException {
+    try {
+      log.append("filterImage " + name + " " + newName + " " + edges);
+      for (int i = 0; i < kernel.length; i++) {
+        for (int j = 0; j < kernel.length; j++) {
+          log.append(" " + kernel[i][j]);
+        }
+        log.append(" /");
+      }
+      log.append("\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+
+  @Override
+  public void mosaicImage(String name, String newName, int seedCount, long seed,
+                          boolean average) throws IllegalArgumentException {
+    try {
+      log.append("mosaicImage " + name + " " + newName + " " + seedCount + " " + seed + " "
+              + average + "\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+
+  @Override
+  public MemoryReport getMemoryReport() {
+    try {
+      log.append("getMemoryReport\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+    return new MemoryReport(Arrays.asList("a", "b"), Arrays.asList("c"), 48, 100);
+  }
+
+  @Override
+  public void close() {
+    try {
+      log.append("close\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to log failed.");
+    }
+  }
+}
@@ -7,16 +7,21 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
 import model.ColorComponent;
 import model.Image;
+import model.MappedImage;
 import model.Pixel;
 import model.RGBPixel;
 import model.SimpleImage;
 import utils.ImageUtils;
+import utils.PpmFormat;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -46,6 +51,8 @@ public class ImageUtilsTest {
                     new RGBPixel(200,175,115)}});
     new File("test/util/saveTo/im22.ppm").delete();
     new File("test/util/saveTo/im32.ppm").delete();
+    new File("test/util/saveTo/im32Raw.ppm").delete();
+    new File("test/util/saveTo/mapped.ppm").delete();
     new File("test/util/saveTo/im22.jpg").delete();
     new File("test/util/saveTo/im32.jpg").delete();
     new File("test/util/saveTo/im22.bmp").delete();
@@ -93,6 +100,83 @@ public class ImageUtilsTest {
     }
   }
 
+  @Test
+  public void testReadRawPPM() {
+    try {
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.readPPM("test/util/readFrom/im32Raw.ppm")));
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.readPPM("test/util/readFrom/im32Raw16.ppm")));
+    } catch (FileNotFoundException fnfE) {
+      fail("Did not find im32Raw or im32Raw16");
+    }
+  }
+
+  @Test
+  public void testReadPPMComments() {
+    try {
+      assertTrue(sameColorPixelsInImage(im22,
+              ImageUtils.readPPM("test/util/readFrom/commented.ppm")));
+    } catch (FileNotFoundException fnfE) {
+      fail("Did not find commented.ppm");
+    }
+  }
+
+  @Test
+  public void testReadErrorTruncated() {
+    try {
+      ImageUtils.readPPM("test/util/readFrom/truncated.ppm");
+      fail("Read a truncated file");
+    } catch (FileNotFoundException fnfE) {
+      assertEquals("File found was not a valid ppm", fnfE.getMessage());
+    }
+  }
+
+  @Test
+  public void testReadPAM() {
+    try {
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.readPPM("test/util/readFrom/im32.pam")));
+    } catch (FileNotFoundException fnfE) {
+      fail("Did not find im32.pam");
+    }
+  }
+
+  @Test
+  public void testMapPPM() {
+    try {
+      Image raw = ImageUtils.mapPPM("test/util/readFrom/im32Raw.ppm");
+      assertTrue(raw instanceof MappedImage);
+      assertTrue(sameColorPixelsInImage(im32, raw));
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.mapPPM("test/util/readFrom/im32.pam")));
+      //files which can not be used in place are copied into a file of their own
+      Image plain = ImageUtils.mapPPM("test/util/readFrom/im32.ppm");
+      assertTrue(plain instanceof MappedImage);
+      assertTrue(sameColorPixelsInImage(im32, plain));
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.mapPPM("test/util/readFrom/im32Raw16.ppm")));
+    } catch (FileNotFoundException fnfE) {
+      fail("Did not find im32Raw, im32.pam, im32 or im32Raw16");
+    }
+  }
+
+  @Test
+  public void testMapErrors() {
+    try {
+      ImageUtils.mapPPM("test/util/readFrom/im44.ppm");
+      fail("Mapped a file which does not exist");
+    } catch (FileNotFoundException fnfE) {
+      assertEquals("File test/util/readFrom/im44.ppm not found!", fnfE.getMessage());
+    }
+    try {
+      ImageUtils.mapPPM("test/util/readFrom/truncated.ppm");
+      fail("Mapped a truncated file");
+    } catch (FileNotFoundException fnfE) {
+      assertEquals("File found was not a valid ppm", fnfE.getMessage());
+    }
+  }
+
   @Test
   public void testSavePPM() {
     File file22 = new File("test/util/saveTo/im22.ppm");
@@ -123,6 +207,64 @@ public class ImageUtilsTest {
     } catch (FileNotFoundException fnfE) {
       fail("im22 or im32 not saved to correct path.");
     }
+
+    try {
+      //plain files are laid out exactly as they always have been
+      assertEquals(Files.readString(Paths.get("test/util/readFrom/im22.ppm")),
+              Files.readString(Paths.get("test/util/saveTo/im22.ppm")));
+    } catch (IOException ioE) {
+      fail("IO failed.");
+    }
+  }
+
+  @Test
+  public void testSaveRawPPM() {
+    File file32 = new File("test/util/saveTo/im32Raw.ppm");
+    assertFalse(file32.exists());
+
+    try {
+      ImageUtils.savePPM(im32, "test/util/saveTo/im32Raw.ppm", PpmFormat.Raw);
+      assertTrue(sameColorPixelsInImage(im32,
+              ImageUtils.readPPM("test/util/saveTo/im32Raw.ppm")));
+
+      byte[] bytes = Files.readAllBytes(file32.toPath());
+      String header = "P6\n#Created by Image Processor\n2 3\n255\n";
+      assertEquals(header.length() + 2 * 3 * 3, bytes.length);
+      assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+    } catch (IOException ioE) {
+      fail("IO failed.");
+    }
+  }
+
+  @Test
+  public void testSaveOverMappedFile() {
+    try {
+      ImageUtils.savePPM(im32, "test/util/saveTo/mapped.ppm", PpmFormat.Raw);
+      Image mapped = ImageUtils.mapPPM("test/util/saveTo/mapped.ppm");
+      ImageUtils.savePPM(im22, "test/util/saveTo/mapped.ppm", PpmFormat.Raw);
+
+      //the file is replaced, rather than rewritten under the image mapped from it
+      assertTrue(sameColorPixelsInImage(im32, mapped));
+      assertTrue(sameColorPixelsInImage(im22,
+              ImageUtils.readPPM("test/util/saveTo/mapped.ppm")));
+      String[] left = new File("test/util/saveTo").list((dir, name) -> name.endsWith(".tmp"));
+      assertEquals(0, left.length);
+    } catch (IOException ioE) {
+      fail("IO failed.");
+    }
+  }
+
+  @Test
+  public void testPpmFormatFromName() {
+    assertEquals(PpmFormat.Raw, PpmFormat.fromName("raw"));
+    assertEquals(PpmFormat.Raw, PpmFormat.fromName("p6"));
+    assertEquals(PpmFormat.Plain, PpmFormat.fromName("PLAIN"));
+    assertEquals(PpmFormat.Plain, PpmFormat.fromName("P3"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPpmFormatFromNameException() {
+    PpmFormat.fromName("P4");
   }
 
   @Test
@@ -0,0 +1,214 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import model.Image;
+import model.PackedImage;
+import utils.ImageUtils;
+import utils.PpmFormat;
+import utils.SaveService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the SaveService class.
+ */
+public class SaveServiceTest {
+
+  Image image;
+
+  @Before
+  public void setup() {
+    image = new PackedImage(3, 2, new int[]{0xFF0000, 0x00FF00, 0x0000FF,
+        0x123456, 0xABCDEF, 0xFFFFFF});
+    for (int i = 0; i < 8; i++) {
+      new File("test/util/saveTo/saved" + i + ".ppm").delete();
+    }
+    new File("test/util/saveTo/saved.png").delete();
+  }
+
+  @Test
+  public void testSynchronousSave() {
+    try {
+      CompletableFuture<Void> saved = SaveService.synchronous()
+              .save(image, "test/util/saveTo/saved0.ppm", PpmFormat.Raw);
+      assertTrue(saved.isDone());
+      assertTrue(samePixels(image, ImageUtils.readPPM("test/util/saveTo/saved0.ppm")));
+    } catch (IOException e) {
+      fail("Could not save saved0.ppm");
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testSynchronousSaveFailure() throws IOException {
+    SaveService.synchronous().save(image, "test/util/no such folder/saved.png", PpmFormat.Plain);
+  }
+
+  @Test
+  public void testBackgroundSaves() {
+    SaveService saves = SaveService.background(2, 3);
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < 8; i++) {
+        futures.add(saves.save(image, "test/util/saveTo/saved" + i + ".ppm", PpmFormat.Plain));
+      }
+      futures.add(saves.save(image, "test/util/saveTo/saved.png", PpmFormat.Plain));
+      saves.awaitAll();
+
+      for (CompletableFuture<Void> saved : futures) {
+        assertTrue(saved.isDone());
+        assertFalse(saved.isCompletedExceptionally());
+      }
+      for (int i = 0; i < 8; i++) {
+        assertTrue(samePixels(image, ImageUtils.readPPM("test/util/saveTo/saved" + i + ".ppm")));
+      }
+      assertTrue(samePixels(image, ImageUtils.readOther("test/util/saveTo/saved.png")));
+      assertEquals(new ArrayList<String>(), saves.takeFailures());
+    } catch (IOException e) {
+      fail("Could not save or read back the images");
+    }
+  }
+
+  @Test
+  public void testBackgroundSaveFailure() {
+    SaveService saves = SaveService.background(1, 1);
+    try {
+      CompletableFuture<Void> saved =
+              saves.save(image, "test/util/no such folder/saved.png", PpmFormat.Plain);
+      saves.save(image, "test/util/saveTo/saved0.ppm", PpmFormat.Plain).join();
+      assertTrue(saved.isCompletedExceptionally());
+      try {
+        saved.join();
+        fail("Saving to a missing folder succeeded");
+      } catch (CompletionException e) {
+        assertTrue(e.getCause() instanceof FileNotFoundException);
+      }
+      assertEquals(Arrays.asList("test/util/no such folder/saved.png"), saves.takeFailures());
+      assertEquals(new ArrayList<String>(), saves.takeFailures());
+    } catch (IOException e) {
+      fail("A background save threw on the calling thread");
+    }
+  }
+
+  @Test
+  public void testBackgroundSaveError() {
+    SaveService saves = SaveService.background(1, 1);
+    Image broken = new PackedImage(3, 2, new int[6]) {
+      @Override
+      public void getRow(int row, int[] dest) {
+        throw new AssertionError("Could not read row " + row);
+      }
+    };
+    try {
+      CompletableFuture<Void> saved =
+              saves.save(broken, "test/util/saveTo/saved0.ppm", PpmFormat.Raw);
+      //an error still finishes the save, rather than leaving it pending forever
+      saves.awaitAll();
+      assertTrue(saved.isCompletedExceptionally());
+      assertEquals(Arrays.asList("test/util/saveTo/saved0.ppm"), saves.takeFailures());
+      saves.save(image, "test/util/saveTo/saved1.ppm", PpmFormat.Raw).join();
+    } catch (IOException e) {
+      fail("A background save threw on the calling thread");
+    }
+  }
+
+  @Test
+  public void testAwaitFile() throws IOException {
+    SaveService saves = SaveService.background(1, 2);
+    CountDownLatch written = new CountDownLatch(1);
+    Image slow = new PackedImage(3, 2, new int[]{0xFF0000, 0x00FF00, 0x0000FF,
+        0x123456, 0xABCDEF, 0xFFFFFF}) {
+      @Override
+      public void getRow(int row, int[] dest) {
+        try {
+          written.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        super.getRow(row, dest);
+      }
+    };
+
+    CompletableFuture<Void> saved = saves.save(slow, "test/util/saveTo/saved0.ppm",
+            PpmFormat.Raw);
+    //saves to other files are not waited for
+    saves.awaitFile("test/util/saveTo/saved1.ppm");
+    assertFalse(saved.isDone());
+
+    new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      written.countDown();
+    }).start();
+    //the same file, by another path
+    saves.awaitFile("test/util/../util/saveTo/saved0.ppm");
+    assertTrue(saved.isDone());
+    assertTrue(samePixels(image, ImageUtils.readPPM("test/util/saveTo/saved0.ppm")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAwaitNullFile() {
+    SaveService.synchronous().awaitFile(null);
+  }
+
+  @Test
+  public void testIsSynchronous() {
+    assertTrue(SaveService.synchronous().isSynchronous());
+    assertFalse(SaveService.background().isSynchronous());
+  }
+
+  @Test
+  public void testAwaitAllWithNothingPending() {
+    SaveService.background().awaitAll();
+    SaveService.synchronous().awaitAll();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBackgroundThreadsException() {
+    SaveService.background(0, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBackgroundPendingException() {
+    SaveService.background(1, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSaveNullImage() throws IOException {
+    SaveService.background().save(null, "test/util/saveTo/saved0.ppm", PpmFormat.Plain);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSaveNullFormat() throws IOException {
+    SaveService.synchronous().save(image, "test/util/saveTo/saved0.ppm", null);
+  }
+
+  private boolean samePixels(Image first, Image second) {
+    if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+      return false;
+    }
+    int[] firstPixels = new int[first.getWidth() * first.getHeight()];
+    int[] secondPixels = new int[firstPixels.length];
+    first.getRegion(0, 0, first.getHeight(), first.getWidth(), firstPixels, 0, first.getWidth());
+    second.getRegion(0, 0, second.getHeight(), second.getWidth(), secondPixels, 0,
+            second.getWidth());
+    return Arrays.equals(firstPixels, secondPixels);
+  }
+}